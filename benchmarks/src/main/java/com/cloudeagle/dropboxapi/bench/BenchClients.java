@@ -0,0 +1,34 @@
+package com.cloudeagle.dropboxapi.bench;
+
+import com.cloudeagle.dropboxapi.DropboxClient;
+import com.cloudeagle.dropboxapi.DropboxEndpoints;
+import com.cloudeagle.dropboxapi.HttpTransport;
+import com.cloudeagle.dropboxapi.RequestScheduler;
+import com.cloudeagle.dropboxapi.TokenProvider;
+
+/**
+ * BenchClients
+ * <p>
+ * Client wiring shared by the benchmarks: a private transport and a scheduler whose rate
+ * limit is far above anything a benchmark can reach, so pacing never skews the results.
+ */
+final class BenchClients {
+
+    static final TokenProvider TOKEN = TokenProvider.of("bench-token");
+
+    private BenchClients() {
+    }
+
+    static DropboxClient unthrottledClient() {
+        return new DropboxClient(new HttpTransport.Builder().build(),
+                new RequestScheduler(1_000_000, 1_000_000, 0, 1, 1));
+    }
+
+    /**
+     * @param baseUrl API base URL, e.g. of a {@link com.cloudeagle.dropboxapi.DropboxSimulator}
+     */
+    static DropboxClient unthrottledClient(String baseUrl) {
+        return new DropboxClient(new HttpTransport.Builder().build(),
+                new RequestScheduler(1_000_000, 1_000_000, 0, 1, 1), DropboxEndpoints.of(baseUrl));
+    }
+}
@@ -0,0 +1,68 @@
+package com.cloudeagle.dropboxapi.bench;
+
+import com.cloudeagle.dropboxapi.JsonRecordReader;
+import com.cloudeagle.dropboxapi.StringPool;
+import com.cloudeagle.dropboxapi.TeamEvent;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * EventProcessingBenchmark
+ * <p>
+ * CPU side of event handling without the network: turning a recorded get_events page into
+ * {@link TeamEvent}s through the JSONObject tree versus the streaming reader.
+ * Run with "-prof gc" to see the allocation rate of each path.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EventProcessingBenchmark {
+
+    @Param({"1000"})
+    public int eventsPerPage;
+
+    @Param({"500"})
+    public int actors;
+
+    private String page;
+    private StringPool pool;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        page = Payloads.page("events", Payloads.eventsArray(0, eventsPerPage, actors), "events:1", true);
+        pool = new StringPool(100_000);
+    }
+
+    @Benchmark
+    public void treeToTeamEvents(Blackhole bh) {
+        JSONArray events = new JSONObject(page).getJSONArray("events");
+        for (int i = 0; i < events.length(); i++) {
+            bh.consume(TeamEvent.fromJson(events.getJSONObject(i), pool));
+        }
+    }
+
+    @Benchmark
+    public void streamToTeamEvents(Blackhole bh) throws IOException {
+        JsonRecordReader.read(new StringReader(page), "events", ev -> bh.consume(TeamEvent.fromJson(ev, pool)));
+    }
+}
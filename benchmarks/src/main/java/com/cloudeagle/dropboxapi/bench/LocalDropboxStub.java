@@ -0,0 +1,98 @@
+package com.cloudeagle.dropboxapi.bench;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.json.JSONObject;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * LocalDropboxStub
+ * <p>
+ * In-process HTTP stand-in for the paginated Dropbox endpoints used by the benchmarks.
+ * Every page of a given kind carries the same pre-rendered record array, so serving a page
+ * costs little more than a socket write and the benchmark measures the client side.
+ * <p>
+ * Serves /2/team/members/list(/continue) and /2/team_log/get_events(/continue); cursors are
+ * "members:N" / "events:N" for page N.
+ */
+public final class LocalDropboxStub implements AutoCloseable {
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final byte[] membersArray;
+    private final byte[] eventsArray;
+    private final int memberPages;
+    private final int eventPages;
+
+    /**
+     * @param membersPerPage members in each members/list page
+     * @param memberPages    number of member pages
+     * @param eventsPerPage  events in each get_events page
+     * @param eventPages     number of event pages
+     */
+    public LocalDropboxStub(int membersPerPage, int memberPages, int eventsPerPage, int eventPages) throws IOException {
+        this.membersArray = Payloads.membersArray(0, membersPerPage).getBytes(StandardCharsets.UTF_8);
+        this.eventsArray = Payloads.eventsArray(0, eventsPerPage, 500).getBytes(StandardCharsets.UTF_8);
+        this.memberPages = memberPages;
+        this.eventPages = eventPages;
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        this.executor = Executors.newFixedThreadPool(8);
+        server.createContext("/2/team/members/list", ex -> servePage(ex, "members", membersArray, memberPages));
+        server.createContext("/2/team_log/get_events", ex -> servePage(ex, "events", eventsArray, eventPages));
+        server.setExecutor(executor);
+        server.start();
+    }
+
+    /**
+     * @return base URL, e.g. http://127.0.0.1:54321
+     */
+    public String baseUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private static void servePage(HttpExchange ex, String key, byte[] array, int pages) throws IOException {
+        String request = readBody(ex.getRequestBody());
+        int page = 0;
+        if (ex.getRequestURI().getPath().endsWith("/continue")) {
+            String cursor = new JSONObject(request).getString("cursor");
+            page = Integer.parseInt(cursor.substring(cursor.indexOf(':') + 1));
+        }
+        boolean hasMore = page + 1 < pages;
+        byte[] head = ("{\"" + key + "\": ").getBytes(StandardCharsets.UTF_8);
+        byte[] tail = (", \"cursor\": \"" + key + ":" + (page + 1) + "\", \"has_more\": " + hasMore + "}")
+                .getBytes(StandardCharsets.UTF_8);
+
+        ex.getResponseHeaders().add("Content-Type", "application/json");
+        ex.sendResponseHeaders(200, head.length + array.length + tail.length);
+        try (OutputStream os = ex.getResponseBody()) {
+            os.write(head);
+            os.write(array);
+            os.write(tail);
+        }
+    }
+
+    private static String readBody(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buf = new byte[1024];
+        int n;
+        while ((n = in.read(buf)) > 0) {
+            out.write(buf, 0, n);
+        }
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+}
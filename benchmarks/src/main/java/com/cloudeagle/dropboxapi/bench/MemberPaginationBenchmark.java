@@ -0,0 +1,106 @@
+package com.cloudeagle.dropboxapi.bench;
+
+import com.cloudeagle.dropboxapi.CursorPager;
+import com.cloudeagle.dropboxapi.DropboxClient;
+import com.cloudeagle.dropboxapi.DropboxService;
+import com.cloudeagle.dropboxapi.DropboxSimulator;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * MemberPaginationBenchmark
+ * <p>
+ * Full walk of team/members/list + /continue against a {@link DropboxSimulator}, reported as
+ * time per complete member list. Compares the three ways the client pages through members:
+ * {@link DropboxService#forEachMember} (streaming parse, next page prefetched), a
+ * {@link DropboxService.MemberWalk} stepped page by page (streaming parse, no prefetch) and
+ * {@link CursorPager} (whole-page parse, next page prefetched). {@code latencyMillis} is the
+ * simulated server time per page and {@code workPerMember} the handler's CPU cost per record,
+ * which prefetch can overlap with the next request.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MemberPaginationBenchmark {
+
+    @Param({"100", "1000"})
+    public int membersPerPage;
+
+    @Param({"20"})
+    public int pages;
+
+    @Param({"0", "10"})
+    public long latencyMillis;
+
+    @Param({"0", "500"})
+    public long workPerMember;
+
+    private DropboxSimulator simulator;
+    private DropboxService service;
+    private DropboxClient client;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        simulator = new DropboxSimulator.Builder()
+                .members(membersPerPage * pages).latencyMillis(latencyMillis, 0).build();
+        client = BenchClients.unthrottledClient(simulator.baseUrl());
+        service = new DropboxService(client);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        simulator.close();
+    }
+
+    @Benchmark
+    public int forEachMemberWithPrefetch(Blackhole bh) throws IOException {
+        return service.forEachMember(BenchClients.TOKEN, membersPerPage, m -> consume(bh, m));
+    }
+
+    @Benchmark
+    public int memberWalkPageByPage(Blackhole bh) throws IOException {
+        DropboxService.MemberWalk walk = service.memberJob(BenchClients.TOKEN, membersPerPage, m -> consume(bh, m));
+        while (walk.step()) {
+            // one page per step
+        }
+        return walk.getCount();
+    }
+
+    @Benchmark
+    public int cursorPagerWithPrefetch(Blackhole bh) {
+        int count = 0;
+        try (CursorPager pager = service.openMemberPager(BenchClients.TOKEN, membersPerPage)) {
+            Iterator<JSONObject> members = pager.records("members");
+            while (members.hasNext()) {
+                consume(bh, members.next());
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private void consume(Blackhole bh, JSONObject member) {
+        bh.consume(member);
+        Blackhole.consumeCPU(workPerMember);
+    }
+}
@@ -0,0 +1,90 @@
+package com.cloudeagle.dropboxapi.bench;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+
+/**
+ * Payloads
+ * <p>
+ * Builds Dropbox-shaped response pages from the recorded records in
+ * src/main/resources/payloads, varying IDs, emails and timestamps so that pages of any size
+ * look like a real team rather than one record repeated verbatim.
+ */
+public final class Payloads {
+
+    private static final JSONObject MEMBER = load("/payloads/member.json");
+    private static final JSONObject EVENT = load("/payloads/event.json");
+
+    private Payloads() {
+    }
+
+    /**
+     * @param offset index of the first member
+     * @param count  members in the page
+     * @return the members JSON array text
+     */
+    public static String membersArray(int offset, int count) {
+        JSONArray arr = new JSONArray();
+        for (int i = offset; i < offset + count; i++) {
+            JSONObject m = new JSONObject(MEMBER.toString());
+            JSONObject p = m.getJSONObject("profile");
+            p.put("team_member_id", "dbmid:AAHhy7WsR0x-u4ZCqiDl5Fz5zv" + i);
+            p.put("account_id", "dbid:AAH4f99T0taONIb-OurWxbNQ6ywG" + i);
+            p.put("email", "member" + i + "@example.com");
+            p.getJSONObject("name").put("display_name", "Member " + i);
+            arr.put(m);
+        }
+        return arr.toString();
+    }
+
+    /**
+     * @param offset index of the first event
+     * @param count  events in the page
+     * @param actors number of distinct actors cycling through the events
+     * @return the events JSON array text
+     */
+    public static String eventsArray(int offset, int count, int actors) {
+        JSONArray arr = new JSONArray();
+        long base = Instant.parse("2024-01-01T00:00:00Z").getEpochSecond();
+        for (int i = offset; i < offset + count; i++) {
+            JSONObject e = new JSONObject(EVENT.toString());
+            e.put("timestamp", Instant.ofEpochSecond(base + i).toString());
+            JSONObject user = e.getJSONObject("actor").getJSONObject("user");
+            int actor = i % actors;
+            user.put("team_member_id", "dbmid:AAHhy7WsR0x-u4ZCqiDl5Fz5zv" + actor);
+            user.put("account_id", "dbid:AAH4f99T0taONIb-OurWxbNQ6ywG" + actor);
+            user.put("email", "member" + actor + "@example.com");
+            arr.put(e);
+        }
+        return arr.toString();
+    }
+
+    /**
+     * @return a full page response text: {"key": [...], "cursor": ..., "has_more": ...}
+     */
+    public static String page(String key, String array, String cursor, boolean hasMore) {
+        return "{\"" + key + "\": " + array + ", \"cursor\": " + JSONObject.quote(cursor)
+                + ", \"has_more\": " + hasMore + "}";
+    }
+
+    private static JSONObject load(String resource) {
+        try (InputStream in = Payloads.class.getResourceAsStream(resource)) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buf = new byte[4096];
+            int n;
+            while ((n = in.read(buf)) > 0) {
+                out.write(buf, 0, n);
+            }
+            return new JSONObject(new String(out.toByteArray(), StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package com.cloudeagle.dropboxapi.bench;
+
+import com.cloudeagle.dropboxapi.DropboxClient;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * PostJsonBenchmark
+ * <p>
+ * One get_events round trip against the local stub: request building, HTTP exchange and
+ * response parsing, comparing the whole-body JSONObject path with the streaming path.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PostJsonBenchmark {
+
+    @Param({"100", "1000"})
+    public int eventsPerPage;
+
+    private LocalDropboxStub stub;
+    private DropboxClient client;
+    private String url;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        stub = new LocalDropboxStub(1, 1, eventsPerPage, 1);
+        client = BenchClients.unthrottledClient();
+        url = stub.baseUrl() + "/2/team_log/get_events";
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        stub.close();
+    }
+
+    @Benchmark
+    public void postJsonTree(Blackhole bh) throws IOException {
+        bh.consume(client.postJson(url, "{\"limit\": " + eventsPerPage + "}", BenchClients.TOKEN));
+    }
+
+    @Benchmark
+    public void postJsonStreaming(Blackhole bh) throws IOException {
+        bh.consume(client.postJsonStreaming(url, "{\"limit\": " + eventsPerPage + "}", BenchClients.TOKEN,
+                "events", bh::consume));
+    }
+}
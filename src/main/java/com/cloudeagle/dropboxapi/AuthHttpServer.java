@@ -18,6 +18,8 @@ import java.util.concurrent.*;
  * <p>
  * Starts a simple embedded HTTP server that listens for the OAuth redirect,
  * extracts the "code" query parameter, and returns it to the caller.
+ * Requests are answered by two daemon threads: a browser sends a handful of requests at most, and a fixed pool keeps
+ * stray traffic on the port from spawning threads.
  * <p>
  * Usage:
  * AuthHttpServer server = new AuthHttpServer(45678, "/callback");
@@ -32,13 +34,18 @@ public class AuthHttpServer {
     private final CompletableFuture<String> codeFuture = new CompletableFuture<>();
     private final int port;
     private final String path; // e.g., "/callback"
+    private final ExecutorService executor = Executors.newFixedThreadPool(2, r -> {
+        Thread t = new Thread(r, "auth-http");
+        t.setDaemon(true);
+        return t;
+    });
 
     public AuthHttpServer(int port, String path) throws IOException {
         this.port = port;
         this.path = path.startsWith("/") ? path : "/" + path;
         this.server = HttpServer.create(new InetSocketAddress(port), 0);
         server.createContext(this.path, new CallbackHandler());
-        server.setExecutor(Executors.newCachedThreadPool());
+        server.setExecutor(executor);
     }
 
     public void start() {
@@ -47,6 +54,7 @@ public class AuthHttpServer {
 
     public void stop() {
         server.stop(0);
+        executor.shutdownNow();
     }
 
     /**
@@ -16,18 +16,17 @@ import java.util.StringJoiner;
  * Responsible for building the Dropbox authorization URL, exchanging an authorization code
  * for tokens, and refreshing access tokens.
  *
- * Uses OkHttp for HTTP requests and org.json for JSON parsing.
+ * Uses OkHttp for HTTP requests and org.json for JSON parsing. Token calls and refreshes are
+ * recorded in {@link ClientMetrics#shared()}.
  */
 public class AuthService {
 
-    private static final String AUTH_URL = "https://www.dropbox.com/oauth2/authorize";
-    private static final String TOKEN_URL = "https://api.dropboxapi.com/oauth2/token";
-
     private final String clientId;
     private final String clientSecret;
     private final String redirectUri;
     private final String scope; // space-separated scopes
     private final OkHttpClient httpClient;
+    private final DropboxEndpoints endpoints;
 
     /**
      * Constructor.
@@ -38,11 +37,27 @@ public class AuthService {
      * @param scope        space-separated scopes (e.g., "team_info.read members.read events.read")
      */
     public AuthService(String clientId, String clientSecret, String redirectUri, String scope) {
+        this(clientId, clientSecret, redirectUri, scope, HttpTransport.shared(), DropboxEndpoints.DEFAULT);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param clientId     Dropbox App Key
+     * @param clientSecret Dropbox App Secret
+     * @param redirectUri  Redirect URI configured in the app
+     * @param scope        space-separated scopes
+     * @param transport    shared transport whose connection pool is used for token calls
+     * @param endpoints    OAuth hosts (the real Dropbox ones, or a simulator)
+     */
+    public AuthService(String clientId, String clientSecret, String redirectUri, String scope,
+                       HttpTransport transport, DropboxEndpoints endpoints) {
         this.clientId = Objects.requireNonNull(clientId, "clientId");
         this.clientSecret = Objects.requireNonNull(clientSecret, "clientSecret");
         this.redirectUri = Objects.requireNonNull(redirectUri, "redirectUri");
         this.scope = scope == null ? "" : scope;
-        this.httpClient = new OkHttpClient();
+        this.httpClient = transport.client();
+        this.endpoints = Objects.requireNonNull(endpoints, "endpoints");
     }
 
     /**
@@ -52,7 +67,7 @@ public class AuthService {
      * @return authorization URL
      */
     public String buildAuthorizationUrl(String state) throws UnsupportedEncodingException {
-        StringJoiner sj = new StringJoiner("&", AUTH_URL + "?", "");
+        StringJoiner sj = new StringJoiner("&", endpoints.authorizeUrl() + "?", "");
         sj.add("response_type=code");
         sj.add("client_id=" + urlEncode(clientId));
         sj.add("redirect_uri=" + urlEncode(redirectUri));
@@ -81,18 +96,67 @@ public class AuthService {
                 .build();
 
         Request request = new Request.Builder()
-                .url(TOKEN_URL)
+                .url(endpoints.tokenUrl())
                 .post(form)
                 .header("Authorization", Credentials.basic(clientId, clientSecret))
                 .header("Content-Type", "application/x-www-form-urlencoded")
                 .build();
 
-        try (Response response = httpClient.newCall(request).execute()) {
-            String body = response.body() != null ? response.body().string() : "";
-            if (!response.isSuccessful()) {
-                throw new IOException("Token exchange failed: HTTP " + response.code() + " - " + body);
+        return postTokenRequest(request, "Token exchange");
+    }
+
+    /**
+     * Obtain a fresh access token with the refresh_token grant.
+     *
+     * @param refreshToken refresh token from the original code exchange
+     * @return JSONObject containing access_token, expires_in and token_type
+     * @throws IOException on HTTP or network errors
+     */
+    public JSONObject refreshAccessToken(String refreshToken) throws IOException {
+        RequestBody form = new FormBody.Builder()
+                .add("grant_type", "refresh_token")
+                .add("refresh_token", refreshToken)
+                .build();
+
+        Request request = new Request.Builder()
+                .url(endpoints.tokenUrl())
+                .post(form)
+                .header("Authorization", Credentials.basic(clientId, clientSecret))
+                .header("Content-Type", "application/x-www-form-urlencoded")
+                .build();
+
+        try {
+            JSONObject token = postTokenRequest(request, "Token refresh");
+            ClientMetrics.shared().tokenRefreshed(true);
+            return token;
+        } catch (IOException | RuntimeException e) {
+            ClientMetrics.shared().tokenRefreshed(false);
+            throw e;
+        }
+    }
+
+    private JSONObject postTokenRequest(Request request, String operation) throws IOException {
+        ClientMetrics.Endpoint m = ClientMetrics.shared().endpoint(request.url().toString());
+        long start = System.nanoTime();
+        Response response;
+        try {
+            response = httpClient.newCall(request).execute();
+        } catch (IOException e) {
+            m.attempt(-1);
+            m.latency(System.nanoTime() - start);
+            throw e;
+        }
+        try (Response r = response) {
+            m.attempt(r.code());
+            byte[] bytes = r.body() != null ? r.body().bytes() : new byte[0];
+            m.bytesRead(bytes.length);
+            String body = new String(bytes, StandardCharsets.UTF_8);
+            if (!r.isSuccessful()) {
+                throw new IOException(operation + " failed: HTTP " + r.code() + " - " + body);
             }
             return new JSONObject(body);
+        } finally {
+            m.latency(System.nanoTime() - start);
         }
     }
 
@@ -0,0 +1,279 @@
+package com.cloudeagle.dropboxapi;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * ClientMetrics
+ * <p>
+ * Counters and latency histograms for every Dropbox endpoint the client talks to: requests
+ * by outcome, end-to-end call latency, response bytes read, pages fetched and retries, plus
+ * token refreshes. Rendered in the Prometheus text format by {@link #writePrometheus(Writer)}
+ * and served by {@link MetricsServer}.
+ * <p>
+ * All values are {@link LongAdder}s held by a per-endpoint {@link Endpoint} that is created
+ * the first time an endpoint is seen. After that, recording is a map lookup plus adder
+ * increments: no allocation and no lock on the request path.
+ */
+public class ClientMetrics {
+
+    /** Outcome of a single HTTP attempt. */
+    public enum Outcome {
+        OK, CLIENT_ERROR, THROTTLED, SERVER_ERROR, NETWORK_ERROR;
+
+        private final String label = name().toLowerCase(Locale.ROOT);
+
+        /**
+         * @param statusCode HTTP status, or -1 if no response was received
+         */
+        public static Outcome of(int statusCode) {
+            if (statusCode < 0) {
+                return NETWORK_ERROR;
+            }
+            if (statusCode == 429) {
+                return THROTTLED;
+            }
+            if (statusCode >= 500) {
+                return SERVER_ERROR;
+            }
+            return statusCode >= 400 ? CLIENT_ERROR : OK;
+        }
+    }
+
+    /** Upper bounds of the latency buckets, in seconds. */
+    private static final double[] BUCKET_SECONDS = {0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10, 30};
+    private static final long[] BUCKET_NANOS = new long[BUCKET_SECONDS.length];
+
+    static {
+        for (int i = 0; i < BUCKET_SECONDS.length; i++) {
+            BUCKET_NANOS[i] = (long) (BUCKET_SECONDS[i] * 1e9);
+        }
+    }
+
+    private static final ClientMetrics SHARED = new ClientMetrics();
+
+    private final ConcurrentMap<String, Endpoint> byUrl = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Endpoint> byName = new ConcurrentHashMap<>();
+    private final LongAdder tokenRefreshes = new LongAdder();
+    private final LongAdder tokenRefreshFailures = new LongAdder();
+
+    /**
+     * @return process-wide metrics used by {@link DropboxClient} and {@link AuthService}
+     */
+    public static ClientMetrics shared() {
+        return SHARED;
+    }
+
+    /**
+     * @param url full request URL, e.g. https://api.dropboxapi.com/2/team/members/list
+     * @return metrics of the endpoint; the same instance for every call to the same URL
+     */
+    public Endpoint endpoint(String url) {
+        Endpoint e = byUrl.get(url);
+        if (e != null) {
+            return e;
+        }
+        Endpoint named = byName.computeIfAbsent(routeOf(url), Endpoint::new);
+        Endpoint prev = byUrl.putIfAbsent(url, named);
+        return prev != null ? prev : named;
+    }
+
+    /**
+     * Record one refresh_token grant.
+     *
+     * @param success false if the refresh failed
+     */
+    public void tokenRefreshed(boolean success) {
+        (success ? tokenRefreshes : tokenRefreshFailures).increment();
+    }
+
+    public long getTokenRefreshCount() {
+        return tokenRefreshes.sum();
+    }
+
+    /**
+     * Write all metrics in the Prometheus text exposition format (version 0.0.4).
+     *
+     * @param out destination; not flushed or closed
+     * @throws IOException on write failure
+     */
+    public void writePrometheus(Writer out) throws IOException {
+        Map<String, Endpoint> endpoints = new TreeMap<>(byName);
+
+        header(out, "dropbox_requests_total", "counter", "HTTP attempts by endpoint and outcome.");
+        for (Endpoint e : endpoints.values()) {
+            for (Outcome o : Outcome.values()) {
+                long n = e.outcomes[o.ordinal()].sum();
+                if (n > 0) {
+                    out.write("dropbox_requests_total{endpoint=\"" + e.name + "\",outcome=\"" + o.label + "\"} " + n + "\n");
+                }
+            }
+        }
+
+        header(out, "dropbox_request_duration_seconds", "histogram", "End-to-end call latency including retries.");
+        for (Endpoint e : endpoints.values()) {
+            long cumulative = 0;
+            for (int i = 0; i <= BUCKET_SECONDS.length; i++) {
+                cumulative += e.buckets[i].sum();
+                String le = i < BUCKET_SECONDS.length ? Double.toString(BUCKET_SECONDS[i]) : "+Inf";
+                out.write("dropbox_request_duration_seconds_bucket{endpoint=\"" + e.name + "\",le=\"" + le + "\"} " + cumulative + "\n");
+            }
+            out.write("dropbox_request_duration_seconds_sum{endpoint=\"" + e.name + "\"} "
+                    + String.format(Locale.ROOT, "%.6f", e.latencyNanos.sum() / 1e9) + "\n");
+            out.write("dropbox_request_duration_seconds_count{endpoint=\"" + e.name + "\"} " + cumulative + "\n");
+        }
+
+        counter(out, endpoints, "dropbox_response_bytes_total", "Response body bytes read.", e -> e.bytes);
+        counter(out, endpoints, "dropbox_pages_fetched_total", "Paginated responses (those carrying has_more).", e -> e.pages);
+        counter(out, endpoints, "dropbox_retries_total", "Attempts re-sent after throttling or transient errors.", e -> e.retries);
+        counter(out, endpoints, "dropbox_hedged_requests_total", "Second copies sent for calls slower than the hedge delay.", e -> e.hedges);
+        counter(out, endpoints, "dropbox_hedge_wins_total", "Hedged calls answered first by the second copy.", e -> e.hedgeWins);
+
+        header(out, "dropbox_token_refreshes_total", "counter", "Access tokens obtained with the refresh_token grant.");
+        out.write("dropbox_token_refreshes_total " + tokenRefreshes.sum() + "\n");
+        header(out, "dropbox_token_refresh_failures_total", "counter", "Failed refresh_token grants.");
+        out.write("dropbox_token_refresh_failures_total " + tokenRefreshFailures.sum() + "\n");
+    }
+
+    private static void counter(Writer out, Map<String, Endpoint> endpoints, String name, String help,
+                                Function<Endpoint, LongAdder> value) throws IOException {
+        header(out, name, "counter", help);
+        for (Endpoint e : endpoints.values()) {
+            out.write(name + "{endpoint=\"" + e.name + "\"} " + value.apply(e).sum() + "\n");
+        }
+    }
+
+    private static void header(Writer out, String name, String type, String help) throws IOException {
+        out.write("# HELP " + name + " " + help + "\n");
+        out.write("# TYPE " + name + " " + type + "\n");
+    }
+
+    /**
+     * @return the route part of a URL: "team/members/list" for .../2/team/members/list,
+     * otherwise the path without its leading slash (e.g. "oauth2/token")
+     */
+    static String routeOf(String url) {
+        int start = url.indexOf("://");
+        start = url.indexOf('/', start < 0 ? 0 : start + 3);
+        if (start < 0) {
+            return "/";
+        }
+        int end = url.indexOf('?', start);
+        String path = url.substring(start, end < 0 ? url.length() : end);
+        return path.startsWith("/2/") ? path.substring(3) : path.substring(1);
+    }
+
+    /**
+     * Metrics of one endpoint.
+     */
+    public static final class Endpoint {
+        private final String name;
+        private final LongAdder[] outcomes = adders(Outcome.values().length);
+        private final LongAdder[] buckets = adders(BUCKET_NANOS.length + 1);
+        private final LongAdder latencyNanos = new LongAdder();
+        private final LongAdder bytes = new LongAdder();
+        private final LongAdder pages = new LongAdder();
+        private final LongAdder retries = new LongAdder();
+        private final LongAdder hedges = new LongAdder();
+        private final LongAdder hedgeWins = new LongAdder();
+
+        private Endpoint(String name) {
+            // label values must not contain quotes, backslashes or newlines
+            this.name = name.replaceAll("[\"\\\\\\n]", "_");
+        }
+
+        /**
+         * @param statusCode HTTP status of one attempt, or -1 if it failed without a response
+         */
+        public void attempt(int statusCode) {
+            outcomes[Outcome.of(statusCode).ordinal()].increment();
+        }
+
+        /**
+         * @param nanos end-to-end duration of one call
+         */
+        public void latency(long nanos) {
+            int i = 0;
+            while (i < BUCKET_NANOS.length && nanos > BUCKET_NANOS[i]) {
+                i++;
+            }
+            buckets[i].increment();
+            latencyNanos.add(nanos);
+        }
+
+        public void bytesRead(long n) {
+            if (n > 0) {
+                bytes.add(n);
+            }
+        }
+
+        public void page() {
+            pages.increment();
+        }
+
+        public void retry() {
+            retries.increment();
+        }
+
+        /** A second copy of a slow call was sent (see {@link RequestHedger}). */
+        public void hedge() {
+            hedges.increment();
+        }
+
+        /** The second copy answered before the original. */
+        public void hedgeWon() {
+            hedgeWins.increment();
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public long getCount(Outcome outcome) {
+            return outcomes[outcome.ordinal()].sum();
+        }
+
+        public long getLatencyCount() {
+            long n = 0;
+            for (LongAdder b : buckets) {
+                n += b.sum();
+            }
+            return n;
+        }
+
+        public long getBytesRead() {
+            return bytes.sum();
+        }
+
+        public long getPages() {
+            return pages.sum();
+        }
+
+        public long getRetries() {
+            return retries.sum();
+        }
+
+        public long getHedges() {
+            return hedges.sum();
+        }
+
+        public long getHedgeWins() {
+            return hedgeWins.sum();
+        }
+
+        private static LongAdder[] adders(int n) {
+            LongAdder[] a = new LongAdder[n];
+            for (int i = 0; i < n; i++) {
+                a[i] = new LongAdder();
+            }
+            return a;
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package com.cloudeagle.dropboxapi;
+
+import org.json.JSONObject;
+
+import java.io.PrintStream;
+import java.util.function.Function;
+
+/**
+ * ConsoleSink
+ * <p>
+ * Prints one numbered, human-readable line per record, as the interactive demo always has.
+ */
+public class ConsoleSink implements RecordSink {
+
+    private final PrintStream out;
+    private final Function<JSONObject, String> format;
+    private int count;
+
+    /**
+     * @param out    where to print (normally System.out)
+     * @param format renders one record as a line of text
+     */
+    public ConsoleSink(PrintStream out, Function<JSONObject, String> format) {
+        this.out = out;
+        this.format = format;
+    }
+
+    /**
+     * @return sink printing "email (status)" for members/list records to System.out
+     */
+    public static ConsoleSink members() {
+        return members(System.out);
+    }
+
+    /**
+     * @param out where to print
+     * @return sink printing "email (status)" for members/list records
+     */
+    public static ConsoleSink members(PrintStream out) {
+        return new ConsoleSink(out, member -> {
+            TeamMember m = TeamMember.fromJson(member);
+            return m == null ? member.toString() : m.getEmail() + " (" + m.getStatus() + ")";
+        });
+    }
+
+    /**
+     * @return sink printing "[timestamp] category - event_type" for get_events records to System.out
+     */
+    public static ConsoleSink events() {
+        return events(System.out);
+    }
+
+    /**
+     * @param out where to print
+     * @return sink printing "[timestamp] category - event_type" for get_events records
+     */
+    public static ConsoleSink events(PrintStream out) {
+        return new ConsoleSink(out, ev -> {
+            TeamEvent e = TeamEvent.fromJson(ev);
+            return "[" + ev.optString("timestamp") + "] " + e.getCategory() + " - " + e.getEventType();
+        });
+    }
+
+    @Override
+    public void accept(JSONObject record) {
+        out.println((++count) + ". " + format.apply(record));
+    }
+
+    /**
+     * @return number of records printed
+     */
+    public int getCount() {
+        return count;
+    }
+
+    @Override
+    public void flush() {
+        out.flush();
+    }
+
+    @Override
+    public void close() {
+        flush();
+    }
+}
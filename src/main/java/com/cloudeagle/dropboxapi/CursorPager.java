@@ -0,0 +1,172 @@
+package com.cloudeagle.dropboxapi;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * CursorPager
+ * <p>
+ * Walks a Dropbox cursor-paginated endpoint (e.g. team/members/list followed by
+ * team/members/list/continue) and hands out one page response at a time.
+ * <p>
+ * As soon as page N is handed to the caller, the request for page N+1 is started in the
+ * background so the network wait overlaps with the caller's processing. At most two pages
+ * are held at any time (the one being consumed and the one being prefetched), so memory
+ * stays bounded regardless of how many pages the endpoint returns.
+ * <p>
+ * Usage:
+ * try (CursorPager pager = new CursorPager(client, listUrl, body, continueUrl, tokens)) {
+ *     Iterator&lt;JSONObject&gt; members = pager.records("members");
+ *     while (members.hasNext()) { ... }
+ * }
+ */
+public class CursorPager implements Iterator<JSONObject>, Closeable {
+
+    private static final AtomicInteger THREAD_COUNTER = new AtomicInteger();
+    static final ExecutorService PREFETCH_EXECUTOR = Executors.newCachedThreadPool(r -> {
+        Thread t = new Thread(r, "dropbox-prefetch-" + THREAD_COUNTER.incrementAndGet());
+        t.setDaemon(true);
+        return t;
+    });
+
+    private final DropboxClient client;
+    private final String continueUrl;
+    private final TokenProvider tokens;
+
+    private CompletableFuture<JSONObject> pending;
+    private String cursor;
+    private volatile boolean closed;
+
+    /**
+     * Constructor. The first page is requested immediately.
+     *
+     * @param client      low-level HTTP client
+     * @param firstUrl    URL of the initial list call
+     * @param firstBody   JSON body of the initial list call (or null for no body)
+     * @param continueUrl URL of the matching /continue call
+     * @param tokens      source of the OAuth2 bearer token, asked once per page
+     */
+    public CursorPager(DropboxClient client, String firstUrl, String firstBody, String continueUrl, TokenProvider tokens) {
+        this.client = client;
+        this.continueUrl = continueUrl;
+        this.tokens = tokens;
+        this.pending = fetchAsync(firstUrl, firstBody);
+    }
+
+    @Override
+    public boolean hasNext() {
+        return pending != null && !closed;
+    }
+
+    /**
+     * Returns the next page response and starts prefetching the one after it.
+     *
+     * @return raw page response (contains the item array, "cursor" and "has_more")
+     * @throws UncheckedIOException if the page request failed
+     */
+    @Override
+    public JSONObject next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        JSONObject page = await(pending);
+        cursor = page.optString("cursor", null);
+        if (page.optBoolean("has_more", false) && cursor != null) {
+            JSONObject body = new JSONObject();
+            body.put("cursor", cursor);
+            pending = fetchAsync(continueUrl, body.toString());
+        } else {
+            pending = null;
+        }
+        return page;
+    }
+
+    /**
+     * @return cursor of the most recently returned page, or null before the first page
+     */
+    public String getCursor() {
+        return cursor;
+    }
+
+    /**
+     * Flatten the pages into a stream of individual records.
+     *
+     * @param arrayKey name of the item array in each page (e.g. "members" or "events")
+     * @return iterator over every record of every page
+     */
+    public Iterator<JSONObject> records(String arrayKey) {
+        return new Iterator<JSONObject>() {
+            private JSONArray current;
+            private int index;
+
+            @Override
+            public boolean hasNext() {
+                while ((current == null || index >= current.length()) && CursorPager.this.hasNext()) {
+                    JSONArray items = CursorPager.this.next().optJSONArray(arrayKey);
+                    current = items != null ? items : new JSONArray();
+                    index = 0;
+                }
+                return current != null && index < current.length();
+            }
+
+            @Override
+            public JSONObject next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                JSONObject item = current.getJSONObject(index);
+                // drop the reference so a consumed page can be collected while we move on
+                current.put(index++, JSONObject.NULL);
+                return item;
+            }
+        };
+    }
+
+    /**
+     * Stop paging. Any in-flight prefetch is abandoned.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        if (pending != null) {
+            pending.cancel(false);
+            pending = null;
+        }
+    }
+
+    private CompletableFuture<JSONObject> fetchAsync(String url, String body) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return client.postJson(url, body, tokens);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }, PREFETCH_EXECUTOR);
+    }
+
+    private static JSONObject await(CompletableFuture<JSONObject> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof UncheckedIOException) {
+                throw (UncheckedIOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new UncheckedIOException(new IOException(cause));
+        }
+    }
+}
@@ -1,27 +1,106 @@
 package com.cloudeagle.dropboxapi;
 
 import okhttp3.*;
+import org.json.JSONException;
 import org.json.JSONObject;
 
+import java.io.FilterInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
 
 /**
  * DropboxClient
  * <p>
  * Low-level HTTP helper for calling Dropbox APIs with an access token.
- * Uses OkHttp for HTTP requests.
+ * Uses OkHttp for HTTP requests, on the connection pool of a shared {@link HttpTransport}.
+ * Every request is paced and retried by a {@link RequestScheduler}, so throttling and
+ * transient 5xx responses do not fail the caller. Outcomes, latency, bytes, pages and retries
+ * are recorded per endpoint in {@link ClientMetrics}. With a {@link RequestHedger}, slow calls to
+ * idempotent read endpoints are hedged: a second copy is sent and the first response wins.
  */
 public class DropboxClient {
 
+    private static final MediaType JSON = MediaType.parse("application/json; charset=utf-8");
+
     private final OkHttpClient httpClient;
+    private final RequestScheduler scheduler;
+    private final DropboxEndpoints endpoints;
+    private final ClientMetrics metrics;
+    private final RequestHedger hedger;
 
     public DropboxClient() {
-        // Basic client with reasonable timeouts
-        this.httpClient = new OkHttpClient.Builder()
-                .connectTimeout(15, TimeUnit.SECONDS)
-                .readTimeout(30, TimeUnit.SECONDS)
-                .build();
+        this(HttpTransport.shared());
+    }
+
+    /**
+     * @param transport shared transport whose connection pool and dispatcher are used
+     */
+    public DropboxClient(HttpTransport transport) {
+        this(transport, new RequestScheduler());
+    }
+
+    /**
+     * @param transport shared transport whose connection pool and dispatcher are used
+     * @param scheduler rate limiter and retry policy shared by all callers of this client
+     */
+    public DropboxClient(HttpTransport transport, RequestScheduler scheduler) {
+        this(transport, scheduler, DropboxEndpoints.DEFAULT);
+    }
+
+    /**
+     * @param transport shared transport whose connection pool and dispatcher are used
+     * @param scheduler rate limiter and retry policy shared by all callers of this client
+     * @param endpoints API host (the real Dropbox one, or a simulator)
+     */
+    public DropboxClient(HttpTransport transport, RequestScheduler scheduler, DropboxEndpoints endpoints) {
+        this(transport, scheduler, endpoints, ClientMetrics.shared());
+    }
+
+    /**
+     * @param transport shared transport whose connection pool and dispatcher are used
+     * @param scheduler rate limiter and retry policy shared by all callers of this client
+     * @param endpoints API host (the real Dropbox one, or a simulator)
+     * @param metrics   where per-endpoint request metrics are recorded
+     */
+    public DropboxClient(HttpTransport transport, RequestScheduler scheduler, DropboxEndpoints endpoints,
+                         ClientMetrics metrics) {
+        this(transport, scheduler, endpoints, metrics, null);
+    }
+
+    /**
+     * @param transport shared transport whose connection pool and dispatcher are used
+     * @param scheduler rate limiter and retry policy shared by all callers of this client
+     * @param endpoints API host (the real Dropbox one, or a simulator)
+     * @param metrics   where per-endpoint request metrics are recorded
+     * @param hedger    hedging policy for slow read calls (null = never hedge)
+     */
+    public DropboxClient(HttpTransport transport, RequestScheduler scheduler, DropboxEndpoints endpoints,
+                         ClientMetrics metrics, RequestHedger hedger) {
+        this.httpClient = transport.client();
+        this.scheduler = scheduler;
+        this.endpoints = endpoints;
+        this.metrics = metrics;
+        this.hedger = hedger;
+    }
+
+    /**
+     * @param route RPC route without the version prefix (e.g. "team/members/list")
+     * @return full URL of the route on this client's API host
+     */
+    public String apiUrl(String route) {
+        return endpoints.api(route);
     }
 
     /**
@@ -34,28 +113,554 @@ public class DropboxClient {
      * @throws IOException on network/HTTP error
      */
     public JSONObject postJson(String url, String jsonBody, String accessToken) throws IOException {
+        return postJson(url, jsonBody, accessToken, null);
+    }
+
+    private JSONObject postJson(String url, String jsonBody, String accessToken, CallStats stats) throws IOException {
+        ClientMetrics.Endpoint m = metrics.endpoint(url);
+        long start = System.nanoTime();
+        try (Response response = execute(buildRequest(url, jsonBody, accessToken), m, stats)) {
+            return parseResponse(response, m, stats);
+        } finally {
+            m.latency(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * POST JSON using a token from {@code tokens}. If Dropbox rejects the token with HTTP 401,
+     * the token is invalidated and the call is retried once with a fresh one.
+     *
+     * @param url      full URL
+     * @param jsonBody JSON string body (or null for no body)
+     * @param tokens   source of the OAuth2 bearer token
+     * @return JSONObject parsed response
+     * @throws IOException on network/HTTP error
+     */
+    public JSONObject postJson(String url, String jsonBody, TokenProvider tokens) throws IOException {
+        return postJson(url, jsonBody, tokens, null);
+    }
+
+    /**
+     * Same as {@link #postJson(String, String, TokenProvider)}, also reporting what the call
+     * cost (attempts, throttled attempts, bytes) to callers that tune their requests by it.
+     *
+     * @param url      full URL
+     * @param jsonBody JSON string body (or null for no body)
+     * @param tokens   source of the OAuth2 bearer token
+     * @param stats    filled in by this call (may be null)
+     * @return JSONObject parsed response
+     * @throws IOException on network/HTTP error
+     */
+    public JSONObject postJson(String url, String jsonBody, TokenProvider tokens, CallStats stats) throws IOException {
+        String token = tokens.getAccessToken();
+        try {
+            return postJson(url, jsonBody, token, stats);
+        } catch (HttpStatusException e) {
+            if (e.getStatusCode() != 401) {
+                throw e;
+            }
+            tokens.invalidate(token);
+            return postJson(url, jsonBody, tokens.getAccessToken(), stats);
+        }
+    }
+
+    /**
+     * POST JSON and stream the records of a page response to {@code handler} one at a time
+     * while the body is still being read, instead of loading the whole page into a String
+     * and a JSONObject tree. Throttling and transient errors are retried only while no
+     * successful response has arrived, i.e. for failures up to the response headers; a failure
+     * while the body is being streamed is thrown, since records may already have been
+     * delivered. HTTP 401 is retried once with a fresh token.
+     *
+     * @param url      full URL
+     * @param jsonBody JSON string body (or null for no body)
+     * @param tokens   source of the OAuth2 bearer token
+     * @param arrayKey name of the record array in the response (e.g. "members" or "events")
+     * @param handler  receives each record in order
+     * @return the other top-level fields of the response (e.g. "cursor", "has_more")
+     * @throws IOException on network/HTTP error or malformed JSON
+     */
+    public JSONObject postJsonStreaming(String url, String jsonBody, TokenProvider tokens,
+                                        String arrayKey, Consumer<JSONObject> handler) throws IOException {
+        ClientMetrics.Endpoint m = metrics.endpoint(url);
+        long start = System.nanoTime();
+        String token = tokens.getAccessToken();
+        Response response;
+        try {
+            try {
+                response = execute(buildRequest(url, jsonBody, token), m, null);
+            } catch (HttpStatusException e) {
+                if (e.getStatusCode() != 401) {
+                    throw e;
+                }
+                tokens.invalidate(token);
+                response = execute(buildRequest(url, jsonBody, tokens.getAccessToken()), m, null);
+            }
+            try (Response r = response) {
+                CountingInputStream body = new CountingInputStream(r.body().byteStream());
+                try {
+                    JSONObject envelope = JsonRecordReader.read(new InputStreamReader(body, StandardCharsets.UTF_8), arrayKey, handler);
+                    if (envelope.has("has_more")) {
+                        m.page();
+                    }
+                    return envelope;
+                } finally {
+                    m.bytesRead(body.count);
+                }
+            }
+        } finally {
+            m.latency(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Non-blocking variant of {@link #postJson(String, String, String)}. The call is queued on
+     * the transport's dispatcher, so no caller thread is parked while it is in flight.
+     * Cancelling the returned future cancels the HTTP call.
+     *
+     * @param url         full URL
+     * @param jsonBody    JSON string body (or null for no body)
+     * @param accessToken OAuth2 bearer token
+     * @return future completed with the parsed response, or exceptionally with an IOException
+     */
+    public CompletableFuture<JSONObject> postJsonAsync(String url, String jsonBody, String accessToken) {
+        AsyncCall async = new AsyncCall(buildRequest(url, jsonBody, accessToken), metrics.endpoint(url));
+        async.send(0);
+        return async.future;
+    }
+
+    /**
+     * Non-blocking variant of {@link #postJson(String, String, TokenProvider)}, including the
+     * single retry on HTTP 401.
+     *
+     * @param url      full URL
+     * @param jsonBody JSON string body (or null for no body)
+     * @param tokens   source of the OAuth2 bearer token
+     * @return future completed with the parsed response, or exceptionally with an IOException
+     */
+    public CompletableFuture<JSONObject> postJsonAsync(String url, String jsonBody, TokenProvider tokens) {
+        String token;
+        try {
+            token = tokens.getAccessToken();
+        } catch (IOException e) {
+            CompletableFuture<JSONObject> failed = new CompletableFuture<>();
+            failed.completeExceptionally(e);
+            return failed;
+        }
+        CompletableFuture<JSONObject> first = postJsonAsync(url, jsonBody, token);
+        return first.handle((result, error) -> {
+            Throwable cause = error instanceof CompletionException ? error.getCause() : error;
+            if (cause instanceof HttpStatusException && ((HttpStatusException) cause).getStatusCode() == 401) {
+                tokens.invalidate(token);
+                try {
+                    return postJsonAsync(url, jsonBody, tokens.getAccessToken());
+                } catch (IOException e) {
+                    cause = e;
+                }
+            }
+            CompletableFuture<JSONObject> done = new CompletableFuture<>();
+            if (cause != null) {
+                done.completeExceptionally(cause);
+            } else {
+                done.complete(result);
+            }
+            return done;
+        }).thenCompose(f -> f);
+    }
+
+    /**
+     * Send {@code request} through the scheduler, retrying throttling and transient failures.
+     *
+     * @return a successful response with its body still unread; the caller must close it
+     * @throws IOException the last failure once retries are exhausted
+     */
+    private Response execute(Request request, ClientMetrics.Endpoint m, CallStats stats) throws IOException {
+        for (int attempt = 0; ; attempt++) {
+            scheduler.acquire();
+            try {
+                Response response;
+                try {
+                    response = send(request, m);
+                } catch (IOException e) {
+                    m.attempt(-1);
+                    if (stats != null) {
+                        stats.attempt(-1);
+                    }
+                    throw e;
+                }
+                m.attempt(response.code());
+                if (stats != null) {
+                    stats.attempt(response.code());
+                }
+                if (!response.isSuccessful()) {
+                    try (Response r = response) {
+                        throw statusError(r);
+                    }
+                }
+                return response;
+            } catch (IOException e) {
+                long delayMillis = scheduler.onFailure(e, attempt);
+                if (delayMillis < 0) {
+                    throw e;
+                }
+                m.retry();
+                sleep(delayMillis);
+            }
+        }
+    }
+
+    /**
+     * Send one attempt, hedging it if the hedger covers its endpoint.
+     */
+    private Response send(Request request, ClientMetrics.Endpoint m) throws IOException {
+        String url = request.url().toString();
+        if (hedger == null || !hedger.covers(url)) {
+            return httpClient.newCall(request).execute();
+        }
+        return new HedgedCall(request, url, m).await(hedger.delayNanos(url));
+    }
+
+    private static void sleep(long millis) throws InterruptedIOException {
+        if (millis <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted during retry backoff");
+        }
+    }
+
+    private static Request buildRequest(String url, String jsonBody, String accessToken) {
         RequestBody body = (jsonBody == null)
                 ? RequestBody.create(null, new byte[0])  // send no body
-                : RequestBody.create(
-                MediaType.parse("application/json; charset=utf-8"),
-                jsonBody
-        );
+                : RequestBody.create(JSON, jsonBody);
 
-
-        Request request = new Request.Builder()
+        return new Request.Builder()
                 .url(url)
                 .post(body)
                 .header("Authorization", "Bearer " + accessToken)
-//                .header("Content-Type", "application/json")
                 .build();
+    }
+
+    private static HttpStatusException statusError(Response response) throws IOException {
+        String respBody = response.body() != null ? response.body().string() : "";
+        return new HttpStatusException(response.code(), respBody, parseRetryAfter(response.header("Retry-After")));
+    }
+
+    private static JSONObject parseResponse(Response response, ClientMetrics.Endpoint m, CallStats stats) throws IOException {
+        if (!response.isSuccessful()) {
+            throw statusError(response);
+        }
+        byte[] bytes = response.body() != null ? response.body().bytes() : new byte[0];
+        m.bytesRead(bytes.length);
+        if (stats != null) {
+            stats.bytesRead(bytes.length);
+        }
+        try {
+            JSONObject result = new JSONObject(new String(bytes, StandardCharsets.UTF_8));
+            if (result.has("has_more")) {
+                m.page();
+            }
+            return result;
+        } catch (JSONException e) {
+            throw new IOException("Invalid JSON response: " + e.getMessage(), e);
+        }
+    }
+
+    private static long parseRetryAfter(String header) {
+        if (header == null) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(header.trim());
+        } catch (NumberFormatException e) {
+            return -1; // HTTP-date form is not used by Dropbox
+        }
+    }
+
+    /**
+     * One asynchronous request, re-sent on the scheduler's timer after throttling or
+     * transient failures. Cancelling {@link #future} cancels whichever attempt is in flight.
+     */
+    private final class AsyncCall {
+        private final Request request;
+        private final ClientMetrics.Endpoint metrics;
+        private final long start = System.nanoTime();
+        private final AtomicReference<Call> current = new AtomicReference<>();
+        private final CompletableFuture<JSONObject> future = new CompletableFuture<JSONObject>() {
+            @Override
+            public boolean cancel(boolean mayInterruptIfRunning) {
+                // complete the future first: cancelling the call fails it on OkHttp's thread,
+                // which would otherwise race to complete the future with that failure
+                boolean cancelled = super.cancel(mayInterruptIfRunning);
+                Call call = current.get();
+                if (call != null) {
+                    call.cancel();
+                }
+                return cancelled;
+            }
+        };
+
+        private AsyncCall(Request request, ClientMetrics.Endpoint metrics) {
+            this.request = request;
+            this.metrics = metrics;
+        }
+
+        private void send(int attempt) {
+            long waitNanos = scheduler.reserve();
+            if (waitNanos > 0) {
+                scheduler.schedule(() -> enqueue(attempt), waitNanos);
+            } else {
+                enqueue(attempt);
+            }
+        }
+
+        private void enqueue(int attempt) {
+            if (future.isDone()) {
+                return;
+            }
+            Call call = httpClient.newCall(request);
+            current.set(call);
+            if (future.isDone()) {
+                // cancelled while the call was being created
+                return;
+            }
+            call.enqueue(new Callback() {
+                @Override
+                public void onFailure(Call c, IOException e) {
+                    metrics.attempt(-1);
+                    retryOrFail(c, e, attempt);
+                }
+
+                @Override
+                public void onResponse(Call c, Response response) {
+                    metrics.attempt(response.code());
+                    try (Response r = response) {
+                        JSONObject result = parseResponse(r, metrics, null);
+                        metrics.latency(System.nanoTime() - start);
+                        future.complete(result);
+                    } catch (IOException e) {
+                        retryOrFail(c, e, attempt);
+                    } catch (RuntimeException e) {
+                        metrics.latency(System.nanoTime() - start);
+                        future.completeExceptionally(e);
+                    }
+                }
+            });
+        }
+
+        private void retryOrFail(Call call, IOException error, int attempt) {
+            long delayMillis = call.isCanceled() ? -1 : scheduler.onFailure(error, attempt);
+            if (delayMillis < 0) {
+                metrics.latency(System.nanoTime() - start);
+                future.completeExceptionally(error);
+                return;
+            }
+            metrics.retry();
+            if (delayMillis == 0) {
+                send(attempt + 1);
+            } else {
+                scheduler.schedule(() -> send(attempt + 1), TimeUnit.MILLISECONDS.toNanos(delayMillis));
+            }
+        }
+    }
+
+    /**
+     * One attempt sent as up to two identical calls: the original, and a hedge once the
+     * original has been slower than the hedge delay. The first response (of any status) wins
+     * and the other call is cancelled; the attempt fails only when every call has failed.
+     */
+    private final class HedgedCall implements Callback {
+        private final Request request;
+        private final String url;
+        private final ClientMetrics.Endpoint metrics;
+        private final CompletableFuture<Response> winner = new CompletableFuture<>();
+        // guarded by this
+        private final List<Call> calls = new ArrayList<>(2);
+        private final List<Long> starts = new ArrayList<>(2);
+        private int pending;
+
+        private HedgedCall(Request request, String url, ClientMetrics.Endpoint metrics) {
+            this.request = request;
+            this.url = url;
+            this.metrics = metrics;
+        }
+
+        private Response await(long hedgeDelayNanos) throws IOException {
+            launch();
+            try {
+                if (hedgeDelayNanos >= 0) {
+                    try {
+                        return winner.get(hedgeDelayNanos, TimeUnit.NANOSECONDS);
+                    } catch (TimeoutException e) {
+                        hedge();
+                    }
+                }
+                return winner.get();
+            } catch (InterruptedException e) {
+                // a response arriving after this is closed by onResponse
+                winner.cancel(false);
+                cancelAllBut(null);
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for a response");
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                throw cause instanceof IOException ? (IOException) cause : new IOException(cause);
+            }
+        }
+
+        /**
+         * Send the hedge. Hedges are optional load: only within budget and when a permit is
+         * free, and a credit or permit taken for a hedge that is not sent is given back.
+         */
+        private void hedge() {
+            if (!hedger.tryHedge()) {
+                return;
+            }
+            if (!scheduler.tryAcquire()) {
+                hedger.refund();
+            } else if (launch()) {
+                metrics.hedge();
+            } else {
+                // the original answered while the credit and permit were taken
+                hedger.refund();
+                scheduler.release();
+            }
+        }
+
+        private synchronized boolean launch() {
+            if (winner.isDone()) {
+                return false;
+            }
+            Call call = httpClient.newCall(request);
+            calls.add(call);
+            starts.add(System.nanoTime());
+            pending++;
+            call.enqueue(this);
+            return true;
+        }
+
+        @Override
+        public void onResponse(Call call, Response response) {
+            long sent;
+            boolean hedge;
+            synchronized (this) {
+                int i = calls.indexOf(call);
+                sent = starts.get(i);
+                hedge = i > 0;
+            }
+            hedger.record(url, System.nanoTime() - sent);
+            if (winner.complete(response)) {
+                if (hedge) {
+                    metrics.hedgeWon();
+                }
+                cancelAllBut(call);
+            } else {
+                response.close();
+            }
+        }
+
+        @Override
+        public void onFailure(Call call, IOException e) {
+            long sent;
+            boolean last;
+            synchronized (this) {
+                sent = starts.get(calls.indexOf(call));
+                last = --pending == 0;
+            }
+            if (call.isCanceled()) {
+                // a cancelled call was at least this slow; leaving it out would hide the
+                // stalls that hedging cuts short from the percentile
+                hedger.record(url, System.nanoTime() - sent);
+            }
+            if (last) {
+                winner.completeExceptionally(e);
+            }
+        }
+
+        private void cancelAllBut(Call keep) {
+            List<Call> others;
+            synchronized (this) {
+                others = new ArrayList<>(calls);
+            }
+            for (Call c : others) {
+                if (c != keep) {
+                    c.cancel();
+                }
+            }
+        }
+    }
+
+    /**
+     * What one {@link #postJson(String, String, TokenProvider, CallStats)} call cost, retries
+     * included. Not thread-safe: use one instance per call.
+     */
+    public static final class CallStats {
+        private int attempts;
+        private int throttled;
+        private long bytes;
 
-        try (Response response = httpClient.newCall(request).execute()) {
-            String respBody = response.body() != null ? response.body().string() : "";
-            if (!response.isSuccessful()) {
-                throw new IOException("HTTP " + response.code() + ": " + respBody);
+        void attempt(int statusCode) {
+            attempts++;
+            if (ClientMetrics.Outcome.of(statusCode) == ClientMetrics.Outcome.THROTTLED) {
+                throttled++;
             }
-            return new JSONObject(respBody);
+        }
+
+        void bytesRead(long n) {
+            bytes += n;
+        }
+
+        /**
+         * @return HTTP attempts sent, including retries
+         */
+        public int getAttempts() {
+            return attempts;
+        }
+
+        /**
+         * @return attempts answered with HTTP 429
+         */
+        public int getThrottled() {
+            return throttled;
+        }
+
+        /**
+         * @return response body bytes of the successful attempt
+         */
+        public long getBytes() {
+            return bytes;
         }
     }
 
+    /**
+     * Counts the bytes read from a response body.
+     */
+    private static final class CountingInputStream extends FilterInputStream {
+        private long count;
+
+        private CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                count++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buf, int off, int len) throws IOException {
+            int n = super.read(buf, off, len);
+            if (n > 0) {
+                count += n;
+            }
+            return n;
+        }
+    }
 }
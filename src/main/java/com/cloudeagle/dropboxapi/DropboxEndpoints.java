@@ -0,0 +1,72 @@
+package com.cloudeagle.dropboxapi;
+
+import java.util.Objects;
+import java.util.Properties;
+
+/**
+ * DropboxEndpoints
+ * <p>
+ * Base URLs of the Dropbox OAuth and RPC hosts. The defaults point at the real service;
+ * tests and load runs point them at a {@link DropboxSimulator} instead.
+ * <p>
+ * Usage:
+ * DropboxEndpoints endpoints = DropboxEndpoints.fromProperties(cfg);
+ * String url = endpoints.api("team/get_info"); // https://api.dropboxapi.com/2/team/get_info
+ */
+public final class DropboxEndpoints {
+
+    public static final DropboxEndpoints DEFAULT =
+            new DropboxEndpoints("https://www.dropbox.com", "https://api.dropboxapi.com");
+
+    private final String authBaseUrl;
+    private final String apiBaseUrl;
+
+    /**
+     * @param authBaseUrl host serving /oauth2/authorize (e.g. https://www.dropbox.com)
+     * @param apiBaseUrl  host serving /oauth2/token and the /2/ RPC routes
+     */
+    public DropboxEndpoints(String authBaseUrl, String apiBaseUrl) {
+        this.authBaseUrl = stripSlash(Objects.requireNonNull(authBaseUrl, "authBaseUrl"));
+        this.apiBaseUrl = stripSlash(Objects.requireNonNull(apiBaseUrl, "apiBaseUrl"));
+    }
+
+    /**
+     * @param baseUrl single host serving both OAuth and RPC routes (e.g. a local simulator)
+     * @return endpoints rooted at {@code baseUrl}
+     */
+    public static DropboxEndpoints of(String baseUrl) {
+        return new DropboxEndpoints(baseUrl, baseUrl);
+    }
+
+    /**
+     * Read dropbox.auth_base_url and dropbox.api_base_url; missing keys keep the defaults.
+     *
+     * @param cfg configuration (e.g. config.properties)
+     * @return configured endpoints
+     */
+    public static DropboxEndpoints fromProperties(Properties cfg) {
+        return new DropboxEndpoints(
+                cfg.getProperty("dropbox.auth_base_url", DEFAULT.authBaseUrl).trim(),
+                cfg.getProperty("dropbox.api_base_url", DEFAULT.apiBaseUrl).trim());
+    }
+
+    public String authorizeUrl() {
+        return authBaseUrl + "/oauth2/authorize";
+    }
+
+    public String tokenUrl() {
+        return apiBaseUrl + "/oauth2/token";
+    }
+
+    /**
+     * @param route RPC route without the version prefix (e.g. "team/members/list")
+     * @return full URL of the route
+     */
+    public String api(String route) {
+        return apiBaseUrl + "/2/" + route;
+    }
+
+    private static String stripSlash(String url) {
+        return url.endsWith("/") ? url.substring(0, url.length() - 1) : url;
+    }
+}
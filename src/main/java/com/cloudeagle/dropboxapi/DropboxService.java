@@ -3,6 +3,22 @@ package com.cloudeagle.dropboxapi;
 import org.json.JSONArray;
 import org.json.JSONObject;
 
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+
 /**
  * DropboxService
  * <p>
@@ -14,26 +30,71 @@ import org.json.JSONObject;
  */
 public class DropboxService {
 
+    static final String TEAM_INFO = "team/get_info";
+    static final String MEMBERS_LIST = "team/members/list";
+    private static final String MEMBERS_LIST_CONTINUE = "team/members/list/continue";
+    private static final Object END_OF_WALK = new Object();
+
     private final DropboxClient client;
+    private final ResponseCache cache;
+    private final PrintStream out;
+    private final PagingController paging;
 
     public DropboxService(DropboxClient client) {
+        this(client, null);
+    }
+
+    /**
+     * @param client low-level HTTP client
+     * @param cache  serves team info and the member list while fresh (null = always fetch)
+     */
+    public DropboxService(DropboxClient client, ResponseCache cache) {
+        this(client, cache, System.out, null);
+    }
+
+    private DropboxService(DropboxClient client, ResponseCache cache, PrintStream out, PagingController paging) {
         this.client = client;
+        this.cache = cache;
+        this.out = out;
+        this.paging = paging;
+    }
+
+    /**
+     * @param out where the printing methods write (normally System.out)
+     * @return a service sharing this one's client and cache but printing to {@code out},
+     * so calls running in parallel can each collect their own report
+     */
+    public DropboxService withOutput(PrintStream out) {
+        return new DropboxService(client, cache, out, paging);
+    }
+
+    /**
+     * @param paging adapts page size and parallel cursors of event backfills (null = fixed)
+     * @return a service sharing this one's client, cache and output but paging with {@code paging}
+     */
+    public DropboxService withPaging(PagingController paging) {
+        return new DropboxService(client, cache, out, paging);
     }
 
     /**
      * 1️⃣ Get Team / Organization Info
      * Endpoint: https://api.dropboxapi.com/2/team/get_info
      */
-    public void fetchTeamInfo(String accessToken) {
-        String url = "https://api.dropboxapi.com/2/team/get_info";
+    public void fetchTeamInfo(TokenProvider tokens) {
         try {
-            JSONObject response = client.postJson(url,null,accessToken);
+            JSONObject response = cache != null ? cache.get(TEAM_INFO) : null;
+            if (response == null) {
+                response = client.postJson(client.apiUrl(TEAM_INFO), null, tokens);
+                if (cache != null) {
+                    cache.put(TEAM_INFO, response);
+                }
+            }
 
-            System.out.println("\n===== TEAM / ORGANIZATION INFO =====");
-            System.out.println("Team ID: " + response.optString("team_id", "N/A"));
-            System.out.println("Team Name: " + response.optString("name", "N/A"));
-            System.out.println("Sharing Policies: " + response.optJSONObject("sharing_policies"));
-            System.out.println("====================================");
+            out.println("\n===== TEAM / ORGANIZATION INFO =====");
+            out.println("Team ID: " + response.optString("team_id", "N/A"));
+            out.println("Team Name: " + response.optString("name", "N/A"));
+            out.println("Sharing Policies: " + response.optJSONObject("sharing_policies"));
+            out.println("====================================");
 
         } catch (Exception e) {
             System.err.println("Error fetching team info: " + e.getMessage());
@@ -43,31 +104,238 @@ public class DropboxService {
     /**
      * 2️⃣ Get All Users (Team Members)
      * Endpoint: https://api.dropboxapi.com/2/team/members/list
+     * (follows the cursor through team/members/list/continue)
+     */
+    public void fetchAllUsers(TokenProvider tokens) {
+        out.println("\n===== TEAM MEMBERS LIST =====");
+        int count = exportMembers(tokens, ConsoleSink.members(out));
+        out.println("Total members returned: " + count);
+        out.println("====================================");
+    }
+
+    /**
+     * Write every team member to {@code sink}. The sink is closed afterwards.
+     * A fresh cached member list is replayed without any API call.
+     *
+     * @param tokens source of the OAuth2 bearer token
+     * @param sink   destination of the member records
+     * @return number of members written
+     */
+    public int exportMembers(TokenProvider tokens, RecordSink sink) {
+        int count = 0;
+        try (RecordSink out = sink) {
+            count = abortOnFailure(out, () -> writeMembers(tokens, out));
+        } catch (Exception e) {
+            System.err.println("Error fetching team members: " + unwrap(e).getMessage());
+        }
+        return count;
+    }
+
+    private int writeMembers(TokenProvider tokens, RecordSink out) throws IOException {
+        int count = cache != null ? cache.replay(MEMBERS_LIST, into(out)) : -1;
+        if (count >= 0) {
+            return count;
+        }
+        ResponseCache.Spool spool = cache != null ? cache.spool(MEMBERS_LIST) : null;
+        if (spool == null) {
+            return forEachMember(tokens, 1000, into(out));
+        }
+        // the list is spooled to disk as it streams in, never held in memory
+        try (ResponseCache.Spool s = spool) {
+            Consumer<JSONObject> write = into(out);
+            Consumer<JSONObject> keep = into(s);
+            count = forEachMember(tokens, 1000, m -> {
+                keep.accept(m);
+                write.accept(m);
+            });
+            s.commit();
+        }
+        return count;
+    }
+
+    /**
+     * Write only the members that were added, modified or removed since the last call to
+     * {@code sink} (see {@link MemberSnapshotDiff}). The sink is closed afterwards. The member
+     * list is always fetched fresh; the fingerprints are only updated once the whole list was
+     * read and the sink closed.
+     *
+     * @param tokens           source of the OAuth2 bearer token
+     * @param fingerprintFile  where the member fingerprints are kept between runs
+     * @param sink             destination of the changed member records
+     * @return the finished diff, or null if the sync failed
+     */
+    public MemberSnapshotDiff exportMemberChanges(TokenProvider tokens, Path fingerprintFile, RecordSink sink) {
+        try {
+            MemberSnapshotDiff diff;
+            try (RecordSink out = sink) {
+                diff = abortOnFailure(out, () -> {
+                    MemberSnapshotDiff d = MemberSnapshotDiff.open(fingerprintFile, out);
+                    forEachMember(tokens, 1000, member -> {
+                        try {
+                            d.accept(member);
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    });
+                    d.finish();
+                    return d;
+                });
+            }
+            // only once the sink has published the changes, so a failed close reports them again
+            diff.save();
+            return diff;
+        } catch (Exception e) {
+            System.err.println("Error diffing team members: " + unwrap(e).getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Stream every team member, following the cursor automatically and prefetching the next
+     * page while the current one is consumed. Close the returned pager when done.
+     *
+     * @param tokens source of the OAuth2 bearer token
+     * @param limit  page size for team/members/list (1..1000)
+     * @return pager whose {@link CursorPager#records(String)} with "members" yields each member
      */
-    public void fetchAllUsers(String accessToken) {
-        String url = "https://api.dropboxapi.com/2/team/members/list";
+    public CursorPager openMemberPager(TokenProvider tokens, int limit) {
         JSONObject body = new JSONObject();
-        body.put("limit", 100);
+        body.put("limit", limit);
+        return new CursorPager(client, client.apiUrl(MEMBERS_LIST), body.toString(),
+                client.apiUrl(MEMBERS_LIST_CONTINUE), tokens);
+    }
 
+    /**
+     * Stream every team member to {@code handler}, parsing each page incrementally so that
+     * neither the response text nor the page's member array is held in memory.
+     * <p>
+     * The pages are walked on a prefetch thread that hands the records over through a queue
+     * of one page, so the next page is fetched and parsed while the handler works through the
+     * current one. The handler is still called on the calling thread, in order.
+     *
+     * @param tokens  source of the OAuth2 bearer token
+     * @param limit   page size for team/members/list (1..1000)
+     * @param handler receives each member record
+     * @return number of members delivered
+     * @throws IOException on HTTP or parse errors
+     */
+    public int forEachMember(TokenProvider tokens, int limit, Consumer<JSONObject> handler) throws IOException {
+        BlockingQueue<Object> queue = new ArrayBlockingQueue<>(Math.max(1, limit));
+        MemberWalk walk = memberJob(tokens, limit, member -> {
+            try {
+                queue.put(member);
+            } catch (InterruptedException e) {
+                // the consumer has given up
+                Thread.currentThread().interrupt();
+                throw new CancellationException();
+            }
+        });
+        Future<?> fetcher = CursorPager.PREFETCH_EXECUTOR.submit(() -> {
+            Object last = END_OF_WALK;
+            try {
+                while (walk.step()) {
+                    // one page per step
+                }
+            } catch (Throwable t) {
+                last = t;
+            }
+            try {
+                queue.put(last);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        int count = 0;
         try {
-            JSONObject response = client.postJson(url, body.toString(), accessToken);
-
-            System.out.println("\n===== TEAM MEMBERS LIST =====");
-            JSONArray members = response.optJSONArray("members");
-            if (members != null) {
-                for (int i = 0; i < members.length(); i++) {
-                    JSONObject profile = members.getJSONObject(i).optJSONObject("profile");
-                    if (profile != null) {
-                        System.out.println((i + 1) + ". " + profile.optString("email") +
-                                " (" + profile.optString("status") + ")");
-                    }
+            for (Object item = take(queue); item != END_OF_WALK; item = take(queue)) {
+                if (item instanceof Throwable) {
+                    throw rethrow((Throwable) item);
                 }
+                handler.accept((JSONObject) item);
+                count++;
             }
-            System.out.println("Total members returned: " + (members != null ? members.length() : 0));
-            System.out.println("====================================");
+        } finally {
+            fetcher.cancel(true);
+        }
+        return count;
+    }
 
-        } catch (Exception e) {
-            System.err.println("Error fetching team members: " + e.getMessage());
+    private static Object take(BlockingQueue<Object> queue) throws IOException {
+        try {
+            return queue.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for members");
+        }
+    }
+
+    /** Rethrow a failure of the prefetch thread on the calling thread. */
+    private static IOException rethrow(Throwable t) throws IOException {
+        if (t instanceof IOException) {
+            throw (IOException) t;
+        }
+        if (t instanceof RuntimeException) {
+            throw (RuntimeException) t;
+        }
+        if (t instanceof Error) {
+            throw (Error) t;
+        }
+        return new IOException(t);
+    }
+
+    /**
+     * Same as {@link #forEachMember(TokenProvider, int, Consumer)}, but as a job that fetches
+     * one page per step so a scheduler can interleave it with other work. The walk itself does
+     * not prefetch: the handler runs inside {@link MemberWalk#step()}.
+     *
+     * @param tokens  source of the OAuth2 bearer token
+     * @param limit   page size for team/members/list (1..1000)
+     * @param handler receives each member record
+     * @return the not yet started walk
+     */
+    public MemberWalk memberJob(TokenProvider tokens, int limit, Consumer<JSONObject> handler) {
+        return new MemberWalk(tokens, limit, handler);
+    }
+
+    /**
+     * Streaming walk over every members/list page.
+     */
+    public final class MemberWalk implements SyncJob {
+        private final TokenProvider tokens;
+        private final int limit;
+        private final Consumer<JSONObject> counting;
+        private String cursor;
+        private int count;
+
+        private MemberWalk(TokenProvider tokens, int limit, Consumer<JSONObject> handler) {
+            this.tokens = tokens;
+            this.limit = limit;
+            this.counting = member -> {
+                count++;
+                handler.accept(member);
+            };
+        }
+
+        @Override
+        public boolean step() throws IOException {
+            JSONObject body = new JSONObject();
+            JSONObject page;
+            if (cursor == null) {
+                body.put("limit", limit);
+                page = client.postJsonStreaming(client.apiUrl(MEMBERS_LIST), body.toString(), tokens, "members", counting);
+            } else {
+                body.put("cursor", cursor);
+                page = client.postJsonStreaming(client.apiUrl(MEMBERS_LIST_CONTINUE), body.toString(), tokens, "members", counting);
+            }
+            cursor = page.optString("cursor", null);
+            return page.optBoolean("has_more", false) && cursor != null;
+        }
+
+        /**
+         * @return number of members delivered so far
+         */
+        public int getCount() {
+            return count;
         }
     }
 
@@ -75,31 +343,128 @@ public class DropboxService {
      * 3️⃣ Get Team Events (Sign-in Events / Audit Log)
      * Endpoint: https://api.dropboxapi.com/2/team_log/get_events
      */
-    public void fetchTeamEvents(String accessToken) {
-        String url = "https://api.dropboxapi.com/2/team_log/get_events";
+    public void fetchTeamEvents(TokenProvider tokens) {
+        String url = client.apiUrl("team_log/get_events");
         JSONObject body = new JSONObject();
         body.put("limit", 20); // small sample for display
 
         try {
-            JSONObject response = client.postJson(url, body.toString(), accessToken);
+            JSONObject response = client.postJson(url, body.toString(), tokens);
 
-            System.out.println("\n===== TEAM EVENTS (Recent 20) =====");
+            out.println("\n===== TEAM EVENTS (Recent 20) =====");
             JSONArray events = response.optJSONArray("events");
             if (events != null) {
+                ConsoleSink sink = ConsoleSink.events(out);
                 for (int i = 0; i < events.length(); i++) {
-                    JSONObject ev = events.getJSONObject(i);
-                    String time = ev.optString("timestamp");
-                    String category = ev.optString("category");
-                    String action = ev.optString("event_type");
-                    System.out.println((i + 1) + ". [" + time + "] " + category + " - " + action);
+                    sink.accept(events.getJSONObject(i));
                 }
             } else {
-                System.out.println("No events found.");
+                out.println("No events found.");
             }
-            System.out.println("====================================");
+            out.println("====================================");
 
         } catch (Exception e) {
             System.err.println("Error fetching team events: " + e.getMessage());
         }
     }
+
+    /**
+     * Aggregate the last {@code lookback} of team events into hourly counts and print a summary:
+     * top categories, event types and actors, and sign-ins per hour.
+     * Endpoint: https://api.dropboxapi.com/2/team_log/get_events (/continue)
+     *
+     * @param tokens   source of the OAuth2 bearer token
+     * @param lookback how far back to read
+     * @return the filled aggregator, for further queries
+     */
+    public EventAggregator aggregateTeamEvents(TokenProvider tokens, Duration lookback) {
+        Instant end = Instant.now().truncatedTo(ChronoUnit.SECONDS);
+        Instant start = end.minus(lookback);
+        EventAggregator hourly = new EventAggregator(Duration.ofHours(1), (int) lookback.toHours() + 1);
+        Duration window = Duration.ofSeconds(Math.max(3600, lookback.getSeconds() / 8));
+        EventBackfill backfill = paging != null
+                ? new EventBackfill(client, window, paging)
+                : new EventBackfill(client, 4, window);
+        try (EventBackfill.EventStream events = backfill.fetch(tokens, start, end)) {
+            events.forEachRemaining(hourly);
+
+            out.println("\n===== TEAM EVENTS (last " + lookback.toHours() + "h, hourly) =====");
+            out.println("Events: " + hourly.getEventCount());
+            printTop("Top categories", hourly.top(EventAggregator.Dimension.CATEGORY, start, end, 10));
+            printTop("Top event types", hourly.top(EventAggregator.Dimension.EVENT_TYPE, start, end, 10));
+            printTop("Most active actors", hourly.top(EventAggregator.Dimension.ACTOR, start, end, 10));
+            printTop("Sign-ins per hour", hourly.tumbling(EventAggregator.Dimension.EVENT_TYPE, "login_success", start, end));
+            out.println("====================================");
+        } catch (Exception e) {
+            System.err.println("Error aggregating team events: " + unwrap(e).getMessage());
+        }
+        return hourly;
+    }
+
+    private void printTop(String title, Map<?, Long> counts) {
+        out.println(title + ":");
+        for (Map.Entry<?, Long> e : counts.entrySet()) {
+            out.println("  " + e.getKey() + ": " + e.getValue());
+        }
+    }
+
+    /**
+     * Incremental sync of team events. Only events newer than the checkpoint stored in
+     * {@code checkpointFile} are fetched; the checkpoint is advanced after every page.
+     * Endpoint: https://api.dropboxapi.com/2/team_log/get_events (/continue)
+     */
+    public void syncTeamEvents(TokenProvider tokens, Path checkpointFile) {
+        out.println("\n===== TEAM EVENTS (incremental sync) =====");
+        int count = syncTeamEvents(tokens, checkpointFile, ConsoleSink.events(out));
+        out.println("New events since last sync: " + count);
+        out.println("====================================");
+    }
+
+    /**
+     * Incremental sync of team events into {@code sink}. The sink is closed afterwards.
+     *
+     * @param tokens         source of the OAuth2 bearer token
+     * @param checkpointFile where the cursor and high-water timestamp are kept between runs
+     * @param sink           destination of the event records
+     * @return number of new events written
+     */
+    public int syncTeamEvents(TokenProvider tokens, Path checkpointFile, RecordSink sink) {
+        int count = 0;
+        try (RecordSink out = sink) {
+            // the sink is flushed before every checkpoint save, so no checkpointed event is lost
+            count = abortOnFailure(out, () -> new EventSync(client, checkpointFile).sync(tokens, into(out), out));
+        } catch (Exception e) {
+            System.err.println("Error syncing team events: " + unwrap(e).getMessage());
+        }
+        return count;
+    }
+
+    /** Runs a sync into {@code sink} and aborts the sink if it fails, so only flushed records are published. */
+    private static <T> T abortOnFailure(RecordSink sink, Callable<T> sync) throws Exception {
+        try {
+            return sync.call();
+        } catch (Exception e) {
+            try {
+                sink.abort();
+            } catch (IOException suppressed) {
+                e.addSuppressed(suppressed);
+            }
+            throw e;
+        }
+    }
+
+    /** Adapts a sink to the record callbacks, tunnelling its IOException. */
+    static Consumer<JSONObject> into(RecordSink sink) {
+        return record -> {
+            try {
+                sink.accept(record);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        };
+    }
+
+    private static Throwable unwrap(Exception e) {
+        return e instanceof UncheckedIOException ? e.getCause() : e;
+    }
 }
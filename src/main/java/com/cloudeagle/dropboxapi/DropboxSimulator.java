@@ -0,0 +1,570 @@
+package com.cloudeagle.dropboxapi;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * DropboxSimulator
+ * <p>
+ * Embeddable fake of the Dropbox Business API for end-to-end and load testing. It serves
+ * oauth2/authorize, oauth2/token, team/get_info, team/members/list(/continue),
+ * team/members/get_info_v2 and team_log/get_events(/continue) for a synthetic team of any size.
+ * <p>
+ * Members and events are generated on the fly from their index, so a team with millions
+ * of events costs no memory. Event i happens at {@code eventsStart + i * eventIntervalSeconds}
+ * and get_events honors the "time" filter. Every /2/ call can be slowed down by a base
+ * latency plus jitter, a fraction of them can stall for a long time, and they can fail with
+ * 429 (with Retry-After) or 503 at configurable rates.
+ * <p>
+ * Tests of incremental sync can append events with {@link #addEvents(long)}, which an open
+ * get_events cursor picks up on its next /continue, and expire every issued event cursor with
+ * {@link #expireEventCursors()}, after which /continue answers 409 "reset" as Dropbox does.
+ * <p>
+ * Usage:
+ * try (DropboxSimulator sim = new DropboxSimulator.Builder().members(10_000).events(1_000_000).build()) {
+ *     DropboxClient client = new DropboxClient(transport, scheduler, DropboxEndpoints.of(sim.baseUrl()));
+ *     ...
+ * }
+ */
+public class DropboxSimulator implements AutoCloseable {
+
+    private static final String[][] EVENT_TYPES = {
+            {"logins", "login_success"},
+            {"logins", "logout"},
+            {"logins", "login_fail"},
+            {"sharing", "shared_content_add_member"},
+            {"sharing", "shared_link_create"},
+            {"file_operations", "file_add"},
+            {"file_operations", "file_delete"},
+            {"members", "member_change_status"},
+    };
+    private static final int MAX_GET_INFO_BATCH = 100;
+    private static final String[] STATUSES = {"active", "active", "active", "active", "invited", "suspended"};
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final int members;
+    private final AtomicLong events = new AtomicLong();
+    private final long eventsStartSeconds;
+    private final long eventIntervalSeconds;
+    private final long latencyMillis;
+    private final long latencyJitterMillis;
+    private final double stallRate;
+    private final long stallMillis;
+    private final double throttleRate;
+    private final double serverErrorRate;
+    private final long retryAfterSeconds;
+    private final long tokenLifetimeSeconds;
+
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong stalled = new AtomicLong();
+    private final AtomicLong throttled = new AtomicLong();
+    private final AtomicLong serverErrors = new AtomicLong();
+    private final AtomicLong tokensIssued = new AtomicLong();
+    private final AtomicLong cursorGeneration = new AtomicLong();
+
+    private DropboxSimulator(Builder b) throws IOException {
+        this.members = b.members;
+        this.events.set(b.events);
+        this.eventsStartSeconds = b.eventsStart.getEpochSecond();
+        this.eventIntervalSeconds = b.eventIntervalSeconds;
+        this.latencyMillis = b.latencyMillis;
+        this.latencyJitterMillis = b.latencyJitterMillis;
+        this.stallRate = b.stallRate;
+        this.stallMillis = b.stallMillis;
+        this.throttleRate = b.throttleRate;
+        this.serverErrorRate = b.serverErrorRate;
+        this.retryAfterSeconds = b.retryAfterSeconds;
+        this.tokenLifetimeSeconds = b.tokenLifetimeSeconds;
+
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), b.port), 0);
+        this.executor = Executors.newFixedThreadPool(b.threads, r -> {
+            Thread t = new Thread(r, "dropbox-simulator");
+            t.setDaemon(true);
+            return t;
+        });
+        server.createContext("/oauth2/authorize", safe(this::authorize));
+        server.createContext("/oauth2/token", safe(this::token));
+        server.createContext("/2/team/get_info", api(this::teamInfo));
+        server.createContext("/2/team/members/list", api(this::membersList));
+        server.createContext("/2/team/members/get_info_v2", api(this::membersGetInfo));
+        server.createContext("/2/team_log/get_events", api(this::getEvents));
+        server.setExecutor(executor);
+        server.start();
+    }
+
+    /**
+     * @return base URL to pass to {@link DropboxEndpoints#of(String)}, e.g. http://127.0.0.1:54321
+     */
+    public String baseUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    /**
+     * @return time of the first synthetic event
+     */
+    public Instant eventsStart() {
+        return Instant.ofEpochSecond(eventsStartSeconds);
+    }
+
+    /**
+     * @return exclusive end of the synthetic event range
+     */
+    public Instant eventsEnd() {
+        return Instant.ofEpochSecond(eventsStartSeconds + events.get() * eventIntervalSeconds);
+    }
+
+    /**
+     * Append {@code n} events after the current last one.
+     */
+    public void addEvents(long n) {
+        events.addAndGet(n);
+    }
+
+    /**
+     * Make every get_events cursor issued so far invalid; /continue with one answers 409 "reset".
+     */
+    public void expireEventCursors() {
+        cursorGeneration.incrementAndGet();
+    }
+
+    public long getRequestCount() {
+        return requests.get();
+    }
+
+    public long getStalledCount() {
+        return stalled.get();
+    }
+
+    public long getThrottledCount() {
+        return throttled.get();
+    }
+
+    public long getServerErrorCount() {
+        return serverErrors.get();
+    }
+
+    public long getTokensIssued() {
+        return tokensIssued.get();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    // ----- OAuth -----
+
+    private void authorize(HttpExchange ex) throws IOException {
+        Map<String, String> params = parseForm(ex.getRequestURI().getRawQuery());
+        String redirect = params.get("redirect_uri");
+        if (redirect == null) {
+            send(ex, 400, "text/plain", "Missing redirect_uri");
+            return;
+        }
+        String location = redirect + "?code=sim-code-" + tokensIssued.get()
+                + (params.containsKey("state") ? "&state=" + URLEncoder.encode(params.get("state"), "UTF-8") : "");
+        ex.getResponseHeaders().add("Location", location);
+        ex.sendResponseHeaders(302, -1);
+        ex.close();
+    }
+
+    private void token(HttpExchange ex) throws IOException {
+        Map<String, String> form = parseForm(readBody(ex));
+        String grant = form.get("grant_type");
+        JSONObject resp = new JSONObject();
+        long n = tokensIssued.incrementAndGet();
+        resp.put("access_token", "sim-access-" + n);
+        resp.put("token_type", "bearer");
+        resp.put("expires_in", tokenLifetimeSeconds);
+        if ("authorization_code".equals(grant)) {
+            resp.put("refresh_token", "sim-refresh-" + n);
+            resp.put("scope", "team_info.read members.read events.read");
+            resp.put("team_id", "dbtid:sim-team");
+        } else if (!"refresh_token".equals(grant)) {
+            send(ex, 400, "application/json", "{\"error\": \"unsupported_grant_type\"}");
+            return;
+        }
+        send(ex, 200, "application/json", resp.toString());
+    }
+
+    // ----- RPC routes -----
+
+    private String teamInfo(String path, JSONObject body) {
+        JSONObject policies = new JSONObject()
+                .put("sharing", new JSONObject()
+                        .put("shared_folder_member_policy", new JSONObject().put(".tag", "team"))
+                        .put("shared_link_create_policy", new JSONObject().put(".tag", "default_public")));
+        return new JSONObject()
+                .put("name", "Simulated Team")
+                .put("team_id", "dbtid:sim-team")
+                .put("num_licensed_users", members)
+                .put("num_provisioned_users", members)
+                .put("policies", policies)
+                .put("sharing_policies", policies.getJSONObject("sharing"))
+                .toString();
+    }
+
+    private String membersGetInfo(String path, JSONObject body) {
+        JSONArray selectors = body.getJSONArray("members");
+        if (selectors.length() > MAX_GET_INFO_BATCH) {
+            throw new IllegalArgumentException("too many members: " + selectors.length());
+        }
+        JSONArray infos = new JSONArray();
+        for (int i = 0; i < selectors.length(); i++) {
+            String id = selectors.getJSONObject(i).optString("team_member_id", "");
+            int idx = -1;
+            if (id.startsWith("dbmid:sim-")) {
+                try {
+                    idx = Integer.parseInt(id.substring("dbmid:sim-".length()));
+                } catch (NumberFormatException ignored) {
+                    // unknown id
+                }
+            }
+            if (idx >= 0 && idx < members) {
+                JSONObject m = member(idx);
+                infos.put(new JSONObject()
+                        .put(".tag", "member_info")
+                        .put("profile", m.getJSONObject("profile"))
+                        .put("roles", new JSONArray().put(new JSONObject()
+                                .put("role_id", "pid_dbtmr:sim")
+                                .put("name", m.getJSONObject("role").getString(".tag")))));
+            } else {
+                infos.put(new JSONObject().put(".tag", "id_not_found").put("id_not_found", id));
+            }
+        }
+        return new JSONObject().put("members_info", infos).toString();
+    }
+
+    private String membersList(String path, JSONObject body) {
+        int offset;
+        int limit;
+        if (path.endsWith("/continue")) {
+            String[] c = body.getString("cursor").split(":");
+            offset = Integer.parseInt(c[1]);
+            limit = Integer.parseInt(c[2]);
+        } else {
+            offset = 0;
+            limit = Math.max(1, Math.min(1000, body.optInt("limit", 1000)));
+        }
+        int end = Math.min(members, offset + limit);
+        JSONArray arr = new JSONArray();
+        for (int i = offset; i < end; i++) {
+            arr.put(member(i));
+        }
+        return new JSONObject()
+                .put("members", arr)
+                .put("cursor", "m:" + end + ":" + limit)
+                .put("has_more", end < members)
+                .toString();
+    }
+
+    private String getEvents(String path, JSONObject body) throws IOException {
+        long next;
+        long end;
+        int limit;
+        long total = events.get();
+        if (path.endsWith("/continue")) {
+            String[] c = body.getString("cursor").split(":");
+            if (Long.parseLong(c[4]) != cursorGeneration.get()) {
+                throw new HttpStatusException(409, "{\"error_summary\": \"reset/..\", \"error\": {\".tag\": \"reset\"}}");
+            }
+            next = Long.parseLong(c[1]);
+            end = Long.parseLong(c[2]);
+            limit = Integer.parseInt(c[3]);
+        } else {
+            limit = Math.max(1, Math.min(1000, body.optInt("limit", 1000)));
+            next = 0;
+            // -1: no end_time, the cursor follows events added later
+            end = -1;
+            JSONObject time = body.optJSONObject("time");
+            if (time != null) {
+                if (time.has("start_time")) {
+                    next = indexAt(Instant.parse(time.getString("start_time")));
+                }
+                if (time.has("end_time")) {
+                    end = indexAt(Instant.parse(time.getString("end_time")));
+                }
+            }
+        }
+        long last = end < 0 ? total : end;
+        long stop = Math.min(last, next + limit);
+        JSONArray arr = new JSONArray();
+        for (long i = next; i < stop; i++) {
+            arr.put(event(i));
+        }
+        return new JSONObject()
+                .put("events", arr)
+                .put("cursor", "e:" + stop + ":" + end + ":" + limit + ":" + cursorGeneration.get())
+                .put("has_more", stop < last)
+                .toString();
+    }
+
+    /** Index of the first event at or after {@code t}, clamped to [0, events]. */
+    private long indexAt(Instant t) {
+        long delta = t.getEpochSecond() - eventsStartSeconds;
+        if (delta <= 0) {
+            return 0;
+        }
+        long idx = (delta + eventIntervalSeconds - 1) / eventIntervalSeconds;
+        return Math.min(events.get(), idx);
+    }
+
+    private JSONObject member(int i) {
+        JSONObject profile = new JSONObject()
+                .put("team_member_id", "dbmid:sim-" + i)
+                .put("account_id", "dbid:sim-" + i)
+                .put("email", "member" + i + "@sim.example.com")
+                .put("email_verified", true)
+                .put("status", new JSONObject().put(".tag", STATUSES[i % STATUSES.length]))
+                .put("name", new JSONObject()
+                        .put("given_name", "Member")
+                        .put("surname", String.valueOf(i))
+                        .put("display_name", "Member " + i))
+                .put("membership_type", new JSONObject().put(".tag", "full"))
+                .put("joined_on", Instant.ofEpochSecond(eventsStartSeconds - 86_400L * (i % 1000)).toString());
+        return new JSONObject()
+                .put("profile", profile)
+                .put("role", new JSONObject().put(".tag", i == 0 ? "team_admin" : "member_only"));
+    }
+
+    private JSONObject event(long i) {
+        String[] type = EVENT_TYPES[(int) (i % EVENT_TYPES.length)];
+        int actor = members == 0 ? 0 : (int) ((i * 31) % members);
+        return new JSONObject()
+                .put("timestamp", Instant.ofEpochSecond(eventsStartSeconds + i * eventIntervalSeconds).toString())
+                .put("event_category", new JSONObject().put(".tag", type[0]))
+                .put("event_type", new JSONObject().put(".tag", type[1]))
+                .put("actor", new JSONObject()
+                        .put(".tag", "user")
+                        .put("user", new JSONObject()
+                                .put(".tag", "team_member")
+                                .put("team_member_id", "dbmid:sim-" + actor)
+                                .put("account_id", "dbid:sim-" + actor)
+                                .put("email", "member" + actor + "@sim.example.com")
+                                .put("display_name", "Member " + actor)))
+                .put("involve_non_team_member", false)
+                .put("details", new JSONObject().put(".tag", type[1] + "_details"));
+    }
+
+    // ----- plumbing -----
+
+    private interface Route {
+        String handle(String path, JSONObject body) throws IOException;
+    }
+
+    private interface Exchange {
+        void handle(HttpExchange ex) throws IOException;
+    }
+
+    private HttpHandler safe(Exchange handler) {
+        return ex -> {
+            try {
+                handler.handle(ex);
+            } catch (Exception e) {
+                send(ex, 500, "text/plain", "Simulator error: " + e);
+            }
+        };
+    }
+
+    private HttpHandler api(Route route) {
+        return safe(ex -> {
+            requests.incrementAndGet();
+            if (!"POST".equalsIgnoreCase(ex.getRequestMethod())) {
+                send(ex, 405, "text/plain", "Method not allowed");
+                return;
+            }
+            String auth = ex.getRequestHeaders().getFirst("Authorization");
+            if (auth == null || !auth.startsWith("Bearer ") || auth.length() <= 7) {
+                send(ex, 401, "application/json", "{\"error_summary\": \"invalid_access_token/\"}");
+                return;
+            }
+            String raw = readBody(ex);
+            delay();
+            ThreadLocalRandom rnd = ThreadLocalRandom.current();
+            if (throttleRate > 0 && rnd.nextDouble() < throttleRate) {
+                throttled.incrementAndGet();
+                ex.getResponseHeaders().add("Retry-After", String.valueOf(retryAfterSeconds));
+                send(ex, 429, "application/json", "{\"error_summary\": \"too_many_requests/\", \"error\": "
+                        + "{\"reason\": {\".tag\": \"too_many_requests\"}, \"retry_after\": " + retryAfterSeconds + "}}");
+                return;
+            }
+            if (serverErrorRate > 0 && rnd.nextDouble() < serverErrorRate) {
+                serverErrors.incrementAndGet();
+                send(ex, 503, "text/plain", "Service unavailable (simulated)");
+                return;
+            }
+            JSONObject body = raw.trim().isEmpty() ? new JSONObject() : new JSONObject(raw);
+            String response;
+            try {
+                response = route.handle(ex.getRequestURI().getPath(), body);
+            } catch (IllegalArgumentException e) {
+                send(ex, 400, "text/plain", "Error in call: " + e.getMessage());
+                return;
+            } catch (HttpStatusException e) {
+                send(ex, e.getStatusCode(), "application/json", e.getResponseBody());
+                return;
+            }
+            send(ex, 200, "application/json", response);
+        });
+    }
+
+    private void delay() {
+        long millis = latencyMillis + (latencyJitterMillis > 0 ? ThreadLocalRandom.current().nextLong(latencyJitterMillis + 1) : 0);
+        if (stallRate > 0 && ThreadLocalRandom.current().nextDouble() < stallRate) {
+            stalled.incrementAndGet();
+            millis += stallMillis;
+        }
+        if (millis > 0) {
+            try {
+                Thread.sleep(millis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private static void send(HttpExchange ex, int status, String contentType, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        ex.getResponseHeaders().add("Content-Type", contentType + "; charset=utf-8");
+        ex.sendResponseHeaders(status, bytes.length);
+        try (OutputStream os = ex.getResponseBody()) {
+            os.write(bytes);
+        }
+    }
+
+    private static String readBody(HttpExchange ex) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (InputStream in = ex.getRequestBody()) {
+            byte[] buf = new byte[4096];
+            int n;
+            while ((n = in.read(buf)) > 0) {
+                out.write(buf, 0, n);
+            }
+        }
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    private static Map<String, String> parseForm(String form) throws UnsupportedEncodingException {
+        Map<String, String> params = new HashMap<>();
+        if (form == null || form.isEmpty()) {
+            return params;
+        }
+        for (String pair : form.split("&")) {
+            int idx = pair.indexOf('=');
+            String key = URLDecoder.decode(idx > 0 ? pair.substring(0, idx) : pair, "UTF-8");
+            String value = idx > 0 ? URLDecoder.decode(pair.substring(idx + 1), "UTF-8") : "";
+            params.put(key, value);
+        }
+        return params;
+    }
+
+    /**
+     * Builder for {@link DropboxSimulator}.
+     */
+    public static final class Builder {
+        private int port;
+        private int threads = 32;
+        private int members = 1000;
+        private long events = 10_000;
+        private Instant eventsStart = Instant.parse("2024-01-01T00:00:00Z");
+        private long eventIntervalSeconds = 60;
+        private long latencyMillis;
+        private long latencyJitterMillis;
+        private double stallRate;
+        private long stallMillis;
+        private double throttleRate;
+        private double serverErrorRate;
+        private long retryAfterSeconds = 1;
+        private long tokenLifetimeSeconds = 14_400;
+
+        /** Listen port; 0 (the default) picks a free one. */
+        public Builder port(int port) {
+            this.port = port;
+            return this;
+        }
+
+        public Builder threads(int threads) {
+            this.threads = threads;
+            return this;
+        }
+
+        public Builder members(int members) {
+            this.members = members;
+            return this;
+        }
+
+        public Builder events(long events) {
+            this.events = events;
+            return this;
+        }
+
+        public Builder eventsStart(Instant start) {
+            this.eventsStart = start;
+            return this;
+        }
+
+        public Builder eventIntervalSeconds(long seconds) {
+            this.eventIntervalSeconds = Math.max(1, seconds);
+            return this;
+        }
+
+        /** Added to every /2/ call: {@code base} plus a uniform random jitter up to {@code jitter}. */
+        public Builder latencyMillis(long base, long jitter) {
+            this.latencyMillis = base;
+            this.latencyJitterMillis = jitter;
+            return this;
+        }
+
+        /** Fraction of /2/ calls that are delayed by another {@code millis} (a stalled backend). */
+        public Builder stallRate(double rate, long millis) {
+            this.stallRate = rate;
+            this.stallMillis = millis;
+            return this;
+        }
+
+        /** Fraction of /2/ calls answered with 429 and the given Retry-After. */
+        public Builder throttleRate(double rate, long retryAfterSeconds) {
+            this.throttleRate = rate;
+            this.retryAfterSeconds = retryAfterSeconds;
+            return this;
+        }
+
+        /** Fraction of /2/ calls answered with 503. */
+        public Builder serverErrorRate(double rate) {
+            this.serverErrorRate = rate;
+            return this;
+        }
+
+        public Builder tokenLifetimeSeconds(long seconds) {
+            this.tokenLifetimeSeconds = seconds;
+            return this;
+        }
+
+        public DropboxSimulator build() throws IOException {
+            return new DropboxSimulator(this);
+        }
+    }
+}
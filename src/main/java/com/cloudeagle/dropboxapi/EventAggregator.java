@@ -0,0 +1,410 @@
+package com.cloudeagle.dropboxapi;
+
+import org.json.JSONObject;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Consumer;
+
+/**
+ * EventAggregator
+ * <p>
+ * In-memory counts over the team_log/get_events stream, in fixed time buckets (e.g. one hour
+ * or one day) keyed by category, event type and actor, plus actor per category and actor per
+ * event type. That answers "sign-ins per member per hour" or "sharing events by category per
+ * day" without keeping the events themselves.
+ * <p>
+ * A bucket is a tumbling window; a sliding window is the sum of the buckets it covers, so it
+ * slides in steps of one bucket. Only the newest {@code retainedBuckets} buckets are kept:
+ * buckets live in a ring, and events older than the ring are counted in
+ * {@link #getDroppedCount()} and otherwise ignored.
+ * <p>
+ * Dimension values are mapped to int symbols once, and each bucket counts in a
+ * {@link LongLongMap} keyed by (key kind, symbol, symbol) packed into a long, so ingesting an
+ * event is a handful of primitive map updates with no allocation once its values have been
+ * seen. One thread (or several) may ingest while others query; a {@link StampedLock} keeps
+ * queries consistent with whole events.
+ * <p>
+ * Usage:
+ * EventAggregator hourly = new EventAggregator(Duration.ofHours(1), 24 * 7);
+ * events.forEachRemaining(hourly);
+ * long logins = hourly.count(EventAggregator.Dimension.EVENT_TYPE, "login_success", from, to);
+ */
+public class EventAggregator implements Consumer<JSONObject> {
+
+    /** Event attribute an aggregate is keyed by. */
+    public enum Dimension {
+        CATEGORY, EVENT_TYPE, ACTOR
+    }
+
+    // key kinds; actor is always the second symbol of the per-actor breakdowns
+    private static final int KIND_CATEGORY = 1;
+    private static final int KIND_EVENT_TYPE = 2;
+    private static final int KIND_ACTOR = 3;
+    private static final int KIND_CATEGORY_ACTOR = 4;
+    private static final int KIND_EVENT_TYPE_ACTOR = 5;
+
+    private static final int SYMBOL_BITS = 28;
+    private static final long SYMBOL_MASK = (1L << SYMBOL_BITS) - 1;
+
+    private final long bucketSeconds;
+    private final Bucket[] ring;
+    private final Symbols[] symbols = {new Symbols(), new Symbols(), new Symbols()};
+    private final StringPool pool;
+    private final StampedLock lock = new StampedLock();
+    private long newestBucket = Long.MIN_VALUE;
+    private long eventCount;
+    private long droppedCount;
+
+    /**
+     * @param bucketSize      width of one tumbling window (whole seconds)
+     * @param retainedBuckets number of most recent buckets kept
+     */
+    public EventAggregator(Duration bucketSize, int retainedBuckets) {
+        this(bucketSize, retainedBuckets, StringPool.shared());
+    }
+
+    /**
+     * @param bucketSize      width of one tumbling window (whole seconds)
+     * @param retainedBuckets number of most recent buckets kept
+     * @param pool            pool used when parsing raw events
+     */
+    public EventAggregator(Duration bucketSize, int retainedBuckets, StringPool pool) {
+        this.bucketSeconds = Math.max(1, bucketSize.getSeconds());
+        this.ring = new Bucket[Math.max(1, retainedBuckets)];
+        this.pool = pool;
+    }
+
+    /**
+     * Count one raw get_events record.
+     */
+    @Override
+    public void accept(JSONObject event) {
+        add(TeamEvent.fromJson(event, pool));
+    }
+
+    /**
+     * Count one event.
+     *
+     * @param event parsed event; events without a timestamp are dropped
+     */
+    public void add(TeamEvent event) {
+        long ts = event.getTimestampEpochSeconds();
+        long stamp = lock.writeLock();
+        try {
+            if (ts <= 0) {
+                droppedCount++;
+                return;
+            }
+            Bucket bucket = bucketFor(Math.floorDiv(ts, bucketSeconds));
+            if (bucket == null) {
+                droppedCount++;
+                return;
+            }
+            eventCount++;
+            bucket.total++;
+            int category = symbols[Dimension.CATEGORY.ordinal()].idOf(event.getCategory());
+            int type = symbols[Dimension.EVENT_TYPE.ordinal()].idOf(event.getEventType());
+            int actor = symbols[Dimension.ACTOR.ordinal()].idOf(event.getActorId());
+            LongLongMap counts = bucket.counts;
+            if (category != 0) {
+                counts.addTo(key(KIND_CATEGORY, category, 0), 1);
+            }
+            if (type != 0) {
+                counts.addTo(key(KIND_EVENT_TYPE, type, 0), 1);
+            }
+            if (actor != 0) {
+                counts.addTo(key(KIND_ACTOR, actor, 0), 1);
+                if (category != 0) {
+                    counts.addTo(key(KIND_CATEGORY_ACTOR, category, actor), 1);
+                }
+                if (type != 0) {
+                    counts.addTo(key(KIND_EVENT_TYPE_ACTOR, type, actor), 1);
+                }
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Events with {@code dim == value} in the buckets overlapping [from, to).
+     */
+    public long count(Dimension dim, String value, Instant from, Instant to) {
+        long stamp = lock.readLock();
+        try {
+            int id = symbols[dim.ordinal()].find(value);
+            return id == 0 ? 0 : sum(key(kindOf(dim), id, 0), from, to);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Events with {@code dim == value} performed by {@code actorId} in the buckets
+     * overlapping [from, to), e.g. (EVENT_TYPE, "login_success", member) for one member's
+     * sign-ins.
+     *
+     * @param dim CATEGORY or EVENT_TYPE
+     */
+    public long count(Dimension dim, String value, String actorId, Instant from, Instant to) {
+        long stamp = lock.readLock();
+        try {
+            int id = symbols[dim.ordinal()].find(value);
+            int actor = symbols[Dimension.ACTOR.ordinal()].find(actorId);
+            return id == 0 || actor == 0 ? 0 : sum(key(perActorKind(dim), id, actor), from, to);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Sliding window count: events with {@code dim == value} in the {@code window} ending at
+     * {@code end}, rounded out to whole buckets.
+     */
+    public long sliding(Dimension dim, String value, Duration window, Instant end) {
+        return count(dim, value, end.minus(window), end);
+    }
+
+    /**
+     * Tumbling window counts: one entry per bucket overlapping [from, to), oldest first.
+     *
+     * @return bucket start time to count of events with {@code dim == value}
+     */
+    public Map<Instant, Long> tumbling(Dimension dim, String value, Instant from, Instant to) {
+        Map<Instant, Long> series = new LinkedHashMap<>();
+        long stamp = lock.readLock();
+        try {
+            int id = symbols[dim.ordinal()].find(value);
+            long key = key(kindOf(dim), id, 0);
+            for (long b = firstBucket(from); b <= lastBucket(to); b++) {
+                Bucket bucket = live(b);
+                long n = bucket == null || id == 0 ? 0 : bucket.counts.get(key);
+                series.put(Instant.ofEpochSecond(b * bucketSeconds), n);
+            }
+        } finally {
+            lock.unlockRead(stamp);
+        }
+        return series;
+    }
+
+    /**
+     * The most frequent values of {@code dim} in the buckets overlapping [from, to).
+     *
+     * @return value to count, highest count first, at most {@code n} entries
+     */
+    public Map<String, Long> top(Dimension dim, Instant from, Instant to, int n) {
+        LongLongMap totals = new LongLongMap(64);
+        String[] names;
+        long stamp = lock.readLock();
+        try {
+            int kind = kindOf(dim);
+            for (long b = firstBucket(from); b <= lastBucket(to); b++) {
+                Bucket bucket = live(b);
+                if (bucket == null) {
+                    continue;
+                }
+                LongLongMap counts = bucket.counts;
+                for (int i = 0; i < counts.capacity(); i++) {
+                    long k = counts.keyAt(i);
+                    if (k != 0 && (int) (k >>> (2 * SYMBOL_BITS)) == kind) {
+                        totals.addTo(k, counts.valueAt(i));
+                    }
+                }
+            }
+            names = symbols[dim.ordinal()].snapshot();
+        } finally {
+            lock.unlockRead(stamp);
+        }
+        List<long[]> entries = new ArrayList<>(totals.size());
+        for (int i = 0; i < totals.capacity(); i++) {
+            long k = totals.keyAt(i);
+            if (k != 0) {
+                entries.add(new long[]{(k >>> SYMBOL_BITS) & SYMBOL_MASK, totals.valueAt(i)});
+            }
+        }
+        entries.sort((a, b) -> Long.compare(b[1], a[1]));
+        Map<String, Long> result = new LinkedHashMap<>();
+        for (int i = 0; i < Math.min(n, entries.size()); i++) {
+            result.put(names[(int) entries.get(i)[0]], entries.get(i)[1]);
+        }
+        return result;
+    }
+
+    /**
+     * @return all events counted in the buckets overlapping [from, to)
+     */
+    public long total(Instant from, Instant to) {
+        long stamp = lock.readLock();
+        try {
+            long n = 0;
+            for (long b = firstBucket(from); b <= lastBucket(to); b++) {
+                Bucket bucket = live(b);
+                if (bucket != null) {
+                    n += bucket.total;
+                }
+            }
+            return n;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * @return events counted since creation (including ones whose buckets have rolled off)
+     */
+    public long getEventCount() {
+        long stamp = lock.readLock();
+        try {
+            return eventCount;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * @return events ignored because they had no timestamp or were older than the ring
+     */
+    public long getDroppedCount() {
+        long stamp = lock.readLock();
+        try {
+            return droppedCount;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    public Duration getBucketSize() {
+        return Duration.ofSeconds(bucketSeconds);
+    }
+
+    /** Bucket for {@code index}, recycling the ring slot of an expired bucket; null if too old. */
+    private Bucket bucketFor(long index) {
+        if (newestBucket != Long.MIN_VALUE && index <= newestBucket - ring.length) {
+            return null;
+        }
+        if (index > newestBucket) {
+            newestBucket = index;
+        }
+        int slot = (int) Math.floorMod(index, (long) ring.length);
+        Bucket bucket = ring[slot];
+        if (bucket == null) {
+            bucket = new Bucket();
+            ring[slot] = bucket;
+        } else if (bucket.index != index) {
+            bucket.counts.clear();
+            bucket.total = 0;
+        }
+        bucket.index = index;
+        return bucket;
+    }
+
+    /** Bucket {@code index} if it is still held. */
+    private Bucket live(long index) {
+        Bucket bucket = ring[(int) Math.floorMod(index, (long) ring.length)];
+        return bucket != null && bucket.index == index ? bucket : null;
+    }
+
+    private long firstBucket(Instant from) {
+        long first = Math.floorDiv(from.getEpochSecond(), bucketSeconds);
+        // nothing older than the ring is held
+        return newestBucket == Long.MIN_VALUE ? first : Math.max(first, newestBucket - ring.length + 1);
+    }
+
+    private long lastBucket(Instant to) {
+        // [from, to) with to exclusive
+        long last = Math.floorDiv(to.getEpochSecond() - 1, bucketSeconds);
+        return newestBucket == Long.MIN_VALUE ? Long.MIN_VALUE : Math.min(last, newestBucket);
+    }
+
+    private long sum(long key, Instant from, Instant to) {
+        long n = 0;
+        for (long b = firstBucket(from); b <= lastBucket(to); b++) {
+            Bucket bucket = live(b);
+            if (bucket != null) {
+                n += bucket.counts.get(key);
+            }
+        }
+        return n;
+    }
+
+    private static long key(int kind, int first, int second) {
+        return ((long) kind << (2 * SYMBOL_BITS)) | ((long) first << SYMBOL_BITS) | second;
+    }
+
+    private static int kindOf(Dimension dim) {
+        switch (dim) {
+            case CATEGORY:
+                return KIND_CATEGORY;
+            case EVENT_TYPE:
+                return KIND_EVENT_TYPE;
+            default:
+                return KIND_ACTOR;
+        }
+    }
+
+    private static int perActorKind(Dimension dim) {
+        switch (dim) {
+            case CATEGORY:
+                return KIND_CATEGORY_ACTOR;
+            case EVENT_TYPE:
+                return KIND_EVENT_TYPE_ACTOR;
+            default:
+                throw new IllegalArgumentException("No per-actor breakdown of " + dim);
+        }
+    }
+
+    private static final class Bucket {
+        private long index;
+        private long total;
+        private final LongLongMap counts = new LongLongMap(256);
+    }
+
+    /**
+     * Dense ids for the values of one dimension; 0 means "no value". Guarded by the
+     * aggregator's lock.
+     */
+    private static final class Symbols {
+        private final Map<String, Integer> ids = new HashMap<>();
+        private String[] names = new String[64];
+        private int next = 1;
+
+        /** Id of {@code value}, assigning a new one if needed; 0 for null or when full. */
+        int idOf(String value) {
+            if (value == null) {
+                return 0;
+            }
+            Integer id = ids.get(value);
+            if (id != null) {
+                return id;
+            }
+            if (next > SYMBOL_MASK) {
+                return 0;
+            }
+            if (next == names.length) {
+                String[] grown = new String[names.length * 2];
+                System.arraycopy(names, 0, grown, 0, names.length);
+                names = grown;
+            }
+            names[next] = value;
+            ids.put(value, next);
+            return next++;
+        }
+
+        /** Id of {@code value} if known, else 0. */
+        int find(String value) {
+            Integer id = value == null ? null : ids.get(value);
+            return id == null ? 0 : id;
+        }
+
+        String[] snapshot() {
+            return names.clone();
+        }
+    }
+}
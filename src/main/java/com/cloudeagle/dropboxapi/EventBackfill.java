@@ -0,0 +1,312 @@
+package com.cloudeagle.dropboxapi;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * EventBackfill
+ * <p>
+ * Pulls a long range of team_log/get_events history by splitting the requested time range
+ * into consecutive sub-windows and walking each window's cursor at the same time on a
+ * bounded worker pool.
+ * <p>
+ * The windows do not overlap, so the merged output is ordered by timestamp by emitting the
+ * windows in order: while the caller consumes window i, windows i+1..i+workers-1 are
+ * already being fetched. A semaphore with one permit per worker lets a window start only
+ * once the caller has drained a window before it, so at most {@code workers} windows are
+ * started and not yet consumed. Each buffers at most a few pages plus the one in flight, so
+ * memory stays bounded by workers x (pagesPerWindow + 1) pages regardless of the range
+ * length, however small the windows.
+ * <p>
+ * With a {@link PagingController} the page size of each window and the number of requests
+ * in flight adapt to latency, response size and throttling instead of being fixed.
+ * <p>
+ * Events inside one cursor come back from Dropbox oldest first, which is what makes the
+ * window-by-window merge a total timestamp order.
+ * <p>
+ * Usage:
+ * EventBackfill backfill = new EventBackfill(client, 8, Duration.ofDays(1));
+ * try (EventBackfill.EventStream events = backfill.fetch(tokens, start, end)) {
+ *     while (events.hasNext()) { ... }
+ * }
+ */
+public class EventBackfill {
+
+    private static final String GET_EVENTS = "team_log/get_events";
+    private static final String GET_EVENTS_CONTINUE = "team_log/get_events/continue";
+
+    /** Maximum page size accepted by team_log/get_events. */
+    private static final int MAX_LIMIT = 1000;
+    private static final int PAGES_PER_WINDOW = 4;
+    private static final Object END = new Object();
+    private static final AtomicInteger THREAD_COUNTER = new AtomicInteger();
+
+    private final DropboxClient client;
+    private final int workers;
+    private final Duration windowSize;
+    private final PagingController paging;
+
+    /**
+     * Constructor.
+     *
+     * @param client     low-level HTTP client
+     * @param workers    number of windows walked at the same time
+     * @param windowSize length of each sub-window
+     */
+    public EventBackfill(DropboxClient client, int workers, Duration windowSize) {
+        this(client, workers, windowSize, MAX_LIMIT);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param client     low-level HTTP client
+     * @param workers    number of windows walked at the same time
+     * @param windowSize length of each sub-window
+     * @param limit      page size for team_log/get_events (1..1000)
+     */
+    public EventBackfill(DropboxClient client, int workers, Duration windowSize, int limit) {
+        this(client, workers, windowSize, PagingController.fixed(Math.max(1, Math.min(limit, MAX_LIMIT)), Math.max(1, workers)));
+        if (workers < 1) {
+            throw new IllegalArgumentException("workers must be >= 1");
+        }
+    }
+
+    /**
+     * Constructor with adaptive page size and concurrency.
+     *
+     * @param client     low-level HTTP client
+     * @param windowSize length of each sub-window
+     * @param paging     sets each window's page size and the requests in flight; up to
+     *                   {@link PagingController#getMaxConcurrency()} windows are walked at once
+     */
+    public EventBackfill(DropboxClient client, Duration windowSize, PagingController paging) {
+        this(client, paging.getMaxConcurrency(), windowSize, paging);
+    }
+
+    private EventBackfill(DropboxClient client, int workers, Duration windowSize, PagingController paging) {
+        if (windowSize.isZero() || windowSize.isNegative()) {
+            throw new IllegalArgumentException("windowSize must be positive");
+        }
+        this.client = client;
+        this.workers = workers;
+        this.windowSize = windowSize;
+        this.paging = paging;
+    }
+
+    /**
+     * Start fetching every event in [start, end).
+     *
+     * @param tokens source of the OAuth2 bearer token, asked once per page
+     * @param start  inclusive start of the range
+     * @param end    exclusive end of the range
+     * @return stream of events ordered by timestamp; close it to stop the workers early
+     */
+    public EventStream fetch(TokenProvider tokens, Instant start, Instant end) {
+        if (!end.isAfter(start)) {
+            throw new IllegalArgumentException("end must be after start");
+        }
+        List<Window> windows = new ArrayList<>();
+        for (Instant from = start; from.isBefore(end); from = from.plus(windowSize)) {
+            Instant to = from.plus(windowSize);
+            windows.add(new Window(from, to.isAfter(end) ? end : to));
+        }
+
+        ExecutorService pool = Executors.newFixedThreadPool(Math.min(workers, windows.size()), r -> {
+            Thread t = new Thread(r, "dropbox-backfill-" + THREAD_COUNTER.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        EventStream stream = new EventStream(windows, pool, new Semaphore(workers), w -> walk(w, tokens));
+        stream.startWindows();
+        return stream;
+    }
+
+    private void walk(Window window, TokenProvider tokens) {
+        try {
+            // the limit is fixed for the whole cursor, so it is read once per window
+            int limit = Math.max(1, Math.min(paging.pageLimit(), MAX_LIMIT));
+            JSONObject body = new JSONObject();
+            body.put("limit", limit);
+            JSONObject time = new JSONObject();
+            time.put("start_time", formatTime(window.start));
+            time.put("end_time", formatTime(window.end));
+            body.put("time", time);
+
+            JSONObject page = call(client.apiUrl(GET_EVENTS), body.toString(), tokens, limit);
+            while (true) {
+                JSONArray events = page.optJSONArray("events");
+                if (events != null && events.length() > 0) {
+                    window.pages.put(events);
+                }
+                String cursor = page.optString("cursor", null);
+                if (!page.optBoolean("has_more", false) || cursor == null) {
+                    break;
+                }
+                JSONObject next = new JSONObject();
+                next.put("cursor", cursor);
+                page = call(client.apiUrl(GET_EVENTS_CONTINUE), next.toString(), tokens, limit);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        } catch (Exception e) {
+            window.failure = e;
+        }
+        try {
+            window.pages.put(END);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * One page request, holding a {@link PagingController} slot only while it is in flight
+     * (never while a full window queue blocks the worker).
+     */
+    private JSONObject call(String url, String body, TokenProvider tokens, int limit)
+            throws IOException, InterruptedException {
+        paging.acquire();
+        DropboxClient.CallStats stats = new DropboxClient.CallStats();
+        long start = System.nanoTime();
+        JSONObject page;
+        try {
+            page = client.postJson(url, body, tokens, stats);
+        } catch (IOException | RuntimeException e) {
+            paging.releaseFailed(e instanceof IOException ? (IOException) e : new IOException(e));
+            throw e;
+        }
+        JSONArray events = page.optJSONArray("events");
+        paging.release(limit, events == null ? 0 : events.length(), System.nanoTime() - start, stats);
+        return page;
+    }
+
+    private static String formatTime(Instant instant) {
+        return instant.truncatedTo(ChronoUnit.SECONDS).toString();
+    }
+
+    private static final class Window {
+        private final Instant start;
+        private final Instant end;
+        private final BlockingQueue<Object> pages = new ArrayBlockingQueue<>(PAGES_PER_WINDOW);
+        private volatile Exception failure;
+
+        private Window(Instant start, Instant end) {
+            this.start = start;
+            this.end = end;
+        }
+    }
+
+    /**
+     * Ordered event stream produced by {@link #fetch(TokenProvider, Instant, Instant)}.
+     */
+    public static final class EventStream implements Iterator<JSONObject>, Closeable {
+
+        private final List<Window> windows;
+        private final ExecutorService pool;
+        private final Semaphore ahead;
+        private final Consumer<Window> walker;
+        private int started;
+        private int windowIndex;
+        private JSONArray current;
+        private int index;
+
+        private EventStream(List<Window> windows, ExecutorService pool, Semaphore ahead, Consumer<Window> walker) {
+            this.windows = windows;
+            this.pool = pool;
+            this.ahead = ahead;
+            this.walker = walker;
+        }
+
+        /**
+         * Start the next windows in order while permits are free. Windows start in order, so
+         * the window being consumed is always running or finished and a full queue can never
+         * deadlock the workers.
+         */
+        private void startWindows() {
+            while (started < windows.size() && ahead.tryAcquire()) {
+                Window window = windows.get(started++);
+                pool.execute(() -> walker.accept(window));
+            }
+            if (started == windows.size()) {
+                pool.shutdown();
+            }
+        }
+
+        /**
+         * @throws UncheckedIOException if fetching a window failed
+         */
+        @Override
+        public boolean hasNext() {
+            while ((current == null || index >= current.length()) && windowIndex < windows.size()) {
+                Window window = windows.get(windowIndex);
+                Object item = take(window);
+                if (item == END) {
+                    Exception e = window.failure;
+                    if (e != null) {
+                        close();
+                        throw e instanceof IOException
+                                ? new UncheckedIOException((IOException) e)
+                                : new UncheckedIOException(new IOException(e.getMessage(), e));
+                    }
+                    windowIndex++;
+                    current = null;
+                    // the drained window's permit lets the next one start
+                    ahead.release();
+                    startWindows();
+                } else {
+                    current = (JSONArray) item;
+                    index = 0;
+                }
+            }
+            return current != null && index < current.length();
+        }
+
+        @Override
+        public JSONObject next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return current.getJSONObject(index++);
+        }
+
+        /**
+         * Stop all workers and drop any buffered pages.
+         */
+        @Override
+        public void close() {
+            started = windows.size();
+            windowIndex = windows.size();
+            current = null;
+            pool.shutdownNow();
+        }
+
+        private Object take(Window window) {
+            try {
+                return window.pages.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                close();
+                throw new UncheckedIOException(new IOException("Interrupted while waiting for events", e));
+            }
+        }
+    }
+}
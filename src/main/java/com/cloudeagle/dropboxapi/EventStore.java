@@ -0,0 +1,209 @@
+package com.cloudeagle.dropboxapi;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * EventStore
+ * <p>
+ * Bounded in-memory window of recent {@link TeamEvent}s, ordered by time, for searches by
+ * time range and event type without an API call.
+ * <p>
+ * Readers work on an immutable {@link Snapshot}: a published array of sorted, non-overlapping
+ * chunks (one per appended page). An append builds a new chunk array that shares every
+ * existing chunk and publishes it with one volatile write, so a search never takes a lock
+ * and never sees a half-applied page. Appends are serialized among themselves.
+ * <p>
+ * Events older than {@code retention} (measured from the newest event) and, beyond
+ * {@code maxEvents}, the oldest events are dropped a whole chunk at a time, so the store may
+ * briefly hold up to one chunk more than {@code maxEvents}.
+ * <p>
+ * Usage:
+ * EventStore store = new EventStore(Duration.ofDays(7), 1_000_000);
+ * store.append(page);
+ * List&lt;TeamEvent&gt; logins = store.snapshot().search(from, to, "login_success", 100);
+ */
+public class EventStore {
+
+    private static final Comparator<TeamEvent> BY_TIME = Comparator.comparingLong(TeamEvent::getTimestampEpochSeconds);
+
+    private final long retentionSeconds;
+    private final int maxEvents;
+    private final Object writeLock = new Object();
+    private volatile Snapshot current = new Snapshot(new TeamEvent[0][]);
+
+    /**
+     * @param retention how far back from the newest event events are kept
+     * @param maxEvents upper bound of events kept
+     */
+    public EventStore(Duration retention, int maxEvents) {
+        this.retentionSeconds = Math.max(1, retention.getSeconds());
+        this.maxEvents = Math.max(1, maxEvents);
+    }
+
+    /**
+     * @return the current contents; never changes once returned
+     */
+    public Snapshot snapshot() {
+        return current;
+    }
+
+    /**
+     * Add a batch of events, e.g. one get_events page.
+     *
+     * @param events new events in any order; events without a timestamp are ignored
+     */
+    public void append(List<TeamEvent> events) {
+        List<TeamEvent> valid = new ArrayList<>(events.size());
+        for (TeamEvent e : events) {
+            if (e != null && e.getTimestampEpochSeconds() > 0) {
+                valid.add(e);
+            }
+        }
+        if (valid.isEmpty()) {
+            return;
+        }
+        TeamEvent[] chunk = valid.toArray(new TeamEvent[0]);
+        Arrays.sort(chunk, BY_TIME);
+        synchronized (writeLock) {
+            TeamEvent[][] chunks = current.chunks;
+            TeamEvent[][] next;
+            if (chunks.length == 0 || last(chunks[chunks.length - 1]) <= chunk[0].getTimestampEpochSeconds()) {
+                next = Arrays.copyOf(chunks, chunks.length + 1);
+                next[chunks.length] = chunk;
+            } else {
+                // out-of-order batch (e.g. a page holding events older than the newest stored one):
+                // merge it into the chunks it overlaps, which are normally just the newest one
+                int from = chunks.length;
+                while (from > 0 && last(chunks[from - 1]) > chunk[0].getTimestampEpochSeconds()) {
+                    from--;
+                }
+                List<TeamEvent> merged = new ArrayList<>(Arrays.asList(chunk));
+                for (int i = from; i < chunks.length; i++) {
+                    merged.addAll(Arrays.asList(chunks[i]));
+                }
+                TeamEvent[] tail = merged.toArray(new TeamEvent[0]);
+                Arrays.sort(tail, BY_TIME);
+                next = Arrays.copyOf(chunks, from + 1);
+                next[from] = tail;
+            }
+            current = new Snapshot(trim(next));
+        }
+    }
+
+    /** Drop leading chunks that are past retention or over the size bound. */
+    private TeamEvent[][] trim(TeamEvent[][] chunks) {
+        long cutoff = last(chunks[chunks.length - 1]) - retentionSeconds;
+        long size = 0;
+        for (TeamEvent[] c : chunks) {
+            size += c.length;
+        }
+        int drop = 0;
+        while (drop < chunks.length - 1 && (last(chunks[drop]) < cutoff || size - chunks[drop].length >= maxEvents)) {
+            size -= chunks[drop].length;
+            drop++;
+        }
+        return drop == 0 ? chunks : Arrays.copyOfRange(chunks, drop, chunks.length);
+    }
+
+    private static long last(TeamEvent[] chunk) {
+        return chunk[chunk.length - 1].getTimestampEpochSeconds();
+    }
+
+    /**
+     * Immutable view of the store at one point in time.
+     */
+    public static final class Snapshot {
+        private final TeamEvent[][] chunks;
+        private final int size;
+
+        private Snapshot(TeamEvent[][] chunks) {
+            this.chunks = chunks;
+            int n = 0;
+            for (TeamEvent[] c : chunks) {
+                n += c.length;
+            }
+            this.size = n;
+        }
+
+        public int size() {
+            return size;
+        }
+
+        /**
+         * @return timestamp of the oldest event kept, or null if empty
+         */
+        public Instant oldest() {
+            return chunks.length == 0 ? null : Instant.ofEpochSecond(chunks[0][0].getTimestampEpochSeconds());
+        }
+
+        /**
+         * @return timestamp of the newest event kept, or null if empty
+         */
+        public Instant newest() {
+            return chunks.length == 0 ? null : Instant.ofEpochSecond(last(chunks[chunks.length - 1]));
+        }
+
+        /**
+         * Events in [from, to), oldest first.
+         *
+         * @param from      inclusive lower bound, or null for the oldest event kept
+         * @param to        exclusive upper bound, or null for no bound
+         * @param eventType event type to match (e.g. "login_success"), or null for any
+         * @param limit     maximum number of events returned
+         * @return matching events
+         */
+        public List<TeamEvent> search(Instant from, Instant to, String eventType, int limit) {
+            long lo = from == null ? Long.MIN_VALUE : from.getEpochSecond();
+            long hi = to == null ? Long.MAX_VALUE : to.getEpochSecond();
+            List<TeamEvent> result = new ArrayList<>(Math.min(Math.max(0, limit), 1024));
+            int c = firstChunkEndingAtOrAfter(lo);
+            int i = c < chunks.length ? firstAtOrAfter(chunks[c], lo) : 0;
+            for (; c < chunks.length; c++, i = 0) {
+                TeamEvent[] chunk = chunks[c];
+                for (; i < chunk.length; i++) {
+                    TeamEvent e = chunk[i];
+                    if (e.getTimestampEpochSeconds() >= hi || result.size() >= limit) {
+                        return result;
+                    }
+                    if (eventType == null || eventType.equals(e.getEventType())) {
+                        result.add(e);
+                    }
+                }
+            }
+            return result;
+        }
+
+        private int firstChunkEndingAtOrAfter(long ts) {
+            int lo = 0;
+            int hi = chunks.length;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (last(chunks[mid]) < ts) {
+                    lo = mid + 1;
+                } else {
+                    hi = mid;
+                }
+            }
+            return lo;
+        }
+
+        private static int firstAtOrAfter(TeamEvent[] chunk, long ts) {
+            int lo = 0;
+            int hi = chunk.length;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (chunk[mid].getTimestampEpochSeconds() < ts) {
+                    lo = mid + 1;
+                } else {
+                    hi = mid;
+                }
+            }
+            return lo;
+        }
+    }
+}
@@ -0,0 +1,201 @@
+package com.cloudeagle.dropboxapi;
+
+import org.json.JSONObject;
+
+import java.io.Flushable;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.function.Consumer;
+
+/**
+ * EventSync
+ * <p>
+ * Incremental sync of team_log/get_events. Progress is kept in a {@link SyncCheckpoint}
+ * that is saved after every page, so a restarted sync resumes from the stored cursor and
+ * only moves events that arrived since the previous run. A handler that buffers events
+ * passes its buffer as the {@code beforeCheckpoint} flushable, which is flushed before each
+ * save, so the checkpoint never gets ahead of what was actually written.
+ * <p>
+ * If the stored cursor has expired (Dropbox answers get_events/continue with a "reset"
+ * error), the sync restarts from the high-water timestamp instead of the whole log. Events
+ * that share the high-water second may then be delivered again.
+ */
+public class EventSync {
+
+    private static final String GET_EVENTS = "team_log/get_events";
+    private static final String GET_EVENTS_CONTINUE = "team_log/get_events/continue";
+    private static final int PAGE_LIMIT = 1000;
+
+    private final DropboxClient client;
+    private final Path checkpointFile;
+
+    /**
+     * @param client         low-level HTTP client
+     * @param checkpointFile where the cursor and high-water timestamp are kept between runs
+     */
+    public EventSync(DropboxClient client, Path checkpointFile) {
+        this.client = client;
+        this.checkpointFile = checkpointFile;
+    }
+
+    /**
+     * Pull every event newer than the stored checkpoint.
+     *
+     * @param tokens  source of the OAuth2 bearer token
+     * @param handler receives each new event, oldest first
+     * @return number of events handed to the handler
+     * @throws IOException on HTTP or checkpoint errors; progress up to the last full page is kept
+     */
+    public int sync(TokenProvider tokens, Consumer<JSONObject> handler) throws IOException {
+        return sync(tokens, handler, null);
+    }
+
+    /**
+     * Pull every event newer than the stored checkpoint.
+     *
+     * @param tokens           source of the OAuth2 bearer token
+     * @param handler          receives each new event, oldest first
+     * @param beforeCheckpoint flushed before every checkpoint save (e.g. the sink the handler
+     *                         writes to), or null
+     * @return number of events handed to the handler
+     * @throws IOException on HTTP, flush or checkpoint errors; progress up to the last full page is kept
+     */
+    public int sync(TokenProvider tokens, Consumer<JSONObject> handler, Flushable beforeCheckpoint) throws IOException {
+        Run run = start(tokens, handler, beforeCheckpoint);
+        while (run.step()) {
+            // one page per step
+        }
+        return run.getCount();
+    }
+
+    /**
+     * Prepare a sync that fetches one page per {@link Run#step()}, for callers that
+     * interleave many syncs (see {@link MultiTenantScheduler}).
+     *
+     * @param tokens  source of the OAuth2 bearer token
+     * @param handler receives each new event, oldest first
+     * @return the not yet started sync
+     */
+    public Run start(TokenProvider tokens, Consumer<JSONObject> handler) {
+        return start(tokens, handler, null);
+    }
+
+    /**
+     * Prepare a sync that fetches one page per {@link Run#step()}.
+     *
+     * @param tokens           source of the OAuth2 bearer token
+     * @param handler          receives each new event, oldest first
+     * @param beforeCheckpoint flushed before every checkpoint save, or null
+     * @return the not yet started sync
+     */
+    public Run start(TokenProvider tokens, Consumer<JSONObject> handler, Flushable beforeCheckpoint) {
+        return new Run(tokens, handler, beforeCheckpoint);
+    }
+
+    private JSONObject startFrom(String highWater, TokenProvider tokens, Progress progress) throws IOException {
+        JSONObject body = new JSONObject();
+        body.put("limit", PAGE_LIMIT);
+        if (highWater != null) {
+            JSONObject time = new JSONObject();
+            time.put("start_time", highWater);
+            body.put("time", time);
+        }
+        return client.postJsonStreaming(client.apiUrl(GET_EVENTS), body.toString(), tokens, "events", progress);
+    }
+
+    private JSONObject continueFrom(String cursor, TokenProvider tokens, Progress progress) throws IOException {
+        JSONObject body = new JSONObject();
+        body.put("cursor", cursor);
+        return client.postJsonStreaming(client.apiUrl(GET_EVENTS_CONTINUE), body.toString(), tokens, "events", progress);
+    }
+
+    private static boolean isCursorReset(IOException e) {
+        if (!(e instanceof HttpStatusException)) {
+            return false;
+        }
+        HttpStatusException http = (HttpStatusException) e;
+        return http.getStatusCode() == 409 && http.getResponseBody().contains("reset");
+    }
+
+    /**
+     * One incremental sync, advanced a page at a time. The checkpoint is saved after
+     * every page, once {@code beforeCheckpoint} has been flushed.
+     */
+    public final class Run implements SyncJob {
+        private final TokenProvider tokens;
+        private final Consumer<JSONObject> handler;
+        private final Flushable beforeCheckpoint;
+        private Progress progress;
+        private String cursor;
+
+        private Run(TokenProvider tokens, Consumer<JSONObject> handler, Flushable beforeCheckpoint) {
+            this.tokens = tokens;
+            this.handler = handler;
+            this.beforeCheckpoint = beforeCheckpoint;
+        }
+
+        @Override
+        public boolean step() throws IOException {
+            // events are streamed straight from the response body; the page envelope only
+            // carries the cursor and has_more flag
+            JSONObject page = progress == null ? first() : continueFrom(cursor, tokens, progress);
+            cursor = page.optString("cursor", null);
+            if (beforeCheckpoint != null) {
+                beforeCheckpoint.flush();
+            }
+            new SyncCheckpoint(cursor, progress.highWater).save(checkpointFile);
+            return page.optBoolean("has_more", false) && cursor != null;
+        }
+
+        /**
+         * @return number of events handed to the handler so far
+         */
+        public int getCount() {
+            return progress == null ? 0 : progress.count;
+        }
+
+        private JSONObject first() throws IOException {
+            SyncCheckpoint checkpoint = SyncCheckpoint.load(checkpointFile);
+            progress = new Progress(handler, checkpoint != null ? checkpoint.getHighWaterTimestamp() : null);
+            if (checkpoint == null || checkpoint.getCursor() == null) {
+                return startFrom(progress.highWater, tokens, progress);
+            }
+            try {
+                return continueFrom(checkpoint.getCursor(), tokens, progress);
+            } catch (IOException e) {
+                if (!isCursorReset(e)) {
+                    throw e;
+                }
+                return startFrom(progress.highWater, tokens, progress);
+            }
+        }
+    }
+
+    /**
+     * Forwards new events to the handler and tracks the high-water timestamp.
+     */
+    private static final class Progress implements Consumer<JSONObject> {
+        private final Consumer<JSONObject> handler;
+        private String highWater;
+        private int count;
+
+        private Progress(Consumer<JSONObject> handler, String highWater) {
+            this.handler = handler;
+            this.highWater = highWater;
+        }
+
+        @Override
+        public void accept(JSONObject ev) {
+            String ts = ev.optString("timestamp", null);
+            // ISO-8601 UTC timestamps compare correctly as strings
+            if (ts != null && highWater != null && ts.compareTo(highWater) < 0) {
+                return;
+            }
+            handler.accept(ev);
+            count++;
+            if (ts != null && (highWater == null || ts.compareTo(highWater) > 0)) {
+                highWater = ts;
+            }
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package com.cloudeagle.dropboxapi;
+
+import java.io.IOException;
+
+/**
+ * HttpStatusException
+ * <p>
+ * IOException raised for a non-2xx Dropbox response. Keeps the status code and response
+ * body so callers can react to specific errors (expired token, cursor reset, throttling).
+ */
+public class HttpStatusException extends IOException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final int statusCode;
+    private final String responseBody;
+    private final long retryAfterSeconds;
+
+    public HttpStatusException(int statusCode, String responseBody) {
+        this(statusCode, responseBody, -1);
+    }
+
+    /**
+     * @param statusCode        HTTP status
+     * @param responseBody      response body text
+     * @param retryAfterSeconds value of the Retry-After header, or -1 if absent
+     */
+    public HttpStatusException(int statusCode, String responseBody, long retryAfterSeconds) {
+        super("HTTP " + statusCode + ": " + responseBody);
+        this.statusCode = statusCode;
+        this.responseBody = responseBody;
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public int getStatusCode() {
+        return statusCode;
+    }
+
+    public String getResponseBody() {
+        return responseBody;
+    }
+
+    /**
+     * @return Retry-After delay in seconds, or -1 if the response had none
+     */
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
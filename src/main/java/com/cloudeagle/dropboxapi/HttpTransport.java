@@ -0,0 +1,132 @@
+package com.cloudeagle.dropboxapi;
+
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+
+import java.util.Arrays;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * HttpTransport
+ * <p>
+ * The single OkHttpClient shared by {@link AuthService} and {@link DropboxClient}, so every
+ * call reuses one connection pool and one dispatcher instead of each service opening its
+ * own sockets.
+ * <p>
+ * Tunables: connection pool size and keep-alive, dispatcher limits (max requests in flight
+ * overall and per host), connect/read timeouts. HTTP/2 is negotiated where the server
+ * supports it, which multiplexes concurrent calls to api.dropboxapi.com over few sockets.
+ * <p>
+ * Usage:
+ * HttpTransport transport = HttpTransport.fromProperties(cfg);
+ * DropboxClient client = new DropboxClient(transport);
+ */
+public class HttpTransport {
+
+    private static final HttpTransport SHARED = new Builder().build();
+
+    private final OkHttpClient httpClient;
+
+    private HttpTransport(OkHttpClient httpClient) {
+        this.httpClient = httpClient;
+    }
+
+    /**
+     * @return process-wide transport with default settings
+     */
+    public static HttpTransport shared() {
+        return SHARED;
+    }
+
+    /**
+     * Build a transport from "http.*" properties; missing keys keep their defaults.
+     * Keys: http.max_idle_connections, http.keep_alive_seconds, http.max_requests,
+     * http.max_requests_per_host, http.connect_timeout_seconds, http.read_timeout_seconds.
+     *
+     * @param cfg configuration (e.g. config.properties)
+     * @return configured transport
+     */
+    public static HttpTransport fromProperties(Properties cfg) {
+        Builder b = new Builder();
+        b.maxIdleConnections(intProp(cfg, "http.max_idle_connections", b.maxIdleConnections));
+        b.keepAliveSeconds(intProp(cfg, "http.keep_alive_seconds", (int) b.keepAliveSeconds));
+        b.maxRequests(intProp(cfg, "http.max_requests", b.maxRequests));
+        b.maxRequestsPerHost(intProp(cfg, "http.max_requests_per_host", b.maxRequestsPerHost));
+        b.connectTimeoutSeconds(intProp(cfg, "http.connect_timeout_seconds", (int) b.connectTimeoutSeconds));
+        b.readTimeoutSeconds(intProp(cfg, "http.read_timeout_seconds", (int) b.readTimeoutSeconds));
+        return b.build();
+    }
+
+    /**
+     * @return the shared OkHttp client
+     */
+    public OkHttpClient client() {
+        return httpClient;
+    }
+
+    private static int intProp(Properties cfg, String key, int def) {
+        String v = cfg.getProperty(key);
+        return v == null || v.trim().isEmpty() ? def : Integer.parseInt(v.trim());
+    }
+
+    /**
+     * Builder for {@link HttpTransport}.
+     */
+    public static final class Builder {
+        private int maxIdleConnections = 16;
+        private long keepAliveSeconds = 300;
+        private int maxRequests = 128;
+        private int maxRequestsPerHost = 32;
+        private long connectTimeoutSeconds = 15;
+        private long readTimeoutSeconds = 30;
+
+        public Builder maxIdleConnections(int n) {
+            this.maxIdleConnections = n;
+            return this;
+        }
+
+        public Builder keepAliveSeconds(long seconds) {
+            this.keepAliveSeconds = seconds;
+            return this;
+        }
+
+        public Builder maxRequests(int n) {
+            this.maxRequests = n;
+            return this;
+        }
+
+        public Builder maxRequestsPerHost(int n) {
+            this.maxRequestsPerHost = n;
+            return this;
+        }
+
+        public Builder connectTimeoutSeconds(long seconds) {
+            this.connectTimeoutSeconds = seconds;
+            return this;
+        }
+
+        public Builder readTimeoutSeconds(long seconds) {
+            this.readTimeoutSeconds = seconds;
+            return this;
+        }
+
+        public HttpTransport build() {
+            Dispatcher dispatcher = new Dispatcher();
+            dispatcher.setMaxRequests(maxRequests);
+            dispatcher.setMaxRequestsPerHost(maxRequestsPerHost);
+
+            OkHttpClient client = new OkHttpClient.Builder()
+                    .connectionPool(new ConnectionPool(maxIdleConnections, keepAliveSeconds, TimeUnit.SECONDS))
+                    .dispatcher(dispatcher)
+                    .protocols(Arrays.asList(Protocol.HTTP_2, Protocol.HTTP_1_1))
+                    .connectTimeout(connectTimeoutSeconds, TimeUnit.SECONDS)
+                    .readTimeout(readTimeoutSeconds, TimeUnit.SECONDS)
+                    .retryOnConnectionFailure(true)
+                    .build();
+            return new HttpTransport(client);
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package com.cloudeagle.dropboxapi;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.json.JSONTokener;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.function.Consumer;
+
+/**
+ * JsonRecordReader
+ * <p>
+ * Incremental parser for Dropbox page responses such as
+ * {"members": [...], "cursor": "...", "has_more": true}.
+ * <p>
+ * The response is read from a {@link Reader} one token at a time. Each element of the record
+ * array is parsed into its own small JSONObject and handed to the caller straight away, so
+ * neither the body text nor the full array is ever held in memory. Every other top-level
+ * field (cursor, has_more, ...) is collected into a small envelope object that is returned
+ * at the end.
+ */
+public final class JsonRecordReader {
+
+    private JsonRecordReader() {
+    }
+
+    /**
+     * Parse a page response, streaming the records of {@code arrayKey} to {@code handler}.
+     *
+     * @param reader   response body
+     * @param arrayKey name of the record array (e.g. "members" or "events")
+     * @param handler  receives each record in order
+     * @return the remaining top-level fields of the response
+     * @throws IOException if the body is not a JSON object or cannot be read
+     */
+    public static JSONObject read(Reader reader, String arrayKey, Consumer<JSONObject> handler) throws IOException {
+        JSONTokener tokener = new JSONTokener(reader);
+        JSONObject envelope = new JSONObject();
+        try {
+            expect(tokener, '{');
+            if (tokener.nextClean() == '}') {
+                return envelope;
+            }
+            tokener.back();
+            while (true) {
+                Object key = tokener.nextValue();
+                if (!(key instanceof String)) {
+                    throw tokener.syntaxError("Expected a field name");
+                }
+                expect(tokener, ':');
+                if (arrayKey.equals(key)) {
+                    readArray(tokener, handler);
+                } else {
+                    envelope.put((String) key, tokener.nextValue());
+                }
+                char c = tokener.nextClean();
+                if (c == '}') {
+                    return envelope;
+                }
+                if (c != ',') {
+                    throw tokener.syntaxError("Expected ',' or '}'");
+                }
+            }
+        } catch (JSONException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException("Invalid JSON response: " + e.getMessage(), e);
+        }
+    }
+
+    private static void readArray(JSONTokener tokener, Consumer<JSONObject> handler) {
+        char c = tokener.nextClean();
+        if (c == 'n') {
+            tokener.back();
+            tokener.nextValue(); // null
+            return;
+        }
+        if (c != '[') {
+            throw tokener.syntaxError("Expected '['");
+        }
+        if (tokener.nextClean() == ']') {
+            return;
+        }
+        tokener.back();
+        while (true) {
+            Object value = tokener.nextValue();
+            if (!(value instanceof JSONObject)) {
+                throw tokener.syntaxError("Expected a JSON object record");
+            }
+            handler.accept((JSONObject) value);
+            c = tokener.nextClean();
+            if (c == ']') {
+                return;
+            }
+            if (c != ',') {
+                throw tokener.syntaxError("Expected ',' or ']'");
+            }
+        }
+    }
+
+    private static void expect(JSONTokener tokener, char expected) {
+        if (tokener.nextClean() != expected) {
+            throw tokener.syntaxError("Expected '" + expected + "'");
+        }
+    }
+}
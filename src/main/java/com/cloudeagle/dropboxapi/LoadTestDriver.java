@@ -0,0 +1,145 @@
+package com.cloudeagle.dropboxapi;
+
+import org.json.JSONObject;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * LoadTestDriver
+ * <p>
+ * Runs many full syncs (token exchange, team info, every member, every event) against an
+ * embedded {@link DropboxSimulator} and reports throughput plus p50/p99 sync latency.
+ * <p>
+ * Run:
+ * java -cp target/cloudeagle-dropbox-api-assignment-1.0.0.jar com.cloudeagle.dropboxapi.LoadTestDriver \
+ *     members=5000 events=200000 syncs=20 concurrency=4 latency_ms=20 jitter_ms=30 p429=0.01 p5xx=0.01
+ * Add adaptive=true to let a {@link PagingController} pick the backfill page size and
+ * concurrency (up to backfill_workers) instead of fixed values.
+ */
+public class LoadTestDriver {
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> opts = parseArgs(args);
+        int members = Integer.parseInt(opts.getOrDefault("members", "5000"));
+        long events = Long.parseLong(opts.getOrDefault("events", "100000"));
+        int syncs = Integer.parseInt(opts.getOrDefault("syncs", "10"));
+        int concurrency = Integer.parseInt(opts.getOrDefault("concurrency", "4"));
+        int backfillWorkers = Integer.parseInt(opts.getOrDefault("backfill_workers", "4"));
+        double rps = Double.parseDouble(opts.getOrDefault("rps", "500"));
+        boolean adaptive = Boolean.parseBoolean(opts.getOrDefault("adaptive", "false"));
+
+        DropboxSimulator.Builder sim = new DropboxSimulator.Builder()
+                .members(members)
+                .events(events)
+                .latencyMillis(Long.parseLong(opts.getOrDefault("latency_ms", "10")),
+                        Long.parseLong(opts.getOrDefault("jitter_ms", "10")))
+                .throttleRate(Double.parseDouble(opts.getOrDefault("p429", "0")), 1)
+                .serverErrorRate(Double.parseDouble(opts.getOrDefault("p5xx", "0")));
+
+        try (DropboxSimulator simulator = sim.build()) {
+            DropboxEndpoints endpoints = DropboxEndpoints.of(simulator.baseUrl());
+            HttpTransport transport = new HttpTransport.Builder().build();
+            DropboxClient client = new DropboxClient(transport,
+                    new RequestScheduler(rps, (int) Math.max(1, rps), 8, 50, 2_000), endpoints);
+            AuthService auth = new AuthService("sim-client", "sim-secret", "http://localhost/callback", "",
+                    transport, endpoints);
+            DropboxService service = new DropboxService(client);
+            Duration window = Duration.ofSeconds(Math.max(1, (simulator.eventsEnd().getEpochSecond()
+                    - simulator.eventsStart().getEpochSecond()) / Math.max(1, backfillWorkers * 2)));
+            PagingController paging = adaptive
+                    ? new PagingController.Builder().concurrency(1, backfillWorkers).build() : null;
+            EventBackfill backfill = paging != null
+                    ? new EventBackfill(client, window, paging)
+                    : new EventBackfill(client, backfillWorkers, window);
+
+            AtomicLong records = new AtomicLong();
+            ExecutorService pool = Executors.newFixedThreadPool(concurrency);
+            List<Future<Long>> results = new ArrayList<>();
+            long start = System.nanoTime();
+            for (int i = 0; i < syncs; i++) {
+                results.add(pool.submit(() -> {
+                    long t0 = System.nanoTime();
+                    JSONObject token = auth.exchangeCodeForToken("sim-code");
+                    try (TokenManager tokens = new TokenManager(auth, token.getString("refresh_token"),
+                            token.getString("access_token"), token.getLong("expires_in"))) {
+                        client.postJson(client.apiUrl("team/get_info"), null, tokens);
+                        records.addAndGet(service.forEachMember(tokens, 1000, m -> { }));
+                        long n = 0;
+                        try (EventBackfill.EventStream stream = backfill.fetch(tokens, simulator.eventsStart(), simulator.eventsEnd())) {
+                            while (stream.hasNext()) {
+                                stream.next();
+                                n++;
+                            }
+                        }
+                        records.addAndGet(n);
+                    }
+                    return System.nanoTime() - t0;
+                }));
+            }
+            long[] latencies = new long[syncs];
+            int failed = 0;
+            for (int i = 0; i < syncs; i++) {
+                try {
+                    latencies[i] = results.get(i).get();
+                } catch (Exception e) {
+                    failed++;
+                    latencies[i] = Long.MAX_VALUE;
+                    System.err.println("Sync failed: " + e.getCause());
+                }
+            }
+            long wall = System.nanoTime() - start;
+            pool.shutdown();
+            Arrays.sort(latencies);
+
+            double seconds = wall / 1e9;
+            System.out.println("\n===== LOAD TEST =====");
+            System.out.printf(Locale.ROOT, "Team: %d members, %d events; %d syncs, concurrency %d%n",
+                    members, events, syncs, concurrency);
+            System.out.printf(Locale.ROOT, "Wall time: %.2f s, failed syncs: %d%n", seconds, failed);
+            System.out.printf(Locale.ROOT, "Throughput: %.2f syncs/s, %,.0f records/s, %,.0f requests/s%n",
+                    (syncs - failed) / seconds, records.get() / seconds, simulator.getRequestCount() / seconds);
+            System.out.printf(Locale.ROOT, "Sync latency: p50 %s, p99 %s%n",
+                    millis(percentile(latencies, 0.50)), millis(percentile(latencies, 0.99)));
+            System.out.printf(Locale.ROOT, "Injected: %d x 429, %d x 5xx out of %d requests%n",
+                    simulator.getThrottledCount(), simulator.getServerErrorCount(), simulator.getRequestCount());
+            if (paging != null) {
+                System.out.printf(Locale.ROOT, "Adaptive paging settled at limit %d, concurrency %d%n",
+                        paging.pageLimit(), paging.getConcurrency());
+            }
+            System.out.println("=====================");
+        }
+    }
+
+    static long percentile(long[] sorted, double p) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int idx = (int) Math.ceil(p * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(sorted.length - 1, idx))];
+    }
+
+    private static String millis(long nanos) {
+        return nanos == Long.MAX_VALUE ? "failed" : String.format(Locale.ROOT, "%.1f ms", nanos / 1e6);
+    }
+
+    private static Map<String, String> parseArgs(String[] args) {
+        Map<String, String> opts = new HashMap<>();
+        for (String arg : args) {
+            int idx = arg.indexOf('=');
+            if (idx > 0) {
+                opts.put(arg.substring(0, idx).replaceFirst("^--", ""), arg.substring(idx + 1));
+            }
+        }
+        return opts;
+    }
+}
@@ -0,0 +1,134 @@
+package com.cloudeagle.dropboxapi;
+
+import java.util.Arrays;
+
+/**
+ * LongLongMap
+ * <p>
+ * Open-addressing hash map from long to long with linear probing, for counters that are
+ * updated millions of times: no boxing, no entry objects, two flat arrays. Key 0 is reserved
+ * as the empty marker, so callers must never use it. Not thread-safe.
+ */
+final class LongLongMap {
+
+    private static final long EMPTY = 0L;
+    private static final double MAX_LOAD = 0.6;
+
+    private long[] keys;
+    private long[] values;
+    private int mask;
+    private int size;
+    private int resizeAt;
+
+    /**
+     * @param expected number of keys expected; the map grows beyond it when needed
+     */
+    LongLongMap(int expected) {
+        int cap = Integer.highestOneBit(Math.max(4, (int) (expected / MAX_LOAD)) - 1) << 1;
+        allocate(cap);
+    }
+
+    /**
+     * Add {@code delta} to the value of {@code key} (absent keys count as 0).
+     *
+     * @return the new value
+     */
+    long addTo(long key, long delta) {
+        int i = slot(key);
+        while (true) {
+            long k = keys[i];
+            if (k == key) {
+                return values[i] += delta;
+            }
+            if (k == EMPTY) {
+                keys[i] = key;
+                values[i] = delta;
+                if (++size > resizeAt) {
+                    rehash(keys.length << 1);
+                }
+                return delta;
+            }
+            i = (i + 1) & mask;
+        }
+    }
+
+    /**
+     * @return the value of {@code key}, or 0 if absent
+     */
+    long get(long key) {
+        int i = slot(key);
+        while (true) {
+            long k = keys[i];
+            if (k == key) {
+                return values[i];
+            }
+            if (k == EMPTY) {
+                return 0;
+            }
+            i = (i + 1) & mask;
+        }
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Remove every entry but keep the allocated arrays for reuse.
+     */
+    void clear() {
+        Arrays.fill(keys, EMPTY);
+        Arrays.fill(values, 0);
+        size = 0;
+    }
+
+    /**
+     * @return number of slots; iterate with {@link #keyAt(int)} and skip {@code 0} keys
+     */
+    int capacity() {
+        return keys.length;
+    }
+
+    long keyAt(int slot) {
+        return keys[slot];
+    }
+
+    long valueAt(int slot) {
+        return values[slot];
+    }
+
+    private int slot(long key) {
+        // fmix64 from MurmurHash3 spreads the packed keys over the whole table
+        long h = key;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return (int) h & mask;
+    }
+
+    private void allocate(int cap) {
+        keys = new long[cap];
+        values = new long[cap];
+        mask = cap - 1;
+        resizeAt = (int) (cap * MAX_LOAD);
+    }
+
+    private void rehash(int newCap) {
+        long[] oldKeys = keys;
+        long[] oldValues = values;
+        allocate(newCap);
+        for (int i = 0; i < oldKeys.length; i++) {
+            long k = oldKeys[i];
+            if (k != EMPTY) {
+                int j = slot(k);
+                while (keys[j] != EMPTY) {
+                    j = (j + 1) & mask;
+                }
+                keys[j] = k;
+                values[j] = oldValues[i];
+            }
+        }
+    }
+}
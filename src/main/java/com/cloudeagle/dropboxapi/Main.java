@@ -6,12 +6,28 @@ import org.slf4j.LoggerFactory;
 
 import java.awt.Desktop;
 import java.io.FileInputStream;
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.UncheckedIOException;
 import java.io.UnsupportedEncodingException;
+import java.net.InetAddress;
 import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Properties;
 import java.util.Scanner;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 
@@ -19,6 +35,17 @@ import java.util.concurrent.TimeoutException;
  * Main
  * Entry point for the CloudEagle Dropbox Business API demo.
  * Supports automatic local callback capture (recommended) and falls back to manual code paste.
+ * Pass "--sync-events" to sync team events incrementally from the last saved checkpoint.
+ * Pass "--export=&lt;dir&gt;" to write members and new events as gzip-compressed NDJSON files;
+ * add "--changes-only" to export only the members that changed since the last export (see {@link MemberSnapshotDiff}).
+ * Pass "--aggregate=&lt;hours&gt;" to print hourly event aggregates (see {@link EventAggregator}).
+ * Tokens are kept in an encrypted {@link TokenStore}, so later runs skip the browser flow;
+ * pass "--reauth" to authorize again.
+ * Pass "--no-cache" to refetch team info and members even if the cache (see {@link ResponseCache}) is fresh.
+ * Team info, members and events are fetched in parallel as a {@link SyncPlan}.
+ * Pass "--tenants=tenants.properties" to sync many teams at once (see {@link TenantConfig}); their members and
+ * events are exported under the --export directory (default "export"), one subdirectory per tenant.
+ * Pass "--serve" to keep syncing in the background and answer local queries (see {@link QueryServer}).
  */
 public class Main {
 
@@ -39,6 +66,13 @@ public class Main {
             return;
         }
 
+        // "--tenants=<file>" syncs every team listed in the file without any browser flow
+        String tenantsFile = argValue(args, "--tenants=");
+        if (tenantsFile != null) {
+            runTenants(cfg, Paths.get(tenantsFile), argValue(args, "--export="), logger);
+            return;
+        }
+
         String clientId = cfg.getProperty("dropbox.client_id");
         String clientSecret = cfg.getProperty("dropbox.client_secret");
         String redirectUri = cfg.getProperty("dropbox.redirect_uri", "https://oauth.pstmn.io/v1/callback");
@@ -49,92 +83,144 @@ public class Main {
             return;
         }
 
+        // "--sync-events" pulls only the events added since the last run
+        boolean incrementalSync = Arrays.asList(args).contains("--sync-events");
+        // "--export=<dir>" writes members and new events as gzip NDJSON files instead of printing them
+        String exportDir = argValue(args, "--export=");
+        // "--changes-only" (with --export) writes only members added, modified or removed since the last export
+        boolean changesOnly = Arrays.asList(args).contains("--changes-only");
+        // "--no-cache" ignores cached team info / members but still refreshes the cache
+        boolean bypassCache = Arrays.asList(args).contains("--no-cache");
+        // "--aggregate=<hours>" summarizes the recent audit log instead of printing sample rows
+        String aggregateHours = argValue(args, "--aggregate=");
+        // "--reauth" ignores stored tokens and runs the browser authorization again
+        boolean reauthorize = Arrays.asList(args).contains("--reauth");
+        // "--serve" keeps members and events in memory and answers local HTTP queries until stopped
+        boolean serve = Arrays.asList(args).contains("--serve");
+
         // If redirectUri is localhost, we will attempt automatic capture
         boolean useLocalCallback = redirectUri != null && redirectUri.startsWith("http://localhost");
 
-        AuthService authService = new AuthService(clientId.trim(), clientSecret.trim(), redirectUri.trim(), scopes.trim());
+        HttpTransport transport = HttpTransport.fromProperties(cfg);
+        DropboxEndpoints endpoints = DropboxEndpoints.fromProperties(cfg);
+        AuthService authService = new AuthService(clientId.trim(), clientSecret.trim(), redirectUri.trim(), scopes.trim(),
+                transport, endpoints);
 
-        DropboxClient client = new DropboxClient();
-        DropboxService service = new DropboxService(client);
+        DropboxClient client = new DropboxClient(transport, RequestScheduler.fromProperties(cfg), endpoints,
+                ClientMetrics.shared(), RequestHedger.fromProperties(cfg));
+        ResponseCache cache = ResponseCache.fromProperties(cfg);
+        cache.setBypass(bypassCache);
+        DropboxService service = new DropboxService(client, cache).withPaging(PagingController.fromProperties(cfg));
 
+        TokenStore tokenStore = TokenStore.fromProperties(cfg);
         String authUrl = authService.buildAuthorizationUrl("cloudeagle_state");
         String code = null;
 
         AuthHttpServer authServer = null;
         Scanner scanner = null;
+        TokenManager tokenManager = null;
+        MetricsServer metricsServer = null;
 
         try {
-            if (useLocalCallback) {
-                // parse port and path from redirectUri (basic)
-                URI ruri = new URI(redirectUri);
-                int port = ruri.getPort() == -1 ? 80 : ruri.getPort();
-                String path = ruri.getPath();
+            metricsServer = startMetricsServer(cfg, logger);
 
-                // start local server to capture the code
-                logger.info("Starting local HTTP server to capture OAuth callback at " + redirectUri);
-                authServer = new AuthHttpServer(port, path);
-                authServer.start();
+            // Fast path: a stored refresh token skips the browser flow entirely
+            TokenProvider tokens = null;
+            if (!reauthorize) {
+                tokenManager = resumeFromStore(tokenStore, authService, logger);
+                tokens = tokenManager;
+            }
+            if (tokens == null) {
+                if (useLocalCallback) {
+                    // parse port and path from redirectUri (basic)
+                    URI ruri = new URI(redirectUri);
+                    int port = ruri.getPort() == -1 ? 80 : ruri.getPort();
+                    String path = ruri.getPath();
 
-                logger.info("\nOpening browser for authorization. If browser does not open automatically, copy-paste the URL below:");
-                logger.info(authUrl);
+                    // start local server to capture the code
+                    logger.info("Starting local HTTP server to capture OAuth callback at " + redirectUri);
+                    authServer = new AuthHttpServer(port, path);
+                    authServer.start();
 
-                // try to open browser
-                try {
-                    if (Desktop.isDesktopSupported()) {
-                        Desktop.getDesktop().browse(new URI(authUrl));
-                    } else {
-                        logger.info("Desktop API not supported; please open the URL above manually.");
+                    logger.info("\nOpening browser for authorization. If browser does not open automatically, copy-paste the URL below:");
+                    logger.info(authUrl);
+
+                    // try to open browser
+                    try {
+                        if (Desktop.isDesktopSupported()) {
+                            Desktop.getDesktop().browse(new URI(authUrl));
+                        } else {
+                            logger.info("Desktop API not supported; please open the URL above manually.");
+                        }
+                    } catch (Exception ex) {
+                        logger.info("Unable to open browser automatically. Please open the URL above manually.");
+                    }
+
+                    // wait up to 120 seconds for the code
+                    try {
+                        code = authServer.waitForCode(120, TimeUnit.SECONDS);
+                        logger.info("Authorization code received automatically from the browser redirect.");
+                    } catch (TimeoutException te) {
+                        logger.error("Timed out waiting for authorization code via local callback (120s).");
+                        // will fall back to manual paste below
+                    } catch (ExecutionException | InterruptedException ee) {
+                        logger.error("Error while waiting for authorization code: " + ee.getMessage());
+                        // fall back to manual paste
                     }
-                } catch (Exception ex) {
-                    logger.info("Unable to open browser automatically. Please open the URL above manually.");
                 }
 
-                // wait up to 120 seconds for the code
-                try {
-                    code = authServer.waitForCode(120, TimeUnit.SECONDS);
-                    logger.info("Authorization code received automatically from the browser redirect.");
-                } catch (TimeoutException te) {
-                    logger.error("Timed out waiting for authorization code via local callback (120s).");
-                    // will fall back to manual paste below
-                } catch (ExecutionException | InterruptedException ee) {
-                    logger.error("Error while waiting for authorization code: " + ee.getMessage());
-                    // fall back to manual paste
+                // fallback: manual paste if code not captured automatically
+                if (code == null) {
+                    logger.info("\nIf the browser flow didn't complete, you can manually obtain the code.");
+                    logger.info("Open this URL in your browser:");
+                    logger.info(authUrl);
+                    logger.info("\nAfter allowing the app, you will be redirected to the redirect URI with ?code=<AUTH_CODE>");
+                    System.out.print("\nPaste the authorization code here: ");
+
+                    scanner = new Scanner(System.in);
+                    code = scanner.nextLine().trim();
+                    if (code.isEmpty()) {
+                        logger.error("No code provided. Exiting.");
+                        return;
+                    }
                 }
-            }
 
-            // fallback: manual paste if code not captured automatically
-            if (code == null) {
-                logger.info("\nIf the browser flow didn't complete, you can manually obtain the code.");
-                logger.info("Open this URL in your browser:");
-                logger.info(authUrl);
-                logger.info("\nAfter allowing the app, you will be redirected to the redirect URI with ?code=<AUTH_CODE>");
-                System.out.print("\nPaste the authorization code here: ");
+                // Exchange code for tokens
+                JSONObject tokenResponse = authService.exchangeCodeForToken(code);
+                String accessToken = tokenResponse.optString("access_token", null);
+                String refreshToken = tokenResponse.optString("refresh_token", null);
+                String scopeReturned = tokenResponse.optString("scope", null);
 
-                scanner = new Scanner(System.in);
-                code = scanner.nextLine().trim();
-                if (code.isEmpty()) {
-                    logger.error("No code provided. Exiting.");
+                logger.info("\nToken exchange successful.");
+                logger.info("Scopes returned: " + scopeReturned);
+                if (accessToken == null || accessToken.isEmpty()) {
+                    logger.info("No access token received. Exiting.");
                     return;
                 }
-            }
 
-            // Exchange code for tokens
-            JSONObject tokenResponse = authService.exchangeCodeForToken(code);
-            String accessToken = tokenResponse.optString("access_token", null);
-            String refreshToken = tokenResponse.optString("refresh_token", null);
-            String scopeReturned = tokenResponse.optString("scope", null);
+                // Without a refresh token the access token is used as-is until it expires
+                tokens = TokenProvider.of(accessToken);
+                if (refreshToken != null && !refreshToken.isEmpty()) {
+                    tokenManager = new TokenManager(authService, refreshToken, accessToken,
+                            tokenResponse.optLong("expires_in", 14400));
+                    tokens = tokenManager;
+                }
+            }
+            if (tokenManager != null && tokenStore != null) {
+                try {
+                    tokenManager.persistTo(tokenStore);
+                } catch (IOException e) {
+                    logger.error("Could not save tokens to " + tokenStore.getFile() + ": " + e.getMessage());
+                }
+            }
 
-            logger.info("\nToken exchange successful.");
-            logger.info("Scopes returned: " + scopeReturned);
-            if (accessToken == null || accessToken.isEmpty()) {
-                logger.info("No access token received. Exiting.");
+            if (serve) {
+                runServe(cfg, client, tokens, logger);
                 return;
             }
 
-            // Call  APIs
-            service.fetchTeamInfo(accessToken);
-            service.fetchAllUsers(accessToken);
-            service.fetchTeamEvents(accessToken);
+            // Call APIs: team info, members and events are independent, so they run as one parallel plan
+            runPlan(cfg, service, tokens, exportDir, incrementalSync, aggregateHours, changesOnly, logger);
 
         } catch (Exception ex) {
             logger.error("Error during OAuth or API calls: " + ex.getMessage());
@@ -147,6 +233,282 @@ public class Main {
             if (scanner != null) {
                 scanner.close();
             }
+            if (tokenManager != null) {
+                tokenManager.close();
+            }
+            if (metricsServer != null) {
+                metricsServer.stop();
+            }
+        }
+    }
+
+    /**
+     * Fetch team info, members and events concurrently as a {@link SyncPlan}. Each task prints
+     * into its own section of an {@link OrderedOutput}, so the sections appear in the usual
+     * order; a section streams straight to System.out once the ones before it are done.
+     * A per-task summary and the plan's critical path follow.
+     */
+    private static void runPlan(Properties cfg, DropboxService service, TokenProvider tokens, String exportDir,
+                                boolean incrementalSync, String aggregateHours, boolean changesOnly, Logger logger)
+            throws InterruptedException {
+        Duration timeout = Duration.ofSeconds(Long.parseLong(cfg.getProperty("plan.task_timeout_seconds", "300").trim()));
+        Path checkpointFile = Paths.get(cfg.getProperty("sync.checkpoint_file", "event-sync.checkpoint"));
+        OrderedOutput console = new OrderedOutput(System.out);
+        SyncPlan plan = new SyncPlan();
+
+        DropboxService teamInfo = service.withOutput(console.section("team_info"));
+        plan.add("team_info", timeout, inSection(console, "team_info", () -> teamInfo.fetchTeamInfo(tokens)));
+        DropboxService members = service.withOutput(console.section("members"));
+        DropboxService events = service.withOutput(console.section("events"));
+        SyncPlan.Task membersTask;
+        SyncPlan.Task eventsTask;
+        if (exportDir != null) {
+            Path dir = Paths.get(exportDir);
+            if (changesOnly) {
+                Path fingerprints = Paths.get(cfg.getProperty("sync.member_fingerprints_file", "member-fingerprints.bin"));
+                membersTask = () -> {
+                    MemberSnapshotDiff diff = members.exportMemberChanges(tokens, fingerprints, new NdjsonGzipSink(dir, "members"));
+                    if (diff != null) {
+                        logger.info("Exported member changes to " + dir.toAbsolutePath() + ": " + diff.getAdded() + " added, "
+                                + diff.getModified() + " modified, " + diff.getRemoved() + " removed, "
+                                + diff.getUnchanged() + " unchanged");
+                    }
+                };
+            } else {
+                membersTask = () -> logger.info("Exported "
+                        + members.exportMembers(tokens, new NdjsonGzipSink(dir, "members")) + " members to " + dir.toAbsolutePath());
+            }
+            eventsTask = () -> logger.info("Exported "
+                    + events.syncTeamEvents(tokens, checkpointFile, new NdjsonGzipSink(dir, "events"))
+                    + " new events to " + dir.toAbsolutePath());
+        } else {
+            membersTask = () -> members.fetchAllUsers(tokens);
+            if (incrementalSync) {
+                eventsTask = () -> events.syncTeamEvents(tokens, checkpointFile);
+            } else if (aggregateHours != null) {
+                Duration lookback = Duration.ofHours(Long.parseLong(aggregateHours.trim()));
+                eventsTask = () -> events.aggregateTeamEvents(tokens, lookback);
+            } else {
+                eventsTask = () -> events.fetchTeamEvents(tokens);
+            }
+        }
+        plan.add("members", timeout, inSection(console, "members", membersTask));
+        plan.add("events", timeout, inSection(console, "events", eventsTask));
+
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        try {
+            SyncPlan.Report report = plan.execute(executor);
+            // sections of tasks that timed out without finishing
+            console.finishAll();
+            logger.info(report.toString());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /** Wrap a plan task so its output section is marked finished when it ends. */
+    private static SyncPlan.Task inSection(OrderedOutput console, String section, SyncPlan.Task task) {
+        return () -> {
+            try {
+                task.run();
+            } finally {
+                console.finish(section);
+            }
+        };
+    }
+
+    /**
+     * Serve mode: sync members and events into memory on a {@link ServeSync} and answer
+     * queries on a {@link QueryServer} until the process is stopped.
+     */
+    private static void runServe(Properties cfg, DropboxClient client, TokenProvider tokens, Logger logger)
+            throws IOException, InterruptedException {
+        ServeSync sync = new ServeSync(client, tokens,
+                Duration.ofHours(Long.parseLong(cfg.getProperty("serve.event_lookback_hours", "168").trim())),
+                Integer.parseInt(cfg.getProperty("serve.max_events", "1000000").trim()));
+        // members not in the directory (e.g. removed ones) are looked up with team/members/get_info_v2
+        MemberEnricher enricher = Boolean.parseBoolean(cfg.getProperty("serve.enrich_events", "false").trim())
+                ? new MemberEnricher(client, tokens, sync.getDirectory(), 10_000, 10) : null;
+        QueryServer server = new QueryServer(
+                Integer.parseInt(cfg.getProperty("serve.port", "8088").trim()),
+                Integer.parseInt(cfg.getProperty("serve.threads", "4").trim()),
+                Integer.parseInt(cfg.getProperty("serve.queue_capacity", "64").trim()),
+                sync, enricher);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            server.stop();
+            if (enricher != null) {
+                enricher.close();
+            }
+            sync.close();
+        }, "serve-shutdown"));
+        sync.start(Duration.ofSeconds(Long.parseLong(cfg.getProperty("serve.members_refresh_seconds", "300").trim())),
+                Duration.ofSeconds(Long.parseLong(cfg.getProperty("serve.events_poll_seconds", "60").trim())));
+        server.start();
+        logger.info("Serving queries at http://localhost:" + server.getPort() + "/ (members, events, counts, status)");
+        // runs until the process is stopped; the shutdown hook stops the server and the sync
+        new CountDownLatch(1).await();
+    }
+
+    /**
+     * Resume from the token store: the stored access token is used while it is valid,
+     * otherwise the stored refresh token is exchanged for a new one right away.
+     *
+     * @return a ready token manager, or null if nothing usable is stored
+     */
+    private static TokenManager resumeFromStore(TokenStore store, AuthService authService, Logger logger) {
+        if (store == null) {
+            return null;
+        }
+        TokenStore.Tokens stored;
+        try {
+            stored = store.load();
+        } catch (IOException e) {
+            logger.error("Could not read token store " + store.getFile() + ": " + e.getMessage());
+            return null;
+        }
+        if (stored == null) {
+            return null;
+        }
+        TokenManager manager = new TokenManager(authService, stored.getRefreshToken(),
+                stored.getAccessToken(), stored.getExpiresInSeconds());
+        try {
+            manager.getAccessToken();
+            logger.info("Using stored tokens from " + store.getFile() + "; skipping browser authorization.");
+            return manager;
+        } catch (IOException e) {
+            manager.close();
+            logger.info("Stored refresh token could not be used (" + e.getMessage() + "); authorizing again.");
+            return null;
+        }
+    }
+
+    /**
+     * Start the Prometheus endpoint if metrics.port is set. It listens on localhost unless
+     * metrics.bind_address names another interface.
+     *
+     * @return the running server, or null if metrics are not exposed
+     */
+    private static MetricsServer startMetricsServer(Properties cfg, Logger logger) throws IOException {
+        String port = cfg.getProperty("metrics.port");
+        if (port == null || port.trim().isEmpty()) {
+            return null;
+        }
+        String bind = cfg.getProperty("metrics.bind_address", "").trim();
+        InetAddress address = bind.isEmpty() ? InetAddress.getLoopbackAddress() : InetAddress.getByName(bind);
+        MetricsServer server = new MetricsServer(address, Integer.parseInt(port.trim()), ClientMetrics.shared());
+        server.start();
+        logger.info("Serving metrics at http://" + address.getHostAddress() + ":" + server.getPort() + "/metrics");
+        return server;
+    }
+
+    /**
+     * Sync members and events of every tenant in {@code tenantsFile} on a shared
+     * {@link MultiTenantScheduler}. Event checkpoints are kept per tenant under sync.checkpoint_dir;
+     * members and events are exported as gzip NDJSON under &lt;exportDir&gt;/&lt;tenant&gt;
+     * (default directory "export").
+     */
+    private static void runTenants(Properties cfg, Path tenantsFile, String exportDir, Logger logger) {
+        Properties tenantProps = new Properties();
+        try (InputStream in = Files.newInputStream(tenantsFile)) {
+            tenantProps.load(in);
+        } catch (IOException e) {
+            logger.error("Failed to load tenants file " + tenantsFile + ": " + e.getMessage());
+            return;
+        }
+        List<TenantConfig> tenants = TenantConfig.loadAll(tenantProps);
+        Path checkpointDir = Paths.get(cfg.getProperty("sync.checkpoint_dir", "checkpoints"));
+        int concurrency = Integer.parseInt(cfg.getProperty("tenants.max_concurrency", "16").trim());
+        Path exportRoot = Paths.get(exportDir != null ? exportDir : "export");
+
+        HttpTransport transport = HttpTransport.fromProperties(cfg);
+        DropboxEndpoints endpoints = DropboxEndpoints.fromProperties(cfg);
+        DropboxClient client = new DropboxClient(transport, RequestScheduler.fromProperties(cfg), endpoints,
+                ClientMetrics.shared(), RequestHedger.fromProperties(cfg));
+        DropboxService service = new DropboxService(client);
+
+        List<TokenManager> tokenManagers = new ArrayList<>();
+        Map<String, CompletableFuture<String>> results = new LinkedHashMap<>();
+        try (MultiTenantScheduler scheduler = new MultiTenantScheduler(concurrency)) {
+            logger.info("Syncing " + tenants.size() + " tenants, " + concurrency + " concurrent steps"
+                    + (scheduler.usesVirtualThreads() ? " on virtual threads" : ""));
+            for (TenantConfig tenant : tenants) {
+                AuthService auth = new AuthService(tenant.getClientId(), tenant.getClientSecret(), "", "",
+                        transport, endpoints);
+                TokenManager tokens = new TokenManager(auth, tenant.getRefreshToken());
+                tokenManagers.add(tokens);
+                scheduler.registerTenant(tenant.getTenantId(), tenant.getMaxConcurrency());
+
+                Path dir = exportRoot.resolve(tenant.getTenantId());
+                NdjsonGzipSink memberSink;
+                NdjsonGzipSink eventSink;
+                try {
+                    memberSink = new NdjsonGzipSink(dir, "members");
+                    try {
+                        eventSink = new NdjsonGzipSink(dir, "events");
+                    } catch (IOException e) {
+                        try {
+                            closeSink(memberSink, e);
+                        } catch (UncheckedIOException suppressed) {
+                            e.addSuppressed(suppressed.getCause());
+                        }
+                        throw e;
+                    }
+                } catch (IOException e) {
+                    logger.error("Tenant " + tenant.getTenantId() + " failed: cannot export to " + dir + ": " + e.getMessage());
+                    continue;
+                }
+
+                DropboxService.MemberWalk members = service.memberJob(tokens, 1000, DropboxService.into(memberSink));
+                // the event sink is flushed before every checkpoint save, so no checkpointed event is lost
+                EventSync.Run events = new EventSync(client, checkpointDir.resolve(tenant.getTenantId() + ".checkpoint"))
+                        .start(tokens, DropboxService.into(eventSink), eventSink);
+                CompletableFuture<Void> m = scheduler.submit(tenant.getTenantId(), members)
+                        .whenComplete((v, error) -> closeSink(memberSink, error));
+                CompletableFuture<Void> e = scheduler.submit(tenant.getTenantId(), events)
+                        .whenComplete((v, error) -> closeSink(eventSink, error));
+                results.put(tenant.getTenantId(), CompletableFuture.allOf(m, e)
+                        .thenApply(v -> members.getCount() + " members, " + events.getCount() + " new events to " + dir));
+            }
+            for (Map.Entry<String, CompletableFuture<String>> r : results.entrySet()) {
+                try {
+                    logger.info("Tenant " + r.getKey() + ": " + r.getValue().get());
+                } catch (ExecutionException ex) {
+                    logger.error("Tenant " + r.getKey() + " failed: " + ex.getCause());
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    logger.error("Interrupted while waiting for tenant " + r.getKey() + ": " + ex);
+                    break;
+                }
+            }
+        } finally {
+            for (TokenManager tokens : tokenManagers) {
+                tokens.close();
+            }
+        }
+    }
+
+    /**
+     * Close a tenant's export sink once its job has ended. The sink of a failed job is aborted:
+     * the records it flushed before the failure, which an event checkpoint may already cover,
+     * are published and the rest is dropped.
+     */
+    private static void closeSink(RecordSink sink, Throwable failure) {
+        try {
+            if (failure != null) {
+                sink.abort();
+            }
+            sink.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static String argValue(String[] args, String prefix) {
+        for (String arg : args) {
+            if (arg.startsWith(prefix)) {
+                return arg.substring(prefix.length());
+            }
         }
+        return null;
     }
 }
@@ -0,0 +1,253 @@
+package com.cloudeagle.dropboxapi;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * MemberDirectory
+ * <p>
+ * In-memory index of team members, filled from the streamed team/members/list walk so that
+ * lookups by team_member_id, email or account_id, email prefix searches and status filters
+ * need no API call.
+ * <p>
+ * All indexes are concurrent maps: readers never take a lock and are never blocked by a
+ * refresh, and every member they see is a complete, immutable {@link TeamMember}. Writers
+ * (single-member updates and refreshes) are serialized among themselves. A refresh upserts
+ * each streamed member, touching the indexes only for members that actually changed, and
+ * then removes the members that were not seen, so it never rebuilds the directory from
+ * scratch and readers keep getting answers throughout.
+ * <p>
+ * Usage:
+ * MemberDirectory directory = new MemberDirectory();
+ * directory.refresh(service, tokens);
+ * TeamMember m = directory.byEmail("alice@example.com");
+ */
+public class MemberDirectory {
+
+    private final ConcurrentHashMap<String, TeamMember> byId = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, TeamMember> byEmail = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, TeamMember> byAccountId = new ConcurrentHashMap<>();
+    private final ConcurrentSkipListMap<String, TeamMember> emailOrder = new ConcurrentSkipListMap<>();
+    private final ConcurrentHashMap<String, Set<String>> idsByStatus = new ConcurrentHashMap<>();
+    private final Object writeLock = new Object();
+
+    /**
+     * @return the member, or null if unknown
+     */
+    public TeamMember byId(String teamMemberId) {
+        return teamMemberId == null ? null : byId.get(teamMemberId);
+    }
+
+    /**
+     * @param email email address, matched case-insensitively
+     * @return the member, or null if unknown
+     */
+    public TeamMember byEmail(String email) {
+        return email == null ? null : byEmail.get(emailKey(email));
+    }
+
+    /**
+     * @return the member, or null if unknown
+     */
+    public TeamMember byAccountId(String accountId) {
+        return accountId == null ? null : byAccountId.get(accountId);
+    }
+
+    /**
+     * @param prefix email prefix, matched case-insensitively (e.g. "ali" or "alice@exa")
+     * @param limit  maximum number of members returned
+     * @return members whose email starts with {@code prefix}, in email order
+     */
+    public List<TeamMember> searchByEmailPrefix(String prefix, int limit) {
+        String from = emailKey(prefix);
+        List<TeamMember> result = new ArrayList<>();
+        for (Map.Entry<String, TeamMember> e : emailOrder.tailMap(from, true).entrySet()) {
+            if (!e.getKey().startsWith(from) || result.size() >= limit) {
+                break;
+            }
+            result.add(e.getValue());
+        }
+        return result;
+    }
+
+    /**
+     * @param status status tag, e.g. "active", "invited", "suspended"
+     * @return members with that status, in no particular order
+     */
+    public List<TeamMember> withStatus(String status) {
+        Set<String> ids = idsByStatus.get(status);
+        if (ids == null) {
+            return Collections.emptyList();
+        }
+        List<TeamMember> result = new ArrayList<>(ids.size());
+        for (String id : ids) {
+            TeamMember m = byId.get(id);
+            // skip members whose status changed while iterating
+            if (m != null && status.equals(m.getStatus())) {
+                result.add(m);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return every member, in no particular order
+     */
+    public Collection<TeamMember> all() {
+        return Collections.unmodifiableCollection(byId.values());
+    }
+
+    public int size() {
+        return byId.size();
+    }
+
+    /**
+     * Add or replace one member, e.g. after a member change was seen in the audit log.
+     *
+     * @param member current state of the member; ignored if it has no team_member_id
+     * @return true if the directory changed
+     */
+    public boolean upsert(TeamMember member) {
+        if (member == null || member.getTeamMemberId() == null) {
+            return false;
+        }
+        synchronized (writeLock) {
+            TeamMember old = byId.get(member.getTeamMemberId());
+            if (member.equals(old)) {
+                return false;
+            }
+            // index the new state before unindexing the old one, so lookups never miss a member
+            // that exists throughout
+            byId.put(member.getTeamMemberId(), member);
+            if (member.getEmail() != null) {
+                String key = emailKey(member.getEmail());
+                byEmail.put(key, member);
+                emailOrder.put(key, member);
+            }
+            if (member.getAccountId() != null) {
+                byAccountId.put(member.getAccountId(), member);
+            }
+            if (member.getStatus() != null) {
+                idsByStatus.computeIfAbsent(member.getStatus(), s -> ConcurrentHashMap.newKeySet())
+                        .add(member.getTeamMemberId());
+            }
+            if (old != null) {
+                unindex(old, member);
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Remove one member, e.g. after it was removed from the team.
+     *
+     * @return true if the member was present
+     */
+    public boolean remove(String teamMemberId) {
+        synchronized (writeLock) {
+            TeamMember old = byId.remove(teamMemberId);
+            if (old == null) {
+                return false;
+            }
+            unindex(old, null);
+            return true;
+        }
+    }
+
+    /**
+     * Bring the directory in line with team/members/list: upsert every streamed member and
+     * remove the ones that are gone. Readers are served from the directory the whole time.
+     * If the walk fails nothing is removed, so a partial refresh only ever adds or updates.
+     *
+     * @param service service used to stream the member list
+     * @param tokens  source of the OAuth2 bearer token
+     * @return what changed
+     * @throws IOException on HTTP or parse errors
+     */
+    public Changes refresh(DropboxService service, TokenProvider tokens) throws IOException {
+        Set<String> seen = new HashSet<>();
+        Changes changes = new Changes();
+        service.forEachMember(tokens, 1000, json -> {
+            TeamMember m = TeamMember.fromJson(json);
+            if (m == null || m.getTeamMemberId() == null) {
+                return;
+            }
+            seen.add(m.getTeamMemberId());
+            boolean known = byId.containsKey(m.getTeamMemberId());
+            if (upsert(m)) {
+                if (known) {
+                    changes.updated++;
+                } else {
+                    changes.added++;
+                }
+            }
+        });
+        for (String id : new ArrayList<>(byId.keySet())) {
+            if (!seen.contains(id) && remove(id)) {
+                changes.removed++;
+            }
+        }
+        return changes;
+    }
+
+    /** Drop index entries that still point at {@code old} and not at its replacement. */
+    private void unindex(TeamMember old, TeamMember replacement) {
+        if (old.getEmail() != null) {
+            String key = emailKey(old.getEmail());
+            if (replacement == null || !key.equals(emailKey(replacement.getEmail()))) {
+                byEmail.remove(key, old);
+                emailOrder.remove(key, old);
+            }
+        }
+        if (old.getAccountId() != null
+                && (replacement == null || !old.getAccountId().equals(replacement.getAccountId()))) {
+            byAccountId.remove(old.getAccountId(), old);
+        }
+        if (old.getStatus() != null
+                && (replacement == null || !old.getStatus().equals(replacement.getStatus()))) {
+            Set<String> ids = idsByStatus.get(old.getStatus());
+            if (ids != null) {
+                ids.remove(old.getTeamMemberId());
+            }
+        }
+    }
+
+    private static String emailKey(String email) {
+        return email == null ? "" : email.toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Outcome of {@link #refresh(DropboxService, TokenProvider)}.
+     */
+    public static final class Changes {
+        private int added;
+        private int updated;
+        private int removed;
+
+        public int getAdded() {
+            return added;
+        }
+
+        public int getUpdated() {
+            return updated;
+        }
+
+        public int getRemoved() {
+            return removed;
+        }
+
+        @Override
+        public String toString() {
+            return added + " added, " + updated + " updated, " + removed + " removed";
+        }
+    }
+}
@@ -0,0 +1,272 @@
+package com.cloudeagle.dropboxapi;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+
+/**
+ * MemberEnricher
+ * <p>
+ * Joins audit events to the profile of their actor. Events only carry the actor's
+ * team_member_id, so profiles are resolved with team/members/get_info_v2, and lookups are
+ * coalesced:
+ * <ul>
+ * <li>IDs not yet known are queued and sent together, up to {@value #MAX_BATCH} per call
+ * (the endpoint's limit); a partly filled batch is sent after a short linger.</li>
+ * <li>Concurrent lookups of the same ID share one in-flight future.</li>
+ * <li>Resolved profiles (and IDs Dropbox does not know) go into a bounded LRU cache.</li>
+ * <li>An optional {@link MemberDirectory} is consulted first.</li>
+ * </ul>
+ * Batches are sent with {@link DropboxClient#postJsonAsync(String, String, TokenProvider)},
+ * so no thread is parked while they are in flight.
+ * <p>
+ * Usage:
+ * try (MemberEnricher enricher = new MemberEnricher(client, tokens)) {
+ *     enricher.enrich(events, (event, actor) -> ..., 1000);
+ * }
+ */
+public class MemberEnricher implements Closeable {
+
+    /** Maximum number of members per team/members/get_info_v2 call. */
+    public static final int MAX_BATCH = 100;
+
+    private static final String GET_INFO = "team/members/get_info_v2";
+    private static final Object NOT_FOUND = new Object();
+
+    private final DropboxClient client;
+    private final TokenProvider tokens;
+    private final MemberDirectory directory;
+    private final long lingerMillis;
+    private final Map<String, Object> cache;
+    private final ConcurrentHashMap<String, CompletableFuture<TeamMember>> inFlight = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "member-enricher");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private final Object batchLock = new Object();
+    private List<String> pending = new ArrayList<>(MAX_BATCH);
+    private boolean flushScheduled;
+
+    /**
+     * Cache of 10,000 profiles, 10 ms linger, no directory.
+     *
+     * @param client low-level HTTP client
+     * @param tokens source of the OAuth2 bearer token
+     */
+    public MemberEnricher(DropboxClient client, TokenProvider tokens) {
+        this(client, tokens, null, 10_000, 10);
+    }
+
+    /**
+     * @param client       low-level HTTP client
+     * @param tokens       source of the OAuth2 bearer token
+     * @param directory    consulted before the cache and the API (may be null)
+     * @param cacheSize    maximum number of cached profiles
+     * @param lingerMillis how long a partly filled batch waits for more IDs
+     */
+    public MemberEnricher(DropboxClient client, TokenProvider tokens, MemberDirectory directory,
+                          int cacheSize, long lingerMillis) {
+        this.client = client;
+        this.tokens = tokens;
+        this.directory = directory;
+        this.lingerMillis = Math.max(0, lingerMillis);
+        int maxEntries = Math.max(1, cacheSize);
+        this.cache = new LinkedHashMap<String, Object>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Object> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Resolve one member.
+     *
+     * @param teamMemberId actor ID from an event
+     * @return future completed with the profile, or with null if Dropbox does not know the ID
+     */
+    public CompletableFuture<TeamMember> lookup(String teamMemberId) {
+        if (directory != null) {
+            TeamMember m = directory.byId(teamMemberId);
+            if (m != null) {
+                return CompletableFuture.completedFuture(m);
+            }
+        }
+        synchronized (cache) {
+            Object cached = cache.get(teamMemberId);
+            if (cached != null) {
+                return CompletableFuture.completedFuture(cached == NOT_FOUND ? null : (TeamMember) cached);
+            }
+        }
+        CompletableFuture<TeamMember> existing = inFlight.get(teamMemberId);
+        if (existing != null) {
+            return existing;
+        }
+        CompletableFuture<TeamMember> created = new CompletableFuture<>();
+        existing = inFlight.putIfAbsent(teamMemberId, created);
+        if (existing != null) {
+            return existing;
+        }
+        enqueue(teamMemberId);
+        return created;
+    }
+
+    /**
+     * Ordered enrichment stage: parse each raw event, resolve its actor and hand both to
+     * {@code out} in the original order. Up to {@code maxInFlight} events are held while
+     * their lookups run, which is what lets lookups for many events share batches.
+     *
+     * @param events      raw get_events records
+     * @param out         receives each event with its actor's profile (null if there is none)
+     * @param maxInFlight events buffered ahead of the oldest unresolved one
+     * @return number of events delivered
+     * @throws IOException if a lookup failed
+     */
+    public int enrich(Iterator<JSONObject> events, BiConsumer<TeamEvent, TeamMember> out, int maxInFlight)
+            throws IOException {
+        ArrayDeque<Pending> window = new ArrayDeque<>();
+        int count = 0;
+        while (events.hasNext()) {
+            TeamEvent event = TeamEvent.fromJson(events.next());
+            CompletableFuture<TeamMember> actor = event.getActorId() == null
+                    ? CompletableFuture.completedFuture(null) : lookup(event.getActorId());
+            window.add(new Pending(event, actor));
+            while (window.size() >= Math.max(1, maxInFlight)) {
+                emit(window.poll(), out);
+                count++;
+            }
+        }
+        while (!window.isEmpty()) {
+            emit(window.poll(), out);
+            count++;
+        }
+        return count;
+    }
+
+    private static void emit(Pending entry, BiConsumer<TeamEvent, TeamMember> out) throws IOException {
+        TeamMember actor;
+        try {
+            actor = entry.actor.join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            throw cause instanceof IOException ? (IOException) cause : new IOException("Member lookup failed", cause);
+        }
+        out.accept(entry.event, actor);
+    }
+
+    /**
+     * @return number of cached profiles (including IDs cached as unknown)
+     */
+    public int getCacheSize() {
+        synchronized (cache) {
+            return cache.size();
+        }
+    }
+
+    @Override
+    public void close() {
+        timer.shutdownNow();
+        flush();
+    }
+
+    private void enqueue(String id) {
+        boolean full;
+        synchronized (batchLock) {
+            pending.add(id);
+            // once closed there is no timer, so every lookup is sent right away
+            full = pending.size() >= MAX_BATCH || timer.isShutdown();
+            if (!full && !flushScheduled) {
+                flushScheduled = true;
+                timer.schedule(this::flush, lingerMillis, TimeUnit.MILLISECONDS);
+            }
+        }
+        if (full) {
+            flush();
+        }
+    }
+
+    /** Send everything queued, in batches of at most MAX_BATCH. */
+    private void flush() {
+        List<String> ids;
+        synchronized (batchLock) {
+            ids = pending;
+            pending = new ArrayList<>(MAX_BATCH);
+            flushScheduled = false;
+        }
+        for (int from = 0; from < ids.size(); from += MAX_BATCH) {
+            send(ids.subList(from, Math.min(ids.size(), from + MAX_BATCH)));
+        }
+    }
+
+    private void send(List<String> ids) {
+        JSONArray selectors = new JSONArray();
+        for (String id : ids) {
+            selectors.put(new JSONObject().put(".tag", "team_member_id").put("team_member_id", id));
+        }
+        String body = new JSONObject().put("members", selectors).toString();
+        List<String> batch = new ArrayList<>(ids);
+        client.postJsonAsync(client.apiUrl(GET_INFO), body, tokens).whenComplete((resp, error) -> {
+            if (error != null) {
+                Throwable cause = error instanceof CompletionException ? error.getCause() : error;
+                for (String id : batch) {
+                    CompletableFuture<TeamMember> f = inFlight.remove(id);
+                    if (f != null) {
+                        f.completeExceptionally(cause);
+                    }
+                }
+                return;
+            }
+            Map<String, TeamMember> found = new HashMap<>();
+            JSONArray infos = resp.optJSONArray("members_info");
+            for (int i = 0; infos != null && i < infos.length(); i++) {
+                JSONObject info = infos.getJSONObject(i);
+                if ("member_info".equals(info.optString(".tag"))) {
+                    TeamMember m = TeamMember.fromJson(info);
+                    if (m != null) {
+                        found.put(m.getTeamMemberId(), m);
+                    }
+                }
+            }
+            synchronized (cache) {
+                for (String id : batch) {
+                    TeamMember m = found.get(id);
+                    cache.put(id, m != null ? m : NOT_FOUND);
+                }
+            }
+            for (String id : batch) {
+                CompletableFuture<TeamMember> f = inFlight.remove(id);
+                if (f != null) {
+                    f.complete(found.get(id));
+                }
+            }
+        });
+    }
+
+    private static final class Pending {
+        private final TeamEvent event;
+        private final CompletableFuture<TeamMember> actor;
+
+        private Pending(TeamEvent event, CompletableFuture<TeamMember> actor) {
+            this.event = event;
+            this.actor = actor;
+        }
+    }
+}
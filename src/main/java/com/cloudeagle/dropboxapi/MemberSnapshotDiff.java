@@ -0,0 +1,287 @@
+package com.cloudeagle.dropboxapi;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * MemberSnapshotDiff
+ * <p>
+ * Change detection between member syncs. A fingerprint file maps each team_member_id to a
+ * 64-bit hash of the member's record; every record of a new members/list stream is hashed
+ * and compared against it, and only the differences are passed on:
+ * <ul>
+ * <li>members not in the previous snapshot, as the full record with "change": "added";</li>
+ * <li>members whose hash differs, as the full record with "change": "modified";</li>
+ * <li>members no longer listed, once the stream has ended, as
+ * {"change": "removed", "profile": {"team_member_id": ...}}.</li>
+ * </ul>
+ * Unchanged members are dropped, so downstream work scales with churn rather than team size.
+ * <p>
+ * The hash covers the record's keys in sorted order, so it does not depend on the order in
+ * which the API (or the JSON library) lists them. The fingerprints are saved by
+ * {@link #save()} only, atomically (temp file, fsync, rename), which the caller does once
+ * the sink has published the changes; a sync or export that fails before that leaves the
+ * previous snapshot in place and the next run reports the same changes again.
+ * <p>
+ * Usage:
+ * MemberSnapshotDiff diff = MemberSnapshotDiff.open(Paths.get("member-fingerprints.bin"), sink);
+ * for (JSONObject member : members) {
+ *     diff.accept(member);
+ * }
+ * diff.finish();
+ * sink.close();
+ * diff.save();
+ */
+public class MemberSnapshotDiff {
+
+    /** Value of the "change" field added to emitted records. */
+    public enum Change {
+        ADDED, MODIFIED, REMOVED;
+
+        String tag() {
+            return name().toLowerCase(Locale.ROOT);
+        }
+    }
+
+    private static final byte[] MAGIC = "DBXMF1".getBytes(StandardCharsets.US_ASCII);
+
+    private final Path file;
+    private final RecordSink out;
+    private final Map<String, Long> previous;
+    private final Map<String, Long> current;
+    private final MessageDigest sha256;
+    private int added;
+    private int modified;
+    private int removed;
+    private int unchanged;
+
+    private MemberSnapshotDiff(Path file, RecordSink out, Map<String, Long> previous) {
+        this.file = file;
+        this.out = out;
+        this.previous = previous;
+        this.current = new HashMap<>(Math.max(16, previous.size() * 4 / 3 + 1));
+        try {
+            this.sha256 = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            // every Java platform is required to provide SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Start a diff against the fingerprints stored in {@code file}.
+     *
+     * @param file fingerprint file; a missing file means every member is new
+     * @param out  receives the changed records (not closed by the diff)
+     * @return the diff
+     * @throws IOException if the file exists but cannot be read
+     */
+    public static MemberSnapshotDiff open(Path file, RecordSink out) throws IOException {
+        return new MemberSnapshotDiff(file, out, load(file));
+    }
+
+    /**
+     * Compare one members/list record against the previous snapshot.
+     *
+     * @param member members/list entry (or bare profile)
+     * @return the detected change, or null if the member is unchanged or has no team_member_id
+     * @throws IOException if the change could not be written to the sink
+     */
+    public Change accept(JSONObject member) throws IOException {
+        JSONObject profile = member.optJSONObject("profile");
+        String id = (profile != null ? profile : member).optString("team_member_id", null);
+        if (id == null) {
+            return null;
+        }
+        long hash = fingerprint(member);
+        if (current.put(id, hash) != null) {
+            // listed twice (e.g. a retried page); the first occurrence has been handled
+            return null;
+        }
+        Long before = previous.remove(id);
+        Change change;
+        if (before == null) {
+            change = Change.ADDED;
+            added++;
+        } else if (before != hash) {
+            change = Change.MODIFIED;
+            modified++;
+        } else {
+            unchanged++;
+            return null;
+        }
+        // the caller's record is left as it is; the emitted copy shares its values
+        out.accept(new JSONObject(member, JSONObject.getNames(member)).put("change", change.tag()));
+        return change;
+    }
+
+    /**
+     * End of the stream: emit a removal for every member not seen since {@link #open} and
+     * flush the sink. The new fingerprints are kept until {@link #save()}.
+     *
+     * @return number of changes emitted
+     * @throws IOException if writing the removals failed
+     */
+    public int finish() throws IOException {
+        for (String id : previous.keySet()) {
+            out.accept(new JSONObject()
+                    .put("change", Change.REMOVED.tag())
+                    .put("profile", new JSONObject().put("team_member_id", id)));
+            removed++;
+        }
+        previous.clear();
+        out.flush();
+        return getChangeCount();
+    }
+
+    /**
+     * Save the fingerprints of the finished stream, so the next diff compares against them.
+     * Call it only once the emitted changes are safely published.
+     *
+     * @throws IOException if the fingerprint file could not be written
+     */
+    public void save() throws IOException {
+        save(file, current);
+    }
+
+    public int getAdded() {
+        return added;
+    }
+
+    public int getModified() {
+        return modified;
+    }
+
+    public int getRemoved() {
+        return removed;
+    }
+
+    public int getUnchanged() {
+        return unchanged;
+    }
+
+    public int getChangeCount() {
+        return added + modified + removed;
+    }
+
+    /**
+     * @return 64-bit content hash of a record, independent of key order
+     */
+    long fingerprint(JSONObject record) {
+        byte[] digest = sha256.digest(canonical(record).getBytes(StandardCharsets.UTF_8));
+        long hash = 0;
+        for (int i = 0; i < 8; i++) {
+            hash = (hash << 8) | (digest[i] & 0xff);
+        }
+        return hash;
+    }
+
+    /**
+     * @return the record as JSON with its keys sorted at every level, so equal records give
+     * equal strings whatever their key order
+     */
+    static String canonical(JSONObject record) {
+        StringBuilder sb = new StringBuilder(512);
+        appendCanonical(sb, record);
+        return sb.toString();
+    }
+
+    private static void appendCanonical(StringBuilder sb, Object value) {
+        if (value instanceof JSONObject) {
+            JSONObject obj = (JSONObject) value;
+            String[] keys = JSONObject.getNames(obj);
+            sb.append('{');
+            if (keys != null) {
+                Arrays.sort(keys);
+                for (String key : keys) {
+                    sb.append(JSONObject.quote(key)).append(':');
+                    appendCanonical(sb, obj.opt(key));
+                    sb.append(',');
+                }
+            }
+            sb.append('}');
+        } else if (value instanceof JSONArray) {
+            JSONArray arr = (JSONArray) value;
+            sb.append('[');
+            for (int i = 0; i < arr.length(); i++) {
+                appendCanonical(sb, arr.opt(i));
+                sb.append(',');
+            }
+            sb.append(']');
+        } else if (value instanceof String) {
+            sb.append(JSONObject.quote((String) value));
+        } else {
+            sb.append(value);
+        }
+    }
+
+    private static Map<String, Long> load(Path file) throws IOException {
+        Map<String, Long> fingerprints = new HashMap<>();
+        if (!Files.exists(file)) {
+            return fingerprints;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            byte[] magic = new byte[MAGIC.length];
+            in.readFully(magic);
+            if (!Arrays.equals(MAGIC, magic)) {
+                throw new IOException("Not a member fingerprint file: " + file);
+            }
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                String id = in.readUTF();
+                fingerprints.put(id, in.readLong());
+            }
+        } catch (EOFException e) {
+            throw new IOException("Truncated member fingerprint file: " + file, e);
+        }
+        return fingerprints;
+    }
+
+    private static void save(Path file, Map<String, Long> fingerprints) throws IOException {
+        Path target = file.toAbsolutePath();
+        Path dir = target.getParent();
+        Files.createDirectories(dir);
+        Path tmp = Files.createTempFile(dir, target.getFileName().toString(), ".tmp");
+        try {
+            try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                DataOutputStream data = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(ch), 64 * 1024));
+                data.write(MAGIC);
+                data.writeInt(fingerprints.size());
+                for (Map.Entry<String, Long> e : fingerprints.entrySet()) {
+                    data.writeUTF(e.getKey());
+                    data.writeLong(e.getValue());
+                }
+                data.flush();
+                ch.force(true);
+            }
+            try {
+                Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+}
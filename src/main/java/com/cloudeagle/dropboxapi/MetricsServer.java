@@ -0,0 +1,103 @@
+package com.cloudeagle.dropboxapi;
+
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * MetricsServer
+ * <p>
+ * Serves {@link ClientMetrics} in the Prometheus text format at "/metrics" on an embedded
+ * {@link HttpServer}, the same server type {@link AuthHttpServer} uses for the OAuth callback.
+ * Scrapes are answered by a single thread; rendering reads the adders without blocking the
+ * threads that record into them. It listens on the loopback interface unless another bind
+ * address is given.
+ * <p>
+ * Usage:
+ * MetricsServer metrics = new MetricsServer(9400, ClientMetrics.shared());
+ * metrics.start();
+ * ...
+ * metrics.stop();
+ */
+public class MetricsServer {
+
+    static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "metrics-http");
+        t.setDaemon(true);
+        return t;
+    });
+
+    /**
+     * @param port    TCP port to listen on, on the loopback interface (0 picks a free one)
+     * @param metrics metrics to expose
+     */
+    public MetricsServer(int port, ClientMetrics metrics) throws IOException {
+        this(InetAddress.getLoopbackAddress(), port, metrics);
+    }
+
+    /**
+     * @param bindAddress interface to listen on (e.g. 0.0.0.0 for a remote scraper)
+     * @param port        TCP port to listen on (0 picks a free one)
+     * @param metrics     metrics to expose
+     */
+    public MetricsServer(InetAddress bindAddress, int port, ClientMetrics metrics) throws IOException {
+        this.server = HttpServer.create(new InetSocketAddress(bindAddress, port), 0);
+        server.createContext("/metrics", handler(metrics));
+        server.setExecutor(executor);
+    }
+
+    /**
+     * @param metrics metrics to expose
+     * @return handler answering GET with the Prometheus text rendering of {@code metrics}
+     */
+    public static HttpHandler handler(ClientMetrics metrics) {
+        return ex -> {
+            try {
+                if (!"GET".equalsIgnoreCase(ex.getRequestMethod())) {
+                    ex.sendResponseHeaders(405, -1);
+                    return;
+                }
+                ByteArrayOutputStream buf = new ByteArrayOutputStream(8 * 1024);
+                Writer w = new OutputStreamWriter(buf, StandardCharsets.UTF_8);
+                metrics.writePrometheus(w);
+                w.flush();
+                ex.getResponseHeaders().add("Content-Type", CONTENT_TYPE);
+                ex.sendResponseHeaders(200, buf.size());
+                try (OutputStream os = ex.getResponseBody()) {
+                    buf.writeTo(os);
+                }
+            } finally {
+                ex.close();
+            }
+        };
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    /**
+     * @return the port actually bound
+     */
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    public void stop() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,194 @@
+package com.cloudeagle.dropboxapi;
+
+import java.lang.reflect.Method;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * MultiTenantScheduler
+ * <p>
+ * Runs the syncs of many Dropbox teams in one process.
+ * <p>
+ * Work is scheduled one {@link SyncJob#step()} (normally one API page) at a time:
+ * - at most {@code maxConcurrency} steps run at once across all tenants, which bounds how
+ *   much of the shared connection pool and request budget the scheduler uses;
+ * - each tenant runs at most its own {@link TenantConfig#getMaxConcurrency()} steps at once;
+ * - free slots are handed to tenants in round-robin order, and a job that has more work goes
+ *   to the back of its tenant's queue after every step. A tenant with a huge audit log
+ *   therefore gets the same share of slots as any other busy tenant and cannot starve the
+ *   small ones.
+ * <p>
+ * Steps run on virtual threads when the JVM provides them (Java 21+), otherwise on a
+ * fixed platform thread pool of {@code maxConcurrency} threads.
+ */
+public class MultiTenantScheduler implements AutoCloseable {
+
+    private static final AtomicInteger THREAD_COUNTER = new AtomicInteger();
+
+    private final int maxConcurrency;
+    private final ExecutorService executor;
+    private final boolean virtualThreads;
+
+    // all fields below are guarded by this
+    private final Map<String, TenantState> tenants = new HashMap<>();
+    private final List<TenantState> rotation = new ArrayList<>();
+    private int nextTenant;
+    private int running;
+
+    /**
+     * @param maxConcurrency maximum steps running at once across all tenants
+     */
+    public MultiTenantScheduler(int maxConcurrency) {
+        this.maxConcurrency = Math.max(1, maxConcurrency);
+        ExecutorService virtual = newVirtualThreadExecutor();
+        this.virtualThreads = virtual != null;
+        this.executor = virtual != null ? virtual : Executors.newFixedThreadPool(this.maxConcurrency, r -> {
+            Thread t = new Thread(r, "tenant-sync-" + THREAD_COUNTER.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Register a tenant and its per-tenant concurrency limit. Re-registering updates the limit.
+     *
+     * @param tenantId       tenant key
+     * @param maxConcurrency maximum steps of this tenant running at once
+     */
+    public synchronized void registerTenant(String tenantId, int maxConcurrency) {
+        TenantState state = tenants.get(tenantId);
+        if (state == null) {
+            state = new TenantState(tenantId);
+            tenants.put(tenantId, state);
+            rotation.add(state);
+        }
+        state.limit = Math.max(1, maxConcurrency);
+    }
+
+    /**
+     * Queue a job for a registered tenant.
+     *
+     * @param tenantId tenant key
+     * @param job      the job; its steps are run until it reports no more work or fails
+     * @return future completed when the job finishes, or exceptionally with its failure
+     */
+    public CompletableFuture<Void> submit(String tenantId, SyncJob job) {
+        CompletableFuture<Void> done = new CompletableFuture<>();
+        synchronized (this) {
+            TenantState state = tenants.get(tenantId);
+            if (state == null) {
+                throw new IllegalArgumentException("Unknown tenant: " + tenantId);
+            }
+            state.ready.addLast(new Pending(job, done));
+        }
+        dispatch();
+        return done;
+    }
+
+    /**
+     * @return true if steps run on virtual threads
+     */
+    public boolean usesVirtualThreads() {
+        return virtualThreads;
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    private void dispatch() {
+        List<Runnable> toStart = new ArrayList<>();
+        synchronized (this) {
+            while (running < maxConcurrency) {
+                TenantState tenant = nextRunnableTenant();
+                if (tenant == null) {
+                    break;
+                }
+                Pending pending = tenant.ready.pollFirst();
+                tenant.running++;
+                running++;
+                toStart.add(() -> runStep(tenant, pending));
+            }
+        }
+        for (Runnable r : toStart) {
+            executor.execute(r);
+        }
+    }
+
+    /** Next tenant in round-robin order with queued work and a free per-tenant slot. */
+    private TenantState nextRunnableTenant() {
+        int n = rotation.size();
+        for (int i = 0; i < n; i++) {
+            TenantState t = rotation.get((nextTenant + i) % n);
+            if (!t.ready.isEmpty() && t.running < t.limit) {
+                nextTenant = (nextTenant + i + 1) % n;
+                return t;
+            }
+        }
+        return null;
+    }
+
+    private void runStep(TenantState tenant, Pending pending) {
+        boolean more;
+        try {
+            more = pending.job.step();
+        } catch (Throwable e) {
+            more = false;
+            pending.done.completeExceptionally(e);
+        }
+        synchronized (this) {
+            tenant.running--;
+            running--;
+            if (more) {
+                tenant.ready.addLast(pending);
+            }
+        }
+        if (!more) {
+            pending.done.complete(null);
+        }
+        dispatch();
+    }
+
+    private static ExecutorService newVirtualThreadExecutor() {
+        try {
+            Method m = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) m.invoke(null);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return null; // pre-21 JVM
+        }
+    }
+
+    private static final class TenantState {
+        private final String tenantId;
+        private final ArrayDeque<Pending> ready = new ArrayDeque<>();
+        private int limit;
+        private int running;
+
+        private TenantState(String tenantId) {
+            this.tenantId = tenantId;
+        }
+
+        @Override
+        public String toString() {
+            return tenantId;
+        }
+    }
+
+    private static final class Pending {
+        private final SyncJob job;
+        private final CompletableFuture<Void> done;
+
+        private Pending(SyncJob job, CompletableFuture<Void> done) {
+            this.job = job;
+            this.done = done;
+        }
+    }
+}
@@ -0,0 +1,258 @@
+package com.cloudeagle.dropboxapi;
+
+import org.json.JSONObject;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * NdjsonGzipSink
+ * <p>
+ * Exports records as gzip-compressed NDJSON (one JSON object per line).
+ * <p>
+ * Records are serialized into an in-memory batch and the batch is compressed and written in
+ * one go through a large buffer onto a {@link FileChannel}, so the per-record cost is
+ * serialization only. Files roll over once they hold {@code maxFileBytes} of uncompressed
+ * NDJSON or are older than {@code maxFileAgeMillis} (checked whenever a batch is written or
+ * the sink is flushed). A file is written as "*.ndjson.gz.part" and renamed to
+ * "*.ndjson.gz" only once complete, so readers never pick up a half-written file.
+ * <p>
+ * {@link #flush()} pushes every accepted record through the compressor onto the disk, so a
+ * caller may checkpoint its progress right after it. If the sync feeding the sink fails,
+ * {@link #abort()} drops every record accepted since the last flush and publishes the ones
+ * flushed before it, so records a checkpoint already covers are never lost; a file with
+ * nothing flushed is deleted.
+ * <p>
+ * Usage:
+ * try (NdjsonGzipSink sink = new NdjsonGzipSink(Paths.get("export"), "events")) {
+ *     sink.accept(event);
+ * }
+ */
+public class NdjsonGzipSink implements RecordSink {
+
+    private static final DateTimeFormatter FILE_TIME = DateTimeFormatter.ofPattern("yyyyMMdd'T'HHmmss");
+    private static final int WRITE_BUFFER_BYTES = 256 * 1024;
+
+    private final Path dir;
+    private final String prefix;
+    private final long maxFileBytes;
+    private final long maxFileAgeMillis;
+    private final int batchSize;
+
+    private final ByteArrayOutputStream batch = new ByteArrayOutputStream(64 * 1024);
+    private final Writer batchWriter = new OutputStreamWriter(batch, StandardCharsets.UTF_8);
+    private int batchCount;
+
+    private FileChannel channel;
+    private GZIPOutputStream gzip;
+    private Path partFile;
+    private long fileBytes;
+    // uncompressed bytes of the current file written before the last flush
+    private long flushedBytes;
+    private long fileOpenedAt;
+    private int fileSeq;
+    private long recordCount;
+    private boolean aborted;
+
+    /**
+     * Defaults: roll at 256 MB uncompressed or after one hour, batches of 1000 records.
+     *
+     * @param dir    output directory (created if missing)
+     * @param prefix file name prefix, e.g. "events"
+     */
+    public NdjsonGzipSink(Path dir, String prefix) throws IOException {
+        this(dir, prefix, 256L * 1024 * 1024, 60L * 60 * 1000, 1000);
+    }
+
+    /**
+     * @param dir              output directory (created if missing)
+     * @param prefix           file name prefix, e.g. "events"
+     * @param maxFileBytes     uncompressed bytes per file before rolling
+     * @param maxFileAgeMillis file age before rolling
+     * @param batchSize        records serialized before a compressed write
+     */
+    public NdjsonGzipSink(Path dir, String prefix, long maxFileBytes, long maxFileAgeMillis, int batchSize) throws IOException {
+        this.dir = dir;
+        this.prefix = prefix;
+        this.maxFileBytes = Math.max(1, maxFileBytes);
+        this.maxFileAgeMillis = Math.max(1, maxFileAgeMillis);
+        this.batchSize = Math.max(1, batchSize);
+        Files.createDirectories(dir);
+    }
+
+    @Override
+    public synchronized void accept(JSONObject record) throws IOException {
+        record.write(batchWriter);
+        batchWriter.write('\n');
+        recordCount++;
+        if (++batchCount >= batchSize) {
+            writeBatch();
+        }
+    }
+
+    /**
+     * Compress and write the pending batch, then flush the compressor and force the file to
+     * disk. Rolls the file if it has reached its age limit.
+     */
+    @Override
+    public synchronized void flush() throws IOException {
+        writeBatch();
+        if (gzip != null) {
+            if (System.currentTimeMillis() - fileOpenedAt >= maxFileAgeMillis) {
+                closeFile(true);
+            } else {
+                gzip.flush();
+                channel.force(false);
+                flushedBytes = fileBytes;
+            }
+        }
+    }
+
+    /**
+     * Drop the records accepted since the last flush and publish the current file with only
+     * the records flushed before them. The sink accepts nothing afterwards.
+     */
+    @Override
+    public synchronized void abort() throws IOException {
+        aborted = true;
+        batchWriter.flush();
+        batch.reset();
+        batchCount = 0;
+        if (gzip == null) {
+            return;
+        }
+        if (flushedBytes == fileBytes) {
+            closeFile(true);
+            return;
+        }
+        long keep = flushedBytes;
+        Path unfinished = partFile;
+        closeFile(false);
+        if (keep > 0) {
+            // the compressed stream cannot be cut, so the flushed prefix is copied into a new file
+            openFile();
+            copyPrefix(unfinished, keep);
+            closeFile(true);
+        }
+        Files.delete(unfinished);
+    }
+
+    /**
+     * Write everything still buffered and complete the current file, unless the sink was
+     * aborted.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (aborted) {
+            return;
+        }
+        writeBatch();
+        closeFile(true);
+    }
+
+    /**
+     * @return records accepted so far
+     */
+    public synchronized long getRecordCount() {
+        return recordCount;
+    }
+
+    private void writeBatch() throws IOException {
+        batchWriter.flush();
+        if (batch.size() == 0) {
+            return;
+        }
+        if (gzip != null && (fileBytes >= maxFileBytes
+                || System.currentTimeMillis() - fileOpenedAt >= maxFileAgeMillis)) {
+            closeFile(true);
+        }
+        if (gzip == null) {
+            openFile();
+        }
+        fileBytes += batch.size();
+        batch.writeTo(gzip);
+        batch.reset();
+        batchCount = 0;
+    }
+
+    private void openFile() throws IOException {
+        String time = LocalDateTime.now(ZoneOffset.UTC).format(FILE_TIME);
+        String name;
+        // another sink of the same prefix may have written in the same second
+        do {
+            name = prefix + "-" + time + "-" + (fileSeq++) + ".ndjson.gz";
+        } while (Files.exists(dir.resolve(name)) || Files.exists(dir.resolve(name + ".part")));
+        partFile = dir.resolve(name + ".part");
+        channel = FileChannel.open(partFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        // sync flush, so that flush() empties the deflater too
+        gzip = new GZIPOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel), WRITE_BUFFER_BYTES),
+                WRITE_BUFFER_BYTES, true);
+        fileBytes = 0;
+        flushedBytes = 0;
+        fileOpenedAt = System.currentTimeMillis();
+    }
+
+    /** Copy the first {@code n} uncompressed bytes of the gzip file {@code from} into the current file. */
+    private void copyPrefix(Path from, long n) throws IOException {
+        byte[] buf = new byte[64 * 1024];
+        try (InputStream in = new GZIPInputStream(Files.newInputStream(from), WRITE_BUFFER_BYTES)) {
+            while (n > 0) {
+                int read = in.read(buf, 0, (int) Math.min(buf.length, n));
+                if (read < 0) {
+                    throw new IOException("Unexpected end of " + from);
+                }
+                gzip.write(buf, 0, read);
+                fileBytes += read;
+                n -= read;
+            }
+        }
+    }
+
+    /**
+     * @param publish whether to rename the finished file from "*.part" to its final name
+     */
+    private void closeFile(boolean publish) throws IOException {
+        if (gzip == null) {
+            return;
+        }
+        try {
+            gzip.finish();
+            gzip.flush();
+            channel.force(false);
+        } finally {
+            gzip.close();
+            gzip = null;
+            channel = null;
+        }
+        if (!publish) {
+            partFile = null;
+            return;
+        }
+        String part = partFile.getFileName().toString();
+        Path done = partFile.resolveSibling(part.substring(0, part.length() - ".part".length()));
+        try {
+            Files.move(partFile, done, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(partFile, done);
+        }
+        partFile = null;
+    }
+}
@@ -0,0 +1,149 @@
+package com.cloudeagle.dropboxapi;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * OrderedOutput
+ * <p>
+ * Lets tasks running in parallel print to one stream without mixing their lines: each task
+ * prints into its own section and the sections come out in the order they were created.
+ * <p>
+ * The section whose turn it is writes straight through to the target; a later section
+ * buffers until every section before it has finished and then continues straight through as
+ * well. Only output that is waiting for its turn is held in memory, so a long listing
+ * printed by the current section is never buffered.
+ * <p>
+ * Usage:
+ * OrderedOutput console = new OrderedOutput(System.out);
+ * PrintStream members = console.section("members");
+ * ... members.println(...) from the task, then console.finish("members") ...
+ * console.finishAll();
+ */
+public class OrderedOutput {
+
+    private final PrintStream target;
+    private final List<Section> sections = new ArrayList<>();
+    private int head;
+
+    /**
+     * @param target stream all sections end up on
+     */
+    public OrderedOutput(PrintStream target) {
+        this.target = target;
+    }
+
+    /**
+     * Add a section after the existing ones.
+     *
+     * @param name unique section name, passed to {@link #finish(String)}
+     * @return stream the section's task prints to
+     */
+    public synchronized PrintStream section(String name) {
+        Section section = new Section(name);
+        sections.add(section);
+        if (sections.size() - 1 == head) {
+            section.release();
+        }
+        try {
+            return new PrintStream(section, true, "UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Mark a section complete; the sections after it that were waiting are written out.
+     *
+     * @param name section name
+     * @throws IllegalArgumentException if there is no such section
+     */
+    public synchronized void finish(String name) {
+        for (Section section : sections) {
+            if (section.name.equals(name)) {
+                section.done = true;
+                advance();
+                return;
+            }
+        }
+        throw new IllegalArgumentException("No such section: " + name);
+    }
+
+    /**
+     * Write out every section still waiting, e.g. once a plan is over even if some of its
+     * tasks never finished.
+     */
+    public synchronized void finishAll() {
+        for (Section section : sections) {
+            section.done = true;
+        }
+        advance();
+    }
+
+    private void advance() {
+        while (head < sections.size() && sections.get(head).done) {
+            head++;
+            if (head < sections.size()) {
+                sections.get(head).release();
+            }
+        }
+        target.flush();
+    }
+
+    /**
+     * One task's output; buffered until its turn, then written straight through.
+     */
+    private final class Section extends OutputStream {
+        private final String name;
+        private ByteArrayOutputStream pending = new ByteArrayOutputStream();
+        private boolean done;
+
+        private Section(String name) {
+            this.name = name;
+        }
+
+        /** Called under the outer lock when the section's turn comes. */
+        private void release() {
+            if (pending != null) {
+                byte[] bytes = pending.toByteArray();
+                pending = null;
+                target.write(bytes, 0, bytes.length);
+            }
+        }
+
+        @Override
+        public void write(int b) {
+            synchronized (OrderedOutput.this) {
+                if (pending != null) {
+                    pending.write(b);
+                } else {
+                    target.write(b);
+                }
+            }
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            synchronized (OrderedOutput.this) {
+                if (pending != null) {
+                    pending.write(b, off, len);
+                } else {
+                    target.write(b, off, len);
+                }
+            }
+        }
+
+        @Override
+        public void flush() {
+            synchronized (OrderedOutput.this) {
+                if (pending == null) {
+                    target.flush();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,233 @@
+package com.cloudeagle.dropboxapi;
+
+import java.io.IOException;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * PagingController
+ * <p>
+ * AIMD (additive increase, multiplicative decrease) controller for paginated fetches. It
+ * sets the page size ("limit") of every new cursor and how many cursors are walked at the
+ * same time, from what each page cost:
+ * <ul>
+ * <li>Concurrency grows by about one request per round trip while pages come back without
+ * throttling, and halves when a page needed a 429 retry or failed. Requests already in
+ * flight when it halves cannot cause a second cut, so one burst of 429s counts once.</li>
+ * <li>The page size grows by {@code limitStep} after a full page that took less than half the
+ * latency target and would stay under the byte cap at the larger size, and halves after a
+ * page slower than the target or larger than the cap, or a failed call. Pages that were
+ * retried are not used for this, as their latency includes the retry wait.</li>
+ * </ul>
+ * Dropbox fixes the page size of a cursor with its first call (/continue takes no limit),
+ * so a new limit applies from the next cursor on.
+ * <p>
+ * Usage:
+ * controller.acquire();
+ * try { page = client.postJson(url, body, tokens, stats); } finally { controller.release(...); }
+ */
+public class PagingController {
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final int limitStep;
+    private final int maxConcurrency;
+    private final long targetLatencyNanos;
+    private final long maxPageBytes;
+    private final boolean adaptive;
+
+    // guarded by this
+    private int limit;
+    private double concurrency;
+    private int inFlight;
+    private long completed;
+    private long noCutUntil;
+
+    private PagingController(Builder b) {
+        this.minLimit = b.minLimit;
+        this.maxLimit = Math.max(b.minLimit, b.maxLimit);
+        this.limitStep = b.limitStep;
+        this.maxConcurrency = b.maxConcurrency;
+        this.targetLatencyNanos = TimeUnit.MILLISECONDS.toNanos(b.targetLatencyMillis);
+        this.maxPageBytes = b.maxPageBytes;
+        this.adaptive = b.adaptive;
+        this.limit = Math.max(minLimit, Math.min(maxLimit, b.initialLimit));
+        this.concurrency = Math.max(1, Math.min(maxConcurrency, b.initialConcurrency));
+    }
+
+    /**
+     * Controller that never adapts: a constant page size and number of cursors.
+     *
+     * @param limit       page size
+     * @param concurrency cursors walked at the same time
+     * @return the controller
+     */
+    public static PagingController fixed(int limit, int concurrency) {
+        Builder b = new Builder().limits(limit, limit, limit).concurrency(concurrency, concurrency);
+        b.adaptive = false;
+        return b.build();
+    }
+
+    /**
+     * Build an adaptive controller from "paging.*" properties.
+     * Keys: paging.adaptive (false), paging.min_limit (100), paging.max_limit (1000),
+     * paging.max_concurrency (8), paging.target_latency_millis (2000), paging.max_page_bytes (4194304).
+     *
+     * @param cfg configuration (e.g. config.properties)
+     * @return the controller, or null if adaptive paging is disabled
+     */
+    public static PagingController fromProperties(Properties cfg) {
+        if (!Boolean.parseBoolean(cfg.getProperty("paging.adaptive", "false").trim())) {
+            return null;
+        }
+        int min = Integer.parseInt(cfg.getProperty("paging.min_limit", "100").trim());
+        int max = Integer.parseInt(cfg.getProperty("paging.max_limit", "1000").trim());
+        return new Builder()
+                .limits(min, Math.max(min, Math.min(max, 200)), max)
+                .concurrency(1, Integer.parseInt(cfg.getProperty("paging.max_concurrency", "8").trim()))
+                .targetLatencyMillis(Long.parseLong(cfg.getProperty("paging.target_latency_millis", "2000").trim()))
+                .maxPageBytes(Long.parseLong(cfg.getProperty("paging.max_page_bytes", "4194304").trim()))
+                .build();
+    }
+
+    /**
+     * @return page size to request when starting a new cursor
+     */
+    public synchronized int pageLimit() {
+        return limit;
+    }
+
+    /**
+     * @return requests currently allowed in flight
+     */
+    public synchronized int getConcurrency() {
+        return (int) concurrency;
+    }
+
+    /**
+     * @return upper bound of {@link #getConcurrency()}, i.e. how many workers are useful
+     */
+    public int getMaxConcurrency() {
+        return maxConcurrency;
+    }
+
+    /**
+     * Wait until one more request may be in flight. Every successful call must be paired
+     * with {@link #release} or {@link #releaseFailed}.
+     *
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public synchronized void acquire() throws InterruptedException {
+        while (inFlight >= (int) concurrency) {
+            wait();
+        }
+        inFlight++;
+    }
+
+    /**
+     * Record a page and free its slot.
+     *
+     * @param limit        page size the cursor was started with
+     * @param records      records on the page
+     * @param latencyNanos duration of the call
+     * @param stats        what the call cost
+     */
+    public synchronized void release(int limit, int records, long latencyNanos, DropboxClient.CallStats stats) {
+        inFlight--;
+        completed++;
+        notifyAll();
+        if (!adaptive) {
+            return;
+        }
+        if (stats.getThrottled() > 0) {
+            cut();
+        } else {
+            concurrency = Math.min(maxConcurrency, concurrency + 1 / concurrency);
+        }
+        if (stats.getAttempts() <= 1) {
+            long bytesPerRecord = records > 0 ? stats.getBytes() / records : 0;
+            if (latencyNanos > targetLatencyNanos || stats.getBytes() > maxPageBytes) {
+                this.limit = Math.max(minLimit, this.limit / 2);
+            } else if (records >= limit && limit >= this.limit && latencyNanos < targetLatencyNanos / 2
+                    && bytesPerRecord * (this.limit + limitStep) <= maxPageBytes) {
+                this.limit = Math.min(maxLimit, this.limit + limitStep);
+            }
+        }
+    }
+
+    /**
+     * Record a failed call and free its slot.
+     *
+     * @param error the failure
+     */
+    public synchronized void releaseFailed(IOException error) {
+        inFlight--;
+        completed++;
+        notifyAll();
+        if (adaptive) {
+            cut();
+            limit = Math.max(minLimit, limit / 2);
+        }
+    }
+
+    private void cut() {
+        if (completed < noCutUntil) {
+            return;
+        }
+        concurrency = Math.max(1, concurrency / 2);
+        // responses to requests already in flight reflect the old concurrency
+        noCutUntil = completed + inFlight + 1;
+    }
+
+    /**
+     * Builder for {@link PagingController}.
+     */
+    public static final class Builder {
+        private int minLimit = 100;
+        private int initialLimit = 200;
+        private int maxLimit = 1000;
+        private int limitStep = 100;
+        private int initialConcurrency = 1;
+        private int maxConcurrency = 8;
+        private long targetLatencyMillis = 2000;
+        private long maxPageBytes = 4L * 1024 * 1024;
+        private boolean adaptive = true;
+
+        /** Page size bounds and starting point. */
+        public Builder limits(int min, int initial, int max) {
+            this.minLimit = Math.max(1, min);
+            this.initialLimit = initial;
+            this.maxLimit = max;
+            return this;
+        }
+
+        /** Page size added after a fast full page. */
+        public Builder limitStep(int step) {
+            this.limitStep = Math.max(1, step);
+            return this;
+        }
+
+        /** Starting and maximum number of requests in flight. */
+        public Builder concurrency(int initial, int max) {
+            this.initialConcurrency = Math.max(1, initial);
+            this.maxConcurrency = Math.max(1, max);
+            return this;
+        }
+
+        /** Page latency above which the page size is halved. */
+        public Builder targetLatencyMillis(long millis) {
+            this.targetLatencyMillis = Math.max(1, millis);
+            return this;
+        }
+
+        /** Response size above which the page size is halved. */
+        public Builder maxPageBytes(long bytes) {
+            this.maxPageBytes = Math.max(1, bytes);
+            return this;
+        }
+
+        public PagingController build() {
+            return new PagingController(this);
+        }
+    }
+}
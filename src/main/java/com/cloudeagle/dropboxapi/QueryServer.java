@@ -0,0 +1,325 @@
+package com.cloudeagle.dropboxapi;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * QueryServer
+ * <p>
+ * Local HTTP query API of serve mode, answered from the in-memory snapshots a
+ * {@link ServeSync} keeps current, so a query costs a map lookup or a scan of a few
+ * sorted arrays and never a Dropbox round trip. All answers are JSON; every endpoint takes GET.
+ * <ul>
+ * <li>/members?id=|email=|account_id= one member (404 if unknown); ?prefix=&amp;limit= or
+ * ?status= a list; no parameter, the member count.</li>
+ * <li>/events?from=&amp;to=&amp;type=&amp;limit= events in [from, to) (ISO-8601), oldest first,
+ * optionally of one event type; at most {@value #MAX_LIMIT} per call. With a
+ * {@link MemberEnricher}, each event also carries its actor's profile as "actor".</li>
+ * <li>/counts?by=category|event_type|actor&amp;value=&amp;from=&amp;to= hourly-bucket counts of one
+ * value, or the top values with &amp;top=n; without "by", the total. The range defaults to the
+ * last 24 hours.</li>
+ * <li>/status sizes of the snapshots and when they were last synced; /metrics the client
+ * metrics as in {@link MetricsServer}.</li>
+ * </ul>
+ * The server listens on the loopback interface only. Exchanges run on a fixed pool with a
+ * bounded queue; when both are full the server's dispatcher thread runs the exchange itself,
+ * which stops it accepting new connections until a slot frees up, so a burst of queries
+ * queues at the socket instead of growing threads or memory.
+ * <p>
+ * Usage:
+ * QueryServer server = new QueryServer(8088, 4, 64, sync);
+ * server.start();
+ * ...
+ * server.stop();
+ */
+public class QueryServer {
+
+    static final int MAX_LIMIT = 1000;
+    private static final String JSON_TYPE = "application/json; charset=utf-8";
+
+    private final HttpServer server;
+    private final ThreadPoolExecutor executor;
+    private final ServeSync sync;
+    private final MemberEnricher enricher;
+
+    /**
+     * @param port          TCP port to listen on (0 picks a free one)
+     * @param threads       threads answering queries
+     * @param queueCapacity exchanges that may wait for a thread
+     * @param sync          source of the snapshots
+     */
+    public QueryServer(int port, int threads, int queueCapacity, ServeSync sync) throws IOException {
+        this(port, threads, queueCapacity, sync, null);
+    }
+
+    /**
+     * @param port          TCP port to listen on (0 picks a free one)
+     * @param threads       threads answering queries
+     * @param queueCapacity exchanges that may wait for a thread
+     * @param sync          source of the snapshots
+     * @param enricher      adds the actor's profile to /events answers (null = off; not closed by the server)
+     */
+    public QueryServer(int port, int threads, int queueCapacity, ServeSync sync, MemberEnricher enricher)
+            throws IOException {
+        this.sync = sync;
+        this.enricher = enricher;
+        this.executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, queueCapacity)), r -> {
+            Thread t = new Thread(r, "query-http");
+            t.setDaemon(true);
+            return t;
+        }, new ThreadPoolExecutor.CallerRunsPolicy());
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        server.createContext("/members", json(this::members));
+        server.createContext("/events", json(this::events));
+        server.createContext("/counts", json(this::counts));
+        server.createContext("/status", json(p -> status()));
+        server.createContext("/metrics", MetricsServer.handler(ClientMetrics.shared()));
+        server.setExecutor(executor);
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    /**
+     * @return the port actually bound
+     */
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    public void stop() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private JSONObject members(Map<String, String> p) {
+        MemberDirectory directory = sync.getDirectory();
+        TeamMember one;
+        if (p.containsKey("id")) {
+            one = directory.byId(p.get("id"));
+        } else if (p.containsKey("email")) {
+            one = directory.byEmail(p.get("email"));
+        } else if (p.containsKey("account_id")) {
+            one = directory.byAccountId(p.get("account_id"));
+        } else {
+            int limit = limit(p);
+            List<TeamMember> list;
+            if (p.containsKey("prefix")) {
+                list = directory.searchByEmailPrefix(p.get("prefix"), limit);
+            } else if (p.containsKey("status")) {
+                list = directory.withStatus(p.get("status"));
+            } else {
+                return new JSONObject().put("count", directory.size());
+            }
+            JSONArray arr = new JSONArray();
+            for (int i = 0; i < Math.min(limit, list.size()); i++) {
+                arr.put(toJson(list.get(i)));
+            }
+            return new JSONObject().put("members", arr).put("truncated", list.size() > limit);
+        }
+        if (one == null) {
+            throw new NotFound("No such member");
+        }
+        return toJson(one);
+    }
+
+    private JSONObject events(Map<String, String> p) {
+        int limit = limit(p);
+        // ask for one more than the limit to tell whether the result was cut short
+        List<TeamEvent> found = sync.getEventStore().snapshot()
+                .search(instant(p, "from", null), instant(p, "to", null), p.get("type"), limit + 1);
+        List<TeamEvent> shown = found.subList(0, Math.min(limit, found.size()));
+        // every lookup is started before any is awaited, so they share get_info_v2 batches
+        List<CompletableFuture<TeamMember>> actors = new ArrayList<>();
+        for (TeamEvent e : shown) {
+            actors.add(enricher == null || e.getActorId() == null
+                    ? CompletableFuture.completedFuture(null) : enricher.lookup(e.getActorId()));
+        }
+        JSONArray arr = new JSONArray();
+        for (int i = 0; i < shown.size(); i++) {
+            TeamMember actor = actorOf(actors.get(i));
+            arr.put(toJson(shown.get(i)).putOpt("actor", actor == null ? null : toJson(actor)));
+        }
+        return new JSONObject().put("events", arr).put("truncated", found.size() > limit);
+    }
+
+    /** The looked-up actor, or null if there is none or the lookup failed. */
+    private static TeamMember actorOf(CompletableFuture<TeamMember> lookup) {
+        try {
+            return lookup.join();
+        } catch (CompletionException e) {
+            // the event is still answered, just without its actor's profile
+            return null;
+        }
+    }
+
+    private JSONObject counts(Map<String, String> p) {
+        EventAggregator aggregator = sync.getAggregator();
+        Instant to = instant(p, "to", Instant.now());
+        Instant from = instant(p, "from", to.minus(Duration.ofHours(24)));
+        JSONObject result = new JSONObject().put("from", from.toString()).put("to", to.toString());
+        String by = p.get("by");
+        if (by == null) {
+            return result.put("total", aggregator.total(from, to));
+        }
+        EventAggregator.Dimension dim = EventAggregator.Dimension.valueOf(by.toUpperCase(Locale.ROOT));
+        if (p.containsKey("value")) {
+            return result.put("count", aggregator.count(dim, p.get("value"), from, to));
+        }
+        int n = p.containsKey("top") ? Math.min(MAX_LIMIT, Integer.parseInt(p.get("top"))) : 10;
+        JSONObject top = new JSONObject();
+        for (Map.Entry<String, Long> e : aggregator.top(dim, from, to, n).entrySet()) {
+            top.put(String.valueOf(e.getKey()), e.getValue());
+        }
+        return result.put("top", top);
+    }
+
+    private JSONObject status() {
+        EventStore.Snapshot events = sync.getEventStore().snapshot();
+        return new JSONObject()
+                .put("members", sync.getDirectory().size())
+                .put("events", events.size())
+                .putOpt("oldest_event", str(events.oldest()))
+                .putOpt("newest_event", str(events.newest()))
+                .putOpt("members_synced_at", str(sync.getMembersSyncedAt()))
+                .putOpt("events_synced_at", str(sync.getEventsSyncedAt()))
+                .putOpt("last_error", sync.getLastError());
+    }
+
+    static JSONObject toJson(TeamMember m) {
+        return new JSONObject()
+                .put("team_member_id", m.getTeamMemberId())
+                .putOpt("account_id", m.getAccountId())
+                .putOpt("email", m.getEmail())
+                .putOpt("display_name", m.getDisplayName())
+                .putOpt("status", m.getStatus())
+                .putOpt("membership_type", m.getMembershipType())
+                .putOpt("role", m.getRole())
+                .putOpt("joined_on", m.getJoinedOnEpochMillis() > 0
+                        ? Instant.ofEpochMilli(m.getJoinedOnEpochMillis()).toString() : null)
+                .put("email_verified", m.isEmailVerified());
+    }
+
+    static JSONObject toJson(TeamEvent e) {
+        return new JSONObject()
+                .put("timestamp", Instant.ofEpochSecond(e.getTimestampEpochSeconds()).toString())
+                .putOpt("event_category", e.getCategory())
+                .putOpt("event_type", e.getEventType())
+                .putOpt("actor_id", e.getActorId())
+                .putOpt("actor_email", e.getActorEmail())
+                .put("involve_non_team_member", e.involvesNonTeamMember());
+    }
+
+    private static String str(Instant t) {
+        return t == null ? null : t.toString();
+    }
+
+    private static int limit(Map<String, String> p) {
+        int limit = p.containsKey("limit") ? Integer.parseInt(p.get("limit")) : 100;
+        if (limit < 1) {
+            throw new IllegalArgumentException("limit must be positive");
+        }
+        return Math.min(MAX_LIMIT, limit);
+    }
+
+    private static Instant instant(Map<String, String> p, String key, Instant dflt) {
+        String v = p.get(key);
+        return v == null || v.isEmpty() ? dflt : Instant.parse(v);
+    }
+
+    /**
+     * Wrap a query in a handler that answers GET with its JSON result, 400 for malformed
+     * parameters and 404 for unknown members.
+     */
+    private static HttpHandler json(Query query) {
+        return ex -> {
+            try {
+                if (!"GET".equalsIgnoreCase(ex.getRequestMethod())) {
+                    ex.sendResponseHeaders(405, -1);
+                    return;
+                }
+                int status = 200;
+                JSONObject body;
+                try {
+                    body = query.answer(params(ex.getRequestURI().getRawQuery()));
+                } catch (NotFound e) {
+                    status = 404;
+                    body = new JSONObject().put("error", e.getMessage());
+                } catch (IllegalArgumentException | DateTimeParseException e) {
+                    // NumberFormatException and unknown dimensions are IllegalArgumentExceptions too
+                    status = 400;
+                    body = new JSONObject().put("error", "Bad query: " + e.getMessage());
+                } catch (RuntimeException e) {
+                    status = 500;
+                    body = new JSONObject().put("error", "Internal server error");
+                }
+                send(ex, status, body);
+            } finally {
+                ex.close();
+            }
+        };
+    }
+
+    private static void send(HttpExchange ex, int status, JSONObject body) throws IOException {
+        byte[] bytes = body.toString().getBytes(StandardCharsets.UTF_8);
+        ex.getResponseHeaders().add("Content-Type", JSON_TYPE);
+        ex.sendResponseHeaders(status, bytes.length);
+        try (OutputStream os = ex.getResponseBody()) {
+            os.write(bytes);
+        }
+    }
+
+    /** First value of every query parameter. */
+    static Map<String, String> params(String rawQuery) throws UnsupportedEncodingException {
+        Map<String, String> params = new HashMap<>();
+        if (rawQuery == null || rawQuery.isEmpty()) {
+            return params;
+        }
+        for (String pair : rawQuery.split("&")) {
+            int idx = pair.indexOf('=');
+            String key = URLDecoder.decode(idx > 0 ? pair.substring(0, idx) : pair, "UTF-8");
+            String value = idx > 0 ? URLDecoder.decode(pair.substring(idx + 1), "UTF-8") : "";
+            params.putIfAbsent(key, value);
+        }
+        return params;
+    }
+
+    @FunctionalInterface
+    private interface Query {
+        JSONObject answer(Map<String, String> params);
+    }
+
+    private static final class NotFound extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        private NotFound(String message) {
+            super(message);
+        }
+    }
+}
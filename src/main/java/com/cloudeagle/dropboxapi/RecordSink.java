@@ -0,0 +1,34 @@
+package com.cloudeagle.dropboxapi;
+
+import org.json.JSONObject;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+
+/**
+ * RecordSink
+ * <p>
+ * Destination for the member and event records produced by a sync. Implementations decide
+ * how records are rendered and buffered: {@link ConsoleSink} prints them for a human,
+ * {@link NdjsonGzipSink} exports them to compressed files.
+ */
+public interface RecordSink extends Flushable, Closeable {
+
+    /**
+     * @param record one member or event record
+     * @throws IOException if the record could not be written
+     */
+    void accept(JSONObject record) throws IOException;
+
+    /**
+     * Called when the sync feeding this sink failed, before {@link #close()}, so that a sink
+     * which publishes its output on close can hold back the records accepted since the last
+     * {@link #flush()}. Records flushed before may already be covered by a saved checkpoint and
+     * must still be published. Does nothing by default.
+     *
+     * @throws IOException if the pending output could not be discarded
+     */
+    default void abort() throws IOException {
+    }
+}
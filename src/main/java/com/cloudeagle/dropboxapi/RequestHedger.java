@@ -0,0 +1,267 @@
+package com.cloudeagle.dropboxapi;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * RequestHedger
+ * <p>
+ * Policy for hedged requests on idempotent read endpoints. {@link DropboxClient} sends a
+ * second copy of a call that has not answered after the endpoint's recent latency
+ * percentile (p95 by default), uses whichever response arrives first and cancels the other,
+ * so one stalled members/list/continue or get_events/continue page no longer holds a sync
+ * until the read timeout.
+ * <p>
+ * - Time to response headers is tracked per route over a ring of recent samples; a route
+ *   is not hedged until it has {@code minSamples} of them. A copy cancelled because the
+ *   other answered first counts with the time it had waited.
+ * - The hedge delay never drops below {@code minDelay}, so fast endpoints are not doubled
+ *   by scheduling noise.
+ * - A budget keeps hedges within {@code budgetPercent} of all hedgeable calls: every call
+ *   earns that fraction of a credit (up to a small burst) and every hedge spends one.
+ * - Only routes listed as hedgeable are hedged; by default the read-only team/get_info,
+ *   team/members/list(/continue) and team_log/get_events(/continue).
+ * <p>
+ * Usage:
+ * RequestHedger hedger = new RequestHedger.Builder().percentile(95).budgetPercent(5).build();
+ * DropboxClient client = new DropboxClient(transport, scheduler, endpoints, metrics, hedger);
+ */
+public class RequestHedger {
+
+    /** Read-only routes hedged unless configured otherwise. */
+    public static final Set<String> DEFAULT_ROUTES = Collections.unmodifiableSet(new HashSet<>(Arrays.asList(
+            "team/get_info", "team/members/list", "team/members/list/continue",
+            "team_log/get_events", "team_log/get_events/continue")));
+
+    private final Set<String> routes;
+    private final double percentile;
+    private final int minSamples;
+    private final long minDelayNanos;
+    private final double budgetFraction;
+    private final double maxCredits;
+    private final int window;
+    private final ConcurrentMap<String, LatencyWindow> byRoute = new ConcurrentHashMap<>();
+
+    // hedge budget, guarded by this
+    private double credits;
+
+    private RequestHedger(Builder b) {
+        this.routes = Collections.unmodifiableSet(new HashSet<>(b.routes));
+        this.percentile = b.percentile;
+        this.minSamples = b.minSamples;
+        this.minDelayNanos = TimeUnit.MILLISECONDS.toNanos(b.minDelayMillis);
+        this.budgetFraction = b.budgetPercent / 100.0;
+        this.maxCredits = b.burst;
+        this.window = Math.max(b.minSamples, b.window);
+        this.credits = b.burst;
+    }
+
+    /**
+     * Build a hedger from "hedge.*" properties.
+     * Keys: hedge.enabled (false), hedge.percentile (95), hedge.budget_percent (5),
+     * hedge.min_delay_millis (50), hedge.min_samples (20), hedge.routes (comma-separated,
+     * default {@link #DEFAULT_ROUTES}).
+     *
+     * @param cfg configuration (e.g. config.properties)
+     * @return the hedger, or null if hedging is disabled
+     */
+    public static RequestHedger fromProperties(Properties cfg) {
+        if (!Boolean.parseBoolean(cfg.getProperty("hedge.enabled", "false").trim())) {
+            return null;
+        }
+        Builder b = new Builder()
+                .percentile(Double.parseDouble(cfg.getProperty("hedge.percentile", "95").trim()))
+                .budgetPercent(Double.parseDouble(cfg.getProperty("hedge.budget_percent", "5").trim()))
+                .minDelayMillis(Long.parseLong(cfg.getProperty("hedge.min_delay_millis", "50").trim()))
+                .minSamples(Integer.parseInt(cfg.getProperty("hedge.min_samples", "20").trim()));
+        String routes = cfg.getProperty("hedge.routes");
+        if (routes != null && !routes.trim().isEmpty()) {
+            Set<String> set = new HashSet<>();
+            for (String r : routes.split(",")) {
+                if (!r.trim().isEmpty()) {
+                    set.add(r.trim());
+                }
+            }
+            b.routes(set);
+        }
+        return b.build();
+    }
+
+    /**
+     * @param url full request URL
+     * @return true if calls to this URL may be hedged
+     */
+    public boolean covers(String url) {
+        return routes.contains(ClientMetrics.routeOf(url));
+    }
+
+    /**
+     * Register one hedgeable call and decide when to hedge it.
+     *
+     * @param url full request URL
+     * @return nanoseconds to wait for a response before hedging, or -1 if the route has too
+     * few latency samples yet
+     */
+    public long delayNanos(String url) {
+        synchronized (this) {
+            credits = Math.min(maxCredits, credits + budgetFraction);
+        }
+        long p = window(url).percentile(percentile, minSamples);
+        return p < 0 ? -1 : Math.max(minDelayNanos, p);
+    }
+
+    /**
+     * Spend one credit of the hedge budget.
+     *
+     * @return false if the budget is exhausted and the call must not be hedged
+     */
+    public synchronized boolean tryHedge() {
+        // tolerance for the rounding of repeatedly added fractions
+        if (credits < 1 - 1e-9) {
+            return false;
+        }
+        credits -= 1;
+        return true;
+    }
+
+    /**
+     * Give back a credit taken by {@link #tryHedge()} for a hedge that was not sent.
+     */
+    public synchronized void refund() {
+        credits = Math.min(maxCredits, credits + 1);
+    }
+
+    /**
+     * @param url   full request URL
+     * @param nanos time from sending one copy of a call to its response headers
+     */
+    public void record(String url, long nanos) {
+        window(url).add(nanos);
+    }
+
+    /**
+     * @return latency samples currently kept for the route of {@code url}
+     */
+    int sampleCount(String url) {
+        return window(url).size();
+    }
+
+    private LatencyWindow window(String url) {
+        String route = ClientMetrics.routeOf(url);
+        LatencyWindow w = byRoute.get(route);
+        return w != null ? w : byRoute.computeIfAbsent(route, r -> new LatencyWindow(window));
+    }
+
+    /**
+     * Ring of the most recent latencies of one route. The percentile is recomputed at most
+     * once every few samples, since sorting the ring on every call would cost more than it saves.
+     */
+    private static final class LatencyWindow {
+        private static final int RECOMPUTE_EVERY = 8;
+
+        private final long[] samples;
+        private int next;
+        private int size;
+        private int sinceSorted = RECOMPUTE_EVERY;
+        private double cachedFor = -1;
+        private long cached = -1;
+
+        private LatencyWindow(int capacity) {
+            this.samples = new long[Math.max(1, capacity)];
+        }
+
+        private synchronized void add(long nanos) {
+            samples[next] = nanos;
+            next = (next + 1) % samples.length;
+            size = Math.min(size + 1, samples.length);
+            sinceSorted++;
+        }
+
+        private synchronized int size() {
+            return size;
+        }
+
+        private synchronized long percentile(double p, int minSamples) {
+            if (size < Math.max(1, minSamples)) {
+                return -1;
+            }
+            if (sinceSorted >= RECOMPUTE_EVERY || cachedFor != p) {
+                long[] sorted = Arrays.copyOf(samples, size);
+                Arrays.sort(sorted);
+                int idx = (int) Math.ceil(p / 100.0 * size) - 1;
+                cached = sorted[Math.max(0, Math.min(size - 1, idx))];
+                cachedFor = p;
+                sinceSorted = 0;
+            }
+            return cached;
+        }
+    }
+
+    /**
+     * Builder for {@link RequestHedger}.
+     */
+    public static final class Builder {
+        private Set<String> routes = DEFAULT_ROUTES;
+        private double percentile = 95;
+        private double budgetPercent = 5;
+        private double burst = 5;
+        private long minDelayMillis = 50;
+        private int minSamples = 20;
+        private int window = 256;
+
+        /** Routes that may be hedged (e.g. "team/members/list/continue"); read-only ones only. */
+        public Builder routes(Set<String> routes) {
+            this.routes = routes;
+            return this;
+        }
+
+        /** Latency percentile after which a call is hedged (0..100). */
+        public Builder percentile(double percentile) {
+            if (percentile <= 0 || percentile > 100) {
+                throw new IllegalArgumentException("percentile must be in (0, 100]");
+            }
+            this.percentile = percentile;
+            return this;
+        }
+
+        /** Hedges allowed, as a percentage of hedgeable calls. */
+        public Builder budgetPercent(double percent) {
+            this.budgetPercent = Math.max(0, percent);
+            return this;
+        }
+
+        /** Hedges that may be sent back-to-back when the budget is full. */
+        public Builder burst(double burst) {
+            this.burst = Math.max(1, burst);
+            return this;
+        }
+
+        /** Lower bound of the hedge delay. */
+        public Builder minDelayMillis(long millis) {
+            this.minDelayMillis = Math.max(0, millis);
+            return this;
+        }
+
+        /** Latency samples a route needs before it is hedged. */
+        public Builder minSamples(int n) {
+            this.minSamples = Math.max(1, n);
+            return this;
+        }
+
+        /** Number of recent latency samples kept per route. */
+        public Builder window(int n) {
+            this.window = Math.max(1, n);
+            return this;
+        }
+
+        public RequestHedger build() {
+            return new RequestHedger(this);
+        }
+    }
+}
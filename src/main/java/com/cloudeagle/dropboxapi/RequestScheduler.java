@@ -0,0 +1,244 @@
+package com.cloudeagle.dropboxapi;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.SocketTimeoutException;
+import java.util.Properties;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * RequestScheduler
+ * <p>
+ * Rate-limit-aware admission control shared by every caller of a {@link DropboxClient}.
+ * <p>
+ * - A token bucket (requests per second plus a burst allowance) paces all requests, so
+ *   parallel syncs together stay close to the allowed rate instead of overshooting it.
+ * - When Dropbox answers 429 (or a too_many_requests error body), the Retry-After delay
+ *   pauses the whole bucket, not just the caller that saw it, and the request is retried.
+ * - Transient failures (500/502/503/504 and network errors) are retried with jittered
+ *   exponential backoff ("full jitter": a random delay up to base * 2^attempt).
+ */
+public class RequestScheduler {
+
+    private static final long DEFAULT_RETRY_AFTER_MILLIS = 1000;
+
+    private static final ScheduledExecutorService TIMER = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "dropbox-request-timer");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private final long intervalNanos;
+    private final double burst;
+    private final int maxRetries;
+    private final long baseBackoffMillis;
+    private final long maxBackoffMillis;
+
+    // token bucket state, guarded by this
+    private double storedPermits;
+    private long nextFreeNanos;
+
+    /**
+     * Defaults: 20 requests/s, burst of 20, 5 retries, backoff from 500 ms up to 30 s.
+     */
+    public RequestScheduler() {
+        this(20, 20, 5, 500, 30_000);
+    }
+
+    /**
+     * @param permitsPerSecond  sustained request rate shared by all callers
+     * @param burst             requests that may be sent back-to-back after an idle period
+     * @param maxRetries        retries per request for throttling and transient errors
+     * @param baseBackoffMillis first backoff step for transient errors
+     * @param maxBackoffMillis  cap for a single backoff delay
+     */
+    public RequestScheduler(double permitsPerSecond, int burst, int maxRetries, long baseBackoffMillis, long maxBackoffMillis) {
+        if (permitsPerSecond <= 0) {
+            throw new IllegalArgumentException("permitsPerSecond must be positive");
+        }
+        this.intervalNanos = (long) (TimeUnit.SECONDS.toNanos(1) / permitsPerSecond);
+        this.burst = Math.max(1, burst);
+        this.maxRetries = Math.max(0, maxRetries);
+        this.baseBackoffMillis = Math.max(1, baseBackoffMillis);
+        this.maxBackoffMillis = Math.max(this.baseBackoffMillis, maxBackoffMillis);
+        this.storedPermits = this.burst;
+        this.nextFreeNanos = System.nanoTime();
+    }
+
+    /**
+     * Build a scheduler from "api.*" properties; missing keys keep their defaults.
+     * Keys: api.requests_per_second, api.burst, api.max_retries, api.backoff_base_millis,
+     * api.backoff_max_millis.
+     *
+     * @param cfg configuration (e.g. config.properties)
+     * @return configured scheduler
+     */
+    public static RequestScheduler fromProperties(Properties cfg) {
+        return new RequestScheduler(
+                Double.parseDouble(cfg.getProperty("api.requests_per_second", "20").trim()),
+                Integer.parseInt(cfg.getProperty("api.burst", "20").trim()),
+                Integer.parseInt(cfg.getProperty("api.max_retries", "5").trim()),
+                Long.parseLong(cfg.getProperty("api.backoff_base_millis", "500").trim()),
+                Long.parseLong(cfg.getProperty("api.backoff_max_millis", "30000").trim()));
+    }
+
+    /**
+     * Take one permit from the bucket, blocking until it is available.
+     *
+     * @throws InterruptedIOException if interrupted while waiting
+     */
+    public void acquire() throws InterruptedIOException {
+        long waitNanos = reserve();
+        if (waitNanos > 0) {
+            try {
+                TimeUnit.NANOSECONDS.sleep(waitNanos);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for a request permit");
+            }
+        }
+    }
+
+    /**
+     * Take one permit from the bucket without blocking.
+     *
+     * @return nanoseconds the caller must wait before sending
+     */
+    public synchronized long reserve() {
+        long now = System.nanoTime();
+        if (now > nextFreeNanos) {
+            storedPermits = Math.min(burst, storedPermits + (double) (now - nextFreeNanos) / intervalNanos);
+            nextFreeNanos = now;
+        }
+        long waitNanos = nextFreeNanos - now;
+        if (storedPermits >= 1) {
+            storedPermits -= 1;
+        } else {
+            nextFreeNanos += intervalNanos;
+        }
+        return waitNanos;
+    }
+
+    /**
+     * Take one permit only if it is available right now; used for optional extra requests
+     * such as hedges, which must never delay regular ones.
+     *
+     * @return true if a permit was taken
+     */
+    public synchronized boolean tryAcquire() {
+        long now = System.nanoTime();
+        if (now > nextFreeNanos) {
+            storedPermits = Math.min(burst, storedPermits + (double) (now - nextFreeNanos) / intervalNanos);
+            nextFreeNanos = now;
+        }
+        if (nextFreeNanos > now || storedPermits < 1) {
+            return false;
+        }
+        storedPermits -= 1;
+        return true;
+    }
+
+    /**
+     * Return a permit taken by {@link #tryAcquire()} for a request that was not sent.
+     */
+    public synchronized void release() {
+        storedPermits = Math.min(burst, storedPermits + 1);
+    }
+
+    /**
+     * Pause every caller: no permit is handed out for the next {@code delayMillis}.
+     *
+     * @param delayMillis pause length
+     */
+    public synchronized void pause(long delayMillis) {
+        long until = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(delayMillis);
+        storedPermits = 0;
+        if (until > nextFreeNanos) {
+            nextFreeNanos = until;
+        }
+    }
+
+    /**
+     * Decide whether a failed attempt should be retried.
+     * Throttling responses also pause the shared bucket for their Retry-After delay.
+     *
+     * @param error   failure of attempt number {@code attempt}
+     * @param attempt zero-based attempt number
+     * @return milliseconds to wait before retrying (0 when the bucket already enforces the
+     * wait), or -1 if the error must be propagated
+     */
+    public long onFailure(IOException error, int attempt) {
+        if (attempt >= maxRetries || error instanceof InterruptedIOException && !isTimeout(error)) {
+            return -1;
+        }
+        if (error instanceof HttpStatusException) {
+            HttpStatusException http = (HttpStatusException) error;
+            if (isThrottled(http)) {
+                pause(retryAfterMillis(http));
+                return 0;
+            }
+            if (!isTransient(http.getStatusCode())) {
+                return -1;
+            }
+        }
+        return backoffMillis(attempt);
+    }
+
+    /**
+     * Full-jitter exponential backoff.
+     *
+     * @param attempt zero-based attempt number
+     * @return random delay in [0, min(max, base * 2^attempt)]
+     */
+    public long backoffMillis(int attempt) {
+        long cap = baseBackoffMillis << Math.min(attempt, 20);
+        cap = Math.min(maxBackoffMillis, cap);
+        return ThreadLocalRandom.current().nextLong(cap + 1);
+    }
+
+    /**
+     * Run {@code task} on the scheduler's timer thread after {@code delayNanos}.
+     */
+    void schedule(Runnable task, long delayNanos) {
+        TIMER.schedule(task, delayNanos, TimeUnit.NANOSECONDS);
+    }
+
+    static boolean isThrottled(HttpStatusException e) {
+        if (e.getStatusCode() == 429) {
+            return true;
+        }
+        String body = e.getResponseBody();
+        return body != null && body.contains("too_many_requests");
+    }
+
+    private static boolean isTransient(int status) {
+        return status == 500 || status == 502 || status == 503 || status == 504;
+    }
+
+    private static boolean isTimeout(IOException e) {
+        return e instanceof SocketTimeoutException;
+    }
+
+    private static long retryAfterMillis(HttpStatusException e) {
+        if (e.getRetryAfterSeconds() >= 0) {
+            return TimeUnit.SECONDS.toMillis(e.getRetryAfterSeconds());
+        }
+        // Dropbox also reports it in the error body: {"error": {"retry_after": 1, ...}}
+        try {
+            JSONObject body = new JSONObject(e.getResponseBody());
+            JSONObject err = body.optJSONObject("error");
+            if (err != null && err.has("retry_after")) {
+                return TimeUnit.SECONDS.toMillis(err.optLong("retry_after", 1));
+            }
+        } catch (JSONException ignored) {
+            // plain-text body
+        }
+        return DEFAULT_RETRY_AFTER_MILLIS;
+    }
+}
@@ -0,0 +1,413 @@
+package com.cloudeagle.dropboxapi;
+
+import org.json.JSONObject;
+import org.json.JSONTokener;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+
+/**
+ * ResponseCache
+ * <p>
+ * Keeps responses of rarely changing endpoints (team/get_info, the full member list) so that
+ * repeated runs skip those round-trips. Each endpoint has its own TTL; endpoints without a
+ * TTL are never cached. Entries live in a size-bounded LRU map and, if a snapshot file is
+ * set, are written to disk on every update and read back at startup, so a warm start needs
+ * no network call at all for them.
+ * <p>
+ * Record lists such as the member list are not held in memory: a {@link Spool} writes them
+ * as NDJSON to a file next to the snapshot while they stream in, and {@link #replay} reads
+ * them back one record at a time. Without a snapshot file, lists are not cached at all.
+ * <p>
+ * With bypass on, lookups always miss but fresh responses are still stored, which forces a
+ * refresh without losing the cache for the next run.
+ * <p>
+ * A cache (and its snapshot) belongs to one team; use a separate snapshot file per team.
+ * <p>
+ * Usage:
+ * ResponseCache cache = ResponseCache.fromProperties(cfg);
+ * DropboxService service = new DropboxService(client, cache);
+ */
+public class ResponseCache {
+
+    private static final String KEY_EXPIRES_AT = "expires_at";
+    private static final String KEY_VALUE = "value";
+    private static final String KEY_SPOOL_FILE = "spool_file";
+    private static final String KEY_COUNT = "count";
+
+    private final int maxEntries;
+    private final Map<String, Long> ttlMillis;
+    private final Path snapshotFile;
+    private final LongSupplier clock;
+    private final LinkedHashMap<String, CachedResponse> entries;
+    private volatile boolean bypass;
+
+    private ResponseCache(Builder b) {
+        this.maxEntries = Math.max(1, b.maxEntries);
+        this.ttlMillis = new HashMap<>(b.ttlMillis);
+        this.snapshotFile = b.snapshotFile;
+        this.clock = b.clock;
+        this.bypass = b.bypass;
+        // access-ordered, so the eldest entry is the least recently used one
+        this.entries = new LinkedHashMap<String, CachedResponse>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedResponse> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Build a cache from "cache.*" properties; missing keys keep their defaults.
+     * Keys: cache.max_entries (64), cache.team_info_ttl_seconds (3600),
+     * cache.members_ttl_seconds (900), cache.snapshot_file (unset = memory only, and the
+     * member list is not cached). A TTL of 0 disables caching for that endpoint.
+     *
+     * @param cfg configuration (e.g. config.properties)
+     * @return cache, with its snapshot loaded if one exists
+     */
+    public static ResponseCache fromProperties(Properties cfg) {
+        Builder b = new Builder()
+                .maxEntries(Integer.parseInt(cfg.getProperty("cache.max_entries", "64").trim()))
+                .ttl(DropboxService.TEAM_INFO, Duration.ofSeconds(
+                        Long.parseLong(cfg.getProperty("cache.team_info_ttl_seconds", "3600").trim())))
+                .ttl(DropboxService.MEMBERS_LIST, Duration.ofSeconds(
+                        Long.parseLong(cfg.getProperty("cache.members_ttl_seconds", "900").trim())));
+        String snapshot = cfg.getProperty("cache.snapshot_file");
+        if (snapshot != null && !snapshot.trim().isEmpty()) {
+            b.snapshot(Paths.get(snapshot.trim()));
+        }
+        return b.build();
+    }
+
+    /**
+     * @param key endpoint route, e.g. "team/get_info"
+     * @return the cached response, or null if absent, expired or bypassed
+     */
+    public synchronized JSONObject get(String key) {
+        if (bypass) {
+            return null;
+        }
+        CachedResponse e = entries.get(key);
+        if (e == null) {
+            return null;
+        }
+        if (e.expiresAt <= clock.getAsLong()) {
+            entries.remove(key);
+            return null;
+        }
+        return e.value;
+    }
+
+    /**
+     * Store a response under the TTL configured for {@code key}. Does nothing if the
+     * endpoint has no TTL. The snapshot, if any, is rewritten.
+     *
+     * @param key   endpoint route, e.g. "team/get_info"
+     * @param value response to keep; callers must not modify it afterwards
+     * @throws IOException if the snapshot cannot be written; the in-memory entry is kept
+     */
+    public synchronized void put(String key, JSONObject value) throws IOException {
+        Long ttl = ttlMillis.get(key);
+        if (ttl == null || ttl <= 0) {
+            return;
+        }
+        entries.put(key, new CachedResponse(clock.getAsLong() + ttl, value));
+        saveSnapshot();
+    }
+
+    /**
+     * Feed the records spooled under {@code key} to {@code consumer}, oldest first.
+     *
+     * @param key      endpoint route, e.g. "team/members/list"
+     * @param consumer receives each record
+     * @return number of records replayed, or -1 if none are cached (absent, expired, bypassed
+     * or spool file gone)
+     * @throws IOException if the spool file cannot be read
+     */
+    public int replay(String key, Consumer<JSONObject> consumer) throws IOException {
+        JSONObject entry = get(key);
+        Path file = entry != null && snapshotFile != null && entry.has(KEY_SPOOL_FILE)
+                ? snapshotFile.toAbsolutePath().resolveSibling(entry.getString(KEY_SPOOL_FILE)) : null;
+        if (file == null || !Files.exists(file)) {
+            return -1;
+        }
+        int count = 0;
+        try (BufferedReader in = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                consumer.accept(new JSONObject(line));
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Start spooling a fresh record list for {@code key}. The list replaces the cached one
+     * only once {@link Spool#commit()} is called.
+     *
+     * @param key endpoint route, e.g. "team/members/list"
+     * @return the spool, or null if {@code key} is not cached or there is no snapshot file
+     * @throws IOException if the spool file cannot be created
+     */
+    public Spool spool(String key) throws IOException {
+        if (snapshotFile == null || !isCacheable(key)) {
+            return null;
+        }
+        Path target = snapshotFile.toAbsolutePath();
+        Files.createDirectories(target.getParent());
+        Path file = target.resolveSibling(target.getFileName() + "." + key.replace('/', '_') + ".ndjson");
+        return new Spool(key, file, Files.createTempFile(target.getParent(), file.getFileName().toString(), ".tmp"));
+    }
+
+    /**
+     * @param key endpoint route
+     * @return true if responses for {@code key} are cached at all
+     */
+    public boolean isCacheable(String key) {
+        Long ttl = ttlMillis.get(key);
+        return ttl != null && ttl > 0;
+    }
+
+    /**
+     * Drop one entry from memory and from the snapshot.
+     *
+     * @param key endpoint route
+     * @throws IOException if the snapshot cannot be written
+     */
+    public synchronized void invalidate(String key) throws IOException {
+        if (entries.remove(key) != null) {
+            saveSnapshot();
+        }
+    }
+
+    /**
+     * @param bypass true to ignore cached entries (responses fetched meanwhile are still stored)
+     */
+    public void setBypass(boolean bypass) {
+        this.bypass = bypass;
+    }
+
+    public boolean isBypass() {
+        return bypass;
+    }
+
+    /**
+     * @return number of entries held, including expired ones not yet evicted
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    private void loadSnapshot() throws IOException {
+        if (snapshotFile == null || !Files.exists(snapshotFile)) {
+            return;
+        }
+        JSONObject root;
+        try (Reader in = Files.newBufferedReader(snapshotFile, StandardCharsets.UTF_8)) {
+            root = new JSONObject(new JSONTokener(in));
+        } catch (RuntimeException e) {
+            // a damaged snapshot only costs a cold start
+            System.err.println("Ignoring unreadable cache snapshot " + snapshotFile + ": " + e.getMessage());
+            return;
+        }
+        long now = clock.getAsLong();
+        Iterator<String> keys = root.keys();
+        while (keys.hasNext()) {
+            String key = keys.next();
+            JSONObject e = root.optJSONObject(key);
+            if (e == null || !isCacheable(key)) {
+                continue;
+            }
+            // never trust an expiry further out than the current TTL allows
+            long expiresAt = Math.min(e.optLong(KEY_EXPIRES_AT, 0), now + ttlMillis.get(key));
+            JSONObject value = e.optJSONObject(KEY_VALUE);
+            if (expiresAt > now && value != null) {
+                entries.put(key, new CachedResponse(expiresAt, value));
+            }
+        }
+    }
+
+    private void saveSnapshot() throws IOException {
+        if (snapshotFile == null) {
+            return;
+        }
+        Path target = snapshotFile.toAbsolutePath();
+        Path dir = target.getParent();
+        Files.createDirectories(dir);
+        Path tmp = Files.createTempFile(dir, target.getFileName().toString(), ".tmp");
+        try {
+            try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                Writer out = Channels.newWriter(ch, StandardCharsets.UTF_8.newEncoder(), 64 * 1024);
+                out.write('{');
+                boolean first = true;
+                for (Map.Entry<String, CachedResponse> e : entries.entrySet()) {
+                    if (!first) {
+                        out.write(',');
+                    }
+                    first = false;
+                    out.write(JSONObject.quote(e.getKey()));
+                    out.write(":{\"" + KEY_EXPIRES_AT + "\":" + e.getValue().expiresAt + ",\"" + KEY_VALUE + "\":");
+                    e.getValue().value.write(out);
+                    out.write('}');
+                }
+                out.write('}');
+                out.flush();
+                ch.force(true);
+            }
+            try {
+                Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    /**
+     * A record list being written to disk for {@link #replay}. Closing it without
+     * {@link #commit()} discards it and keeps the previously cached list.
+     */
+    public final class Spool implements RecordSink {
+        private final String key;
+        private final Path file;
+        private final Path tmp;
+        private final Writer out;
+        private int count;
+        private boolean committed;
+
+        private Spool(String key, Path file, Path tmp) throws IOException {
+            this.key = key;
+            this.file = file;
+            this.tmp = tmp;
+            this.out = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8);
+        }
+
+        @Override
+        public void accept(JSONObject record) throws IOException {
+            record.write(out);
+            out.write('\n');
+            count++;
+        }
+
+        @Override
+        public void flush() throws IOException {
+            out.flush();
+        }
+
+        /**
+         * Make the spooled list the cached one for {@code key}.
+         *
+         * @throws IOException if the spool or the snapshot cannot be written
+         */
+        public void commit() throws IOException {
+            out.close();
+            try {
+                Files.move(tmp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+            committed = true;
+            put(key, new JSONObject().put(KEY_SPOOL_FILE, file.getFileName().toString()).put(KEY_COUNT, count));
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (committed) {
+                return;
+            }
+            try {
+                out.close();
+            } finally {
+                Files.deleteIfExists(tmp);
+            }
+        }
+    }
+
+    private static final class CachedResponse {
+        private final long expiresAt;
+        private final JSONObject value;
+
+        private CachedResponse(long expiresAt, JSONObject value) {
+            this.expiresAt = expiresAt;
+            this.value = value;
+        }
+    }
+
+    /**
+     * Builder for {@link ResponseCache}.
+     */
+    public static final class Builder {
+        private int maxEntries = 64;
+        private final Map<String, Long> ttlMillis = new HashMap<>();
+        private Path snapshotFile;
+        private LongSupplier clock = System::currentTimeMillis;
+        private boolean bypass;
+
+        public Builder maxEntries(int maxEntries) {
+            this.maxEntries = maxEntries;
+            return this;
+        }
+
+        /**
+         * @param key endpoint route, e.g. "team/get_info"
+         * @param ttl how long a response stays valid; zero disables caching for the route
+         */
+        public Builder ttl(String key, Duration ttl) {
+            this.ttlMillis.put(key, ttl.toMillis());
+            return this;
+        }
+
+        /**
+         * @param snapshotFile JSON file the entries are persisted to and loaded from
+         */
+        public Builder snapshot(Path snapshotFile) {
+            this.snapshotFile = snapshotFile;
+            return this;
+        }
+
+        public Builder bypass(boolean bypass) {
+            this.bypass = bypass;
+            return this;
+        }
+
+        Builder clock(LongSupplier clock) {
+            this.clock = clock;
+            return this;
+        }
+
+        /**
+         * @return the cache, with the snapshot loaded if one exists
+         */
+        public ResponseCache build() {
+            ResponseCache cache = new ResponseCache(this);
+            try {
+                cache.loadSnapshot();
+            } catch (IOException e) {
+                System.err.println("Ignoring unreadable cache snapshot " + snapshotFile + ": " + e.getMessage());
+            }
+            return cache;
+        }
+    }
+}
@@ -0,0 +1,224 @@
+package com.cloudeagle.dropboxapi;
+
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ServeSync
+ * <p>
+ * Background sync behind serve mode: keeps a {@link MemberDirectory}, an {@link EventStore}
+ * and an hourly {@link EventAggregator} up to date so that {@link QueryServer} answers from
+ * memory and never waits on a Dropbox round trip.
+ * <p>
+ * - Members are refreshed on their own schedule with {@link MemberDirectory#refresh}, which
+ *   upserts in place, so lookups keep working while a refresh runs.
+ * - Events are pulled with an {@link EventSync} that starts {@code lookback} before startup
+ *   and then follows its cursor. Each page is buffered and published to the store and the
+ *   aggregator together once it has been fetched completely, so a page that fails halfway
+ *   and is fetched again is never counted twice. Events of the newest second that were
+ *   already published (EventSync delivers them again after a cursor reset) are recognized
+ *   by their content and skipped. The checkpoint is a temp file deleted on {@link #close()},
+ *   as the in-memory window is rebuilt on every start anyway.
+ * - A failed round is reported to System.err and retried on the next tick; the snapshots
+ *   keep serving the last good data in the meantime.
+ * <p>
+ * Usage:
+ * ServeSync sync = new ServeSync(client, tokens, Duration.ofDays(7), 1_000_000);
+ * sync.start(Duration.ofMinutes(5), Duration.ofMinutes(1));
+ * ...
+ * sync.close();
+ */
+public class ServeSync implements AutoCloseable {
+
+    private final DropboxClient client;
+    private final TokenProvider tokens;
+    private final Duration lookback;
+    private final MemberDirectory directory = new MemberDirectory();
+    private final EventStore store;
+    private final EventAggregator aggregator;
+    private final ScheduledExecutorService timer = Executors.newScheduledThreadPool(2, r -> {
+        Thread t = new Thread(r, "serve-sync");
+        t.setDaemon(true);
+        return t;
+    });
+
+    // written under this
+    private volatile Path checkpointFile;
+    // newest event second published so far, and the canonical JSON of the events published
+    // in that second; guarded by this
+    private long highWaterSecond = Long.MIN_VALUE;
+    private final Set<String> publishedAtHighWater = new HashSet<>();
+
+    private volatile Instant membersSyncedAt;
+    private volatile Instant eventsSyncedAt;
+    private volatile String lastError;
+
+    /**
+     * @param client    low-level HTTP client
+     * @param tokens    source of the OAuth2 bearer token
+     * @param lookback  how much event history is loaded at startup and kept in memory
+     * @param maxEvents upper bound of events kept in memory
+     */
+    public ServeSync(DropboxClient client, TokenProvider tokens, Duration lookback, int maxEvents) {
+        this.client = client;
+        this.tokens = tokens;
+        this.lookback = lookback;
+        this.store = new EventStore(lookback, maxEvents);
+        long hours = Math.max(1, lookback.toHours() + 1);
+        this.aggregator = new EventAggregator(Duration.ofHours(1), (int) Math.min(Integer.MAX_VALUE, hours));
+    }
+
+    /**
+     * Run the first member refresh and event poll right away and then repeat them.
+     *
+     * @param membersEvery delay between the end of one member refresh and the next
+     * @param eventsEvery  delay between the end of one event poll and the next
+     */
+    public void start(Duration membersEvery, Duration eventsEvery) {
+        timer.scheduleWithFixedDelay(this::refreshMembersQuietly, 0, membersEvery.toMillis(), TimeUnit.MILLISECONDS);
+        timer.scheduleWithFixedDelay(this::pollEventsQuietly, 0, eventsEvery.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Bring the member directory in line with team/members/list.
+     *
+     * @return what changed
+     * @throws IOException on HTTP or parse errors
+     */
+    public MemberDirectory.Changes refreshMembers() throws IOException {
+        MemberDirectory.Changes changes = directory.refresh(new DropboxService(client), tokens);
+        membersSyncedAt = Instant.now();
+        return changes;
+    }
+
+    /**
+     * Pull the events that arrived since the last poll (on the first poll, the lookback window).
+     *
+     * @return number of new events published
+     * @throws IOException on HTTP or checkpoint errors; pages already fetched stay published
+     */
+    public synchronized int pollEvents() throws IOException {
+        if (checkpointFile == null) {
+            checkpointFile = Files.createTempFile("serve-events", ".checkpoint");
+            new SyncCheckpoint(null, Instant.now().minus(lookback).toString()).save(checkpointFile);
+        }
+        List<JSONObject> page = new ArrayList<>();
+        EventSync.Run run = new EventSync(client, checkpointFile).start(tokens, page::add);
+        int published = 0;
+        boolean more;
+        do {
+            // a failed step leaves its partial page unpublished; the next poll fetches it again
+            page.clear();
+            more = run.step();
+            published += publish(page);
+        } while (more);
+        eventsSyncedAt = Instant.now();
+        return published;
+    }
+
+    /**
+     * Add one complete page to the store and the aggregator, skipping events of the high-water
+     * second that were published before.
+     *
+     * @return number of events published
+     */
+    private int publish(List<JSONObject> page) {
+        List<TeamEvent> events = new ArrayList<>(page.size());
+        for (JSONObject json : page) {
+            TeamEvent event = TeamEvent.fromJson(json);
+            long ts = event.getTimestampEpochSeconds();
+            if (ts > highWaterSecond) {
+                highWaterSecond = ts;
+                publishedAtHighWater.clear();
+            }
+            if (ts == highWaterSecond && !publishedAtHighWater.add(MemberSnapshotDiff.canonical(json))) {
+                continue;
+            }
+            events.add(event);
+            aggregator.add(event);
+        }
+        store.append(events);
+        return events.size();
+    }
+
+    public MemberDirectory getDirectory() {
+        return directory;
+    }
+
+    public EventStore getEventStore() {
+        return store;
+    }
+
+    public EventAggregator getAggregator() {
+        return aggregator;
+    }
+
+    /**
+     * @return end of the last successful member refresh, or null if none yet
+     */
+    public Instant getMembersSyncedAt() {
+        return membersSyncedAt;
+    }
+
+    /**
+     * @return end of the last successful event poll, or null if none yet
+     */
+    public Instant getEventsSyncedAt() {
+        return eventsSyncedAt;
+    }
+
+    /**
+     * @return message of the most recent failed round, or null if none failed
+     */
+    public String getLastError() {
+        return lastError;
+    }
+
+    private void refreshMembersQuietly() {
+        try {
+            refreshMembers();
+        } catch (Exception e) {
+            lastError = "members: " + e.getMessage();
+            System.err.println("Member refresh failed: " + e.getMessage());
+        }
+    }
+
+    private void pollEventsQuietly() {
+        try {
+            pollEvents();
+        } catch (Exception e) {
+            lastError = "events: " + e.getMessage();
+            System.err.println("Event poll failed: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public void close() {
+        timer.shutdownNow();
+        try {
+            timer.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        Path file = checkpointFile;
+        if (file != null) {
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException e) {
+                System.err.println("Could not delete " + file + ": " + e.getMessage());
+            }
+        }
+    }
+}
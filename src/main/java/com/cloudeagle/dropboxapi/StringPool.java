@@ -0,0 +1,62 @@
+package com.cloudeagle.dropboxapi;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * StringPool
+ * <p>
+ * Canonicalization table for values that repeat across many records (event categories,
+ * event types, member statuses, actor IDs). Every record that carries the same value then
+ * shares one String instance instead of holding its own copy.
+ * <p>
+ * The pool is bounded: once {@code maxSize} distinct values are stored, new values are
+ * returned as-is rather than pooled, so an unexpected high-cardinality field cannot grow it
+ * without limit.
+ */
+public class StringPool {
+
+    private static final StringPool SHARED = new StringPool(1_000_000);
+
+    private final ConcurrentHashMap<String, String> values = new ConcurrentHashMap<>();
+    private final int maxSize;
+
+    /**
+     * @param maxSize maximum number of distinct values kept
+     */
+    public StringPool(int maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * @return process-wide pool used by the domain model by default
+     */
+    public static StringPool shared() {
+        return SHARED;
+    }
+
+    /**
+     * @param value value to canonicalize (may be null)
+     * @return the pooled instance equal to {@code value}
+     */
+    public String intern(String value) {
+        if (value == null) {
+            return null;
+        }
+        String pooled = values.get(value);
+        if (pooled != null) {
+            return pooled;
+        }
+        if (values.size() >= maxSize) {
+            return value;
+        }
+        pooled = values.putIfAbsent(value, value);
+        return pooled != null ? pooled : value;
+    }
+
+    /**
+     * @return number of distinct values currently pooled
+     */
+    public int size() {
+        return values.size();
+    }
+}
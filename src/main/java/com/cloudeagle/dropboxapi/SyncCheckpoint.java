@@ -0,0 +1,117 @@
+package com.cloudeagle.dropboxapi;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Properties;
+
+/**
+ * SyncCheckpoint
+ * <p>
+ * Small durable record of how far an incremental event sync has got: the last
+ * team_log/get_events cursor and the newest event timestamp seen (the high-water mark).
+ * <p>
+ * Saved as a properties file. Writes go to a temp file in the same directory which is
+ * fsynced and then renamed over the old checkpoint, so a crash leaves either the old or
+ * the new checkpoint on disk, never a torn one.
+ */
+public class SyncCheckpoint {
+
+    private static final String KEY_CURSOR = "cursor";
+    private static final String KEY_HIGH_WATER = "high_water_timestamp";
+
+    private final String cursor;
+    private final String highWaterTimestamp;
+
+    /**
+     * @param cursor             last get_events cursor (may be null)
+     * @param highWaterTimestamp newest event timestamp seen, ISO-8601 (may be null)
+     */
+    public SyncCheckpoint(String cursor, String highWaterTimestamp) {
+        this.cursor = cursor;
+        this.highWaterTimestamp = highWaterTimestamp;
+    }
+
+    public String getCursor() {
+        return cursor;
+    }
+
+    public String getHighWaterTimestamp() {
+        return highWaterTimestamp;
+    }
+
+    /**
+     * Load a checkpoint.
+     *
+     * @param file checkpoint file
+     * @return the checkpoint, or null if the file does not exist yet
+     * @throws IOException if the file exists but cannot be read
+     */
+    public static SyncCheckpoint load(Path file) throws IOException {
+        if (!Files.exists(file)) {
+            return null;
+        }
+        Properties props = new Properties();
+        try (InputStream in = Files.newInputStream(file)) {
+            props.load(in);
+        }
+        return new SyncCheckpoint(props.getProperty(KEY_CURSOR), props.getProperty(KEY_HIGH_WATER));
+    }
+
+    /**
+     * Atomically replace the checkpoint file with this checkpoint (write temp, fsync, rename).
+     *
+     * @param file checkpoint file
+     * @throws IOException on write failure; the previous checkpoint is left untouched
+     */
+    public void save(Path file) throws IOException {
+        Path target = file.toAbsolutePath();
+        Path dir = target.getParent();
+        Files.createDirectories(dir);
+
+        Properties props = new Properties();
+        if (cursor != null) {
+            props.setProperty(KEY_CURSOR, cursor);
+        }
+        if (highWaterTimestamp != null) {
+            props.setProperty(KEY_HIGH_WATER, highWaterTimestamp);
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        props.store(bytes, "Dropbox team event sync checkpoint");
+
+        Path tmp = Files.createTempFile(dir, target.getFileName().toString(), ".tmp");
+        try {
+            try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                ByteBuffer buf = ByteBuffer.wrap(bytes.toByteArray());
+                while (buf.hasRemaining()) {
+                    ch.write(buf);
+                }
+                ch.force(true);
+            }
+            try {
+                Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+        fsyncDirectory(dir);
+    }
+
+    private static void fsyncDirectory(Path dir) {
+        // makes the rename itself durable; not every platform allows opening a directory
+        try (FileChannel ch = FileChannel.open(dir, StandardOpenOption.READ)) {
+            ch.force(true);
+        } catch (IOException ignored) {
+            // best effort
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package com.cloudeagle.dropboxapi;
+
+import java.io.IOException;
+
+/**
+ * SyncJob
+ * <p>
+ * A sync broken into small steps (normally one API page per step), so a scheduler can
+ * interleave the steps of many jobs and no single long job monopolizes a worker.
+ */
+@FunctionalInterface
+public interface SyncJob {
+
+    /**
+     * Perform the next step.
+     *
+     * @return true if the job has more steps to run
+     * @throws IOException if the step failed; the job is abandoned
+     */
+    boolean step() throws IOException;
+}
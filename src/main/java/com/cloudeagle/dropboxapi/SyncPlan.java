@@ -0,0 +1,298 @@
+package com.cloudeagle.dropboxapi;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * SyncPlan
+ * <p>
+ * Dependency graph of fetch tasks (team info, members, events, ...) that runs every task as
+ * soon as its dependencies have succeeded, so independent calls overlap and the plan takes
+ * as long as its critical path rather than the sum of all calls.
+ * <p>
+ * Each task has its own timeout; a task that runs over is reported as timed out and its
+ * thread is interrupted. A failed or timed-out task never cancels the others: only the
+ * tasks that depend on it are skipped. Dependencies must be added before the tasks that
+ * use them, which keeps the graph acyclic by construction.
+ * <p>
+ * Usage:
+ * SyncPlan plan = new SyncPlan()
+ *     .add("team_info", Duration.ofSeconds(30), () -> service.fetchTeamInfo(tokens))
+ *     .add("members", Duration.ofMinutes(5), () -> service.fetchAllUsers(tokens));
+ * SyncPlan.Report report = plan.execute(executor);
+ */
+public class SyncPlan {
+
+    /** Work done by one task. */
+    public interface Task {
+        void run() throws Exception;
+    }
+
+    /** Final state of a task. */
+    public enum Status {
+        SUCCEEDED, FAILED, TIMED_OUT, SKIPPED
+    }
+
+    private static final ScheduledExecutorService TIMEOUTS = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "sync-plan-timeouts");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private final Map<String, Node> nodes = new LinkedHashMap<>();
+
+    /**
+     * Add a task.
+     *
+     * @param name      unique task name
+     * @param timeout   maximum run time (null for none)
+     * @param task      the work
+     * @param dependsOn names of tasks that must succeed first; they must already be added
+     * @return this plan
+     * @throws IllegalArgumentException on a duplicate name or an unknown dependency
+     */
+    public SyncPlan add(String name, Duration timeout, Task task, String... dependsOn) {
+        if (nodes.containsKey(name)) {
+            throw new IllegalArgumentException("Duplicate task: " + name);
+        }
+        for (String dep : dependsOn) {
+            if (!nodes.containsKey(dep)) {
+                throw new IllegalArgumentException("Task " + name + " depends on unknown task " + dep);
+            }
+        }
+        nodes.put(name, new Node(name, timeout, task, dependsOn.clone()));
+        return this;
+    }
+
+    /**
+     * Start every task whose dependencies are met and return at once.
+     *
+     * @param executor runs the task bodies; should have a thread per task that may run at once
+     * @return future completed with the report once every task has finished or been skipped
+     */
+    public CompletableFuture<Report> start(ExecutorService executor) {
+        long planStart = System.nanoTime();
+        Map<String, CompletableFuture<Outcome>> futures = new LinkedHashMap<>();
+        for (Node node : nodes.values()) {
+            CompletableFuture<?>[] deps = new CompletableFuture<?>[node.dependsOn.length];
+            for (int i = 0; i < deps.length; i++) {
+                deps[i] = futures.get(node.dependsOn[i]);
+            }
+            // outcome futures always complete normally, so allOf does too
+            futures.put(node.name, CompletableFuture.allOf(deps).thenCompose(v -> {
+                for (String dep : node.dependsOn) {
+                    Outcome o = futures.get(dep).join();
+                    if (o.status != Status.SUCCEEDED) {
+                        return CompletableFuture.completedFuture(new Outcome(node, Status.SKIPPED,
+                                new IllegalStateException("dependency " + dep + " " + o.status), System.nanoTime(), 0));
+                    }
+                }
+                return run(node, executor);
+            }));
+        }
+        return CompletableFuture.allOf(futures.values().toArray(new CompletableFuture<?>[0])).thenApply(v -> {
+            Map<String, Outcome> outcomes = new LinkedHashMap<>();
+            for (Map.Entry<String, CompletableFuture<Outcome>> e : futures.entrySet()) {
+                outcomes.put(e.getKey(), e.getValue().join());
+            }
+            return new Report(outcomes, planStart, System.nanoTime() - planStart);
+        });
+    }
+
+    /**
+     * Run the plan and wait for it.
+     *
+     * @param executor runs the task bodies
+     * @return report of every task
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public Report execute(ExecutorService executor) throws InterruptedException {
+        try {
+            return start(executor).get();
+        } catch (ExecutionException e) {
+            // tasks report their own failures; only a bug in the plan itself gets here
+            throw new IllegalStateException("Sync plan failed", e.getCause());
+        }
+    }
+
+    private static CompletableFuture<Outcome> run(Node node, ExecutorService executor) {
+        CompletableFuture<Outcome> result = new CompletableFuture<>();
+        long start = System.nanoTime();
+        Future<?> running;
+        try {
+            running = executor.submit(() -> {
+                try {
+                    node.task.run();
+                    result.complete(new Outcome(node, Status.SUCCEEDED, null, start, System.nanoTime() - start));
+                } catch (Throwable t) {
+                    result.complete(new Outcome(node, Status.FAILED, t, start, System.nanoTime() - start));
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            result.complete(new Outcome(node, Status.FAILED, e, start, 0));
+            return result;
+        }
+        if (node.timeout != null) {
+            ScheduledFuture<?> timer = TIMEOUTS.schedule(() -> {
+                if (result.complete(new Outcome(node, Status.TIMED_OUT,
+                        new TimeoutException(node.name + " exceeded " + node.timeout), start, System.nanoTime() - start))) {
+                    running.cancel(true);
+                }
+            }, node.timeout.toNanos(), TimeUnit.NANOSECONDS);
+            result.whenComplete((o, e) -> timer.cancel(false));
+        }
+        return result;
+    }
+
+    private static final class Node {
+        private final String name;
+        private final Duration timeout;
+        private final Task task;
+        private final String[] dependsOn;
+
+        private Node(String name, Duration timeout, Task task, String[] dependsOn) {
+            this.name = name;
+            this.timeout = timeout;
+            this.task = task;
+            this.dependsOn = dependsOn;
+        }
+    }
+
+    /**
+     * Result of one task.
+     */
+    public static final class Outcome {
+        private final Node node;
+        private final Status status;
+        private final Throwable error;
+        private final long startNanos;
+        private final long durationNanos;
+
+        private Outcome(Node node, Status status, Throwable error, long startNanos, long durationNanos) {
+            this.node = node;
+            this.status = status;
+            this.error = error;
+            this.startNanos = startNanos;
+            this.durationNanos = durationNanos;
+        }
+
+        public String getName() {
+            return node.name;
+        }
+
+        public Status getStatus() {
+            return status;
+        }
+
+        /**
+         * @return why the task did not succeed, or null
+         */
+        public Throwable getError() {
+            return error;
+        }
+
+        public Duration getDuration() {
+            return Duration.ofNanos(durationNanos);
+        }
+
+        private long endNanos() {
+            return startNanos + durationNanos;
+        }
+    }
+
+    /**
+     * Outcome of every task plus the plan's wall time and critical path.
+     */
+    public static final class Report {
+        private final Map<String, Outcome> outcomes;
+        private final long planStartNanos;
+        private final long wallNanos;
+
+        private Report(Map<String, Outcome> outcomes, long planStartNanos, long wallNanos) {
+            this.outcomes = Collections.unmodifiableMap(outcomes);
+            this.planStartNanos = planStartNanos;
+            this.wallNanos = wallNanos;
+        }
+
+        /**
+         * @return outcomes by task name, in the order the tasks were added
+         */
+        public Map<String, Outcome> getOutcomes() {
+            return outcomes;
+        }
+
+        public Outcome get(String name) {
+            return outcomes.get(name);
+        }
+
+        public Duration getWallTime() {
+            return Duration.ofNanos(wallNanos);
+        }
+
+        public boolean allSucceeded() {
+            for (Outcome o : outcomes.values()) {
+                if (o.status != Status.SUCCEEDED) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * @return the chain of tasks that determined the wall time: the last task to finish,
+         * preceded by whichever of its dependencies finished last, and so on
+         */
+        public List<String> getCriticalPath() {
+            Outcome last = null;
+            for (Outcome o : outcomes.values()) {
+                if (last == null || o.endNanos() > last.endNanos()) {
+                    last = o;
+                }
+            }
+            List<String> path = new ArrayList<>();
+            while (last != null) {
+                path.add(0, last.node.name);
+                Outcome prev = null;
+                for (String dep : last.node.dependsOn) {
+                    Outcome d = outcomes.get(dep);
+                    if (prev == null || d.endNanos() > prev.endNanos()) {
+                        prev = d;
+                    }
+                }
+                last = prev;
+            }
+            return path;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder();
+            sb.append(String.format(Locale.ROOT, "Sync plan finished in %d ms, critical path %s",
+                    TimeUnit.NANOSECONDS.toMillis(wallNanos), getCriticalPath()));
+            for (Outcome o : outcomes.values()) {
+                sb.append(String.format(Locale.ROOT, "%n  %-12s %-9s start +%d ms, %d ms", o.node.name, o.status,
+                        Math.max(0, TimeUnit.NANOSECONDS.toMillis(o.startNanos - planStartNanos)),
+                        TimeUnit.NANOSECONDS.toMillis(o.durationNanos)));
+                if (o.error != null) {
+                    sb.append(" (").append(o.error).append(')');
+                }
+            }
+            return sb.toString();
+        }
+    }
+}
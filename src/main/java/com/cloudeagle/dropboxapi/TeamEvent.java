@@ -0,0 +1,110 @@
+package com.cloudeagle.dropboxapi;
+
+import org.json.JSONObject;
+
+import java.time.Instant;
+
+/**
+ * TeamEvent
+ * <p>
+ * Compact, immutable view of one team_log/get_events record. The timestamp is kept as
+ * epoch seconds (Dropbox reports second precision) and every repeated value (category,
+ * event type, actor ID and email) is canonicalized through a {@link StringPool}, so a
+ * large event window costs a few dozen bytes per event plus the shared strings.
+ */
+public final class TeamEvent {
+
+    private final long timestampEpochSeconds;
+    private final String category;
+    private final String eventType;
+    private final String actorId;
+    private final String actorEmail;
+    private final boolean involvesNonTeamMember;
+
+    public TeamEvent(long timestampEpochSeconds, String category, String eventType,
+                     String actorId, String actorEmail, boolean involvesNonTeamMember) {
+        this.timestampEpochSeconds = timestampEpochSeconds;
+        this.category = category;
+        this.eventType = eventType;
+        this.actorId = actorId;
+        this.actorEmail = actorEmail;
+        this.involvesNonTeamMember = involvesNonTeamMember;
+    }
+
+    /**
+     * @param event get_events record
+     * @return the event
+     */
+    public static TeamEvent fromJson(JSONObject event) {
+        return fromJson(event, StringPool.shared());
+    }
+
+    /**
+     * @param event get_events record
+     * @param pool  pool for repeated values
+     * @return the event
+     */
+    public static TeamEvent fromJson(JSONObject event, StringPool pool) {
+        String category = TeamMember.tag(event, "event_category");
+        if (category == null) {
+            category = TeamMember.tag(event, "category");
+        }
+        String actorId = null;
+        String actorEmail = null;
+        JSONObject actor = event.optJSONObject("actor");
+        if (actor != null) {
+            // actor is a union: {".tag": "user", "user": {...}} / {".tag": "admin", "admin": {...}}
+            String kind = actor.optString(".tag", null);
+            JSONObject who = kind != null ? actor.optJSONObject(kind) : null;
+            if (who != null) {
+                actorId = who.optString("team_member_id", null);
+                if (actorId == null) {
+                    actorId = who.optString("account_id", null);
+                }
+                actorEmail = who.optString("email", null);
+            }
+        }
+        return new TeamEvent(
+                TeamMember.parseEpochMillis(event.optString("timestamp", null)) / 1000L,
+                pool.intern(category),
+                pool.intern(TeamMember.tag(event, "event_type")),
+                pool.intern(actorId),
+                pool.intern(actorEmail),
+                event.optBoolean("involve_non_team_member", false));
+    }
+
+    /**
+     * @return event time in epoch seconds, or 0 if unknown
+     */
+    public long getTimestampEpochSeconds() {
+        return timestampEpochSeconds;
+    }
+
+    public String getCategory() {
+        return category;
+    }
+
+    public String getEventType() {
+        return eventType;
+    }
+
+    /**
+     * @return team_member_id (or account_id) of the actor, null for non-member actors
+     */
+    public String getActorId() {
+        return actorId;
+    }
+
+    public String getActorEmail() {
+        return actorEmail;
+    }
+
+    public boolean involvesNonTeamMember() {
+        return involvesNonTeamMember;
+    }
+
+    @Override
+    public String toString() {
+        return "[" + Instant.ofEpochSecond(timestampEpochSeconds) + "] " + category + " - " + eventType;
+    }
+}
@@ -0,0 +1,168 @@
+package com.cloudeagle.dropboxapi;
+
+import org.json.JSONObject;
+
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.Objects;
+
+/**
+ * TeamMember
+ * <p>
+ * Compact, immutable view of one team/members/list record. Only the fields the tool uses
+ * are kept; low-cardinality values (status, membership type, role) are canonicalized
+ * through a {@link StringPool} and the join date is stored as epoch milliseconds.
+ */
+public final class TeamMember {
+
+    private final String teamMemberId;
+    private final String accountId;
+    private final String email;
+    private final String displayName;
+    private final String status;
+    private final String membershipType;
+    private final String role;
+    private final long joinedOnEpochMillis;
+    private final boolean emailVerified;
+
+    public TeamMember(String teamMemberId, String accountId, String email, String displayName, String status,
+                      String membershipType, String role, long joinedOnEpochMillis, boolean emailVerified) {
+        this.teamMemberId = Objects.requireNonNull(teamMemberId, "teamMemberId");
+        this.accountId = accountId;
+        this.email = email;
+        this.displayName = displayName;
+        this.status = status;
+        this.membershipType = membershipType;
+        this.role = role;
+        this.joinedOnEpochMillis = joinedOnEpochMillis;
+        this.emailVerified = emailVerified;
+    }
+
+    /**
+     * Build from a members/list entry ({"profile": {...}, "role": {...}}) or a bare profile.
+     *
+     * @param member JSON record
+     * @return the member, or null if the record has no team_member_id
+     */
+    public static TeamMember fromJson(JSONObject member) {
+        return fromJson(member, StringPool.shared());
+    }
+
+    /**
+     * @param member JSON record
+     * @param pool   pool for repeated values
+     * @return the member, or null if the record has no team_member_id
+     */
+    public static TeamMember fromJson(JSONObject member, StringPool pool) {
+        JSONObject profile = member.optJSONObject("profile");
+        if (profile == null) {
+            profile = member;
+        }
+        String id = profile.optString("team_member_id", null);
+        if (id == null) {
+            return null;
+        }
+        JSONObject name = profile.optJSONObject("name");
+        return new TeamMember(
+                id,
+                profile.optString("account_id", null),
+                profile.optString("email", null),
+                name != null ? name.optString("display_name", null) : null,
+                pool.intern(tag(profile, "status")),
+                pool.intern(tag(profile, "membership_type")),
+                pool.intern(tag(member, "role")),
+                parseEpochMillis(profile.optString("joined_on", null)),
+                profile.optBoolean("email_verified", false));
+    }
+
+    /**
+     * Read a Dropbox union field, which is either {".tag": "value"} or a plain string.
+     */
+    static String tag(JSONObject obj, String key) {
+        Object v = obj.opt(key);
+        if (v instanceof JSONObject) {
+            return ((JSONObject) v).optString(".tag", null);
+        }
+        return v instanceof String ? (String) v : null;
+    }
+
+    static long parseEpochMillis(String iso) {
+        if (iso == null || iso.isEmpty()) {
+            return 0L;
+        }
+        try {
+            return Instant.parse(iso).toEpochMilli();
+        } catch (DateTimeParseException e) {
+            return 0L;
+        }
+    }
+
+    public String getTeamMemberId() {
+        return teamMemberId;
+    }
+
+    public String getAccountId() {
+        return accountId;
+    }
+
+    public String getEmail() {
+        return email;
+    }
+
+    public String getDisplayName() {
+        return displayName;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    public String getMembershipType() {
+        return membershipType;
+    }
+
+    public String getRole() {
+        return role;
+    }
+
+    /**
+     * @return join time in epoch milliseconds, or 0 if unknown
+     */
+    public long getJoinedOnEpochMillis() {
+        return joinedOnEpochMillis;
+    }
+
+    public boolean isEmailVerified() {
+        return emailVerified;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof TeamMember)) {
+            return false;
+        }
+        TeamMember m = (TeamMember) o;
+        return joinedOnEpochMillis == m.joinedOnEpochMillis
+                && emailVerified == m.emailVerified
+                && teamMemberId.equals(m.teamMemberId)
+                && Objects.equals(accountId, m.accountId)
+                && Objects.equals(email, m.email)
+                && Objects.equals(displayName, m.displayName)
+                && Objects.equals(status, m.status)
+                && Objects.equals(membershipType, m.membershipType)
+                && Objects.equals(role, m.role);
+    }
+
+    @Override
+    public int hashCode() {
+        return teamMemberId.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return email + " (" + status + ")";
+    }
+}
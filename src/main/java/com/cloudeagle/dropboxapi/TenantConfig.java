@@ -0,0 +1,96 @@
+package com.cloudeagle.dropboxapi;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Properties;
+import java.util.TreeSet;
+
+/**
+ * TenantConfig
+ * <p>
+ * Credentials and limits of one customer team handled by the {@link MultiTenantScheduler}.
+ * <p>
+ * Loaded from a properties file with one block of keys per tenant:
+ * tenant.acme.client_id=...
+ * tenant.acme.client_secret=...
+ * tenant.acme.refresh_token=...
+ * tenant.acme.max_concurrency=2      (optional, default 2)
+ */
+public final class TenantConfig {
+
+    private static final String PREFIX = "tenant.";
+
+    private final String tenantId;
+    private final String clientId;
+    private final String clientSecret;
+    private final String refreshToken;
+    private final int maxConcurrency;
+
+    public TenantConfig(String tenantId, String clientId, String clientSecret, String refreshToken, int maxConcurrency) {
+        this.tenantId = Objects.requireNonNull(tenantId, "tenantId");
+        this.clientId = Objects.requireNonNull(clientId, "clientId");
+        this.clientSecret = Objects.requireNonNull(clientSecret, "clientSecret");
+        this.refreshToken = Objects.requireNonNull(refreshToken, "refreshToken");
+        this.maxConcurrency = Math.max(1, maxConcurrency);
+    }
+
+    /**
+     * Read every "tenant.&lt;id&gt;.*" block.
+     *
+     * @param props tenant properties
+     * @return the tenants, sorted by id
+     * @throws IllegalArgumentException if a tenant is missing a required key
+     */
+    public static List<TenantConfig> loadAll(Properties props) {
+        TreeSet<String> ids = new TreeSet<>();
+        for (String key : props.stringPropertyNames()) {
+            if (key.startsWith(PREFIX)) {
+                int dot = key.indexOf('.', PREFIX.length());
+                if (dot > PREFIX.length()) {
+                    ids.add(key.substring(PREFIX.length(), dot));
+                }
+            }
+        }
+        List<TenantConfig> tenants = new ArrayList<>();
+        for (String id : ids) {
+            tenants.add(new TenantConfig(id,
+                    required(props, id, "client_id"),
+                    required(props, id, "client_secret"),
+                    required(props, id, "refresh_token"),
+                    Integer.parseInt(props.getProperty(PREFIX + id + ".max_concurrency", "2").trim())));
+        }
+        return tenants;
+    }
+
+    private static String required(Properties props, String id, String name) {
+        String v = props.getProperty(PREFIX + id + "." + name);
+        if (v == null || v.trim().isEmpty()) {
+            throw new IllegalArgumentException("Tenant '" + id + "' is missing " + PREFIX + id + "." + name);
+        }
+        return v.trim();
+    }
+
+    public String getTenantId() {
+        return tenantId;
+    }
+
+    public String getClientId() {
+        return clientId;
+    }
+
+    public String getClientSecret() {
+        return clientSecret;
+    }
+
+    public String getRefreshToken() {
+        return refreshToken;
+    }
+
+    /**
+     * @return maximum number of this tenant's steps running at the same time
+     */
+    public int getMaxConcurrency() {
+        return maxConcurrency;
+    }
+}
@@ -0,0 +1,232 @@
+package com.cloudeagle.dropboxapi;
+
+import org.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * TokenManager
+ * <p>
+ * Thread-safe {@link TokenProvider} backed by a Dropbox refresh token.
+ * <p>
+ * The current access token is cached and refreshed in the background once 80% of its
+ * {@code expires_in} lifetime has passed, so callers normally never wait for a refresh.
+ * If a caller does find the token expired, it joins the refresh already in flight:
+ * however many threads ask at once, only one refresh_token grant is sent.
+ * <p>
+ * With {@link #persistTo(TokenStore)} every new access token is also written to a
+ * {@link TokenStore}, so the next run can start without authorizing again.
+ * <p>
+ * Refreshes of all managers run on one small shared pool of daemon threads, so a process
+ * holding tokens for many tenants does not keep a thread per tenant.
+ * <p>
+ * Usage:
+ * TokenManager tokens = new TokenManager(authService, refreshToken, accessToken, expiresIn);
+ * service.fetchAllUsers(tokens);
+ * tokens.close();
+ */
+public class TokenManager implements TokenProvider, Closeable {
+
+    /** Tokens this close to expiry are treated as expired by callers. */
+    private static final long EXPIRY_SKEW_NANOS = TimeUnit.SECONDS.toNanos(30);
+    /** Delay before retrying a failed background refresh. */
+    private static final long RETRY_DELAY_SECONDS = 30;
+
+    private static final Logger LOG = LoggerFactory.getLogger(TokenManager.class);
+    private static final AtomicInteger THREAD_COUNTER = new AtomicInteger();
+    private static final ScheduledThreadPoolExecutor SCHEDULER = new ScheduledThreadPoolExecutor(2, r -> {
+        Thread t = new Thread(r, "dropbox-token-refresh-" + THREAD_COUNTER.incrementAndGet());
+        t.setDaemon(true);
+        return t;
+    });
+
+    static {
+        SCHEDULER.setRemoveOnCancelPolicy(true);
+    }
+
+    private final AuthService authService;
+    private final String refreshToken;
+
+    private volatile AccessToken current;
+    private volatile TokenStore store;
+    // guarded by this
+    private CompletableFuture<AccessToken> inflight;
+    // guarded by this
+    private ScheduledFuture<?> nextRefresh;
+    // guarded by this
+    private boolean closed;
+
+    /**
+     * Create a manager that fetches its first access token on demand.
+     *
+     * @param authService  service used for the refresh_token grant
+     * @param refreshToken long-lived refresh token
+     */
+    public TokenManager(AuthService authService, String refreshToken) {
+        this(authService, refreshToken, null, 0);
+    }
+
+    /**
+     * Create a manager seeded with an access token that is already known.
+     *
+     * @param authService      service used for the refresh_token grant
+     * @param refreshToken     long-lived refresh token
+     * @param accessToken      current access token (may be null)
+     * @param expiresInSeconds lifetime of {@code accessToken} in seconds
+     */
+    public TokenManager(AuthService authService, String refreshToken, String accessToken, long expiresInSeconds) {
+        this.authService = Objects.requireNonNull(authService, "authService");
+        this.refreshToken = Objects.requireNonNull(refreshToken, "refreshToken");
+        if (accessToken != null && !accessToken.isEmpty() && expiresInSeconds > 0) {
+            install(new AccessToken(accessToken, expiresInSeconds));
+        }
+    }
+
+    @Override
+    public String getAccessToken() throws IOException {
+        AccessToken token = current;
+        if (token != null && !token.isExpired()) {
+            return token.value;
+        }
+        try {
+            return refresh().join().value;
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            throw cause instanceof IOException ? (IOException) cause : new IOException("Token refresh failed", cause);
+        }
+    }
+
+    @Override
+    public void invalidate(String token) {
+        AccessToken cached = current;
+        if (cached != null && cached.value.equals(token)) {
+            current = null;
+        }
+    }
+
+    /**
+     * Start a refresh, or return the one already in flight.
+     *
+     * @return future completed with the new token
+     */
+    public synchronized CompletableFuture<AccessToken> refresh() {
+        if (inflight != null) {
+            return inflight;
+        }
+        CompletableFuture<AccessToken> future = new CompletableFuture<>();
+        if (closed) {
+            future.completeExceptionally(new IOException("TokenManager is closed"));
+            return future;
+        }
+        inflight = future;
+        SCHEDULER.execute(() -> {
+            try {
+                JSONObject response = authService.refreshAccessToken(refreshToken);
+                String value = response.optString("access_token", null);
+                if (value == null || value.isEmpty()) {
+                    throw new IOException("Token refresh returned no access_token");
+                }
+                AccessToken token = new AccessToken(value, response.optLong("expires_in", 14400));
+                install(token);
+                complete(future, token, null);
+            } catch (Exception e) {
+                scheduleRefresh(TimeUnit.SECONDS.toNanos(RETRY_DELAY_SECONDS));
+                complete(future, null, e);
+            }
+        });
+        return future;
+    }
+
+    /**
+     * Save the refresh token and the current access token to {@code store} now and after
+     * every refresh.
+     *
+     * @param store where tokens are persisted (null stops persisting)
+     * @throws IOException if the initial save fails
+     */
+    public void persistTo(TokenStore store) throws IOException {
+        this.store = store;
+        if (store != null) {
+            AccessToken token = current;
+            store.save(refreshToken, token != null ? token.value : null, token != null ? token.expiresAtMillis : 0);
+        }
+    }
+
+    /**
+     * Stop background refreshes.
+     */
+    @Override
+    public synchronized void close() {
+        closed = true;
+        if (nextRefresh != null) {
+            nextRefresh.cancel(false);
+            nextRefresh = null;
+        }
+    }
+
+    private void install(AccessToken token) {
+        current = token;
+        scheduleRefresh((token.expiresAtNanos - System.nanoTime()) * 4 / 5);
+        TokenStore target = store;
+        if (target != null) {
+            try {
+                target.save(refreshToken, token.value, token.expiresAtMillis);
+            } catch (IOException e) {
+                // the token itself is fine; only the next run's fast start is affected
+                LOG.warn("Could not save tokens to " + target.getFile() + ": " + e.getMessage());
+            }
+        }
+    }
+
+    private synchronized void scheduleRefresh(long delayNanos) {
+        if (closed) {
+            return;
+        }
+        if (nextRefresh != null) {
+            nextRefresh.cancel(false);
+        }
+        nextRefresh = SCHEDULER.schedule(this::refresh, Math.max(0, delayNanos), TimeUnit.NANOSECONDS);
+    }
+
+    private synchronized void complete(CompletableFuture<AccessToken> future, AccessToken token, Exception error) {
+        inflight = null;
+        if (error != null) {
+            future.completeExceptionally(error);
+        } else {
+            future.complete(token);
+        }
+    }
+
+    /**
+     * Cached access token and its expiry.
+     */
+    public static final class AccessToken {
+        private final String value;
+        private final long expiresAtNanos;
+        private final long expiresAtMillis;
+
+        private AccessToken(String value, long expiresInSeconds) {
+            this.value = value;
+            this.expiresAtNanos = System.nanoTime() + TimeUnit.SECONDS.toNanos(expiresInSeconds);
+            this.expiresAtMillis = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(expiresInSeconds);
+        }
+
+        public String getValue() {
+            return value;
+        }
+
+        private boolean isExpired() {
+            return System.nanoTime() - (expiresAtNanos - EXPIRY_SKEW_NANOS) >= 0;
+        }
+    }
+}
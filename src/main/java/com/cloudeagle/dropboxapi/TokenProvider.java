@@ -0,0 +1,36 @@
+package com.cloudeagle.dropboxapi;
+
+import java.io.IOException;
+
+/**
+ * TokenProvider
+ * <p>
+ * Source of OAuth2 bearer tokens for API calls. Long-running callers ask for a token on
+ * every request instead of holding one string, so an expired token can be replaced
+ * without restarting the sync.
+ */
+public interface TokenProvider {
+
+    /**
+     * @return a currently valid access token
+     * @throws IOException if a token could not be obtained
+     */
+    String getAccessToken() throws IOException;
+
+    /**
+     * Called when the API rejected {@code token} as expired or invalid, so the provider can
+     * drop it and fetch a new one on the next call. The default does nothing.
+     *
+     * @param token the rejected token
+     */
+    default void invalidate(String token) {
+    }
+
+    /**
+     * @param accessToken fixed token
+     * @return a provider that always returns {@code accessToken}
+     */
+    static TokenProvider of(String accessToken) {
+        return () -> accessToken;
+    }
+}
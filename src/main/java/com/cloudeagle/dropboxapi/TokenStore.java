@@ -0,0 +1,259 @@
+package com.cloudeagle.dropboxapi;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.PBEKeySpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * TokenStore
+ * <p>
+ * Encrypted file holding the refresh token and the last access token, so that later runs
+ * can skip the browser authorization and go straight to API calls.
+ * <p>
+ * The JSON payload is encrypted with AES-256-GCM under a key derived with
+ * PBKDF2-HMAC-SHA256 from a passphrase and a random per-file salt; GCM also detects any
+ * tampering, in which case the file is treated as absent. The file layout is
+ * magic "DBXTS1" | salt (16) | IV (12) | ciphertext+tag. Writes are atomic (temp file,
+ * fsync, rename) and the file is made owner-only where the file system supports it.
+ * <p>
+ * The passphrase comes from token_store.passphrase or the DROPBOX_TOKEN_STORE_PASSPHRASE
+ * environment variable. Without one the store stays off: deriving the key from the client
+ * secret would let anyone who can read config.properties decrypt the refresh token.
+ */
+public class TokenStore {
+
+    private static final byte[] MAGIC = "DBXTS1".getBytes(StandardCharsets.US_ASCII);
+    private static final int SALT_BYTES = 16;
+    private static final int IV_BYTES = 12;
+    private static final int TAG_BITS = 128;
+    private static final int KDF_ITERATIONS = 100_000;
+    private static final String PASSPHRASE_ENV = "DROPBOX_TOKEN_STORE_PASSPHRASE";
+    private static final Logger LOG = LoggerFactory.getLogger(TokenStore.class);
+
+    private final Path file;
+    private final char[] passphrase;
+    private final SecureRandom random = new SecureRandom();
+    // key derivation is slow on purpose, so the key is kept for the salt it was derived with
+    private byte[] salt;
+    private SecretKey key;
+
+    /**
+     * @param file       store location
+     * @param passphrase secret the encryption key is derived from
+     */
+    public TokenStore(Path file, char[] passphrase) {
+        this.file = file;
+        this.passphrase = passphrase.clone();
+    }
+
+    /**
+     * Build a store from "token_store.*" properties.
+     * Keys: token_store.enabled (true), token_store.file (dropbox-tokens.enc),
+     * token_store.passphrase (falls back to $DROPBOX_TOKEN_STORE_PASSPHRASE; required).
+     *
+     * @param cfg configuration (e.g. config.properties)
+     * @return the store, or null if disabled or no passphrase is set
+     */
+    public static TokenStore fromProperties(Properties cfg) {
+        return fromProperties(cfg, System.getenv(PASSPHRASE_ENV));
+    }
+
+    static TokenStore fromProperties(Properties cfg, String envPassphrase) {
+        if (!Boolean.parseBoolean(cfg.getProperty("token_store.enabled", "true").trim())) {
+            return null;
+        }
+        String passphrase = cfg.getProperty("token_store.passphrase");
+        if (passphrase == null || passphrase.isEmpty()) {
+            passphrase = envPassphrase;
+        }
+        if (passphrase == null || passphrase.isEmpty()) {
+            LOG.warn("Token store disabled: set token_store.passphrase or $" + PASSPHRASE_ENV
+                    + " to keep tokens between runs");
+            return null;
+        }
+        return new TokenStore(Paths.get(cfg.getProperty("token_store.file", "dropbox-tokens.enc").trim()),
+                passphrase.toCharArray());
+    }
+
+    /**
+     * @return the stored tokens, or null if there is no store, it cannot be decrypted with
+     * this passphrase, or it holds no refresh token
+     * @throws IOException if the file exists but cannot be read
+     */
+    public synchronized Tokens load() throws IOException {
+        if (!Files.exists(file)) {
+            return null;
+        }
+        byte[] data = Files.readAllBytes(file);
+        if (data.length < MAGIC.length + SALT_BYTES + IV_BYTES
+                || !Arrays.equals(MAGIC, Arrays.copyOf(data, MAGIC.length))) {
+            return null;
+        }
+        byte[] fileSalt = Arrays.copyOfRange(data, MAGIC.length, MAGIC.length + SALT_BYTES);
+        byte[] iv = Arrays.copyOfRange(data, MAGIC.length + SALT_BYTES, MAGIC.length + SALT_BYTES + IV_BYTES);
+        try {
+            Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+            cipher.init(Cipher.DECRYPT_MODE, keyFor(fileSalt), new GCMParameterSpec(TAG_BITS, iv));
+            cipher.updateAAD(MAGIC);
+            int offset = MAGIC.length + SALT_BYTES + IV_BYTES;
+            byte[] plain = cipher.doFinal(data, offset, data.length - offset);
+            JSONObject json = new JSONObject(new String(plain, StandardCharsets.UTF_8));
+            Arrays.fill(plain, (byte) 0);
+            String refreshToken = json.optString("refresh_token", null);
+            if (refreshToken == null || refreshToken.isEmpty()) {
+                return null;
+            }
+            return new Tokens(refreshToken, json.optString("access_token", null), json.optLong("expires_at", 0));
+        } catch (GeneralSecurityException | JSONException e) {
+            // wrong passphrase, tampering or a damaged file: behave as if nothing was stored
+            return null;
+        }
+    }
+
+    /**
+     * Replace the stored tokens.
+     *
+     * @param refreshToken           long-lived refresh token
+     * @param accessToken            current access token (may be null)
+     * @param accessExpiresAtMillis  expiry of {@code accessToken} in epoch millis (0 if unknown)
+     * @throws IOException on write or encryption failure; the previous store is left untouched
+     */
+    public synchronized void save(String refreshToken, String accessToken, long accessExpiresAtMillis) throws IOException {
+        JSONObject json = new JSONObject().put("refresh_token", refreshToken);
+        if (accessToken != null) {
+            json.put("access_token", accessToken).put("expires_at", accessExpiresAtMillis);
+        }
+        byte[] plain = json.toString().getBytes(StandardCharsets.UTF_8);
+        byte[] iv = new byte[IV_BYTES];
+        random.nextBytes(iv);
+        byte[] sealed;
+        try {
+            if (salt == null) {
+                byte[] fresh = new byte[SALT_BYTES];
+                random.nextBytes(fresh);
+                keyFor(fresh);
+            }
+            Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+            cipher.init(Cipher.ENCRYPT_MODE, key, new GCMParameterSpec(TAG_BITS, iv));
+            cipher.updateAAD(MAGIC);
+            sealed = cipher.doFinal(plain);
+        } catch (GeneralSecurityException e) {
+            throw new IOException("Cannot encrypt token store: " + e.getMessage(), e);
+        } finally {
+            Arrays.fill(plain, (byte) 0);
+        }
+        ByteBuffer out = ByteBuffer.allocate(MAGIC.length + SALT_BYTES + IV_BYTES + sealed.length);
+        out.put(MAGIC).put(salt).put(iv).put(sealed).flip();
+        write(out);
+    }
+
+    /**
+     * Remove the store, e.g. after Dropbox rejected the stored refresh token.
+     */
+    public synchronized void delete() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    private SecretKey keyFor(byte[] fileSalt) throws GeneralSecurityException {
+        if (key != null && Arrays.equals(salt, fileSalt)) {
+            return key;
+        }
+        PBEKeySpec spec = new PBEKeySpec(passphrase, fileSalt, KDF_ITERATIONS, 256);
+        try {
+            byte[] raw = SecretKeyFactory.getInstance("PBKDF2WithHmacSHA256").generateSecret(spec).getEncoded();
+            key = new SecretKeySpec(raw, "AES");
+            salt = fileSalt.clone();
+            return key;
+        } finally {
+            spec.clearPassword();
+        }
+    }
+
+    private void write(ByteBuffer data) throws IOException {
+        Path target = file.toAbsolutePath();
+        Path dir = target.getParent();
+        Files.createDirectories(dir);
+        Path tmp = Files.createTempFile(dir, target.getFileName().toString(), ".tmp");
+        try {
+            try {
+                Files.setPosixFilePermissions(tmp, PosixFilePermissions.fromString("rw-------"));
+            } catch (UnsupportedOperationException ignored) {
+                // not a POSIX file system
+            }
+            try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                while (data.hasRemaining()) {
+                    ch.write(data);
+                }
+                ch.force(true);
+            }
+            try {
+                Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    /**
+     * Tokens read from the store.
+     */
+    public static final class Tokens {
+        private final String refreshToken;
+        private final String accessToken;
+        private final long accessExpiresAtMillis;
+
+        Tokens(String refreshToken, String accessToken, long accessExpiresAtMillis) {
+            this.refreshToken = refreshToken;
+            this.accessToken = accessToken;
+            this.accessExpiresAtMillis = accessExpiresAtMillis;
+        }
+
+        public String getRefreshToken() {
+            return refreshToken;
+        }
+
+        /**
+         * @return the cached access token, or null if none was stored
+         */
+        public String getAccessToken() {
+            return accessToken;
+        }
+
+        /**
+         * @return remaining lifetime of the cached access token, 0 if it has expired
+         */
+        public long getExpiresInSeconds() {
+            return Math.max(0, TimeUnit.MILLISECONDS.toSeconds(accessExpiresAtMillis - System.currentTimeMillis()));
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package com.cloudeagle.dropboxapi;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringWriter;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.Scanner;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests of {@link ClientMetrics} recording and its Prometheus rendering, against
+ * {@link DropboxSimulator}.
+ */
+public class ClientMetricsTest {
+
+    @Test
+    public void routeIsDerivedFromUrl() {
+        assertEquals("team/members/list", ClientMetrics.routeOf("https://api.dropboxapi.com/2/team/members/list"));
+        assertEquals("oauth2/token", ClientMetrics.routeOf("https://api.dropboxapi.com/oauth2/token"));
+        ClientMetrics metrics = new ClientMetrics();
+        assertSame(metrics.endpoint("http://a/2/team/get_info"), metrics.endpoint("http://b/2/team/get_info"));
+    }
+
+    @Test
+    public void recordsPagesRetriesAndBytesPerEndpoint() throws IOException {
+        try (DropboxSimulator simulator = new DropboxSimulator.Builder().members(250).serverErrorRate(0.2).build()) {
+            ClientMetrics metrics = new ClientMetrics();
+            DropboxClient client = new DropboxClient(new HttpTransport.Builder().build(),
+                    new RequestScheduler(10_000, 10_000, 20, 1, 5), DropboxEndpoints.of(simulator.baseUrl()), metrics);
+
+            int members = new DropboxService(client).forEachMember(TokenProvider.of("t"), 100, m -> { });
+            assertEquals(250, members);
+
+            ClientMetrics.Endpoint first = metrics.endpoint(client.apiUrl("team/members/list"));
+            ClientMetrics.Endpoint next = metrics.endpoint(client.apiUrl("team/members/list/continue"));
+            assertEquals(3, first.getPages() + next.getPages());
+            assertEquals(3, first.getLatencyCount() + next.getLatencyCount());
+            assertEquals(first.getRetries() + next.getRetries(),
+                    first.getCount(ClientMetrics.Outcome.SERVER_ERROR) + next.getCount(ClientMetrics.Outcome.SERVER_ERROR));
+            assertTrue(first.getBytesRead() > 0 && next.getBytesRead() > 0);
+
+            StringWriter text = new StringWriter();
+            metrics.writePrometheus(text);
+            assertTrue(text.toString().contains("dropbox_pages_fetched_total{endpoint=\"team/members/list\"} 1\n"));
+            assertTrue(text.toString().contains("dropbox_request_duration_seconds_bucket{endpoint=\"team/members/list\",le=\"+Inf\"} 1\n"));
+        }
+    }
+
+    @Test
+    public void metricsServerAnswersScrapes() throws IOException {
+        ClientMetrics metrics = new ClientMetrics();
+        metrics.tokenRefreshed(true);
+        MetricsServer server = new MetricsServer(0, metrics);
+        server.start();
+        try {
+            HttpURLConnection conn = (HttpURLConnection) new URL("http://localhost:" + server.getPort() + "/metrics").openConnection();
+            assertEquals(200, conn.getResponseCode());
+            assertTrue(conn.getContentType().startsWith("text/plain; version=0.0.4"));
+            try (InputStream in = conn.getInputStream(); Scanner s = new Scanner(in, "UTF-8").useDelimiter("\\A")) {
+                assertTrue(s.next().contains("dropbox_token_refreshes_total 1\n"));
+            }
+        } finally {
+            server.stop();
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package com.cloudeagle.dropboxapi;
+
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests of {@link CursorPager} paging, next-page prefetch and close.
+ */
+public class CursorPagerTest {
+
+    private DropboxSimulator simulator;
+    private DropboxClient client;
+
+    @Before
+    public void startSimulator() throws IOException {
+        simulator = new DropboxSimulator.Builder().members(250).build();
+        client = new DropboxClient(new HttpTransport.Builder().build(),
+                new RequestScheduler(10_000, 10_000, 5, 1, 5), DropboxEndpoints.of(simulator.baseUrl()));
+    }
+
+    @After
+    public void stopSimulator() {
+        simulator.close();
+    }
+
+    private CursorPager pager(int limit) {
+        return new DropboxService(client).openMemberPager(TokenProvider.of("t"), limit);
+    }
+
+    /** Wait up to two seconds for the simulator to have seen {@code n} requests. */
+    private void awaitRequests(long n) throws InterruptedException {
+        for (int i = 0; i < 200 && simulator.getRequestCount() < n; i++) {
+            Thread.sleep(10);
+        }
+    }
+
+    @Test
+    public void recordsSpanEveryPageInOrder() {
+        int count = 0;
+        try (CursorPager pager = pager(100)) {
+            Iterator<JSONObject> members = pager.records("members");
+            while (members.hasNext()) {
+                JSONObject m = members.next();
+                assertEquals("dbmid:sim-" + count, m.getJSONObject("profile").getString("team_member_id"));
+                count++;
+            }
+            assertFalse(pager.hasNext());
+        }
+        assertEquals(250, count);
+        assertEquals(3, simulator.getRequestCount());
+    }
+
+    @Test
+    public void prefetchesExactlyOnePageAhead() throws InterruptedException {
+        try (CursorPager pager = pager(100)) {
+            awaitRequests(1);
+            Thread.sleep(200);
+            // the first page is requested on construction, nothing more until it is taken
+            assertEquals(1, simulator.getRequestCount());
+
+            pager.next();
+            awaitRequests(2);
+            Thread.sleep(200);
+            assertEquals(2, simulator.getRequestCount());
+            assertTrue(pager.getCursor() != null);
+        }
+    }
+
+    @Test
+    public void closeStopsPaging() throws InterruptedException {
+        CursorPager pager = pager(100);
+        pager.next();
+        pager.close();
+        assertFalse(pager.hasNext());
+        try {
+            pager.next();
+            fail("expected NoSuchElementException");
+        } catch (NoSuchElementException expected) {
+            // closed
+        }
+        Thread.sleep(200);
+        // at most the prefetch that was already in flight
+        assertTrue(simulator.getRequestCount() <= 2);
+    }
+
+    @Test
+    public void failedPageSurfacesAsUncheckedIOException() {
+        CursorPager pager = new CursorPager(client, client.apiUrl("team/members/list"), "{\"limit\": 100}",
+                client.apiUrl("team/members/list/continue"), TokenProvider.of(""));
+        try {
+            pager.next();
+            fail("expected UncheckedIOException");
+        } catch (UncheckedIOException e) {
+            assertTrue(e.getCause() instanceof HttpStatusException);
+            assertEquals(401, ((HttpStatusException) e.getCause()).getStatusCode());
+        } finally {
+            pager.close();
+        }
+    }
+}
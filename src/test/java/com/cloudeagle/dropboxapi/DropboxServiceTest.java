@@ -0,0 +1,170 @@
+package com.cloudeagle.dropboxapi;
+
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests of the streaming member walk in {@link DropboxService#forEachMember} and of the
+ * cached member list and the member change export.
+ */
+public class DropboxServiceTest {
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    private DropboxSimulator simulator;
+    private DropboxService service;
+
+    @Before
+    public void startSimulator() throws IOException {
+        simulator = new DropboxSimulator.Builder().members(250).build();
+        service = new DropboxService(new DropboxClient(new HttpTransport.Builder().build(),
+                new RequestScheduler(10_000, 10_000, 5, 1, 5), DropboxEndpoints.of(simulator.baseUrl())));
+    }
+
+    @After
+    public void stopSimulator() {
+        simulator.close();
+    }
+
+    @Test
+    public void membersArriveInOrderOnTheCallingThread() throws IOException {
+        Thread caller = Thread.currentThread();
+        List<String> ids = new ArrayList<>();
+        int count = service.forEachMember(TokenProvider.of("t"), 100, m -> {
+            assertEquals(caller, Thread.currentThread());
+            ids.add(m.getJSONObject("profile").getString("team_member_id"));
+        });
+
+        assertEquals(250, count);
+        assertEquals(250, ids.size());
+        assertEquals(3, simulator.getRequestCount());
+    }
+
+    @Test
+    public void nextPageIsFetchedWhileTheHandlerRuns() throws IOException {
+        long[] requestsSeen = {0};
+        service.forEachMember(TokenProvider.of("t"), 100, m -> {
+            if (requestsSeen[0] == 0) {
+                // hold the first record until the second page has been requested
+                for (int i = 0; i < 200 && simulator.getRequestCount() < 2; i++) {
+                    sleep(10);
+                }
+                requestsSeen[0] = simulator.getRequestCount();
+            }
+        });
+
+        assertTrue(requestsSeen[0] >= 2);
+    }
+
+    @Test
+    public void handlerFailureStopsTheWalk() throws IOException, InterruptedException {
+        try {
+            service.forEachMember(TokenProvider.of("t"), 10, m -> {
+                throw new IllegalStateException("stop");
+            });
+            fail("expected IllegalStateException");
+        } catch (IllegalStateException expected) {
+            // thrown by the handler
+        }
+        Thread.sleep(200);
+        // the prefetch thread stops once its queue of one page is full
+        assertTrue(simulator.getRequestCount() <= 3);
+    }
+
+    @Test
+    public void failedPageIsThrownToTheCaller() {
+        try {
+            service.forEachMember(TokenProvider.of(""), 100, m -> { });
+            fail("expected HttpStatusException");
+        } catch (IOException e) {
+            assertTrue(e instanceof HttpStatusException);
+            assertEquals(401, ((HttpStatusException) e).getStatusCode());
+        }
+    }
+
+    @Test
+    public void cachedMemberListIsReplayedFromItsSpool() throws IOException {
+        ResponseCache cache = new ResponseCache.Builder()
+                .ttl(DropboxService.MEMBERS_LIST, Duration.ofMinutes(15))
+                .snapshot(tmp.getRoot().toPath().resolve("cache.json")).build();
+        DropboxService cached = new DropboxService(new DropboxClient(new HttpTransport.Builder().build(),
+                new RequestScheduler(10_000, 10_000, 5, 1, 5), DropboxEndpoints.of(simulator.baseUrl())), cache);
+
+        List<JSONObject> first = new ArrayList<>();
+        assertEquals(250, cached.exportMembers(TokenProvider.of("t"), new Collecting(first)));
+        long requests = simulator.getRequestCount();
+        List<JSONObject> second = new ArrayList<>();
+        assertEquals(250, cached.exportMembers(TokenProvider.of("t"), new Collecting(second)));
+
+        assertEquals(requests, simulator.getRequestCount());
+        assertEquals(first.toString(), second.toString());
+    }
+
+    @Test
+    public void changesAreReportedAgainWhenTheSinkFailsToClose() throws IOException {
+        Path fingerprints = tmp.getRoot().toPath().resolve("fingerprints.bin");
+        List<JSONObject> lost = new ArrayList<>();
+        RecordSink failing = new Collecting(lost) {
+            @Override
+            public void close() throws IOException {
+                throw new IOException("disk full");
+            }
+        };
+        assertNull(service.exportMemberChanges(TokenProvider.of("t"), fingerprints, failing));
+        assertEquals(250, lost.size());
+        assertFalse(Files.exists(fingerprints));
+
+        List<JSONObject> again = new ArrayList<>();
+        MemberSnapshotDiff diff = service.exportMemberChanges(TokenProvider.of("t"), fingerprints, new Collecting(again));
+        assertEquals(250, diff.getAdded());
+        assertEquals(250, again.size());
+        assertTrue(Files.exists(fingerprints));
+    }
+
+    private static class Collecting implements RecordSink {
+        private final List<JSONObject> records;
+
+        private Collecting(List<JSONObject> records) {
+            this.records = records;
+        }
+
+        @Override
+        public void accept(JSONObject record) {
+            records.add(record);
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() throws IOException {
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
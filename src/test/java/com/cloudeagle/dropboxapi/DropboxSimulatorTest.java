@@ -0,0 +1,80 @@
+package com.cloudeagle.dropboxapi;
+
+import org.json.JSONObject;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.time.Duration;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * End-to-end tests of the client stack against {@link DropboxSimulator}, including
+ * injected throttling and server errors.
+ */
+public class DropboxSimulatorTest {
+
+    private static DropboxSimulator simulator;
+    private static DropboxClient client;
+    private static AuthService auth;
+
+    @BeforeClass
+    public static void startSimulator() throws IOException {
+        simulator = new DropboxSimulator.Builder()
+                .members(250)
+                .events(1200)
+                .throttleRate(0.05, 0)
+                .serverErrorRate(0.05)
+                .build();
+        DropboxEndpoints endpoints = DropboxEndpoints.of(simulator.baseUrl());
+        HttpTransport transport = new HttpTransport.Builder().build();
+        client = new DropboxClient(transport, new RequestScheduler(10_000, 10_000, 10, 1, 10), endpoints);
+        auth = new AuthService("id", "secret", "http://localhost/callback", "", transport, endpoints);
+    }
+
+    @AfterClass
+    public static void stopSimulator() {
+        simulator.close();
+    }
+
+    @Test
+    public void walksEveryMemberPage() throws IOException {
+        JSONObject token = auth.exchangeCodeForToken("code");
+        TokenProvider tokens = TokenProvider.of(token.getString("access_token"));
+
+        int count = new DropboxService(client).forEachMember(tokens, 100, m -> { });
+
+        assertEquals(250, count);
+    }
+
+    @Test
+    public void backfillReturnsEveryEventInOrder() {
+        EventBackfill backfill = new EventBackfill(client, 4, Duration.ofHours(3), 100);
+        long previous = Long.MIN_VALUE;
+        int count = 0;
+        try (EventBackfill.EventStream events = backfill.fetch(TokenProvider.of("t"),
+                simulator.eventsStart(), simulator.eventsEnd())) {
+            while (events.hasNext()) {
+                long ts = TeamEvent.fromJson(events.next()).getTimestampEpochSeconds();
+                assertTrue(ts >= previous);
+                previous = ts;
+                count++;
+            }
+        }
+        assertEquals(1200, count);
+    }
+
+    @Test
+    public void tokenManagerRefreshesAgainstSimulator() throws IOException {
+        JSONObject token = auth.exchangeCodeForToken("code");
+        try (TokenManager tokens = new TokenManager(auth, token.getString("refresh_token"))) {
+            String access = tokens.getAccessToken();
+            assertTrue(access.startsWith("sim-access-"));
+            tokens.invalidate(access);
+            assertTrue(!access.equals(tokens.getAccessToken()));
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package com.cloudeagle.dropboxapi;
+
+import org.junit.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit tests for {@link EventAggregator} and its {@link LongLongMap}.
+ */
+public class EventAggregatorTest {
+
+    private static final long HOUR = 3600;
+    private static final long T0 = 1_700_000_000L / HOUR * HOUR;
+
+    private static TeamEvent event(long ts, String category, String type, String actor) {
+        return new TeamEvent(ts, category, type, actor, null, false);
+    }
+
+    private static Instant at(long epochSeconds) {
+        return Instant.ofEpochSecond(epochSeconds);
+    }
+
+    @Test
+    public void countsTumblingAndSlidingWindows() {
+        EventAggregator agg = new EventAggregator(Duration.ofHours(1), 24);
+        agg.add(event(T0 + 10, "logins", "login_success", "dbmid:a"));
+        agg.add(event(T0 + 20, "logins", "login_success", "dbmid:b"));
+        agg.add(event(T0 + HOUR + 5, "logins", "login_success", "dbmid:a"));
+        agg.add(event(T0 + HOUR + 6, "sharing", "shared_link_create", "dbmid:a"));
+        agg.add(event(T0 + 3 * HOUR, "logins", "login_fail", null));
+
+        Map<Instant, Long> hourly = agg.tumbling(EventAggregator.Dimension.EVENT_TYPE, "login_success",
+                at(T0), at(T0 + 4 * HOUR));
+        assertEquals(4, hourly.size());
+        assertEquals(Long.valueOf(2), hourly.get(at(T0)));
+        assertEquals(Long.valueOf(1), hourly.get(at(T0 + HOUR)));
+        assertEquals(Long.valueOf(0), hourly.get(at(T0 + 2 * HOUR)));
+
+        assertEquals(4, agg.sliding(EventAggregator.Dimension.CATEGORY, "logins", Duration.ofHours(4), at(T0 + 4 * HOUR)));
+        assertEquals(1, agg.sliding(EventAggregator.Dimension.CATEGORY, "logins", Duration.ofHours(2), at(T0 + 4 * HOUR)));
+        assertEquals(2, agg.count(EventAggregator.Dimension.EVENT_TYPE, "login_success", "dbmid:a", at(T0), at(T0 + 4 * HOUR)));
+        assertEquals(1, agg.count(EventAggregator.Dimension.CATEGORY, "sharing", "dbmid:a", at(T0), at(T0 + 4 * HOUR)));
+        assertEquals(5, agg.total(at(T0), at(T0 + 4 * HOUR)));
+
+        Map<String, Long> actors = agg.top(EventAggregator.Dimension.ACTOR, at(T0), at(T0 + 4 * HOUR), 1);
+        assertEquals(1, actors.size());
+        assertEquals(Long.valueOf(3), actors.get("dbmid:a"));
+    }
+
+    @Test
+    public void oldBucketsRollOffTheRing() {
+        EventAggregator agg = new EventAggregator(Duration.ofHours(1), 2);
+        agg.add(event(T0, "logins", "login_success", "a"));
+        agg.add(event(T0 + 2 * HOUR, "logins", "login_success", "a"));
+        agg.add(event(T0, "logins", "login_success", "a")); // older than the ring now
+
+        assertEquals(1, agg.count(EventAggregator.Dimension.CATEGORY, "logins", at(T0), at(T0 + 3 * HOUR)));
+        assertEquals(1, agg.getDroppedCount());
+        assertEquals(2, agg.getEventCount());
+    }
+
+    @Test
+    public void queriesWhileIngesting() throws InterruptedException {
+        EventAggregator agg = new EventAggregator(Duration.ofMinutes(1), 60 * 24);
+        int n = 500_000;
+        AtomicBoolean monotonic = new AtomicBoolean(true);
+        Thread ingest = new Thread(() -> {
+            for (int i = 0; i < n; i++) {
+                agg.add(event(T0 + i / 10, "logins", i % 2 == 0 ? "login_success" : "login_fail", "dbmid:" + (i % 1000)));
+            }
+        });
+        ingest.start();
+        long seen = 0;
+        while (ingest.isAlive()) {
+            long byCategory = agg.count(EventAggregator.Dimension.CATEGORY, "logins", at(T0), at(T0 + n));
+            if (byCategory < seen) {
+                monotonic.set(false);
+            }
+            seen = byCategory;
+        }
+        ingest.join();
+        assertTrue(monotonic.get());
+        assertEquals(n, agg.total(at(T0), at(T0 + n)));
+        assertEquals(n / 2, agg.count(EventAggregator.Dimension.EVENT_TYPE, "login_fail", at(T0), at(T0 + n)));
+    }
+
+    @Test
+    public void longLongMapGrowsAndClears() {
+        LongLongMap map = new LongLongMap(4);
+        for (long k = 1; k <= 10_000; k++) {
+            map.addTo(k, k);
+            map.addTo(k, 1);
+        }
+        assertEquals(10_000, map.size());
+        assertEquals(5_001, map.get(5_000));
+        assertEquals(0, map.get(20_000));
+        map.clear();
+        assertEquals(0, map.size());
+        assertEquals(0, map.get(5_000));
+    }
+}
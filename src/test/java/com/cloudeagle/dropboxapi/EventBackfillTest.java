@@ -0,0 +1,104 @@
+package com.cloudeagle.dropboxapi;
+
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.time.Instant;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests of {@link EventBackfill} ordering, read-ahead bound, early close and failures.
+ */
+public class EventBackfillTest {
+
+    private static final int WORKERS = 4;
+
+    private DropboxSimulator simulator;
+    private DropboxClient client;
+
+    @Before
+    public void startSimulator() throws IOException {
+        // 3000 events a minute apart: 50 one-hour windows of a single page each
+        simulator = new DropboxSimulator.Builder().events(3000).eventIntervalSeconds(60).build();
+        client = new DropboxClient(new HttpTransport.Builder().build(),
+                new RequestScheduler(10_000, 10_000, 5, 1, 5), DropboxEndpoints.of(simulator.baseUrl()));
+    }
+
+    @After
+    public void stopSimulator() {
+        simulator.close();
+    }
+
+    private EventBackfill.EventStream fetch(TokenProvider tokens) {
+        return new EventBackfill(client, WORKERS, Duration.ofHours(1), 100)
+                .fetch(tokens, simulator.eventsStart(), simulator.eventsEnd());
+    }
+
+    @Test
+    public void deliversEveryEventInTimestampOrder() {
+        long expected = simulator.eventsStart().getEpochSecond();
+        int count = 0;
+        try (EventBackfill.EventStream events = fetch(TokenProvider.of("t"))) {
+            while (events.hasNext()) {
+                JSONObject event = events.next();
+                assertEquals(expected, Instant.parse(event.getString("timestamp")).getEpochSecond());
+                expected += 60;
+                count++;
+            }
+        }
+        assertEquals(3000, count);
+    }
+
+    @Test
+    public void windowsDoNotRunAheadOfTheConsumer() throws InterruptedException {
+        try (EventBackfill.EventStream events = fetch(TokenProvider.of("t"))) {
+            assertTrue(events.hasNext());
+            events.next();
+            // small windows finish at once; without the bound every window would be fetched now
+            Thread.sleep(1000);
+            assertEquals(WORKERS, simulator.getRequestCount());
+
+            // draining the first window lets exactly one more start
+            for (int i = 1; i < 60; i++) {
+                events.next();
+            }
+            assertTrue(events.hasNext());
+            Thread.sleep(500);
+            assertEquals(WORKERS + 1, simulator.getRequestCount());
+        }
+    }
+
+    @Test
+    public void closeStopsTheWorkers() throws InterruptedException {
+        EventBackfill.EventStream events = fetch(TokenProvider.of("t"));
+        events.next();
+        events.close();
+        assertFalse(events.hasNext());
+        // requests already on the wire may still reach the simulator; nothing starts after that
+        Thread.sleep(200);
+        long requests = simulator.getRequestCount();
+        Thread.sleep(500);
+        assertEquals(requests, simulator.getRequestCount());
+        assertTrue(requests <= WORKERS);
+    }
+
+    @Test
+    public void failedWindowSurfacesToTheConsumer() {
+        try (EventBackfill.EventStream events = fetch(TokenProvider.of(""))) {
+            events.hasNext();
+            fail("expected UncheckedIOException");
+        } catch (UncheckedIOException e) {
+            assertTrue(e.getCause() instanceof HttpStatusException);
+            assertEquals(401, ((HttpStatusException) e.getCause()).getStatusCode());
+        }
+    }
+}
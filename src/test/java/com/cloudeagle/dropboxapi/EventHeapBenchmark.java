@@ -0,0 +1,81 @@
+package com.cloudeagle.dropboxapi;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.Supplier;
+
+/**
+ * EventHeapBenchmark
+ * <p>
+ * Compares the heap retained by a batch of team events held as raw {@link JSONObject}s with
+ * the same batch held as compact {@link TeamEvent}s sharing a {@link StringPool}. Heap is
+ * measured after repeated System.gc(), so the numbers are indicative only; run it on an
+ * otherwise idle JVM.
+ * <p>
+ * Run:
+ * mvn test-compile exec:java -Dexec.classpathScope=test
+ *     -Dexec.mainClass=com.cloudeagle.dropboxapi.EventHeapBenchmark -Dexec.args="50000"
+ * (argument: events held)
+ */
+public class EventHeapBenchmark {
+
+    // keeps the measured batch reachable while the heap is sampled
+    private static volatile Object held;
+
+    public static void main(String[] args) {
+        int events = args.length > 0 ? Integer.parseInt(args[0]) : 50_000;
+        JSONArray page = new JSONObject(TestPages.eventsPage(events)).getJSONArray("events");
+        String[] raw = new String[events];
+        for (int i = 0; i < events; i++) {
+            raw[i] = page.getJSONObject(i).toString();
+        }
+        page = null;
+
+        long jsonBytes = retained(() -> {
+            List<JSONObject> json = new ArrayList<>(events);
+            for (String s : raw) {
+                json.add(new JSONObject(s));
+            }
+            return json;
+        });
+        long compactBytes = retained(() -> {
+            StringPool pool = new StringPool(10_000);
+            List<TeamEvent> compact = new ArrayList<>(events);
+            for (String s : raw) {
+                compact.add(TeamEvent.fromJson(new JSONObject(s), pool));
+            }
+            return compact;
+        });
+
+        System.out.printf(Locale.ROOT, "%,d events retained: JSONObject %,d bytes/event, TeamEvent %,d bytes/event (%.1fx less)%n",
+                events, jsonBytes / events, compactBytes / events, (double) jsonBytes / Math.max(1, compactBytes));
+    }
+
+    /** Heap still in use after GC while the built object is held, over the heap before. */
+    private static long retained(Supplier<Object> build) {
+        long base = usedHeapAfterGc();
+        held = build.get();
+        long bytes = usedHeapAfterGc() - base;
+        held = null;
+        return bytes;
+    }
+
+    private static long usedHeapAfterGc() {
+        Runtime rt = Runtime.getRuntime();
+        long used = Long.MAX_VALUE;
+        for (int i = 0; i < 5; i++) {
+            System.gc();
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            used = Math.min(used, rt.totalMemory() - rt.freeMemory());
+        }
+        return used;
+    }
+}
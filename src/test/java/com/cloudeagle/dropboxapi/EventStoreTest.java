@@ -0,0 +1,74 @@
+package com.cloudeagle.dropboxapi;
+
+import org.junit.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests of {@link EventStore} snapshots, ordering and retention.
+ */
+public class EventStoreTest {
+
+    private static TeamEvent event(long ts, String type) {
+        return new TeamEvent(ts, "logins", type, "dbmid:a", "a@example.com", false);
+    }
+
+    private static List<TeamEvent> page(long from, int n) {
+        List<TeamEvent> page = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            page.add(event(from + i, i % 2 == 0 ? "login_success" : "logout"));
+        }
+        return page;
+    }
+
+    @Test
+    public void searchSpansPagesInTimeOrder() {
+        EventStore store = new EventStore(Duration.ofDays(1), 1000);
+        store.append(page(1000, 10));
+        EventStore.Snapshot before = store.snapshot();
+        store.append(page(1010, 10));
+
+        assertEquals(10, before.size());
+        assertEquals(20, store.snapshot().size());
+        List<TeamEvent> found = store.snapshot().search(Instant.ofEpochSecond(1005), Instant.ofEpochSecond(1015), null, 100);
+        assertEquals(10, found.size());
+        assertEquals(1005, found.get(0).getTimestampEpochSeconds());
+        assertEquals(1014, found.get(9).getTimestampEpochSeconds());
+        assertEquals(5, store.snapshot().search(null, Instant.ofEpochSecond(1010), "login_success", 100).size());
+        assertEquals(3, store.snapshot().search(null, null, "logout", 3).size());
+    }
+
+    @Test
+    public void lateEventsAreMergedInOrder() {
+        EventStore store = new EventStore(Duration.ofDays(1), 1000);
+        store.append(page(1000, 10));
+        store.append(page(1010, 10));
+        store.append(Arrays.asList(event(1012, "logout"), event(1003, "logout")));
+
+        List<TeamEvent> all = store.snapshot().search(null, null, null, 100);
+        assertEquals(22, all.size());
+        for (int i = 1; i < all.size(); i++) {
+            assertTrue(all.get(i - 1).getTimestampEpochSeconds() <= all.get(i).getTimestampEpochSeconds());
+        }
+    }
+
+    @Test
+    public void oldPagesAreDroppedByAgeAndSize() {
+        EventStore store = new EventStore(Duration.ofSeconds(100), 20);
+        store.append(page(1000, 10));
+        store.append(page(1050, 10));
+        store.append(page(1120, 10));
+        // the first page is past retention; the second is kept as 20 events do not exceed the bound
+        assertEquals(Instant.ofEpochSecond(1050), store.snapshot().oldest());
+        store.append(page(1130, 10));
+        assertEquals(Instant.ofEpochSecond(1120), store.snapshot().oldest());
+        assertEquals(Instant.ofEpochSecond(1139), store.snapshot().newest());
+    }
+}
@@ -0,0 +1,160 @@
+package com.cloudeagle.dropboxapi;
+
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests of {@link EventSync} checkpointing, resume and cursor-reset recovery, and of
+ * {@link SyncCheckpoint} persistence.
+ */
+public class EventSyncTest {
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    private DropboxSimulator simulator;
+    private DropboxClient client;
+    private final TokenProvider tokens = TokenProvider.of("t");
+
+    @Before
+    public void startSimulator() throws IOException {
+        simulator = new DropboxSimulator.Builder().events(2500).eventIntervalSeconds(60).build();
+        client = new DropboxClient(new HttpTransport.Builder().build(),
+                new RequestScheduler(10_000, 10_000, 5, 1, 5), DropboxEndpoints.of(simulator.baseUrl()));
+    }
+
+    @After
+    public void stopSimulator() {
+        simulator.close();
+    }
+
+    private static String timestampOf(DropboxSimulator simulator, long index) {
+        return simulator.eventsStart().plusSeconds(60 * index).toString();
+    }
+
+    @Test
+    public void checkpointRoundTrips() throws IOException {
+        Path file = tmp.getRoot().toPath().resolve("sync.checkpoint");
+        assertNull(SyncCheckpoint.load(file));
+        new SyncCheckpoint("cursor-1", "2024-01-01T00:00:00Z").save(file);
+        new SyncCheckpoint("cursor-2", "2024-01-02T00:00:00Z").save(file);
+        SyncCheckpoint loaded = SyncCheckpoint.load(file);
+        assertEquals("cursor-2", loaded.getCursor());
+        assertEquals("2024-01-02T00:00:00Z", loaded.getHighWaterTimestamp());
+    }
+
+    @Test
+    public void resumesFromTheSavedCursor() throws IOException {
+        Path file = tmp.getRoot().toPath().resolve("events.checkpoint");
+        List<String> seen = new ArrayList<>();
+        EventSync.Run first = new EventSync(client, file).start(tokens, ev -> seen.add(ev.getString("timestamp")));
+        assertTrue(first.step());
+        assertEquals(1000, first.getCount());
+        SyncCheckpoint saved = SyncCheckpoint.load(file);
+        assertNotNull(saved.getCursor());
+        assertEquals(timestampOf(simulator, 999), saved.getHighWaterTimestamp());
+
+        // a new process picks up after the last saved page
+        assertEquals(1500, new EventSync(client, file).sync(tokens, ev -> seen.add(ev.getString("timestamp"))));
+        assertEquals(2500, seen.size());
+        assertEquals(timestampOf(simulator, 1000), seen.get(1000));
+
+        assertEquals(0, new EventSync(client, file).sync(tokens, ev -> { }));
+        simulator.addEvents(20);
+        assertEquals(20, new EventSync(client, file).sync(tokens, ev -> { }));
+    }
+
+    @Test
+    public void sinkIsFlushedBeforeEveryCheckpoint() throws IOException {
+        Path file = tmp.getRoot().toPath().resolve("events.checkpoint");
+        int[] handled = {0};
+        List<String> flushedAt = new ArrayList<>();
+        new EventSync(client, file).sync(tokens, ev -> handled[0]++, () -> {
+            // the checkpoint of the page being flushed must not have been saved yet
+            SyncCheckpoint saved = SyncCheckpoint.load(file);
+            flushedAt.add(handled[0] + "@" + (saved == null ? null : saved.getHighWaterTimestamp()));
+        });
+
+        assertEquals(Arrays.asList("1000@null", "2000@" + timestampOf(simulator, 999),
+                "2500@" + timestampOf(simulator, 1999)), flushedAt);
+    }
+
+    @Test
+    public void failedSyncPublishesTheCheckpointedPages() throws IOException {
+        Path file = tmp.getRoot().toPath().resolve("events.checkpoint");
+        Path dir = tmp.newFolder("export").toPath();
+        DropboxService service = new DropboxService(client);
+        // the third page fails after two pages were written and checkpointed
+        int[] calls = {0};
+        TokenProvider failing = () -> {
+            if (++calls[0] == 3) {
+                throw new IOException("token revoked");
+            }
+            return "t";
+        };
+        service.syncTeamEvents(failing, file, new NdjsonGzipSink(dir, "events"));
+        assertEquals(timestampOf(simulator, 1999), SyncCheckpoint.load(file).getHighWaterTimestamp());
+        assertEquals(2000, readExport(dir).size());
+
+        // the next run resumes after the checkpoint; every event is exported exactly once
+        assertEquals(500, service.syncTeamEvents(tokens, file, new NdjsonGzipSink(dir, "events")));
+        List<String> exported = readExport(dir);
+        assertEquals(2500, exported.size());
+        assertEquals(2500, new HashSet<>(exported).size());
+    }
+
+    /** Timestamps of the events in the published files of {@code dir}. */
+    private static List<String> readExport(Path dir) throws IOException {
+        List<String> timestamps = new ArrayList<>();
+        try (Stream<Path> files = Files.list(dir)) {
+            for (Path f : (Iterable<Path>) files::iterator) {
+                assertTrue(f + " is not published", f.toString().endsWith(".ndjson.gz"));
+                try (BufferedReader r = new BufferedReader(new InputStreamReader(
+                        new GZIPInputStream(Files.newInputStream(f)), StandardCharsets.UTF_8))) {
+                    r.lines().forEach(l -> timestamps.add(new JSONObject(l).getString("timestamp")));
+                }
+            }
+        }
+        return timestamps;
+    }
+
+    @Test
+    public void expiredCursorRestartsFromHighWater() throws IOException {
+        Path file = tmp.getRoot().toPath().resolve("events.checkpoint");
+        assertEquals(2500, new EventSync(client, file).sync(tokens, ev -> { }));
+        simulator.expireEventCursors();
+        simulator.addEvents(5);
+
+        List<JSONObject> delivered = new ArrayList<>();
+        int count = new EventSync(client, file).sync(tokens, delivered::add);
+
+        // the events of the high-water second come again, then the new ones; nothing older
+        assertEquals(6, count);
+        assertEquals(timestampOf(simulator, 2499), delivered.get(0).getString("timestamp"));
+        assertEquals(timestampOf(simulator, 2504), SyncCheckpoint.load(file).getHighWaterTimestamp());
+        assertTrue(Instant.parse(delivered.get(5).getString("timestamp")).isBefore(simulator.eventsEnd()));
+    }
+}
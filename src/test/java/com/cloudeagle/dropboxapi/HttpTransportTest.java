@@ -0,0 +1,84 @@
+package com.cloudeagle.dropboxapi;
+
+import org.json.JSONObject;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests of {@link HttpTransport} settings and of async calls in {@link DropboxClient}.
+ */
+public class HttpTransportTest {
+
+    private static void awaitRequests(DropboxSimulator simulator, long n) throws InterruptedException {
+        for (int i = 0; i < 200 && simulator.getRequestCount() < n; i++) {
+            Thread.sleep(10);
+        }
+    }
+
+    @Test
+    public void propertiesConfigureTheSharedClient() {
+        Properties cfg = new Properties();
+        cfg.setProperty("http.max_requests", "12");
+        cfg.setProperty("http.max_requests_per_host", "6");
+        cfg.setProperty("http.read_timeout_seconds", "7");
+        HttpTransport transport = HttpTransport.fromProperties(cfg);
+        assertEquals(12, transport.client().dispatcher().getMaxRequests());
+        assertEquals(6, transport.client().dispatcher().getMaxRequestsPerHost());
+        assertEquals(7000, transport.client().readTimeoutMillis());
+    }
+
+    @Test
+    public void asyncCallCompletesWithTheParsedResponse() throws Exception {
+        try (DropboxSimulator simulator = new DropboxSimulator.Builder().build()) {
+            DropboxClient client = new DropboxClient(new HttpTransport.Builder().build(),
+                    new RequestScheduler(10_000, 10_000, 5, 1, 5), DropboxEndpoints.of(simulator.baseUrl()));
+            JSONObject info = client.postJsonAsync(client.apiUrl("team/get_info"), null, TokenProvider.of("t"))
+                    .get(5, TimeUnit.SECONDS);
+            assertTrue(info.has("team_id"));
+        }
+    }
+
+    @Test
+    public void cancellingTheFutureCancelsTheCallInFlight() throws IOException, InterruptedException {
+        try (DropboxSimulator simulator = new DropboxSimulator.Builder().latencyMillis(3000, 0).build()) {
+            HttpTransport transport = new HttpTransport.Builder().build();
+            DropboxClient client = new DropboxClient(transport,
+                    new RequestScheduler(10_000, 10_000, 5, 1, 5), DropboxEndpoints.of(simulator.baseUrl()));
+            CompletableFuture<JSONObject> call = client.postJsonAsync(client.apiUrl("team/get_info"), null, "t");
+            awaitRequests(simulator, 1);
+            assertEquals(1, transport.client().dispatcher().runningCallsCount());
+
+            assertTrue(call.cancel(true));
+            assertTrue(call.isCancelled());
+            for (int i = 0; i < 100 && transport.client().dispatcher().runningCallsCount() > 0; i++) {
+                Thread.sleep(10);
+            }
+            // the socket was closed well before the simulator would have answered
+            assertEquals(0, transport.client().dispatcher().runningCallsCount());
+        }
+    }
+
+    @Test
+    public void cancelledCallWaitingForAPermitIsNeverSent() throws Exception {
+        try (DropboxSimulator simulator = new DropboxSimulator.Builder().build()) {
+            DropboxClient client = new DropboxClient(new HttpTransport.Builder().build(),
+                    new RequestScheduler(1, 1, 5, 1, 5), DropboxEndpoints.of(simulator.baseUrl()));
+            String url = client.apiUrl("team/get_info");
+            client.postJsonAsync(url, null, "t").get(5, TimeUnit.SECONDS);
+            client.postJsonAsync(url, null, "t");
+            // the third call waits about two seconds for its permit
+            CompletableFuture<JSONObject> waiting = client.postJsonAsync(url, null, "t");
+            waiting.cancel(true);
+            Thread.sleep(2500);
+            assertEquals(2, simulator.getRequestCount());
+            assertTrue(waiting.isCancelled());
+        }
+    }
+}
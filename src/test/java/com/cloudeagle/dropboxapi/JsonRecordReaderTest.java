@@ -0,0 +1,49 @@
+package com.cloudeagle.dropboxapi;
+
+import org.json.JSONObject;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit tests for {@link JsonRecordReader}.
+ */
+public class JsonRecordReaderTest {
+
+    @Test
+    public void streamsRecordsAndKeepsEnvelope() throws IOException {
+        String json = "{\"cursor\": \"abc\", \"events\": [{\"event_type\": {\".tag\": \"login_success\"}},"
+                + " {\"event_type\": {\".tag\": \"logout\"}}], \"has_more\": true}";
+        List<JSONObject> records = new ArrayList<>();
+
+        JSONObject envelope = JsonRecordReader.read(new StringReader(json), "events", records::add);
+
+        assertEquals(2, records.size());
+        assertEquals("logout", records.get(1).getJSONObject("event_type").getString(".tag"));
+        assertEquals("abc", envelope.getString("cursor"));
+        assertTrue(envelope.getBoolean("has_more"));
+        assertFalse(envelope.has("events"));
+    }
+
+    @Test
+    public void handlesEmptyArrayAndObject() throws IOException {
+        List<JSONObject> records = new ArrayList<>();
+        assertEquals(0, JsonRecordReader.read(new StringReader("{}"), "members", records::add).length());
+        JSONObject envelope = JsonRecordReader.read(new StringReader("{\"members\": [], \"has_more\": false}"),
+                "members", records::add);
+        assertTrue(records.isEmpty());
+        assertFalse(envelope.getBoolean("has_more"));
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsMalformedBody() throws IOException {
+        JsonRecordReader.read(new StringReader("{\"members\": [{\"a\": 1} {\"b\": 2}]}"), "members", r -> { });
+    }
+}
@@ -0,0 +1,76 @@
+package com.cloudeagle.dropboxapi;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit tests for {@link MemberDirectory}.
+ */
+public class MemberDirectoryTest {
+
+    private static TeamMember member(String id, String email, String status) {
+        return new TeamMember(id, "dbid:" + id, email, id, status, "full", "member_only", 0, true);
+    }
+
+    @Test
+    public void indexesByIdEmailAccountAndStatus() {
+        MemberDirectory dir = new MemberDirectory();
+        dir.upsert(member("a", "Alice@example.com", "active"));
+        dir.upsert(member("b", "alan@example.com", "invited"));
+        dir.upsert(member("c", "bob@example.com", "active"));
+
+        assertEquals("a", dir.byEmail("alice@EXAMPLE.com").getTeamMemberId());
+        assertEquals("b", dir.byAccountId("dbid:b").getTeamMemberId());
+        assertEquals(2, dir.withStatus("active").size());
+
+        List<TeamMember> al = dir.searchByEmailPrefix("al", 10);
+        assertEquals(2, al.size());
+        assertEquals("b", al.get(0).getTeamMemberId());
+        assertEquals(1, dir.searchByEmailPrefix("al", 1).size());
+    }
+
+    @Test
+    public void updatesMoveIndexEntries() {
+        MemberDirectory dir = new MemberDirectory();
+        dir.upsert(member("a", "old@example.com", "invited"));
+        TeamMember changed = member("a", "new@example.com", "active");
+
+        assertTrue(dir.upsert(changed));
+        assertEquals(false, dir.upsert(member("a", "new@example.com", "active")));
+        assertNull(dir.byEmail("old@example.com"));
+        assertSame(changed, dir.byEmail("new@example.com"));
+        assertEquals(0, dir.withStatus("invited").size());
+        assertEquals(1, dir.withStatus("active").size());
+
+        assertTrue(dir.remove("a"));
+        assertNull(dir.byAccountId("dbid:a"));
+        assertEquals(0, dir.searchByEmailPrefix("", 10).size());
+    }
+
+    @Test
+    public void refreshAddsUpdatesAndRemoves() throws IOException {
+        try (DropboxSimulator simulator = new DropboxSimulator.Builder().members(120).build()) {
+            DropboxClient client = new DropboxClient(new HttpTransport.Builder().build(),
+                    new RequestScheduler(10_000, 10_000, 5, 1, 5), DropboxEndpoints.of(simulator.baseUrl()));
+            DropboxService service = new DropboxService(client);
+            MemberDirectory dir = new MemberDirectory();
+            dir.upsert(member("dbmid:gone", "gone@example.com", "active"));
+
+            MemberDirectory.Changes first = dir.refresh(service, TokenProvider.of("t"));
+            assertEquals(120, first.getAdded());
+            assertEquals(1, first.getRemoved());
+            assertEquals(120, dir.size());
+            assertEquals("dbmid:sim-7", dir.byEmail("member7@sim.example.com").getTeamMemberId());
+
+            MemberDirectory.Changes second = dir.refresh(service, TokenProvider.of("t"));
+            assertEquals(0, second.getAdded() + second.getUpdated() + second.getRemoved());
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package com.cloudeagle.dropboxapi;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests of {@link MemberEnricher} batching and coalescing against {@link DropboxSimulator}.
+ */
+public class MemberEnricherTest {
+
+    private static DropboxSimulator simulator;
+    private static DropboxEndpoints endpoints;
+
+    @BeforeClass
+    public static void startSimulator() throws IOException {
+        simulator = new DropboxSimulator.Builder().members(350).events(3000).build();
+        endpoints = DropboxEndpoints.of(simulator.baseUrl());
+    }
+
+    @AfterClass
+    public static void stopSimulator() {
+        simulator.close();
+    }
+
+    private static DropboxClient client(ClientMetrics metrics) {
+        return new DropboxClient(new HttpTransport.Builder().build(),
+                new RequestScheduler(10_000, 10_000, 5, 1, 5), endpoints, metrics);
+    }
+
+    @Test
+    public void concurrentLookupsShareOneCall() {
+        ClientMetrics metrics = new ClientMetrics();
+        DropboxClient client = client(metrics);
+        try (MemberEnricher enricher = new MemberEnricher(client, TokenProvider.of("t"), null, 1000, 50)) {
+            CompletableFuture<TeamMember> a = enricher.lookup("dbmid:sim-3");
+            CompletableFuture<TeamMember> b = enricher.lookup("dbmid:sim-3");
+            CompletableFuture<TeamMember> c = enricher.lookup("dbmid:unknown");
+            assertSame(a, b);
+            assertEquals("member3@sim.example.com", a.join().getEmail());
+            assertNull(c.join());
+            assertEquals(1, metrics.endpoint(client.apiUrl("team/members/get_info_v2")).getLatencyCount());
+
+            // both answers are cached now, including the unknown ID
+            enricher.lookup("dbmid:sim-3").join();
+            enricher.lookup("dbmid:unknown").join();
+            assertEquals(1, metrics.endpoint(client.apiUrl("team/members/get_info_v2")).getLatencyCount());
+        }
+    }
+
+    @Test
+    public void enrichesEventStreamInOrderWithFullBatches() throws IOException {
+        ClientMetrics metrics = new ClientMetrics();
+        DropboxClient client = client(metrics);
+        EventBackfill backfill = new EventBackfill(client, 2, Duration.ofHours(6), 1000);
+        AtomicInteger enriched = new AtomicInteger();
+        long[] previous = {Long.MIN_VALUE};
+        int count;
+        try (MemberEnricher enricher = new MemberEnricher(client, TokenProvider.of("t"), null, 1000, 20);
+             EventBackfill.EventStream events = backfill.fetch(TokenProvider.of("t"), simulator.eventsStart(), simulator.eventsEnd())) {
+            count = enricher.enrich(events, (event, actor) -> {
+                assertTrue(event.getTimestampEpochSeconds() >= previous[0]);
+                previous[0] = event.getTimestampEpochSeconds();
+                if (actor != null && actor.getTeamMemberId().equals(event.getActorId())) {
+                    enriched.incrementAndGet();
+                }
+            }, 1000);
+            assertEquals(350, enricher.getCacheSize());
+        }
+        assertEquals(3000, count);
+        assertEquals(3000, enriched.get());
+        // 350 distinct actors need at least 4 calls of at most 100 IDs
+        long calls = metrics.endpoint(client.apiUrl("team/members/get_info_v2")).getLatencyCount();
+        assertTrue("calls: " + calls, calls >= 4 && calls <= 8);
+    }
+}
@@ -0,0 +1,129 @@
+package com.cloudeagle.dropboxapi;
+
+import org.json.JSONObject;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit tests for {@link MemberSnapshotDiff}.
+ */
+public class MemberSnapshotDiffTest {
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    private static JSONObject member(int i, String status) {
+        return new JSONObject()
+                .put("profile", new JSONObject()
+                        .put("team_member_id", "dbmid:" + i)
+                        .put("email", "member" + i + "@example.com")
+                        .put("status", new JSONObject().put(".tag", status)))
+                .put("role", new JSONObject().put(".tag", "member_only"));
+    }
+
+    private static List<JSONObject> diff(Path file, List<JSONObject> members) throws IOException {
+        List<JSONObject> out = new ArrayList<>();
+        MemberSnapshotDiff diff = MemberSnapshotDiff.open(file, new Collecting(out));
+        for (JSONObject m : members) {
+            diff.accept(m);
+        }
+        int changes = diff.finish();
+        diff.save();
+        assertEquals(out.size(), changes);
+        return out;
+    }
+
+    @Test
+    public void emitsOnlyAddedModifiedAndRemovedMembers() throws IOException {
+        Path file = tmp.getRoot().toPath().resolve("fingerprints.bin");
+        List<JSONObject> first = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            first.add(member(i, "active"));
+        }
+        assertEquals(100, diff(file, first).size());
+        assertTrue(diff(file, rebuild(first)).isEmpty());
+
+        List<JSONObject> second = rebuild(first);
+        second.remove(10);                      // dbmid:10 left
+        second.set(20, member(21, "suspended")); // dbmid:21 changed status
+        second.add(member(500, "invited"));      // dbmid:500 joined
+        List<JSONObject> changes = diff(file, second);
+
+        assertEquals(3, changes.size());
+        assertEquals("modified", changes.get(0).getString("change"));
+        assertEquals("dbmid:21", changes.get(0).getJSONObject("profile").getString("team_member_id"));
+        assertEquals("added", changes.get(1).getString("change"));
+        assertEquals("dbmid:500", changes.get(1).getJSONObject("profile").getString("team_member_id"));
+        assertEquals("removed", changes.get(2).getString("change"));
+        assertEquals("dbmid:10", changes.get(2).getJSONObject("profile").getString("team_member_id"));
+    }
+
+    @Test
+    public void fingerprintIgnoresKeyOrder() throws IOException {
+        MemberSnapshotDiff diff = MemberSnapshotDiff.open(tmp.getRoot().toPath().resolve("f.bin"), null);
+        JSONObject a = new JSONObject("{\"profile\":{\"team_member_id\":\"x\",\"email\":\"a@b\"},\"role\":\"admin\"}");
+        JSONObject b = new JSONObject("{\"role\":\"admin\",\"profile\":{\"email\":\"a@b\",\"team_member_id\":\"x\"}}");
+        JSONObject c = new JSONObject("{\"role\":\"admin\",\"profile\":{\"email\":\"a@c\",\"team_member_id\":\"x\"}}");
+        assertEquals(diff.fingerprint(a), diff.fingerprint(b));
+        assertFalse(diff.fingerprint(a) == diff.fingerprint(c));
+    }
+
+    @Test
+    public void unfinishedDiffKeepsPreviousSnapshot() throws IOException {
+        Path file = tmp.getRoot().toPath().resolve("fingerprints.bin");
+        List<JSONObject> members = new ArrayList<>();
+        members.add(member(1, "active"));
+        diff(file, members);
+        byte[] saved = Files.readAllBytes(file);
+
+        List<JSONObject> out = new ArrayList<>();
+        MemberSnapshotDiff interrupted = MemberSnapshotDiff.open(file, new Collecting(out));
+        assertNull(interrupted.accept(member(1, "active")));
+        interrupted.accept(member(2, "active"));
+        // no finish(): e.g. the members/list walk failed half way
+        assertEquals(1, out.size());
+        assertArrayEquals(saved, Files.readAllBytes(file));
+    }
+
+    private static final class Collecting implements RecordSink {
+        private final List<JSONObject> records;
+
+        private Collecting(List<JSONObject> records) {
+            this.records = records;
+        }
+
+        @Override
+        public void accept(JSONObject record) {
+            records.add(record);
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    private static List<JSONObject> rebuild(List<JSONObject> members) {
+        List<JSONObject> copy = new ArrayList<>();
+        for (JSONObject m : members) {
+            copy.add(new JSONObject(m.toString()));
+        }
+        return copy;
+    }
+}
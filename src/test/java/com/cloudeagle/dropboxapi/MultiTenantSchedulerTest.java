@@ -0,0 +1,72 @@
+package com.cloudeagle.dropboxapi;
+
+import org.junit.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit tests for {@link MultiTenantScheduler}.
+ */
+public class MultiTenantSchedulerTest {
+
+    @Test
+    public void smallTenantIsNotStarvedByLargeOne() throws Exception {
+        AtomicInteger bigSteps = new AtomicInteger();
+        AtomicInteger bigStepsWhenSmallDone = new AtomicInteger(-1);
+        try (MultiTenantScheduler scheduler = new MultiTenantScheduler(1)) {
+            scheduler.registerTenant("big", 1);
+            scheduler.registerTenant("small", 1);
+
+            CountDownLatch smallQueued = new CountDownLatch(1);
+            CompletableFuture<Void> big = scheduler.submit("big", () -> {
+                while (smallQueued.getCount() > 0) {
+                    LockSupport.parkNanos(100_000);
+                }
+                return bigSteps.incrementAndGet() < 200;
+            });
+            AtomicInteger smallSteps = new AtomicInteger();
+            CompletableFuture<Void> small = scheduler.submit("small", () -> {
+                if (smallSteps.incrementAndGet() < 3) {
+                    return true;
+                }
+                bigStepsWhenSmallDone.set(bigSteps.get());
+                return false;
+            });
+            smallQueued.countDown();
+
+            CompletableFuture.allOf(big, small).get(10, TimeUnit.SECONDS);
+            assertEquals(200, bigSteps.get());
+            // round-robin: the small tenant finishes after a handful of big-tenant steps
+            assertTrue("big tenant ran " + bigStepsWhenSmallDone.get() + " steps first",
+                    bigStepsWhenSmallDone.get() <= 5);
+        }
+    }
+
+    @Test
+    public void respectsPerTenantLimit() throws Exception {
+        AtomicInteger concurrent = new AtomicInteger();
+        AtomicInteger maxSeen = new AtomicInteger();
+        try (MultiTenantScheduler scheduler = new MultiTenantScheduler(8)) {
+            scheduler.registerTenant("t", 2);
+            CompletableFuture<?>[] jobs = new CompletableFuture<?>[6];
+            for (int i = 0; i < jobs.length; i++) {
+                AtomicInteger steps = new AtomicInteger();
+                jobs[i] = scheduler.submit("t", () -> {
+                    maxSeen.accumulateAndGet(concurrent.incrementAndGet(), Math::max);
+                    LockSupport.parkNanos(2_000_000);
+                    concurrent.decrementAndGet();
+                    return steps.incrementAndGet() < 5;
+                });
+            }
+            CompletableFuture.allOf(jobs).get(10, TimeUnit.SECONDS);
+            assertTrue(maxSeen.get() <= 2);
+        }
+    }
+}
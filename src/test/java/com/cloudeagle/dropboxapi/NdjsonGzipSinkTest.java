@@ -0,0 +1,117 @@
+package com.cloudeagle.dropboxapi;
+
+import org.json.JSONObject;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit tests for {@link NdjsonGzipSink}.
+ */
+public class NdjsonGzipSinkTest {
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    @Test
+    public void writesEveryRecordAndRollsBySize() throws IOException {
+        Path dir = tmp.getRoot().toPath();
+        try (NdjsonGzipSink sink = new NdjsonGzipSink(dir, "events", 2_000, 3_600_000, 10)) {
+            for (int i = 0; i < 500; i++) {
+                sink.accept(new JSONObject().put("i", i).put("event_type", "login_success"));
+            }
+        }
+
+        List<Path> files = listFiles(dir);
+        assertTrue("expected several rolled files, got " + files.size(), files.size() > 1);
+        List<String> lines = new ArrayList<>();
+        for (Path f : files) {
+            assertTrue(f.getFileName().toString().endsWith(".ndjson.gz"));
+            lines.addAll(readLines(f));
+        }
+        assertEquals(500, lines.size());
+        List<Integer> ids = lines.stream().map(l -> new JSONObject(l).getInt("i")).sorted().collect(Collectors.toList());
+        assertEquals(Integer.valueOf(0), ids.get(0));
+        assertEquals(Integer.valueOf(499), ids.get(499));
+    }
+
+    @Test
+    public void rollsByAgeOnFlush() throws Exception {
+        Path dir = tmp.getRoot().toPath();
+        try (NdjsonGzipSink sink = new NdjsonGzipSink(dir, "members", Long.MAX_VALUE, 500, 1000)) {
+            sink.accept(new JSONObject().put("a", 1));
+            sink.flush();
+            assertEquals(0, listFiles(dir).size());
+            Thread.sleep(600);
+            sink.flush();
+            assertEquals(1, listFiles(dir).size());
+        }
+    }
+
+    @Test
+    public void abortPublishesOnlyFlushedRecords() throws IOException {
+        Path dir = tmp.getRoot().toPath();
+        // batches of 2, so part of what is dropped has already reached the file
+        try (NdjsonGzipSink sink = new NdjsonGzipSink(dir, "events", Long.MAX_VALUE, 3_600_000, 2)) {
+            sink.accept(new JSONObject().put("i", 1));
+            sink.flush();
+            for (int i = 2; i <= 4; i++) {
+                sink.accept(new JSONObject().put("i", i));
+            }
+            sink.abort();
+        }
+
+        List<Path> files = listFiles(dir);
+        assertEquals(1, files.size());
+        assertEquals(Collections.singletonList("{\"i\":1}"), readLines(files.get(0)));
+        assertEquals(1, countFiles(dir));
+    }
+
+    @Test
+    public void abortWithNothingFlushedLeavesNoFile() throws IOException {
+        Path dir = tmp.getRoot().toPath();
+        try (NdjsonGzipSink sink = new NdjsonGzipSink(dir, "members", Long.MAX_VALUE, 3_600_000, 2)) {
+            for (int i = 1; i <= 3; i++) {
+                sink.accept(new JSONObject().put("i", i));
+            }
+            sink.abort();
+        }
+
+        assertEquals(0, countFiles(dir));
+    }
+
+    private static long countFiles(Path dir) throws IOException {
+        try (Stream<Path> s = Files.list(dir)) {
+            return s.count();
+        }
+    }
+
+    private static List<Path> listFiles(Path dir) throws IOException {
+        try (Stream<Path> s = Files.list(dir)) {
+            return s.filter(p -> !p.toString().endsWith(".part")).sorted().collect(Collectors.toList());
+        }
+    }
+
+    private static List<String> readLines(Path file) throws IOException {
+        try (BufferedReader r = new BufferedReader(new InputStreamReader(
+                new GZIPInputStream(Files.newInputStream(file)), StandardCharsets.UTF_8))) {
+            return r.lines().collect(Collectors.toList());
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package com.cloudeagle.dropboxapi;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.io.UnsupportedEncodingException;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests of {@link OrderedOutput}.
+ */
+public class OrderedOutputTest {
+
+    private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    private final OrderedOutput console = new OrderedOutput(new PrintStream(bytes, true));
+
+    private String written() throws UnsupportedEncodingException {
+        return bytes.toString("UTF-8");
+    }
+
+    @Test
+    public void firstSectionWritesStraightThrough() throws UnsupportedEncodingException {
+        PrintStream first = console.section("first");
+        PrintStream second = console.section("second");
+        first.println("a");
+        second.println("x");
+        assertEquals("a\n", written());
+        first.println("b");
+        assertEquals("a\nb\n", written());
+    }
+
+    @Test
+    public void laterSectionsFollowInOrderOnceTheEarlierOnesFinish() throws UnsupportedEncodingException {
+        PrintStream first = console.section("first");
+        PrintStream second = console.section("second");
+        PrintStream third = console.section("third");
+        third.println("z");
+        console.finish("third");
+        second.println("y");
+        first.println("x");
+        assertEquals("x\n", written());
+
+        console.finish("first");
+        assertEquals("x\ny\n", written());
+        // the second section is now current and no longer buffered
+        second.println("y2");
+        assertEquals("x\ny\ny2\n", written());
+        console.finish("second");
+        assertEquals("x\ny\ny2\nz\n", written());
+    }
+
+    @Test
+    public void finishAllWritesSectionsWhoseTaskNeverFinished() throws UnsupportedEncodingException {
+        console.section("stuck");
+        console.section("done").println("d");
+        console.finish("done");
+        assertEquals("", written());
+        console.finishAll();
+        assertEquals("d\n", written());
+    }
+}
@@ -0,0 +1,129 @@
+package com.cloudeagle.dropboxapi;
+
+import org.json.JSONObject;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests of the {@link PagingController} AIMD rules and of adaptive {@link EventBackfill}.
+ */
+public class PagingControllerTest {
+
+    private static final long FAST = TimeUnit.MILLISECONDS.toNanos(50);
+    private static final long SLOW = TimeUnit.SECONDS.toNanos(5);
+
+    private static DropboxClient.CallStats stats(long bytes, int... statuses) {
+        DropboxClient.CallStats stats = new DropboxClient.CallStats();
+        for (int status : statuses) {
+            stats.attempt(status);
+        }
+        stats.bytesRead(bytes);
+        return stats;
+    }
+
+    private static PagingController controller() {
+        return new PagingController.Builder()
+                .limits(100, 200, 1000).limitStep(100).concurrency(1, 8)
+                .targetLatencyMillis(1000).maxPageBytes(1_000_000).build();
+    }
+
+    @Test
+    public void pageSizeGrowsOnFastFullPagesAndHalvesOnSlowOnes() throws InterruptedException {
+        PagingController paging = controller();
+        paging.acquire();
+        paging.release(200, 200, FAST, stats(200 * 500, 200));
+        assertEquals(300, paging.pageLimit());
+
+        // a short page says nothing about larger pages
+        paging.acquire();
+        paging.release(300, 10, FAST, stats(10 * 500, 200));
+        assertEquals(300, paging.pageLimit());
+
+        paging.acquire();
+        paging.release(300, 300, SLOW, stats(300 * 500, 200));
+        assertEquals(150, paging.pageLimit());
+    }
+
+    @Test
+    public void pageSizeStaysUnderByteCap() throws InterruptedException {
+        PagingController paging = controller();
+        // 4 KB records: 300 of them would exceed the 1 MB cap
+        paging.acquire();
+        paging.release(200, 200, FAST, stats(200 * 4000, 200));
+        assertEquals(200, paging.pageLimit());
+
+        paging.acquire();
+        paging.release(200, 200, FAST, stats(1_500_000, 200));
+        assertEquals(100, paging.pageLimit());
+    }
+
+    @Test
+    public void concurrencyGrowsAdditivelyAndHalvesOncePerThrottleBurst() throws InterruptedException {
+        PagingController paging = controller();
+        for (int i = 0; i < 40; i++) {
+            paging.acquire();
+            paging.release(200, 10, FAST, stats(100, 200));
+        }
+        assertEquals(8, paging.getConcurrency());
+
+        // eight requests in flight all run into the same throttling
+        for (int i = 0; i < 8; i++) {
+            paging.acquire();
+        }
+        for (int i = 0; i < 8; i++) {
+            paging.release(200, 10, FAST, stats(100, 429, 200));
+        }
+        assertEquals(4, paging.getConcurrency());
+
+        // a retried page is not a latency sample, but failures halve the page size
+        paging.acquire();
+        paging.releaseFailed(new IOException("timeout"));
+        assertEquals(2, paging.getConcurrency());
+        assertEquals(100, paging.pageLimit());
+    }
+
+    @Test
+    public void fixedControllerNeverAdapts() throws InterruptedException {
+        PagingController paging = PagingController.fixed(500, 3);
+        paging.acquire();
+        paging.release(500, 500, SLOW, stats(1, 429, 200));
+        paging.acquire();
+        paging.releaseFailed(new IOException("boom"));
+        assertEquals(500, paging.pageLimit());
+        assertEquals(3, paging.getConcurrency());
+    }
+
+    @Test
+    public void adaptiveBackfillDeliversEveryEventInOrder() throws IOException {
+        try (DropboxSimulator simulator = new DropboxSimulator.Builder()
+                .events(20_000).eventIntervalSeconds(60).throttleRate(0.02, 0).build()) {
+            DropboxClient client = new DropboxClient(new HttpTransport.Builder().build(),
+                    new RequestScheduler(10_000, 10_000, 10, 1, 5), DropboxEndpoints.of(simulator.baseUrl()));
+            PagingController paging = new PagingController.Builder().limits(50, 100, 1000).concurrency(1, 6).build();
+            EventBackfill backfill = new EventBackfill(client, Duration.ofDays(1), paging);
+
+            long count = 0;
+            String previous = "";
+            Instant start = simulator.eventsStart();
+            try (EventBackfill.EventStream events = backfill.fetch(TokenProvider.of("t"), start, simulator.eventsEnd())) {
+                while (events.hasNext()) {
+                    JSONObject event = events.next();
+                    String ts = event.getString("timestamp");
+                    assertTrue(ts.compareTo(previous) >= 0);
+                    previous = ts;
+                    count++;
+                }
+            }
+            assertEquals(20_000, count);
+            assertTrue("limit " + paging.pageLimit(), paging.pageLimit() > 100);
+            assertTrue(paging.getConcurrency() >= 1 && paging.getConcurrency() <= 6);
+        }
+    }
+}
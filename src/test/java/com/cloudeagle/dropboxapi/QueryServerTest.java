@@ -0,0 +1,138 @@
+package com.cloudeagle.dropboxapi;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Scanner;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests of serve mode: {@link ServeSync} filling the snapshots and {@link QueryServer} answering from them.
+ */
+public class QueryServerTest {
+
+    private static JSONObject get(int port, String path, int expectedStatus) throws IOException {
+        HttpURLConnection conn = (HttpURLConnection) new URL("http://localhost:" + port + path).openConnection();
+        assertEquals(path, expectedStatus, conn.getResponseCode());
+        InputStream in = expectedStatus < 400 ? conn.getInputStream() : conn.getErrorStream();
+        try (Scanner s = new Scanner(in, "UTF-8").useDelimiter("\\A")) {
+            return new JSONObject(s.next());
+        }
+    }
+
+    @Test
+    public void answersMemberEventAndCountQueriesFromMemory() throws IOException {
+        Instant start = Instant.now().minus(Duration.ofHours(6)).truncatedTo(ChronoUnit.SECONDS);
+        try (DropboxSimulator simulator = new DropboxSimulator.Builder()
+                .members(200).events(3000).eventsStart(start).eventIntervalSeconds(5).build();
+             ServeSync sync = new ServeSync(new DropboxClient(new HttpTransport.Builder().build(),
+                     new RequestScheduler(10_000, 10_000, 5, 1, 5), DropboxEndpoints.of(simulator.baseUrl())),
+                     TokenProvider.of("t"), Duration.ofHours(24), 100_000)) {
+            sync.refreshMembers();
+            assertEquals(3000, sync.pollEvents());
+            assertEquals(0, sync.pollEvents());
+
+            QueryServer server = new QueryServer(0, 2, 4, sync);
+            server.start();
+            try {
+                int port = server.getPort();
+                JSONObject status = get(port, "/status", 200);
+                assertEquals(200, status.getInt("members"));
+                assertEquals(3000, status.getInt("events"));
+
+                JSONObject member = get(port, "/members?email=MEMBER7@sim.example.com", 200);
+                assertEquals("dbmid:sim-7", member.getString("team_member_id"));
+                assertEquals(11, get(port, "/members?prefix=member19&limit=50", 200).getJSONArray("members").length());
+                get(port, "/members?id=dbmid:nobody", 404);
+
+                JSONObject logins = get(port, "/events?type=login_success&limit=10", 200);
+                JSONArray events = logins.getJSONArray("events");
+                assertEquals(10, events.length());
+                assertTrue(logins.getBoolean("truncated"));
+                String previous = "";
+                for (int i = 0; i < events.length(); i++) {
+                    JSONObject e = events.getJSONObject(i);
+                    assertEquals("login_success", e.getString("event_type"));
+                    assertTrue(e.getString("timestamp").compareTo(previous) >= 0);
+                    previous = e.getString("timestamp");
+                }
+
+                // whole hours around the window, so the hourly buckets and the event range agree
+                Instant from = start.truncatedTo(ChronoUnit.HOURS);
+                Instant to = simulator.eventsEnd().truncatedTo(ChronoUnit.HOURS).plus(Duration.ofHours(1));
+                String range = "&from=" + from + "&to=" + to;
+                long expected = sync.getEventStore().snapshot().search(from, to, "login_success", Integer.MAX_VALUE).size();
+                assertTrue(expected > 0);
+                assertEquals(expected, get(port, "/counts?by=event_type&value=login_success" + range, 200).getLong("count"));
+                assertEquals(3000, get(port, "/counts?" + range.substring(1), 200).getLong("total"));
+
+                get(port, "/events?from=yesterday", 400);
+                get(port, "/counts?by=colour", 400);
+            } finally {
+                server.stop();
+            }
+        }
+    }
+
+    @Test
+    public void eventsDeliveredAgainAfterACursorResetAreNotCountedTwice() throws IOException {
+        Instant start = Instant.now().minus(Duration.ofHours(6)).truncatedTo(ChronoUnit.SECONDS);
+        try (DropboxSimulator simulator = new DropboxSimulator.Builder()
+                .events(1500).eventsStart(start).eventIntervalSeconds(5).build();
+             ServeSync sync = new ServeSync(new DropboxClient(new HttpTransport.Builder().build(),
+                     new RequestScheduler(10_000, 10_000, 5, 1, 5), DropboxEndpoints.of(simulator.baseUrl())),
+                     TokenProvider.of("t"), Duration.ofHours(24), 100_000)) {
+            assertEquals(1500, sync.pollEvents());
+            simulator.expireEventCursors();
+            simulator.addEvents(5);
+
+            // the event of the high-water second comes again with the 5 new ones
+            assertEquals(5, sync.pollEvents());
+            assertEquals(1505, sync.getEventStore().snapshot().size());
+            assertEquals(1505, sync.getAggregator().total(start.minus(Duration.ofHours(1)), Instant.now().plus(Duration.ofHours(1))));
+        }
+    }
+
+    @Test
+    public void enrichedEventsCarryTheirActorProfile() throws IOException {
+        Instant start = Instant.now().minus(Duration.ofHours(1)).truncatedTo(ChronoUnit.SECONDS);
+        try (DropboxSimulator simulator = new DropboxSimulator.Builder()
+                .members(50).events(200).eventsStart(start).eventIntervalSeconds(5).build()) {
+            DropboxClient client = new DropboxClient(new HttpTransport.Builder().build(),
+                    new RequestScheduler(10_000, 10_000, 5, 1, 5), DropboxEndpoints.of(simulator.baseUrl()));
+            try (ServeSync sync = new ServeSync(client, TokenProvider.of("t"), Duration.ofHours(24), 100_000);
+                 // no member refresh: every actor is resolved through get_info_v2
+                 MemberEnricher enricher = new MemberEnricher(client, TokenProvider.of("t"), sync.getDirectory(), 100, 10)) {
+                assertEquals(200, sync.pollEvents());
+                QueryServer server = new QueryServer(0, 2, 4, sync, enricher);
+                server.start();
+                try {
+                    JSONArray events = get(server.getPort(), "/events?limit=20", 200).getJSONArray("events");
+                    assertEquals(20, events.length());
+                    int enriched = 0;
+                    for (int i = 0; i < events.length(); i++) {
+                        JSONObject event = events.getJSONObject(i);
+                        if (event.has("actor_id")) {
+                            assertEquals(event.getString("actor_id"),
+                                    event.getJSONObject("actor").getString("team_member_id"));
+                            enriched++;
+                        }
+                    }
+                    assertTrue(enriched > 0);
+                } finally {
+                    server.stop();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package com.cloudeagle.dropboxapi;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests of {@link RequestHedger} and of hedged calls in {@link DropboxClient}.
+ */
+public class RequestHedgerTest {
+
+    private static final String CONTINUE = "http://127.0.0.1/2/team/members/list/continue";
+
+    @Test
+    public void delayFollowsPercentileOnceEnoughSamples() {
+        RequestHedger hedger = new RequestHedger.Builder().percentile(90).minSamples(10).minDelayMillis(0).build();
+        assertEquals(-1, hedger.delayNanos(CONTINUE));
+        for (int ms = 1; ms <= 100; ms++) {
+            hedger.record(CONTINUE, TimeUnit.MILLISECONDS.toNanos(ms));
+        }
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(90), hedger.delayNanos(CONTINUE));
+        // routes are tracked separately, and only read-only ones are hedged by default
+        assertEquals(-1, hedger.delayNanos("http://127.0.0.1/2/team_log/get_events/continue"));
+        assertTrue(hedger.covers(CONTINUE));
+        assertFalse(hedger.covers("http://127.0.0.1/2/team/members/get_info_v2"));
+    }
+
+    @Test
+    public void budgetLimitsHedgesToShareOfCalls() {
+        RequestHedger hedger = new RequestHedger.Builder().budgetPercent(10).burst(1).build();
+        assertTrue(hedger.tryHedge());
+        assertFalse(hedger.tryHedge());
+        for (int i = 0; i < 9; i++) {
+            hedger.delayNanos(CONTINUE);
+        }
+        assertFalse(hedger.tryHedge());
+        hedger.delayNanos(CONTINUE);
+        assertTrue(hedger.tryHedge());
+        // a credit given back for a hedge that was not sent is available again
+        hedger.refund();
+        assertTrue(hedger.tryHedge());
+        assertFalse(hedger.tryHedge());
+    }
+
+    @Test
+    public void cancelledCopyCountsAsLatencySample() throws IOException, InterruptedException {
+        // every call stalls, so the hedge is sent and then loses to the original
+        try (DropboxSimulator simulator = new DropboxSimulator.Builder()
+                .members(10).stallRate(1.0, 300).build()) {
+            ClientMetrics metrics = new ClientMetrics();
+            RequestHedger hedger = new RequestHedger.Builder()
+                    .minSamples(1).minDelayMillis(20).budgetPercent(100).build();
+            DropboxClient client = new DropboxClient(new HttpTransport.Builder().build(),
+                    new RequestScheduler(10_000, 10_000, 5, 1, 5), DropboxEndpoints.of(simulator.baseUrl()), metrics, hedger);
+            String list = client.apiUrl("team/members/list");
+            hedger.record(list, TimeUnit.MILLISECONDS.toNanos(1));
+
+            client.postJson(list, "{\"limit\": 10}", "t");
+
+            assertEquals(1, metrics.endpoint(list).getHedges());
+            for (int i = 0; i < 200 && hedger.sampleCount(list) < 3; i++) {
+                Thread.sleep(10);
+            }
+            // the seed, the original that answered and the hedge that was cancelled
+            assertEquals(3, hedger.sampleCount(list));
+        }
+    }
+
+    @Test
+    public void hedgingCutsStalledPagesShort() throws IOException {
+        try (DropboxSimulator simulator = new DropboxSimulator.Builder()
+                .members(1000).latencyMillis(2, 3).stallRate(0.1, 2000).build()) {
+            ClientMetrics metrics = new ClientMetrics();
+            RequestHedger hedger = new RequestHedger.Builder()
+                    .percentile(90).minSamples(5).minDelayMillis(20).budgetPercent(50).build();
+            DropboxClient client = new DropboxClient(new HttpTransport.Builder().build(),
+                    new RequestScheduler(10_000, 10_000, 5, 1, 5), DropboxEndpoints.of(simulator.baseUrl()), metrics, hedger);
+            // seed both routes, so that a stall on one of the first pages is hedged as well
+            for (String route : new String[] {"team/members/list", "team/members/list/continue"}) {
+                for (int i = 0; i < 5; i++) {
+                    hedger.record(client.apiUrl(route), TimeUnit.MILLISECONDS.toNanos(3));
+                }
+            }
+
+            // count pages that took the full stall: a hedge that won cut its stall short
+            long[] last = {System.nanoTime()};
+            int[] longGaps = {0};
+            int members = new DropboxService(client).forEachMember(TokenProvider.of("t"), 10, m -> {
+                long now = System.nanoTime();
+                if (now - last[0] > TimeUnit.MILLISECONDS.toNanos(1500)) {
+                    longGaps[0]++;
+                }
+                last[0] = now;
+            });
+
+            assertEquals(1000, members);
+            ClientMetrics.Endpoint next = metrics.endpoint(client.apiUrl("team/members/list/continue"));
+            assertTrue(next.getHedgeWins() > 0);
+            assertTrue(next.getHedges() <= next.getLatencyCount() / 2 + 5);
+            long stalls = simulator.getStalledCount();
+            assertTrue(longGaps[0] + " slow pages for " + stalls + " stalls", longGaps[0] < stalls);
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package com.cloudeagle.dropboxapi;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests of {@link RequestScheduler} pacing, Retry-After handling and backoff.
+ */
+public class RequestSchedulerTest {
+
+    private static final long MS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    @Test
+    public void tokenBucketPacesRequestsAfterTheBurst() {
+        RequestScheduler scheduler = new RequestScheduler(100, 2, 5, 500, 30_000);
+        assertEquals(0, scheduler.reserve());
+        assertEquals(0, scheduler.reserve());
+        // the request that empties the bucket goes now and pushes the next free slot out
+        assertEquals(0, scheduler.reserve());
+        long second = scheduler.reserve();
+        long third = scheduler.reserve();
+        // 100 requests/s: each request after the burst waits one more 10 ms interval
+        assertTrue(second + " ns", second > 8 * MS && second <= 10 * MS);
+        assertTrue(third + " ns", third > 18 * MS && third <= 20 * MS);
+        assertFalse(scheduler.tryAcquire());
+    }
+
+    @Test
+    public void releasedPermitCanBeTakenAgain() {
+        RequestScheduler scheduler = new RequestScheduler(1, 1, 5, 500, 30_000);
+        assertTrue(scheduler.tryAcquire());
+        assertFalse(scheduler.tryAcquire());
+        scheduler.release();
+        assertTrue(scheduler.tryAcquire());
+    }
+
+    @Test
+    public void retryAfterHeaderPausesEveryCaller() {
+        RequestScheduler scheduler = new RequestScheduler(1000, 10, 5, 500, 30_000);
+        assertEquals(0, scheduler.onFailure(new HttpStatusException(429, "", 2), 0));
+        long wait = scheduler.reserve();
+        assertTrue(wait + " ns", wait > 1900 * MS && wait <= 2000 * MS);
+        assertFalse(scheduler.tryAcquire());
+    }
+
+    @Test
+    public void retryAfterIsReadFromTheErrorBody() {
+        RequestScheduler scheduler = new RequestScheduler(1000, 10, 5, 500, 30_000);
+        String body = "{\"error_summary\": \"too_many_requests/\", \"error\": {\"retry_after\": 3}}";
+        // a too_many_requests body counts as throttling whatever the status
+        assertEquals(0, scheduler.onFailure(new HttpStatusException(409, body), 0));
+        long wait = scheduler.reserve();
+        assertTrue(wait + " ns", wait > 2900 * MS && wait <= 3000 * MS);
+    }
+
+    @Test
+    public void transientErrorsBackOffWithJitterAndGiveUp() {
+        RequestScheduler scheduler = new RequestScheduler(1000, 10, 3, 100, 250);
+        Set<Long> delays = new HashSet<>();
+        for (int i = 0; i < 200; i++) {
+            long first = scheduler.onFailure(new HttpStatusException(503, "busy"), 0);
+            long third = scheduler.onFailure(new HttpStatusException(503, "busy"), 2);
+            assertTrue(first >= 0 && first <= 100);
+            // capped at 250 rather than 100 * 2^2
+            assertTrue(third >= 0 && third <= 250);
+            delays.add(third);
+        }
+        assertTrue("jittered", delays.size() > 10);
+        assertTrue(scheduler.onFailure(new SocketTimeoutException("read timed out"), 1) >= 0);
+        assertEquals(-1, scheduler.onFailure(new HttpStatusException(503, "busy"), 3));
+        assertEquals(-1, scheduler.onFailure(new HttpStatusException(400, "bad request"), 0));
+    }
+
+    @Test
+    public void clientRetriesThrottlingAndServerErrorsFromTheSimulator() throws IOException {
+        try (DropboxSimulator simulator = new DropboxSimulator.Builder()
+                .members(10_000).throttleRate(0.2, 0).serverErrorRate(0.1).build()) {
+            DropboxClient client = new DropboxClient(new HttpTransport.Builder().build(),
+                    new RequestScheduler(10_000, 10_000, 10, 1, 5), DropboxEndpoints.of(simulator.baseUrl()));
+            int members = new DropboxService(client).forEachMember(TokenProvider.of("t"), 100, m -> { });
+
+            assertEquals(10_000, members);
+            assertTrue(simulator.getThrottledCount() > 0);
+            assertTrue(simulator.getServerErrorCount() > 0);
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package com.cloudeagle.dropboxapi;
+
+import org.json.JSONObject;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Unit tests for {@link ResponseCache}.
+ */
+public class ResponseCacheTest {
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    private final AtomicLong now = new AtomicLong(1_000_000);
+
+    private ResponseCache.Builder builder() {
+        return new ResponseCache.Builder()
+                .ttl("a", Duration.ofSeconds(10))
+                .ttl("b", Duration.ofSeconds(10))
+                .ttl("c", Duration.ofSeconds(10))
+                .clock(now::get);
+    }
+
+    @Test
+    public void entriesExpireAfterTheirTtl() throws IOException {
+        ResponseCache cache = builder().ttl("short", Duration.ofSeconds(1)).build();
+        cache.put("a", new JSONObject().put("v", 1));
+        cache.put("short", new JSONObject().put("v", 2));
+
+        now.addAndGet(1_000);
+        assertNull(cache.get("short"));
+        assertEquals(1, cache.get("a").getInt("v"));
+
+        now.addAndGet(9_000);
+        assertNull(cache.get("a"));
+    }
+
+    @Test
+    public void routesWithoutTtlAreNotCached() throws IOException {
+        ResponseCache cache = builder().ttl("off", Duration.ZERO).build();
+        cache.put("off", new JSONObject());
+        cache.put("unknown", new JSONObject());
+        assertFalse(cache.isCacheable("off"));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsed() throws IOException {
+        ResponseCache cache = builder().maxEntries(2).build();
+        cache.put("a", new JSONObject());
+        cache.put("b", new JSONObject());
+        cache.get("a");
+        cache.put("c", new JSONObject());
+
+        assertNotNull(cache.get("a"));
+        assertNull(cache.get("b"));
+        assertNotNull(cache.get("c"));
+    }
+
+    @Test
+    public void snapshotSurvivesRestartUntilExpiry() throws IOException {
+        Path file = tmp.getRoot().toPath().resolve("cache.json");
+        builder().snapshot(file).build().put("a", new JSONObject().put("name", "Acme"));
+
+        ResponseCache warm = builder().snapshot(file).build();
+        assertEquals("Acme", warm.get("a").getString("name"));
+
+        now.addAndGet(10_000);
+        assertNull(builder().snapshot(file).build().get("a"));
+    }
+
+    @Test
+    public void spooledListIsReplayedFromDiskAfterRestart() throws IOException {
+        Path file = tmp.getRoot().toPath().resolve("cache.json");
+        try (ResponseCache.Spool spool = builder().snapshot(file).build().spool("a")) {
+            for (int i = 0; i < 3; i++) {
+                spool.accept(new JSONObject().put("i", i));
+            }
+            spool.commit();
+        }
+
+        List<Integer> replayed = new ArrayList<>();
+        ResponseCache warm = builder().snapshot(file).build();
+        assertEquals(3, warm.replay("a", r -> replayed.add(r.getInt("i"))));
+        assertEquals(Arrays.asList(0, 1, 2), replayed);
+
+        now.addAndGet(10_000);
+        assertEquals(-1, warm.replay("a", r -> { }));
+    }
+
+    @Test
+    public void uncommittedSpoolKeepsTheCachedList() throws IOException {
+        Path file = tmp.getRoot().toPath().resolve("cache.json");
+        ResponseCache cache = builder().snapshot(file).build();
+        try (ResponseCache.Spool spool = cache.spool("a")) {
+            spool.accept(new JSONObject().put("i", 1));
+            spool.commit();
+        }
+        try (ResponseCache.Spool spool = cache.spool("a")) {
+            spool.accept(new JSONObject().put("i", 2));
+        }
+
+        List<Integer> replayed = new ArrayList<>();
+        assertEquals(1, cache.replay("a", r -> replayed.add(r.getInt("i"))));
+        assertEquals(Collections.singletonList(1), replayed);
+        // only the snapshot and the committed spool file are left
+        try (Stream<Path> files = Files.list(tmp.getRoot().toPath())) {
+            assertEquals(2, files.count());
+        }
+    }
+
+    @Test
+    public void listsAreNotCachedWithoutSnapshot() throws IOException {
+        ResponseCache cache = builder().build();
+        assertNull(cache.spool("a"));
+        assertEquals(-1, cache.replay("a", r -> { }));
+    }
+
+    @Test
+    public void bypassMissesButStillStores() throws IOException {
+        ResponseCache cache = builder().build();
+        cache.put("a", new JSONObject().put("v", 1));
+        cache.setBypass(true);
+        assertNull(cache.get("a"));
+        cache.put("a", new JSONObject().put("v", 2));
+        cache.setBypass(false);
+        assertEquals(2, cache.get("a").getInt("v"));
+    }
+}
@@ -0,0 +1,78 @@
+package com.cloudeagle.dropboxapi;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.lang.management.ManagementFactory;
+import java.util.Locale;
+
+/**
+ * StreamingParseBenchmark
+ * <p>
+ * Compares the old whole-body path (String + full JSONObject tree) with the streaming
+ * {@link JsonRecordReader} path on a synthetic team_log/get_events page. Reports records
+ * per second and bytes allocated per record (via the HotSpot per-thread allocation counter).
+ * <p>
+ * Run:
+ * mvn test-compile exec:java -Dexec.classpathScope=test
+ *     -Dexec.mainClass=com.cloudeagle.dropboxapi.StreamingParseBenchmark -Dexec.args="1000 200"
+ * (arguments: events per page, measured iterations)
+ */
+public class StreamingParseBenchmark {
+
+    public static void main(String[] args) throws IOException {
+        int eventsPerPage = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+        int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+        String page = TestPages.eventsPage(eventsPerPage);
+        System.out.printf(Locale.ROOT, "page: %d events, %d chars%n", eventsPerPage, page.length());
+
+        // warm-up
+        for (int i = 0; i < iterations / 2; i++) {
+            treePath(page);
+            streamingPath(page);
+        }
+        report("JSONObject tree", eventsPerPage, iterations, () -> treePath(page));
+        report("JsonRecordReader", eventsPerPage, iterations, () -> streamingPath(page));
+    }
+
+    /** Mirrors the original postJson path: the body as one String, then a full tree. */
+    private static long treePath(String body) {
+        // the copy stands in for response.body().string()
+        JSONObject response = new JSONObject(new String(body.toCharArray()));
+        JSONArray events = response.getJSONArray("events");
+        long sum = 0;
+        for (int i = 0; i < events.length(); i++) {
+            sum += events.getJSONObject(i).optString("timestamp").length();
+        }
+        return sum;
+    }
+
+    private static long streamingPath(String body) throws IOException {
+        long[] sum = {0};
+        JsonRecordReader.read(new StringReader(body), "events",
+                ev -> sum[0] += ev.optString("timestamp").length());
+        return sum[0];
+    }
+
+    private static void report(String name, int eventsPerPage, int iterations, Task task) throws IOException {
+        com.sun.management.ThreadMXBean mx = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long tid = Thread.currentThread().getId();
+        long allocBefore = mx.getThreadAllocatedBytes(tid);
+        long start = System.nanoTime();
+        long blackhole = 0;
+        for (int i = 0; i < iterations; i++) {
+            blackhole += task.run();
+        }
+        long elapsed = System.nanoTime() - start;
+        long allocated = mx.getThreadAllocatedBytes(tid) - allocBefore;
+        long records = (long) eventsPerPage * iterations;
+        System.out.printf(Locale.ROOT, "%-18s %,12.0f records/s %,10d bytes allocated/record (checksum %d)%n",
+                name, records / (elapsed / 1e9), allocated / records, blackhole);
+    }
+
+    private interface Task {
+        long run() throws IOException;
+    }
+}
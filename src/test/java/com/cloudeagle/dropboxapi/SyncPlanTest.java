@@ -0,0 +1,107 @@
+package com.cloudeagle.dropboxapi;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit tests for {@link SyncPlan}.
+ */
+public class SyncPlanTest {
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(4);
+
+    @After
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void independentTasksRunInParallel() throws InterruptedException {
+        // each task waits for the other, so the plan only finishes if both run at once
+        CountDownLatch both = new CountDownLatch(2);
+        SyncPlan.Task task = () -> {
+            both.countDown();
+            if (!both.await(5, TimeUnit.SECONDS)) {
+                throw new IllegalStateException("ran sequentially");
+            }
+        };
+        SyncPlan.Report report = new SyncPlan()
+                .add("a", Duration.ofSeconds(10), task)
+                .add("b", Duration.ofSeconds(10), task)
+                .execute(executor);
+        assertTrue(report.toString(), report.allSucceeded());
+    }
+
+    @Test
+    public void timeoutInterruptsTaskWithoutCancellingOthers() throws InterruptedException {
+        AtomicBoolean interrupted = new AtomicBoolean();
+        SyncPlan.Report report = new SyncPlan()
+                .add("slow", Duration.ofMillis(100), () -> {
+                    try {
+                        Thread.sleep(10_000);
+                    } catch (InterruptedException e) {
+                        interrupted.set(true);
+                        throw e;
+                    }
+                })
+                .add("fast", Duration.ofSeconds(5), () -> Thread.sleep(300))
+                .execute(executor);
+
+        assertEquals(SyncPlan.Status.TIMED_OUT, report.get("slow").getStatus());
+        assertEquals(SyncPlan.Status.SUCCEEDED, report.get("fast").getStatus());
+        assertTrue(report.get("slow").getDuration().toMillis() < 5_000);
+        Thread.sleep(100);
+        assertTrue(interrupted.get());
+    }
+
+    @Test
+    public void failureSkipsOnlyDependents() throws InterruptedException {
+        AtomicBoolean dependentRan = new AtomicBoolean();
+        SyncPlan.Report report = new SyncPlan()
+                .add("members", null, () -> {
+                    throw new IOException("HTTP 500");
+                })
+                .add("events", null, () -> { })
+                .add("enrich", null, () -> dependentRan.set(true), "members", "events")
+                .execute(executor);
+
+        assertEquals(SyncPlan.Status.FAILED, report.get("members").getStatus());
+        assertEquals("HTTP 500", report.get("members").getError().getMessage());
+        assertEquals(SyncPlan.Status.SUCCEEDED, report.get("events").getStatus());
+        assertEquals(SyncPlan.Status.SKIPPED, report.get("enrich").getStatus());
+        assertFalse(dependentRan.get());
+        assertFalse(report.allSucceeded());
+    }
+
+    @Test
+    public void criticalPathFollowsLatestDependency() throws InterruptedException {
+        SyncPlan.Report report = new SyncPlan()
+                .add("team_info", null, () -> Thread.sleep(20))
+                .add("members", null, () -> Thread.sleep(300))
+                .add("events", null, () -> Thread.sleep(50))
+                .add("join", null, () -> Thread.sleep(20), "members", "events")
+                .execute(executor);
+
+        assertEquals(Arrays.asList("members", "join"), report.getCriticalPath());
+        // the plan takes about as long as its critical path, not the sum of all tasks
+        assertTrue(report.getWallTime().toMillis() < 390);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void dependenciesMustBeAddedFirst() {
+        new SyncPlan().add("join", null, () -> { }, "members");
+    }
+}
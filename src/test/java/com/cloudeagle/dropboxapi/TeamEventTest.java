@@ -0,0 +1,80 @@
+package com.cloudeagle.dropboxapi;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit tests for {@link TeamEvent} and {@link TeamMember}, including the sharing of repeated
+ * values that keeps the compact records small.
+ */
+public class TeamEventTest {
+
+    private static final int EVENTS = 5_000;
+
+    @Test
+    public void parsesEventAndSharesRepeatedValues() {
+        JSONArray events = new JSONObject(TestPages.eventsPage(2)).getJSONArray("events");
+        StringPool pool = new StringPool(100);
+
+        TeamEvent a = TeamEvent.fromJson(events.getJSONObject(0), pool);
+        TeamEvent b = TeamEvent.fromJson(events.getJSONObject(1), pool);
+
+        assertEquals(1704067200L, a.getTimestampEpochSeconds());
+        assertEquals("logins", a.getCategory());
+        assertEquals("login_success", a.getEventType());
+        assertTrue(a.getActorId().startsWith("dbmid:"));
+        assertSame(a.getEventType(), b.getEventType());
+        assertSame(a.getCategory(), b.getCategory());
+    }
+
+    @Test
+    public void parsesMemberProfile() {
+        JSONObject member = new JSONObject()
+                .put("profile", new JSONObject()
+                        .put("team_member_id", "dbmid:1")
+                        .put("account_id", "dbid:1")
+                        .put("email", "a@example.com")
+                        .put("status", new JSONObject().put(".tag", "active"))
+                        .put("joined_on", "2020-01-01T00:00:00Z")
+                        .put("name", new JSONObject().put("display_name", "A")))
+                .put("role", new JSONObject().put(".tag", "member_only"));
+
+        TeamMember m = TeamMember.fromJson(member);
+
+        assertEquals("dbmid:1", m.getTeamMemberId());
+        assertEquals("active", m.getStatus());
+        assertEquals("member_only", m.getRole());
+        assertEquals(1577836800000L, m.getJoinedOnEpochMillis());
+    }
+
+    @Test
+    public void compactEventsHoldOneInstancePerDistinctValue() {
+        JSONArray page = new JSONObject(TestPages.eventsPage(EVENTS)).getJSONArray("events");
+        StringPool pool = new StringPool(10_000);
+        Set<String> distinctIds = new HashSet<>();
+        Set<String> idInstances = Collections.newSetFromMap(new IdentityHashMap<>());
+        Set<String> typeInstances = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (int i = 0; i < EVENTS; i++) {
+            TeamEvent event = TeamEvent.fromJson(page.getJSONObject(i), pool);
+            distinctIds.add(event.getActorId());
+            idInstances.add(event.getActorId());
+            typeInstances.add(event.getEventType());
+        }
+
+        // retained heap is then bounded by the distinct values, not by the number of events
+        // (see EventHeapBenchmark for the measured difference)
+        assertEquals(500, distinctIds.size());
+        assertEquals(500, idInstances.size());
+        assertEquals(1, typeInstances.size());
+    }
+}
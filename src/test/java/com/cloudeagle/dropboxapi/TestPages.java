@@ -0,0 +1,45 @@
+package com.cloudeagle.dropboxapi;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.util.Locale;
+
+/**
+ * TestPages
+ * <p>
+ * Synthetic Dropbox response pages shared by the tests and the test-side benchmarks.
+ */
+final class TestPages {
+
+    private TestPages() {
+    }
+
+    /**
+     * @param events number of events
+     * @return a team_log/get_events response body with {@code events} login events by 500
+     * distinct members, one second apart from 2024-01-01T00:00:00Z
+     */
+    static String eventsPage(int events) {
+        JSONArray arr = new JSONArray();
+        for (int i = 0; i < events; i++) {
+            JSONObject ev = new JSONObject();
+            ev.put("timestamp", String.format(Locale.ROOT, "2024-01-01T00:%02d:%02dZ", (i / 60) % 60, i % 60));
+            ev.put("event_category", new JSONObject().put(".tag", "logins"));
+            ev.put("event_type", new JSONObject().put(".tag", "login_success")
+                    .put("description", "Signed in"));
+            ev.put("actor", new JSONObject().put(".tag", "user").put("user", new JSONObject()
+                    .put("account_id", "dbid:AAH4f99T0taONIb-OurWxbNQ6ywGRopQngc" + i % 500)
+                    .put("display_name", "Member " + i % 500)
+                    .put("email", "member" + i % 500 + "@example.com")
+                    .put("team_member_id", "dbmid:AAHhy7WsR0x-u4ZCqiDl5Fz5zvuL3kmspwU" + i % 500)));
+            ev.put("origin", new JSONObject().put("access_method", new JSONObject().put(".tag", "end_user")));
+            ev.put("involve_non_team_member", false);
+            ev.put("details", new JSONObject().put(".tag", "login_success_details")
+                    .put("is_emm_managed", false).put("login_method", new JSONObject().put(".tag", "password")));
+            arr.put(ev);
+        }
+        return new JSONObject().put("events", arr).put("cursor", "ZtkX9_EHj3x7PMkVuFIhwKYXEpwpLwyxp9vMKomUhllil9q7eWiAu")
+                .put("has_more", true).toString();
+    }
+}
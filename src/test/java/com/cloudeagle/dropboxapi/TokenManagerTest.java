@@ -0,0 +1,138 @@
+package com.cloudeagle.dropboxapi;
+
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests of {@link TokenManager}: single-flight refresh, proactive background refresh and
+ * failure propagation, against the token endpoint of a {@link DropboxSimulator}.
+ */
+public class TokenManagerTest {
+
+    private static final int CALLERS = 16;
+
+    private DropboxSimulator simulator;
+    private ExecutorService callers;
+    private final AtomicInteger refreshCalls = new AtomicInteger();
+    // refreshes wait for this, so that every caller is already waiting when the refresh ends
+    private final CountDownLatch releaseRefresh = new CountDownLatch(1);
+
+    @Before
+    public void startSimulator() throws IOException {
+        simulator = new DropboxSimulator.Builder().tokenLifetimeSeconds(3600).build();
+        callers = Executors.newFixedThreadPool(CALLERS);
+    }
+
+    @After
+    public void stopSimulator() {
+        callers.shutdownNow();
+        simulator.close();
+    }
+
+    /** AuthService against the simulator that counts refreshes and holds them until released. */
+    private AuthService auth(boolean fail) {
+        return new AuthService("id", "secret", "", "", new HttpTransport.Builder().build(),
+                DropboxEndpoints.of(simulator.baseUrl())) {
+            @Override
+            public JSONObject refreshAccessToken(String refreshToken) throws IOException {
+                refreshCalls.incrementAndGet();
+                try {
+                    releaseRefresh.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                if (fail) {
+                    throw new IOException("invalid_grant");
+                }
+                return super.refreshAccessToken(refreshToken);
+            }
+        };
+    }
+
+    private List<Future<String>> askConcurrently(TokenManager tokens) throws InterruptedException {
+        List<Future<String>> results = new ArrayList<>();
+        for (int i = 0; i < CALLERS; i++) {
+            results.add(callers.submit(tokens::getAccessToken));
+        }
+        Thread.sleep(200);
+        releaseRefresh.countDown();
+        return results;
+    }
+
+    @Test
+    public void concurrentCallersAfterInvalidationShareOneRefresh() throws Exception {
+        try (TokenManager tokens = new TokenManager(auth(false), "sim-refresh", "stale", 3600)) {
+            assertEquals("stale", tokens.getAccessToken());
+            tokens.invalidate("stale");
+
+            for (Future<String> result : askConcurrently(tokens)) {
+                assertEquals("sim-access-1", result.get(5, TimeUnit.SECONDS));
+            }
+            assertEquals(1, refreshCalls.get());
+            assertEquals(1, simulator.getTokensIssued());
+            assertEquals("sim-access-1", tokens.getAccessToken());
+        }
+    }
+
+    @Test
+    public void tokenIsRefreshedInTheBackgroundBeforeItExpires() throws Exception {
+        releaseRefresh.countDown();
+        // a 2 s token is refreshed after 80% of its lifetime, without anyone asking
+        try (TokenManager tokens = new TokenManager(auth(false), "sim-refresh", "seed", 2)) {
+            Thread.sleep(500);
+            assertEquals(0, simulator.getTokensIssued());
+            for (int i = 0; i < 300 && simulator.getTokensIssued() == 0; i++) {
+                Thread.sleep(10);
+            }
+            assertEquals(1, simulator.getTokensIssued());
+            assertEquals("sim-access-1", tokens.getAccessToken());
+            assertEquals(1, refreshCalls.get());
+        }
+    }
+
+    @Test
+    public void failedRefreshReachesEveryWaitingCaller() throws Exception {
+        try (TokenManager tokens = new TokenManager(auth(true), "sim-refresh")) {
+            for (Future<String> result : askConcurrently(tokens)) {
+                try {
+                    result.get(5, TimeUnit.SECONDS);
+                    fail("expected the refresh failure");
+                } catch (ExecutionException e) {
+                    assertTrue(e.getCause() instanceof IOException);
+                    assertEquals("invalid_grant", e.getCause().getMessage());
+                }
+            }
+            assertEquals(1, refreshCalls.get());
+        }
+    }
+
+    @Test
+    public void closedManagerRefusesToRefresh() {
+        TokenManager tokens = new TokenManager(auth(false), "sim-refresh");
+        tokens.close();
+        try {
+            tokens.getAccessToken();
+            fail("expected IOException");
+        } catch (IOException e) {
+            assertEquals("TokenManager is closed", e.getMessage());
+        }
+        assertEquals(0, refreshCalls.get());
+    }
+}
@@ -0,0 +1,91 @@
+package com.cloudeagle.dropboxapi;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Properties;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit tests for {@link TokenStore}.
+ */
+public class TokenStoreTest {
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    @Test
+    public void roundTripsEncryptedTokens() throws IOException {
+        Path file = tmp.getRoot().toPath().resolve("tokens.enc");
+        new TokenStore(file, "secret".toCharArray())
+                .save("refresh-1", "access-1", System.currentTimeMillis() + 3_600_000);
+
+        String raw = new String(Files.readAllBytes(file), StandardCharsets.ISO_8859_1);
+        assertFalse(raw.contains("refresh-1"));
+
+        TokenStore.Tokens tokens = new TokenStore(file, "secret".toCharArray()).load();
+        assertEquals("refresh-1", tokens.getRefreshToken());
+        assertEquals("access-1", tokens.getAccessToken());
+        assertTrue(tokens.getExpiresInSeconds() > 3_500);
+    }
+
+    @Test
+    public void wrongPassphraseOrTamperingReadsAsEmpty() throws IOException {
+        Path file = tmp.getRoot().toPath().resolve("tokens.enc");
+        new TokenStore(file, "secret".toCharArray()).save("refresh-1", null, 0);
+
+        assertNull(new TokenStore(file, "other".toCharArray()).load());
+
+        byte[] data = Files.readAllBytes(file);
+        data[data.length - 1] ^= 1;
+        Files.write(file, data);
+        assertNull(new TokenStore(file, "secret".toCharArray()).load());
+        assertNull(new TokenStore(tmp.getRoot().toPath().resolve("missing"), "secret".toCharArray()).load());
+    }
+
+    @Test
+    public void tokenManagerPersistsRefreshedTokens() throws IOException {
+        Path file = tmp.getRoot().toPath().resolve("tokens.enc");
+        TokenStore store = new TokenStore(file, "secret".toCharArray());
+        try (DropboxSimulator simulator = new DropboxSimulator.Builder().build()) {
+            DropboxEndpoints endpoints = DropboxEndpoints.of(simulator.baseUrl());
+            AuthService auth = new AuthService("id", "secret", "http://localhost/callback", "",
+                    new HttpTransport.Builder().build(), endpoints);
+            try (TokenManager tokens = new TokenManager(auth, "sim-refresh-1")) {
+                tokens.persistTo(store);
+                assertNull(store.load().getAccessToken());
+
+                String access = tokens.getAccessToken();
+                assertEquals(access, store.load().getAccessToken());
+
+                tokens.invalidate(access);
+                String next = tokens.getAccessToken();
+                assertNotEquals(access, next);
+                assertEquals(next, new TokenStore(file, "secret".toCharArray()).load().getAccessToken());
+            }
+        }
+    }
+
+    @Test
+    public void storeNeedsItsOwnPassphrase() {
+        Properties cfg = new Properties();
+        cfg.setProperty("dropbox.client_secret", "app-secret");
+        assertNull(TokenStore.fromProperties(cfg, null));
+        assertNotNull(TokenStore.fromProperties(cfg, "from-env"));
+        cfg.setProperty("token_store.passphrase", "from-config");
+        assertNotNull(TokenStore.fromProperties(cfg, null));
+        cfg.setProperty("token_store.enabled", "false");
+        assertNull(TokenStore.fromProperties(cfg, "from-env"));
+    }
+}